@@ -0,0 +1,67 @@
+package org.doble.adr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link ADRFilter#filter(int)}, which is used to find the file of an ADR
+ * from its id when no index is available.
+ *
+ * <ul>
+ * <li><code>match</code>: the cost of the filter alone, applied to the already listed file names.</li>
+ * <li><code>findFile</code>: listing the document directory and filtering it, as done by {@link Record}.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ADRFilterBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private List<Path> paths;
+	private int adrId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		try (Stream<Path> stream = Files.list(repository.docsPath)) {
+			paths = stream.collect(Collectors.toList());
+		}
+		adrId = adrCount / 2 + 1;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		repository.close();
+	}
+
+	@Benchmark
+	public long match() {
+		Predicate<Path> filter = ADRFilter.filter(adrId);
+		long count = 0;
+		for (Path path : paths) {
+			if (filter.test(path)) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long findFile() throws Exception {
+		try (Stream<Path> stream = Files.list(repository.docsPath)) {
+			return stream.filter(ADRFilter.filter(adrId)).count();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package org.doble.adr;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures finding the highest id of the ADRs, which is what the new command needs to
+ * number a new ADR. Before the index was introduced this was done by listing and parsing
+ * the names of all the files in the document directory (<code>CommandNew.highestIndex()</code>).
+ *
+ * <ul>
+ * <li><code>warm</code>: the index is held in memory, as in the server, and only checked against the directory.</li>
+ * <li><code>stored</code>: the index is read from the index file, as in a freshly started JVM.</li>
+ * <li><code>storedLookup</code>: as <code>stored</code>, then the file name of an ADR is looked up by id,
+ * as when a new ADR links to or supersedes another.</li>
+ * <li><code>cold</code>: no index exists, so it is built by reading the heads of all the ADRs.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ADRIndexBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		ADRIndex.open(repository.adrPath, repository.docsPath).save();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	@Benchmark
+	public int warm() throws Exception {
+		return ADRIndex.open(repository.adrPath, repository.docsPath).highestId();
+	}
+
+	@Benchmark
+	public int stored() throws Exception {
+		ADRIndex.clearCache();
+		return ADRIndex.open(repository.adrPath, repository.docsPath).highestId();
+	}
+
+	@Benchmark
+	public String storedLookup() throws Exception {
+		ADRIndex.clearCache();
+		return ADRIndex.open(repository.adrPath, repository.docsPath).getFileName(adrCount / 2 + 1);
+	}
+
+	@Benchmark
+	public int cold() throws Exception {
+		ADRIndex.clearCache();
+		Files.deleteIfExists(repository.adrPath.resolve(ADRIndex.INDEX_FILE_NAME));
+		return ADRIndex.open(repository.adrPath, repository.docsPath).highestId();
+	}
+}
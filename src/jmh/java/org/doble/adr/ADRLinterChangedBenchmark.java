@@ -0,0 +1,67 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures checking the ADRs in a git pre-commit hook, where a single ADR has changed.
+ *
+ * <ul>
+ * <li><code>changed</code>: the stored index is updated with the changed ADR only and the ADRs
+ * affected by the change are checked, as <code>adr lint -changed</code> does.</li>
+ * <li><code>all</code>: all the ADRs are read and checked, as <code>adr lint</code> does.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ADRLinterChangedBenchmark {
+
+	@Param({"10", "1000", "5000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private ADRLinter linter;
+	private List<Path> changedFiles;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		ADRIndex.open(repository.adrPath, repository.docsPath).save();
+
+		// The ADR is changed after the index has been written, as when it is edited before a commit
+		int id = adrCount / 2 + 1;
+		Path changed = repository.docsPath.resolve(String.format("%04d", id) + "-decision-number-" + id + ".md");
+		Files.write(changed, "\nAnother consequence.\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		changedFiles = Collections.singletonList(changed);
+		linter = new ADRLinter(repository.docsPath, ADRFilter.filter(), 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	@Benchmark
+	public List<ADRLinter.Diagnostic> changed() throws Exception {
+		ADRIndex.clearCache();
+		ADRIndex index = ADRIndex.openStored(repository.adrPath, repository.docsPath, ADRFilter.filter());
+		return linter.lint(index, index.update(changedFiles));
+	}
+
+	@Benchmark
+	public List<ADRLinter.Diagnostic> all() throws Exception {
+		return linter.lint();
+	}
+}
@@ -0,0 +1,82 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures applying a change of one ADR while watching, as <code>adr watch</code> does,
+ * i.e. the time from the (debounced) change event until the indexes are up to date.
+ *
+ * <ul>
+ * <li><code>oneChanged</code>: the indexes are updated with the changed ADR.</li>
+ * <li><code>oneChangedWithSite</code>: the HTML site is exported as well.</li>
+ * <li><code>reconcile</code>: the whole directory is reconciled, as after events have been lost.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ADRWatcherBenchmark {
+
+	@Param({"10", "1000", "10000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private ADRWatcher watcher;
+	private ADRWatcher siteWatcher;
+	private Path changedADR;
+	private Set<String> changed;
+	private int changes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		changedADR = repository.writeADR(adrCount / 2 + 1, "Decision number " + (adrCount / 2 + 1));
+		changed = Collections.singleton(changedADR.getFileName().toString());
+		repository.ageDocsDirectory();
+		watcher = new ADRWatcher(repository.adrPath, repository.docsPath, ADRFilter.filter());
+		siteWatcher = new ADRWatcher(repository.adrPath, repository.docsPath, ADRFilter.filter())
+				.site(repository.rootPath.resolve("site"));
+		siteWatcher.update();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		watcher.close();
+		siteWatcher.close();
+		ADRIndex.clearCache();
+		SearchIndex.clearCache();
+		repository.close();
+	}
+
+	private void change() throws Exception {
+		byte[] content = Files.readAllBytes(changedADR);
+		Files.write(changedADR, (new String(content, StandardCharsets.UTF_8) + "\nChange " + (++changes) + ".\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public ADRWatcher.Batch oneChanged() throws Exception {
+		change();
+		return watcher.apply(changed, false);
+	}
+
+	@Benchmark
+	public ADRWatcher.Batch oneChangedWithSite() throws Exception {
+		change();
+		return siteWatcher.apply(changed, false);
+	}
+
+	@Benchmark
+	public ADRWatcher.Batch reconcile() throws Exception {
+		return watcher.apply(Collections.<String>emptySet(), true);
+	}
+}
@@ -0,0 +1,132 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+/**
+ * A project with an initialised ADR directory containing a given number of ADRs, used as
+ * the fixture of the benchmarks. The project is either held in memory (Jimfs) or in a
+ * temporary directory on the default file system.
+ */
+class BenchmarkRepository implements Closeable {
+	static final String JIMFS = "jimfs";
+	static final String TEMP_DIR = "tempdir";
+
+	final FileSystem fileSystem;
+	final Path rootPath;
+	final Path adrPath;
+	final Path docsPath;
+	final Environment env;
+
+	private final boolean inMemory;
+
+	private BenchmarkRepository(FileSystem fileSystem, Path rootPath, boolean inMemory) {
+		this.fileSystem = fileSystem;
+		this.rootPath = rootPath;
+		this.adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		this.docsPath = rootPath.resolve(ADRProperties.defaultDocPath);
+		this.inMemory = inMemory;
+
+		PrintStream discard = new PrintStream(new ByteArrayOutputStream() {
+			@Override
+			public void write(byte[] b, int off, int len) {
+				// Discard the output
+			}
+		});
+		this.env = new Environment.Builder(fileSystem)
+				.out(discard)
+				.err(discard)
+				.in(System.in)
+				.userDir(rootPath)
+				.editorCommand("dummyEditor")
+				.editorRunner(new EditorRunner() {
+					@Override
+					public void run(Path path, String editorCommand) {
+						// No editor is opened in the benchmarks
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * Creates a project with the specified number of ADRs.
+	 *
+	 * @param kind     Either JIMFS or TEMP_DIR
+	 * @param adrCount The number of ADRs
+	 */
+	static BenchmarkRepository create(String kind, int adrCount) throws IOException {
+		BenchmarkRepository repository;
+		if (JIMFS.equals(kind)) {
+			FileSystem fileSystem = Jimfs.newFileSystem(Configuration.unix());
+			Path rootPath = fileSystem.getPath("/project");
+			Files.createDirectories(rootPath);
+			repository = new BenchmarkRepository(fileSystem, rootPath, true);
+		} else {
+			Path rootPath = Files.createTempDirectory("adr-benchmark");
+			repository = new BenchmarkRepository(FileSystems.getDefault(), rootPath, false);
+		}
+
+		Files.createDirectories(repository.adrPath);
+		Files.write(repository.adrPath.resolve("adr.properties"),
+				("docPath=" + ADRProperties.defaultDocPath + "\n").getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(repository.docsPath);
+
+		for (int id = 1; id <= adrCount; id++) {
+			repository.writeADR(id, "Decision number " + id);
+		}
+		repository.ageDocsDirectory();
+
+		return repository;
+	}
+
+	/**
+	 * Writes an ADR directly, i.e. without using the tool.
+	 */
+	Path writeADR(int id, String title) throws IOException {
+		String fileName = String.format("%04d", id) + "-" + title.toLowerCase().replace(' ', '-') + ".md";
+		String content = "# " + id + ". " + title + "\n\n"
+				+ "Date: 2019-10-01\n\n"
+				+ "## Status\n\n"
+				+ "Accepted\n\n"
+				+ "## Context\n\n"
+				+ "The context of decision " + id + ".\n\n"
+				+ "## Decision\n\n"
+				+ "The decision.\n\n"
+				+ "## Consequences\n\n"
+				+ "The consequences.\n";
+		return Files.write(docsPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Sets the modification time of the document directory an hour back, so that an index
+	 * written afterwards is not considered racy (see {@link ADRIndex}) and is reused as it would
+	 * be in a project where the last ADR was not written a moment ago.
+	 */
+	void ageDocsDirectory() throws IOException {
+		Files.setLastModifiedTime(docsPath, FileTime.fromMillis(System.currentTimeMillis() - 3600 * 1000));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (inMemory) {
+			fileSystem.close();
+		} else {
+			try (Stream<Path> paths = Files.walk(rootPath)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.doble.adr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the list command from the parsing of the command line to the printing of the
+ * ADRs (the output is discarded). The index is kept in memory between invocations, as in
+ * the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CommandListBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	@Benchmark
+	public int list() {
+		return ADR.run(new String[] {"list"}, repository.env);
+	}
+}
@@ -0,0 +1,48 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures building the decision graph and checking it for cycles, as <code>adr graph -check</code>
+ * does in CI. The entries are generated in memory: every ADR links to the previous ADR and every
+ * tenth ADR supersedes the ADR before it, so the time taken should grow linearly with the number of ADRs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DecisionGraphBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	private List<ADRIndex.Entry> entries;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		entries = new ArrayList<ADRIndex.Entry>(adrCount);
+		for (int id = 1; id <= adrCount; id++) {
+			List<ParsedRecord.Link> links = (id > 1)
+					? Arrays.asList(new ParsedRecord.Link(id - 1, "Amends", ""))
+					: Collections.<ParsedRecord.Link>emptyList();
+			List<Integer> supersedes = (id % 10 == 0) ? Arrays.asList(id - 1) : Collections.<Integer>emptyList();
+			entries.add(new ADRIndex.Entry(id, id + "-decision.md", "Decision " + id, "Accepted", "", links, supersedes, 0));
+		}
+	}
+
+	@Benchmark
+	public DecisionGraph build() {
+		return DecisionGraph.build(entries);
+	}
+
+	@Benchmark
+	public int buildAndCheck() {
+		DecisionGraph graph = DecisionGraph.build(entries);
+		return graph.supersedeCycles().size() + graph.getDanglingReferences().size();
+	}
+}
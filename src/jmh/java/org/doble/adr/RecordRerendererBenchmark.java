@@ -0,0 +1,58 @@
+package org.doble.adr;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures rendering all the ADRs again with the template, as <code>adr rerender</code> does.
+ * The ADRs have already been rendered with the template when the benchmark starts, so this is
+ * the cost of checking that no ADR has to be written: reading each ADR, rendering its head and
+ * comparing the result with the ADR.
+ *
+ * <code>threads</code> is the number of threads the ADRs are rendered with; 1 is sequential.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class RecordRerendererBenchmark {
+
+	@Param({"10", "1000", "5000"})
+	int adrCount;
+
+	@Param({"1", "4"})
+	int threads;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private RecordRerenderer rerenderer;
+	private List<Path> adrFiles;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		ADRIndex index = ADRIndex.open(repository.adrPath, repository.docsPath);
+		adrFiles = new ArrayList<Path>();
+		for (ADRIndex.Entry entry : index.entries()) {
+			adrFiles.add(repository.docsPath.resolve(entry.fileName));
+		}
+		rerenderer = new RecordRerenderer(index, threads);
+		rerenderer.rerender(adrFiles);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	@Benchmark
+	public List<RecordRerenderer.Result> unchanged() {
+		return rerenderer.rerender(adrFiles);
+	}
+}
@@ -0,0 +1,83 @@
+package org.doble.adr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link Record#store()}, i.e. rendering the template and writing a new ADR,
+ * with and without links and superseded ADRs.
+ *
+ * Every invocation writes the ADR following the existing ones. As {@link Record#store()} never
+ * overwrites an existing ADR, the new ADR is deleted after each invocation and the ADR it
+ * supersedes is restored, so the document directory is the same for every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RecordStoreBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private ADRIndex index;
+	private Date date;
+	private Path newADR;
+	private Path supersededADR;
+	private byte[] supersededContent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		index = ADRIndex.open(repository.adrPath, repository.docsPath);
+		date = new Date();
+		newADR = repository.docsPath.resolve(String.format("%04d", adrCount + 1) + "-a-new-decision.md");
+		supersededADR = repository.docsPath.resolve(index.getFileName(adrCount));
+		supersededContent = Files.readAllBytes(supersededADR);
+	}
+
+	@TearDown(Level.Invocation)
+	public void removeNewADR() throws Exception {
+		Files.deleteIfExists(newADR);
+		Files.write(supersededADR, supersededContent);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		repository.close();
+	}
+
+	@Benchmark
+	public Path store() throws Exception {
+		Record record = new Record.Builder(repository.docsPath)
+				.id(adrCount + 1)
+				.name("A new decision")
+				.date(date)
+				.status("Proposed")
+				.index(index)
+				.build();
+		return record.store();
+	}
+
+	@Benchmark
+	public Path storeWithLinksAndSupersedes() throws Exception {
+		Record record = new Record.Builder(repository.docsPath)
+				.id(adrCount + 1)
+				.name("A new decision")
+				.date(date)
+				.status("Proposed")
+				.index(index)
+				.build();
+		record.addLink(1, "amends");
+		record.addLink(adrCount / 2 + 1, "clarifies");
+		record.addSupersedes(adrCount);
+		return record.store();
+	}
+}
@@ -0,0 +1,69 @@
+package org.doble.adr;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures queries of the search index. Before the index was introduced the only way to
+ * find an ADR by its content was to read all the ADRs (e.g. with <code>grep -r</code>).
+ *
+ * <ul>
+ * <li><code>term</code>: a term found in every ADR, so all the postings of the term are read.</li>
+ * <li><code>phrase</code>: a phrase found in a single ADR.</li>
+ * <li><code>prefix</code>: a prefix matching a term of every ADR.</li>
+ * <li><code>stored</code>: a term query with the index read from the index file, as in a freshly started JVM.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SearchIndexBenchmark {
+
+	@Param({"10", "1000", "50000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private SearchIndex searchIndex;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		ADRIndex index = ADRIndex.open(repository.adrPath, repository.docsPath);
+		index.save();
+		searchIndex = SearchIndex.open(repository.adrPath, index);
+		searchIndex.save();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		SearchIndex.clearCache();
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	@Benchmark
+	public List<SearchIndex.Hit> term() {
+		return searchIndex.search("decision");
+	}
+
+	@Benchmark
+	public List<SearchIndex.Hit> phrase() {
+		return searchIndex.search("\"decision " + (adrCount / 2) + "\"");
+	}
+
+	@Benchmark
+	public List<SearchIndex.Hit> prefix() {
+		return searchIndex.search("conseq*");
+	}
+
+	@Benchmark
+	public List<SearchIndex.Hit> stored() throws Exception {
+		SearchIndex.clearCache();
+		return SearchIndex.open(repository.adrPath, ADRIndex.open(repository.adrPath, repository.docsPath)).search("decision");
+	}
+}
@@ -0,0 +1,73 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures exporting the ADRs as an HTML site, as <code>adr export -html</code> does on every commit.
+ *
+ * <ul>
+ * <li><code>unchanged</code>: no ADR has changed since the last export, so no page is written.</li>
+ * <li><code>oneChanged</code>: the content of one ADR has changed, so its page is written.</li>
+ * <li><code>full</code>: all the pages are written (<code>-force</code>), as before the export was incremental.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class SiteExporterBenchmark {
+
+	@Param({"10", "1000", "5000"})
+	int adrCount;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private Path sitePath;
+	private Path changedADR;
+	private int changes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		sitePath = repository.rootPath.resolve("site");
+		changedADR = repository.writeADR(adrCount / 2 + 1, "Decision number " + (adrCount / 2 + 1));
+		repository.ageDocsDirectory();
+		export(true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		ADRIndex.clearCache();
+		repository.close();
+	}
+
+	private SiteExporter.Result export(boolean force) throws ADRException {
+		ADRIndex index = ADRIndex.open(repository.adrPath, repository.docsPath);
+		SiteExporter.Result result = new SiteExporter(repository.adrPath, index, sitePath).export(force);
+		index.save();
+		return result;
+	}
+
+	@Benchmark
+	public SiteExporter.Result unchanged() throws Exception {
+		return export(false);
+	}
+
+	@Benchmark
+	public SiteExporter.Result oneChanged() throws Exception {
+		byte[] content = Files.readAllBytes(changedADR);
+		Files.write(changedADR, (new String(content, StandardCharsets.UTF_8) + "\nChange " + (++changes) + ".\n").getBytes(StandardCharsets.UTF_8));
+		return export(false);
+	}
+
+	@Benchmark
+	public SiteExporter.Result full() throws Exception {
+		return export(true);
+	}
+}
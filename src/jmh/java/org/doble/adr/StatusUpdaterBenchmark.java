@@ -0,0 +1,57 @@
+package org.doble.adr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures changing the status of many ADRs at once, as <code>adr status</code> does after an
+ * architecture review. Each invocation changes the status of all the ADRs, alternately to
+ * Deprecated and back to Accepted (allowed with <code>force</code>).
+ *
+ * <code>threads</code> is the number of threads the ADRs are changed with; 1 is sequential.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class StatusUpdaterBenchmark {
+
+	@Param({"10", "100", "1000"})
+	int adrCount;
+
+	@Param({"1", "4"})
+	int threads;
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private List<Path> adrFiles;
+	private StatusUpdater updater;
+	private boolean deprecated;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, adrCount);
+		try (Stream<Path> files = Files.list(repository.docsPath)) {
+			adrFiles = files.sorted().collect(Collectors.toList());
+		}
+		updater = new StatusUpdater(StatusTransitions.DEFAULT, threads).force(true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		repository.close();
+	}
+
+	@Benchmark
+	public List<StatusUpdater.Result> update() {
+		deprecated = !deprecated;
+		return updater.update(adrFiles, deprecated ? "Deprecated" : "Accepted");
+	}
+}
@@ -0,0 +1,54 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link TemplateProvider#getTemplate(Optional, TemplateEngine)}, as used when an ADR is
+ * created, for the default template (a resource) and for a template given as a file. Both are
+ * compiled once and then found in the template cache, the file template after checking that
+ * the file has not been modified.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TemplateProviderBenchmark {
+
+	@Param({BenchmarkRepository.JIMFS, BenchmarkRepository.TEMP_DIR})
+	String fileSystem;
+
+	private BenchmarkRepository repository;
+	private TemplateProvider templateProvider;
+	private Optional<String> fileTemplate;
+	private TemplateEngine engine;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = BenchmarkRepository.create(fileSystem, 0);
+		Path templatePath = repository.rootPath.resolve("template.md");
+		Files.write(templatePath, "# {{{id}}}. {{{name}}}\n".getBytes(StandardCharsets.UTF_8));
+		fileTemplate = Optional.of(templatePath.toString());
+		templateProvider = new TemplateProvider(repository.fileSystem, ADRProperties.defaultTemplateName);
+		engine = TemplateProvider.getEngine(null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		repository.close();
+	}
+
+	@Benchmark
+	public TemplateEngine.Template defaultTemplate() throws Exception {
+		return templateProvider.getTemplate(Optional.empty(), engine);
+	}
+
+	@Benchmark
+	public TemplateEngine.Template fileTemplate() throws Exception {
+		return templateProvider.getTemplate(fileTemplate, engine);
+	}
+}
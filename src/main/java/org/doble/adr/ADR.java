@@ -26,7 +26,9 @@ import picocli.CommandLine;
 public class ADR  {
 
 	final static public int MAX_ID_LENGTH = 4;
-	final static String ADR_DIR_NAME = ".adr";
+	final static public String ADR_DIR_NAME = ".adr";
+	final static String CLIENT_VARIABLE = "ADR_CLIENT";  // If set, commands are forwarded to a server
+	final static String ROOT_VARIABLE = "ADR_ROOT";      // If set, the root directory of the project
 	
 	public static final Integer ERRORGENERAL =      1;  // General purpose error code
 	public static final Integer ERRORENVIRONMENT=   2;  // Environment variables not correctly set 
@@ -53,6 +55,19 @@ public class ADR  {
 		// else leave as null to be picked up later
 		// TODO change this to an optional variable or an entry in the configuration file
 		
+		// The root directory of the project can be set, so that it is not searched for
+		String rootDir = System.getenv(ROOT_VARIABLE);
+		
+		// If requested, forward the command to a running server. If no server 
+		// is running the command is executed here.
+		if (System.getenv(CLIENT_VARIABLE) != null && !(args.length > 0 && args[0].equals(ADRServer.SERVER_COMMAND))) {
+			Optional<Integer> exitCode = new ADRClient(ADRServer.serverFile())
+					.run(args, System.getProperty("user.dir"), editorCommand, rootDir);
+			if (exitCode.isPresent()) {
+				System.exit(exitCode.get());
+			}
+		}
+		
 			
 		// Set up the environment that the tool runs in with the 
 		// default file system etc.
@@ -61,6 +76,7 @@ public class ADR  {
 				.err(System.err)
 				.in(System.in)
 				.userDir(System.getProperty("user.dir"))
+				.rootDir(rootDir)
 				.editorCommand(editorCommand)
 				.editorRunner(new SystemEditorRunner()) 
 				.build();
@@ -103,48 +119,61 @@ public class ADR  {
 	
 
 	 /** 
-	  * Get the root directory containing the .adr directory. 
+	  * Get the root directory containing the .adr directory. This is the directory set with
+	  * ADR_ROOT or else the first directory, starting with the directory where the tool is run, 
+	  * that contains a .adr directory. 
+	  * The root directory is only searched for once for each environment.
 	  * @return Path The root directory
 	  * @throws ADRException Thrown if the root directory cannot be found
 	  */
 	 static public Path getRootPath(Environment env) throws ADRException  {
-		 // NOTE: This examines the directory for the root path each time, 
-		 // rather than storing the value. This is necessary to avoid 
-		 // ProviderMismatchExceptions later due to the filesystems that 
-		 // created the Path being different. 
-
-		 // The directory containing the .adr directory, 
-		 // i.e. the root of the project 
-		 Optional<Path> rootPath = Optional.empty(); 
-
-		 // Find the root path, starting in the directory 
-		 // where the ADR tool has been run.
-		 Path path = env.dir;
-
-		 Path adrFilePath; 
-		 while (path != null) {
-			 adrFilePath = path.resolve(ADR.ADR_DIR_NAME);
-
-			 if (Files.exists(adrFilePath)) {
-				 rootPath = Optional.of(path);
-				 break;
-			 } else {
-				 // Check the directory above 
-				 path = path.getParent();
-			 }
-		 }
-
+		 Optional<Path> rootPath = findRootPath(env);
 
 		 if (!rootPath.isPresent()) {
-			 String msg = "ERROR: The .adr directory cannot be found in this or parent directories.\n"
+			 String msg = (env.rootDir != null)
+					 ? "ERROR: The .adr directory cannot be found in " + env.rootDir + " set with " + ROOT_VARIABLE + ".\n"
+					 + "Has the command adr init been run?"
+					 : "ERROR: The .adr directory cannot be found in this or parent directories.\n"
 					 + "Has the command adr init been run?";
 			 env.err.println(msg);
 			 throw new ADRException(msg);
 		 }
 
 		 return rootPath.get();
+	 }
 
+	 /**
+	  * Finds the root directory containing the .adr directory without reporting an error.
+	  * Only a root directory that has been found is remembered, so that a project initialised
+	  * later with the same environment is found.
+	  * @return The root directory, or Optional.empty() if there is none
+	  */
+	 static Optional<Path> findRootPath(Environment env) {
+		 Path rootPath = env.getRootPath();
+		 if (rootPath != null) return Optional.of(rootPath);
+
+		 if (env.rootDir != null) {
+			 // Set explicitly, so do not walk up the directories
+			 if (Files.exists(env.rootDir.resolve(ADR.ADR_DIR_NAME))) {
+				 rootPath = env.rootDir;
+			 }
+		 } else {
+			 // Start in the directory where the ADR tool has been run
+			 Path path = env.dir;
+			 while (path != null) {
+				 if (Files.exists(path.resolve(ADR.ADR_DIR_NAME))) {
+					 rootPath = path;
+					 break;
+				 } else {
+					 // Check the directory above 
+					 path = path.getParent();
+				 }
+			 }
+		 }
 
+		 if (rootPath == null) return Optional.empty();
+		 env.setRootPath(rootPath);
+		 return Optional.of(rootPath);
 	 }
 
 } // -- ADR
@@ -0,0 +1,194 @@
+package org.doble.adr;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Thin client that forwards the command line arguments to a running {@link ADRServer}
+ * and writes the output of the command to the standard output and error streams.
+ *
+ * Example use:
+ * <code>
+ *     Optional<Integer> exitCode = new ADRClient(ADRServer.serverFile()).run(args, workingDirectory, editorCommand, rootDirectory);
+ *     if (!exitCode.isPresent()) {
+ *         // No server running, so run the command locally
+ *     }
+ * </code>
+ */
+public class ADRClient {
+	// The most bytes of the standard input sent to the server at a time
+	private static final int INPUT_BUFFER_SIZE = 8192;
+
+	private final Path serverFile;
+	private final InputStream in;
+	private final PrintStream out;
+	private final PrintStream err;
+
+	/**
+	 * @param serverFile The file containing the port and the access token of the server
+	 */
+	public ADRClient(Path serverFile) {
+		this(serverFile, System.in, System.out, System.err);
+	}
+
+	/**
+	 * @param serverFile The file containing the port and the access token of the server
+	 * @param out        The stream the output of the command is written to
+	 * @param err        The stream the error output of the command is written to
+	 */
+	public ADRClient(Path serverFile, PrintStream out, PrintStream err) {
+		this(serverFile, System.in, out, err);
+	}
+
+	/**
+	 * @param serverFile The file containing the port and the access token of the server
+	 * @param in         The stream the command reads as its standard input
+	 * @param out        The stream the output of the command is written to
+	 * @param err        The stream the error output of the command is written to
+	 */
+	public ADRClient(Path serverFile, InputStream in, PrintStream out, PrintStream err) {
+		this.serverFile = serverFile;
+		this.in = in;
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * Runs a command on the server.
+	 *
+	 * @param args             The command line arguments
+	 * @param workingDirectory The directory the command is run in
+	 * @param editorCommand    The command to start the editor, or null if not set
+	 * @return The exit code of the command, or Optional.empty if no server could be reached
+	 */
+	public Optional<Integer> run(String[] args, String workingDirectory, String editorCommand) {
+		return run(args, workingDirectory, editorCommand, null);
+	}
+
+	/**
+	 * Runs a command on the server for a project whose root directory has been set.
+	 *
+	 * @param args             The command line arguments
+	 * @param workingDirectory The directory the command is run in
+	 * @param editorCommand    The command to start the editor, or null if not set
+	 * @param rootDirectory    The root directory of the project (ADR_ROOT), or null if not set
+	 * @return The exit code of the command, or Optional.empty if no server could be reached
+	 */
+	public Optional<Integer> run(String[] args, String workingDirectory, String editorCommand, String rootDirectory) {
+		Optional<Socket> connection = connect();
+		if (!connection.isPresent()) return Optional.empty();
+
+		try (Socket socket = connection.get()) {
+			DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+			request.writeUTF(readServerProperties().getProperty("token", ""));
+			request.writeByte(ADRServer.RUN);
+			request.writeUTF(workingDirectory);
+			request.writeBoolean(editorCommand != null);
+			if (editorCommand != null) request.writeUTF(editorCommand);
+			request.writeBoolean(rootDirectory != null);
+			if (rootDirectory != null) request.writeUTF(rootDirectory);
+			request.writeInt(args.length);
+			for (String arg : args) {
+				request.writeUTF(arg);
+			}
+			request.flush();
+
+			return Optional.of(readResponse(request, response));
+		} catch (IOException e) {
+			err.println("FATAL: Lost the connection to the ADR server. Exception message ->" + e.getMessage());
+			return Optional.of(ADR.ERRORGENERAL);
+		}
+	}
+
+	/**
+	 * Stops the server.
+	 *
+	 * @return true if a server was running and has been stopped.
+	 */
+	public boolean stop() {
+		Optional<Socket> connection = connect();
+		if (!connection.isPresent()) return false;
+
+		try (Socket socket = connection.get()) {
+			DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+			request.writeUTF(readServerProperties().getProperty("token", ""));
+			request.writeByte(ADRServer.STOP);
+			request.flush();
+
+			readResponse(request, response);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private int readResponse(DataOutputStream request, DataInputStream response) throws IOException {
+		while (true) {
+			byte type = response.readByte();
+			switch (type) {
+			case ADRServer.OUT:
+			case ADRServer.ERR:
+				byte[] data = new byte[response.readInt()];
+				response.readFully(data);
+				PrintStream stream = (type == ADRServer.OUT) ? out : err;
+				stream.write(data, 0, data.length);
+				stream.flush();
+				break;
+			case ADRServer.EDIT:
+				Path path = Paths.get(response.readUTF());
+				String editorCommand = response.readUTF();
+				boolean edited = true;
+				try {
+					new SystemEditorRunner().run(path, editorCommand);
+				} catch (ADRException e) {
+					edited = false;
+				}
+				request.writeBoolean(edited);
+				request.flush();
+				break;
+			case ADRServer.IN:
+				byte[] input = new byte[Math.min(response.readInt(), INPUT_BUFFER_SIZE)];
+				int length = (input.length > 0) ? in.read(input) : 0;
+				request.writeInt(length);
+				if (length > 0) request.write(input, 0, length);
+				request.flush();
+				break;
+			case ADRServer.EXIT:
+				return response.readInt();
+			default:
+				throw new IOException("Unexpected response from the ADR server");
+			}
+		}
+	}
+
+	private Optional<Socket> connect() {
+		try {
+			String port = readServerProperties().getProperty("port");
+			if (port == null) return Optional.empty();
+			return Optional.of(new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port)));
+		} catch (IOException | NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+
+	private Properties readServerProperties() throws IOException {
+		Properties properties = new Properties();
+		if (Files.exists(serverFile)) {
+			try (Reader reader = Files.newBufferedReader(serverFile, StandardCharsets.UTF_8)) {
+				properties.load(reader);
+			}
+		}
+		return properties;
+	}
+}
@@ -1,39 +1,151 @@
 package org.doble.adr;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.function.Predicate;
 
-public class ADRFilter {
-	
+/**
+ * Matches the files of ADRs, i.e. files whose names start with the (at least four digit) id
+ * of the ADR and that have one of the ADR extensions.
+ *
+ * The filter only compares the file name with a prefix and the extensions, so it can be
+ * created once and used for all the files in a directory.
+ *
+ * Usage:
+ * <code>
+ *     ADRFilter filter = ADRFilter.filter(properties.getExtensions());
+ *     Files.list(docsPath).filter(filter)...             // All ADRs
+ *     Files.list(docsPath).filter(filter.withId(12))...  // ADR 12, i.e. 0012-...
+ * </code>
+ */
+public class ADRFilter implements Predicate<Path> {
+	/** The extension of ADR files if no others are configured */
+	public static final String DEFAULT_EXTENSION = "md";
 
-	public static Predicate<Path> filter() {
+	private static final int ID_DIGITS = 4;
 
-		return p -> { 
-			String glob = "[0-9][0-9][0-9][0-9]*.md";   //TODO remove the  search for only markdown files
-			                                            // TODO test for other file types!
-			return p.getFileSystem().getPathMatcher("glob:" + glob).matches(p.getName(p.getNameCount()-1));
-		};
+	private static final ADRFilter DEFAULT_FILTER = new ADRFilter(Collections.singleton(DEFAULT_EXTENSION), null, false);
 
+	private final Set<String> extensions;   // Without the leading dot
+	private final String[] suffixes;        // The extensions with the leading dot
+	private final String prefix;            // Required start of the file name, null for any ADR id
+	private final boolean exactId;          // If the prefix has to be followed by a non-digit
+
+	private ADRFilter(Collection<String> extensions, String prefix, boolean exactId) {
+		this.extensions = new LinkedHashSet<String>();
+		for (String extension : extensions) {
+			String e = extension.trim();
+			if (e.startsWith(".")) e = e.substring(1);
+			if (!e.isEmpty()) this.extensions.add(e);
+		}
+		if (this.extensions.isEmpty()) this.extensions.add(DEFAULT_EXTENSION);
+
+		this.suffixes = new String[this.extensions.size()];
+		int i = 0;
+		for (String extension : this.extensions) {
+			suffixes[i++] = "." + extension;
+		}
+		this.prefix = prefix;
+		this.exactId = exactId;
+	}
+
+	/**
+	 * @return A filter for all ADR files with the default extension.
+	 */
+	public static ADRFilter filter() {
+		return DEFAULT_FILTER;
+	}
+
+	/**
+	 * @param extensions The extensions of ADR files, e.g. "md", "txt" (with or without the leading dot)
+	 * @return A filter for all ADR files with one of the extensions.
+	 */
+	public static ADRFilter filter(Collection<String> extensions) {
+		return new ADRFilter(extensions, null, false);
 	}
-	
-	public static Predicate<Path> filter(String adrID) {  //TODO remove the  search for only markdown files
 
-		return p -> { 
-			String glob = adrID + "*.md";
-			return p.getFileSystem().getPathMatcher("glob:" + glob).matches(p.getName(p.getNameCount()-1));
-			
-		};
+	/**
+	 * @param adrID The start of the file name, e.g. "0012"
+	 * @return A filter for ADR files with the default extension whose names start with adrID.
+	 */
+	public static ADRFilter filter(String adrID) {
+		return new ADRFilter(Collections.singleton(DEFAULT_EXTENSION), adrID, false);
+	}
+
+	/**
+	 * @param adrID The id of an ADR
+	 * @return A filter for the file of the ADR with the id adrID and the default extension.
+	 */
+	public static ADRFilter filter(int adrID) {
+		return DEFAULT_FILTER.withId(adrID);
+	}
+
+	/**
+	 * @param adrID The id of an ADR
+	 * @return A filter with the same extensions as this filter, for the file of the ADR with the id adrID.
+	 * The id has to be followed by a non-digit, so that for instance 1234 does not match 12345-....
+	 */
+	public ADRFilter withId(int adrID) {
+		return new ADRFilter(extensions, String.format("%04d", adrID), true);
+	}
 
+	/**
+	 * @return The extensions matched by this filter (without the leading dot).
+	 */
+	public Set<String> getExtensions() {
+		return Collections.unmodifiableSet(extensions);
 	}
-	
-	public static Predicate<Path> filter(int adrID) {
-				return p -> { 
-			String formattedID = String.format("%04d", adrID);
-			String glob = formattedID + "*.md";
-			return p.getFileSystem().getPathMatcher("glob:" + glob).matches(p.getName(p.getNameCount()-1));
-			
-		};
 
+	@Override
+	public boolean test(Path p) {
+		Path fileName = p.getFileName();
+		return (fileName != null) && matches(fileName.toString());
 	}
 
-	
+	/**
+	 * @param fileName The name of a file (without any directory)
+	 * @return true if the file name is matched by this filter.
+	 */
+	public boolean matches(String fileName) {
+		for (String suffix : suffixes) {
+			if (fileName.endsWith(suffix)) {
+				return matchesPrefix(fileName, fileName.length() - suffix.length());
+			}
+		}
+		return false;
+	}
+
+	private boolean matchesPrefix(String fileName, int stemLength) {
+		if (prefix == null) {
+			if (stemLength < ID_DIGITS) return false;
+			for (int i = 0; i < ID_DIGITS; i++) {
+				if (!isDigit(fileName.charAt(i))) return false;
+			}
+			return true;
+		}
+
+		if (stemLength < prefix.length() || !fileName.startsWith(prefix)) return false;
+		return !exactId || stemLength == prefix.length() || !isDigit(fileName.charAt(prefix.length()));
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ADRFilter)) return false;
+		ADRFilter other = (ADRFilter) o;
+		return extensions.equals(other.extensions)
+				&& exactId == other.exactId
+				&& (prefix == null ? other.prefix == null : prefix.equals(other.prefix));
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(new Object[] {extensions, prefix, exactId});
+	}
 }
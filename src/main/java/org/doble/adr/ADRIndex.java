@@ -0,0 +1,936 @@
+package org.doble.adr;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Persistent index of the ADRs in the document directory. The index maps the id of each
+ * ADR to its file name, title, status, date, links, superseded ADRs and last modification
+ * time (as read by {@link RecordLoader}) and is stored in the
+ * <code>.adr</code> directory so that commands do not have to read the ADRs each time they
+ * need to look up an ADR.
+ *
+ * The index is checked against the modification time of the document directory and, as editing
+ * an ADR in place does not change the directory, against a fingerprint of the names, modification
+ * times and sizes of the files in the directory. Listing the directory with the attributes of the
+ * files is much cheaper than reading them. If the directory has changed since the index was
+ * written, the index is rebuilt incrementally: only those ADR files that are new or have been
+ * modified are read again.
+ *
+ * Only files matched by the {@link ADRFilter} of the index are ADRs. The extensions of the
+ * filter are stored in the index file, so that the index is rebuilt if they are changed.
+ *
+ * Opened indexes are kept in memory, so that a long running process (see {@link ADRServer})
+ * only reads the index file again if it has been changed by another process.
+ *
+ * The index file is binary (see {@link IndexFile}) and is read in place: opening the index only
+ * reads its header, and looking up an ADR by id reads only the entry of that ADR. The changes made
+ * since the file was read are held in memory until the index is saved. All the entries are only
+ * decoded when they are requested with {@link #entries()}; {@link #entries(int, int, boolean)}
+ * decodes only the entries of the page requested.
+ *
+ * Each entry also holds the git blob hash of its ADR file (the hash <code>git hash-object</code>
+ * prints, computed from the same read of the file as its head), and the index holds the ADRs that link to or supersede each id. So the changes listed
+ * by git (e.g. <code>git diff --name-only</code>) can be applied with {@link #update(Collection)}:
+ * only the files listed are read, and the ADRs that reference a changed ADR are found without
+ * reading the others. Hooks use this with {@link #openStored(Path, Path, ADRFilter)} to check only
+ * the ADRs being committed.
+ *
+ * Usage:
+ * <code>
+ *     ADRIndex index = ADRIndex.open(rootPath.resolve(".adr"), docsPath, ADRFilter.filter(properties.getExtensions()));
+ *     String fileName = index.getFileName(4);
+ *     ...
+ *     index.save();
+ * </code>
+ */
+public class ADRIndex {
+	public static final String INDEX_FILE_NAME = "index.bin";
+
+	// The text index file written by earlier versions, removed when the index is saved
+	private static final String OLD_INDEX_FILE_NAME = "index";
+
+	// If the document directory or an ADR was modified less than this time before it was read,
+	// further changes made in the same clock tick would not change its modification time. In
+	// that case the modification time is not trusted (stored as UNKNOWN), so the directory or
+	// the ADR is read again the next time the index is opened.
+	static final long RACY_INTERVAL = 2000;  // Milliseconds
+	static final long UNKNOWN = -1;
+
+	// Indexes already opened, keyed by the URI of the index file, least recently used first
+	private static final int MAX_CACHED_INDEXES = 8;
+	private static final Map<String, ADRIndex> openIndexes = new LinkedHashMap<String, ADRIndex>(MAX_CACHED_INDEXES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ADRIndex> eldest) {
+			return size() > MAX_CACHED_INDEXES;
+		}
+	};
+
+	/**
+	 * An entry in the index describing a single ADR.
+	 */
+	public static class Entry {
+		public final int id;
+		public final String fileName;
+		public final String title;
+		public final String status;
+		public final String date;    // As written in the ADR, empty if the ADR has no date
+		public final List<ParsedRecord.Link> links;
+		public final List<Integer> supersedes;
+		public final long modified;  // Last modification time of the ADR file in milliseconds, UNKNOWN if not trusted
+		public final String hash;    // Git blob hash of the ADR file in hexadecimal, empty if not known
+
+		public Entry(int id, String fileName, String title, String status, String date,
+				     List<ParsedRecord.Link> links, List<Integer> supersedes, long modified) {
+			this(id, fileName, title, status, date, links, supersedes, modified, "");
+		}
+
+		public Entry(int id, String fileName, String title, String status, String date,
+				     List<ParsedRecord.Link> links, List<Integer> supersedes, long modified, String hash) {
+			this.id = id;
+			this.fileName = fileName;
+			this.title = title;
+			this.status = status;
+			this.date = date;
+			this.links = Collections.unmodifiableList(links);
+			this.supersedes = Collections.unmodifiableList(supersedes);
+			this.modified = modified;
+			this.hash = hash;
+		}
+
+		Entry(ParsedRecord record, long modified, String hash) {
+			this(record.getId(), record.getPath().getFileName().toString(), record.getTitle(), record.getStatus(),
+				 record.getDate(), record.getLinks(), record.getSupersedes(), modified, hash);
+		}
+
+		private Entry withModified(long modified) {
+			return new Entry(id, fileName, title, status, date, links, supersedes, modified, hash);
+		}
+
+		/**
+		 * @return The ids of the ADRs this ADR links to or supersedes, without duplicates
+		 */
+		Set<Integer> references() {
+			Set<Integer> references = new TreeSet<Integer>(supersedes);
+			for (ParsedRecord.Link link : links) {
+				references.add(link.id);
+			}
+			return references;
+		}
+	}
+
+	/**
+	 * The result of {@link ADRIndex#update(Collection)}.
+	 */
+	public static class Update {
+		public final List<Entry> updated = new ArrayList<Entry>();   // Added or modified ADRs, in the order listed
+		public final List<Entry> removed = new ArrayList<Entry>();   // ADRs whose files have been deleted
+		public final List<Path> unchanged = new ArrayList<Path>();   // ADR files whose content is the same
+		public final List<Path> ignored = new ArrayList<Path>();     // Files that are not ADRs of this index
+
+		Update() {
+		}
+	}
+
+	private final Path indexPath;
+	private final Path docsPath;
+	private final ADRFilter filter;
+	private IndexFile file;  // The entries as read from the index file, null if there are none
+	private final TreeMap<Integer, Entry> changes = new TreeMap<Integer, Entry>();  // Since the file was read. Null if removed.
+	private final TreeMap<Integer, List<Integer>> referrerChanges = new TreeMap<Integer, List<Integer>>();  // Since the file was read
+	private TreeMap<Integer, Entry> entries;  // All the entries ordered by id, once decoded
+	private long fingerprint = 0;  // See fingerprint(int, String, long)
+	private long directoryModified = UNKNOWN;
+	private long filesFingerprint = 0;  // Of the files in the document directory, see filesFingerprint()
+	private boolean filesChanged = false;  // If the files fingerprint has to be computed again before saving
+	private boolean racy = false;  // If an entry was read too soon after its ADR was modified, see RACY_INTERVAL
+	private boolean changed = false;
+	private String indexFileState = "";  // State of the index file when last read or written
+
+	private ADRIndex(Path adrPath, Path docsPath, ADRFilter filter) {
+		this.indexPath = adrPath.resolve(INDEX_FILE_NAME);
+		this.docsPath = docsPath;
+		this.filter = filter;
+	}
+
+	/**
+	 * Opens the index stored in the specified .adr directory, bringing it up to date
+	 * with the document directory if necessary. If no index exists it is built.
+	 *
+	 * @param adrPath  The .adr directory containing the index file
+	 * @param docsPath The directory where the ADRs are stored
+	 * @return An index consistent with the document directory
+	 * @throws ADRException Thrown if the document directory cannot be read
+	 */
+	public static ADRIndex open(Path adrPath, Path docsPath) throws ADRException {
+		return open(adrPath, docsPath, ADRFilter.filter());
+	}
+
+	/**
+	 * Opens the index stored in the specified .adr directory, bringing it up to date
+	 * with the document directory if necessary. If no index exists it is built.
+	 *
+	 * @param adrPath  The .adr directory containing the index file
+	 * @param docsPath The directory where the ADRs are stored
+	 * @param filter   The filter matching the ADR files, see {@link ADRFilter#filter(Collection)}
+	 * @return An index consistent with the document directory
+	 * @throws ADRException Thrown if the document directory cannot be read
+	 */
+	public static ADRIndex open(Path adrPath, Path docsPath, ADRFilter filter) throws ADRException {
+		Path indexPath = adrPath.resolve(INDEX_FILE_NAME);
+		String key = indexPath.toUri().toString();
+
+		synchronized (openIndexes) {
+			ADRIndex index = openIndexes.get(key);
+			if (index == null 
+					|| !index.docsPath.equals(docsPath) 
+					|| !index.filter.equals(filter)
+					|| !index.indexFileState.equals(fileState(indexPath))) {
+				index = new ADRIndex(adrPath, docsPath, filter);
+				index.load();
+				openIndexes.put(key, index);
+			}
+			index.refresh();
+			return index;
+		}
+	}
+
+	/**
+	 * Opens the index stored in the specified .adr directory as it was written, without checking
+	 * the document directory. The index is only built if none has been stored. Used with
+	 * {@link #update(Collection)} when the files that have changed are known, e.g. from git.
+	 *
+	 * @param adrPath  The .adr directory containing the index file
+	 * @param docsPath The directory where the ADRs are stored
+	 * @param filter   The filter matching the ADR files, see {@link ADRFilter#filter(Collection)}
+	 * @return The stored index
+	 * @throws ADRException Thrown if no index is stored and the document directory cannot be read
+	 */
+	public static ADRIndex openStored(Path adrPath, Path docsPath, ADRFilter filter) throws ADRException {
+		Path indexPath = adrPath.resolve(INDEX_FILE_NAME);
+		String key = indexPath.toUri().toString();
+
+		synchronized (openIndexes) {
+			ADRIndex index = openIndexes.get(key);
+			if (index == null 
+					|| !index.docsPath.equals(docsPath) 
+					|| !index.filter.equals(filter)
+					|| !index.indexFileState.equals(fileState(indexPath))) {
+				index = new ADRIndex(adrPath, docsPath, filter);
+				index.load();
+				openIndexes.put(key, index);
+			}
+			if (index.file == null && index.changes.isEmpty()) index.refresh();
+			return index;
+		}
+	}
+
+	/**
+	 * Forgets the indexes held in memory, so that the next {@link #open(Path, Path)} reads
+	 * the index file again.
+	 */
+	static void clearCache() {
+		synchronized (openIndexes) {
+			openIndexes.clear();
+		}
+	}
+
+	/**
+	 * @return A string describing the modification time and size of the file, used to detect
+	 * if the file has been changed. An empty string if the file does not exist.
+	 */
+	static String fileState(Path path) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Reads the header of the index file. A missing or unreadable index file results in an empty index
+	 * that is rebuilt on the next refresh.
+	 */
+	private void load() {
+		indexFileState = fileState(indexPath);
+		if (!Files.exists(indexPath)) return;
+
+		try {
+			IndexFile indexFile = IndexFile.open(indexPath);
+			if (indexFile == null) return;  // Unknown format or damaged, so rebuild
+			if (!extensionsLine().equals(indexFile.extensions())) return;  // Built for other extensions, so rebuild
+
+			file = indexFile;
+			fingerprint = indexFile.fingerprint();
+			directoryModified = indexFile.directoryModified();
+			filesFingerprint = indexFile.filesFingerprint();
+		} catch (IOException | RuntimeException e) {
+			// The index is only a cache, so start again from an empty index
+			file = null;
+			directoryModified = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Brings the index up to date if the document directory, or any of the files in it, has been
+	 * modified since the index was last written.
+	 *
+	 * @throws ADRException Thrown if the document directory cannot be read
+	 */
+	public void refresh() throws ADRException {
+		long currentModified;
+		boolean modified;
+		try {
+			currentModified = Files.getLastModifiedTime(docsPath).toMillis();
+			modified = (currentModified != directoryModified) || (filesFingerprint() != filesFingerprint);
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot access the ADR directory " + docsPath, e);
+		}
+
+		if (modified) {
+			rebuild();
+			directoryModified = racy ? UNKNOWN : currentModified;
+			changed = true;
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the document directory. The directory is listed once and the
+	 * entries of ADR files that have not been modified are kept. Only new or modified files are read.
+	 */
+	private void rebuild() throws ADRException {
+		HashMap<String, Entry> previous = new HashMap<String, Entry>();
+		for (Entry entry : entries()) {
+			previous.put(entry.fileName, entry);
+		}
+
+		TreeMap<Integer, Entry> current = new TreeMap<Integer, Entry>();
+		long files = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(docsPath, filter::test)) {
+			for (Path path : stream) {
+				String fileName = path.getFileName().toString();
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				long modified = attributes.lastModifiedTime().toMillis();
+				files ^= fileFingerprint(fileName, modified, attributes.size());
+				Entry entry = previous.get(fileName);
+				if (entry == null || entry.modified != modified) {
+					entry = read(path, trusted(modified));
+				}
+				// If more than one file has the same id, the first in file name order is used
+				Entry existing = current.get(entry.id);
+				if (existing == null || existing.fileName.compareTo(entry.fileName) > 0) {
+					current.put(entry.id, entry);
+				}
+			}
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Unable to read the ADR directory " + docsPath, e);
+		}
+
+		filesFingerprint = files;
+		filesChanged = false;
+		file = null;
+		changes.clear();
+		changes.putAll(current);
+		entries = current;
+		fingerprint = 0;
+		racy = false;
+		referrerChanges.clear();
+		for (Entry entry : current.values()) {
+			fingerprint ^= fingerprint(entry);
+			racy |= (entry.modified == UNKNOWN);
+			for (int referenced : entry.references()) {
+				referrerChanges.computeIfAbsent(referenced, id -> new ArrayList<Integer>()).add(entry.id);
+			}
+		}
+	}
+
+	/**
+	 * Writes the index to the .adr directory if it has changed since it was opened.
+	 *
+	 * @throws ADRException Thrown if the index file cannot be written
+	 */
+	public void save() throws ADRException {
+		if (!changed) return;
+
+		long storedDirectoryModified = directoryModified;
+		if (racy || trusted(directoryModified) == UNKNOWN) {
+			storedDirectoryModified = UNKNOWN;
+			directoryModified = UNKNOWN;  // Also check the directory again when this index is reused
+		}
+
+		try {
+			if (filesChanged) {
+				filesFingerprint = filesFingerprint();
+				filesChanged = false;
+			}
+			LocalFiles.ignore(indexPath.getParent());
+			// A temporary file of its own, as other processes may be saving the index at the same time
+			Path tempPath = AtomicFiles.createTempSibling(indexPath);
+			try {
+				try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+					IndexFile.write(out, entries(), allReferrers(), storedDirectoryModified, fingerprint, filesFingerprint, extensionsLine());
+				}
+				AtomicFiles.moveReplacing(tempPath, indexPath);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+			indexFileState = fileState(indexPath);
+			Files.deleteIfExists(indexPath.resolveSibling(OLD_INDEX_FILE_NAME));
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Unable to write the ADR index " + indexPath, e);
+		}
+		changed = false;
+	}
+
+	/**
+	 * Adds (or replaces) the entry for an ADR that has just been written. The head of the
+	 * ADR is read to get the values of the entry.
+	 *
+	 * @param path The ADR file
+	 * @throws ADRException Thrown if the ADR file cannot be read
+	 */
+	public void put(Path path) throws ADRException {
+		try {
+			long modified = Files.getLastModifiedTime(path).toMillis();
+			Entry entry = read(path, trusted(modified));
+			set(entry.id, entry);
+			directoryModified = Files.getLastModifiedTime(docsPath).toMillis();
+			filesChanged = true;
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot access the ADR " + path, e);
+		}
+		changed = true;
+	}
+
+	/**
+	 * Removes the entry for an ADR file that has been deleted (or renamed).
+	 *
+	 * @param fileName The file name of the ADR
+	 * @return The removed entry or Optional.empty if no ADR has the file name
+	 * @throws ADRException Thrown if the document directory cannot be accessed
+	 */
+	public Optional<Entry> remove(String fileName) throws ADRException {
+		Entry removed = entryOf(fileName, true);
+		if (removed != null) set(removed.id, null);
+
+		try {
+			directoryModified = Files.getLastModifiedTime(docsPath).toMillis();
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot access the ADR directory " + docsPath, e);
+		}
+		filesChanged = true;
+		if (removed != null) changed = true;
+		return Optional.ofNullable(removed);
+	}
+
+	/**
+	 * @param fileName The file name of an ADR
+	 * @param search   If all the entries are searched when the ADR does not have the id at the start of its file name
+	 * @return The entry of the ADR with the file name, or null if there is none
+	 */
+	private Entry entryOf(String fileName, boolean search) {
+		// The id is at the start of the file name, see ADRFilter
+		int digits = 0;
+		while (digits < fileName.length() && digits < 9 && Character.isDigit(fileName.charAt(digits))) digits++;
+		Entry entry = (digits > 0) ? get(Integer.parseInt(fileName.substring(0, digits))).orElse(null) : null;
+		if (entry != null && entry.fileName.equals(fileName)) return entry;
+		if (!search) return null;
+		for (Entry other : entries()) {
+			if (other.fileName.equals(fileName)) return other;
+		}
+		return null;
+	}
+
+	/**
+	 * Applies the changes to the files listed, e.g. by <code>git diff --name-only</code>: files that
+	 * have been deleted are removed from the index and files that have been added or modified are
+	 * read again. A file whose git blob hash is the same as in the index is not parsed. Paths that
+	 * are not ADR files in the document directory are ignored. The other ADRs are neither read nor
+	 * decoded from the index file, so the time taken depends only on the number of files listed.
+	 *
+	 * The modification time of the document directory stored in the index is not changed, so that
+	 * the next {@link #open(Path, Path, ADRFilter)} still checks the directory for other changes.
+	 *
+	 * @param paths The files that have changed, relative paths are resolved against the current directory
+	 * @return The entries updated and removed
+	 * @throws ADRException Thrown if an ADR file cannot be read
+	 */
+	public Update update(Collection<Path> paths) throws ADRException {
+		Update update = new Update();
+		Path directory = docsPath.toAbsolutePath().normalize();
+
+		// Deleted files first, so that an ADR renamed in the same change keeps its id
+		List<Path> present = new ArrayList<Path>();
+		for (Path path : paths) {
+			Path absolute = path.toAbsolutePath().normalize();
+			if (!directory.equals(absolute.getParent()) || !filter.test(absolute)) {
+				update.ignored.add(path);
+			} else if (Files.exists(absolute)) {
+				present.add(absolute);
+			} else {
+				Entry removed = entryOf(absolute.getFileName().toString(), false);
+				if (removed != null) {
+					set(removed.id, null);
+					update.removed.add(removed);
+					changed = true;
+				}
+			}
+		}
+
+		for (Path path : present) {
+			String fileName = path.getFileName().toString();
+			try {
+				long modified = trusted(Files.getLastModifiedTime(path).toMillis());
+				byte[] content = Files.readAllBytes(path);
+				String hash = hash(content);
+				Entry previous = entryOf(fileName, false);
+				if (previous != null && previous.hash.equals(hash)) {
+					if (previous.modified != modified) {
+						set(previous.id, previous.withModified(modified));
+						changed = true;
+					}
+					update.unchanged.add(path);
+					continue;
+				}
+
+				Entry entry = new Entry(RecordLoader.load(path, content), modified, hash);
+				if (previous != null && previous.id != entry.id) set(previous.id, null);
+				// If more than one file has the same id, the first in file name order is used, as in rebuild()
+				Entry existing = get(entry.id).orElse(null);
+				if (existing != null && !existing.fileName.equals(fileName) && existing.fileName.compareTo(fileName) < 0
+						&& Files.exists(docsPath.resolve(existing.fileName))) {
+					update.ignored.add(path);
+					continue;
+				}
+				set(entry.id, entry);
+				update.updated.add(entry);
+				changed = true;
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Cannot access the ADR " + path, e);
+			}
+		}
+
+		return update;
+	}
+
+	/**
+	 * Brings the index up to date with the document directory, whether or not the directory
+	 * has been modified, so that ADRs edited in place are noticed as well. Only new or
+	 * modified files are read.
+	 *
+	 * @throws ADRException Thrown if the document directory cannot be read
+	 */
+	public void reconcile() throws ADRException {
+		long currentModified;
+		try {
+			currentModified = Files.getLastModifiedTime(docsPath).toMillis();
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot access the ADR directory " + docsPath, e);
+		}
+		rebuild();
+		directoryModified = racy ? UNKNOWN : currentModified;
+		changed = true;
+	}
+
+	/**
+	 * Sets the entry of an ADR.
+	 *
+	 * @param id    The id of the ADR
+	 * @param entry The entry, or null if the ADR has been removed
+	 */
+	private void set(int id, Entry entry) {
+		if (entry != null && entry.modified == UNKNOWN) racy = true;
+		Optional<Entry> previous = get(id);
+		if (previous.isPresent()) fingerprint ^= fingerprint(previous.get());
+		if (entry != null) fingerprint ^= fingerprint(entry);
+
+		Set<Integer> before = previous.isPresent() ? previous.get().references() : Collections.<Integer>emptySet();
+		Set<Integer> after = (entry != null) ? entry.references() : Collections.<Integer>emptySet();
+		for (int referenced : before) {
+			if (!after.contains(referenced)) {
+				List<Integer> referrers = new ArrayList<Integer>(referencedBy(referenced));
+				referrers.remove(Integer.valueOf(id));
+				referrerChanges.put(referenced, referrers);
+			}
+		}
+		for (int referenced : after) {
+			if (!before.contains(referenced)) {
+				List<Integer> referrers = new ArrayList<Integer>(referencedBy(referenced));
+				int position = Collections.binarySearch(referrers, id);
+				if (position < 0) referrers.add(-position - 1, id);
+				referrerChanges.put(referenced, referrers);
+			}
+		}
+
+		changes.put(id, entry);
+		if (entries != null) {
+			if (entry != null) {
+				entries.put(id, entry);
+			} else {
+				entries.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the document directory when a damaged slot is found in the index
+	 * file. The index file is only a cache, so the ADRs are all read again.
+	 */
+	private void recover(IndexFile.DamagedException damaged) {
+		file = null;
+		entries = null;
+		changes.clear();
+		referrerChanges.clear();
+		directoryModified = UNKNOWN;
+		try {
+			rebuild();
+		} catch (ADRException e) {
+			e.addSuppressed(damaged);
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		changed = true;
+	}
+
+	/**
+	 * @param id The id of an ADR
+	 * @return The entry for the ADR with the specified id or Optional.empty if there is no such ADR.
+	 */
+	public Optional<Entry> get(int id) {
+		if (changes.containsKey(id)) return Optional.ofNullable(changes.get(id));
+		try {
+			int slot = (file != null) ? file.slot(id) : -1;
+			return (slot >= 0) ? Optional.of(file.entry(slot)) : Optional.empty();
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			return get(id);
+		}
+	}
+
+	/**
+	 * @param id The id of an ADR
+	 * @return true if an ADR with the specified id exists.
+	 */
+	public boolean exists(int id) {
+		if (changes.containsKey(id)) return changes.get(id) != null;
+		return file != null && file.slot(id) >= 0;
+	}
+
+	/**
+	 * @param id The id of an ADR
+	 * @return The file name of the ADR or an empty string if no ADR with the id exists.
+	 */
+	public String getFileName(int id) {
+		if (changes.containsKey(id)) {
+			Entry entry = changes.get(id);
+			return (entry != null) ? entry.fileName : "";
+		}
+		try {
+			int slot = (file != null) ? file.slot(id) : -1;
+			return (slot >= 0) ? file.fileName(slot) : "";
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			return getFileName(id);
+		}
+	}
+
+	/**
+	 * @return The highest id of the ADRs in the index. If there are no ADRs returns 0.
+	 */
+	public int highestId() {
+		int highest = 0;
+		for (Map.Entry<Integer, Entry> change : changes.descendingMap().entrySet()) {
+			if (change.getValue() != null) {
+				highest = change.getKey();
+				break;
+			}
+		}
+		if (file != null) {
+			for (int slot = file.slotCount() - 1; slot >= 0; slot--) {
+				if (!file.isUsed(slot)) continue;
+				int id = file.id(slot);
+				if (id <= highest) break;
+				if (!changes.containsKey(id)) return id;  // Otherwise removed, as a changed entry is not higher
+			}
+		}
+		return highest;
+	}
+
+	/**
+	 * @param id The id of an ADR, which need not exist
+	 * @return The ids of the ADRs that link to or supersede the ADR, in ascending order
+	 */
+	public List<Integer> referencedBy(int id) {
+		List<Integer> referrers;
+		try {
+			referrers = referrerChanges.containsKey(id) ? referrerChanges.get(id)
+					  : (file != null) ? file.referrers(id) : null;
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			return referencedBy(id);
+		}
+		return (referrers != null) ? Collections.unmodifiableList(referrers) : Collections.<Integer>emptyList();
+	}
+
+	/**
+	 * @return The ADRs referencing each id, from the index file and the changes since it was read
+	 */
+	private SortedMap<Integer, List<Integer>> allReferrers() {
+		TreeMap<Integer, List<Integer>> all = new TreeMap<Integer, List<Integer>>();
+		try {
+			if (file != null) all.putAll(file.allReferrers());
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			return allReferrers();
+		}
+		for (Map.Entry<Integer, List<Integer>> change : referrerChanges.entrySet()) {
+			if (change.getValue().isEmpty()) {
+				all.remove(change.getKey());
+			} else {
+				all.put(change.getKey(), change.getValue());
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * @return The directory where the ADRs are stored
+	 */
+	public Path getDocsPath() {
+		return docsPath;
+	}
+
+	/**
+	 * @return The entries in the index ordered by id
+	 */
+	public Collection<Entry> entries() {
+		return Collections.unmodifiableCollection(decodeAll().values());
+	}
+
+	/**
+	 * Returns a page of the entries ordered by id. The slots of the index file are walked in
+	 * order together with the changes since it was read, and only the entries of the page are
+	 * decoded, so listing the first few ADRs does not decode all of them.
+	 *
+	 * @param offset     The number of entries skipped
+	 * @param limit      The maximum number of entries returned, -1 for all
+	 * @param descending If the entries are ordered by id, highest id first
+	 * @return The entries of the page
+	 */
+	public List<Entry> entries(int offset, int limit, boolean descending) {
+		List<Entry> page = new ArrayList<Entry>();
+		// Once all the entries are decoded they hold the changes, otherwise the changes overlay the file
+		NavigableMap<Integer, Entry> overlay = (entries != null) ? entries : changes;
+		Iterator<Map.Entry<Integer, Entry>> changed = (descending ? overlay.descendingMap() : overlay).entrySet().iterator();
+		Map.Entry<Integer, Entry> change = changed.hasNext() ? changed.next() : null;
+		int slotCount = (entries == null && file != null) ? file.slotCount() : 0;
+		int step = descending ? -1 : 1;
+		int slot = descending ? slotCount - 1 : 0;
+		int skipped = 0;
+		try {
+			while (limit < 0 || page.size() < limit) {
+				while (slot >= 0 && slot < slotCount && !file.isUsed(slot)) slot += step;
+				boolean inFile = slot >= 0 && slot < slotCount;
+				if (!inFile && change == null) break;
+
+				Entry entry;
+				int id = inFile ? file.id(slot) : 0;
+				if (change != null && (!inFile || (descending ? change.getKey() >= id : change.getKey() <= id))) {
+					if (inFile && change.getKey() == id) slot += step;  // Replaced or removed since the file was read
+					entry = change.getValue();
+					change = changed.hasNext() ? changed.next() : null;
+					if (entry == null) continue;
+				} else {
+					entry = null;   // Decoded only if not skipped
+				}
+
+				if (skipped < offset) {
+					skipped++;
+				} else {
+					page.add((entry != null) ? entry : file.entry(slot));
+				}
+				if (entry == null) slot += step;
+			}
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			return entries(offset, limit, descending);
+		}
+		return page;
+	}
+
+	/**
+	 * @return All the entries, decoding the entries of the index file the first time
+	 */
+	private TreeMap<Integer, Entry> decodeAll() {
+		if (entries == null) {
+			TreeMap<Integer, Entry> all = new TreeMap<Integer, Entry>();
+			try {
+				if (file != null) {
+					for (int slot = 0; slot < file.slotCount(); slot++) {
+						if (file.isUsed(slot)) all.put(file.id(slot), file.entry(slot));
+					}
+				}
+			} catch (IndexFile.DamagedException e) {
+				recover(e);
+				return decodeAll();
+			}
+			for (Map.Entry<Integer, Entry> change : changes.entrySet()) {
+				if (change.getValue() != null) {
+					all.put(change.getKey(), change.getValue());
+				} else {
+					all.remove(change.getKey());
+				}
+			}
+			entries = all;
+		}
+		return entries;
+	}
+
+	/**
+	 * @return A fingerprint of the ADRs in the index, changed whenever an ADR is added, removed,
+	 *         renamed or modified. Used by the {@link SearchIndex} to check if it is up to date.
+	 */
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @param modified A modification time in milliseconds
+	 * @return The modification time, or UNKNOWN if it is too recent to be trusted, see RACY_INTERVAL
+	 */
+	static long trusted(long modified) {
+		return (System.currentTimeMillis() - modified < RACY_INTERVAL) ? UNKNOWN : modified;
+	}
+
+	/**
+	 * @return The fingerprint of the names, modification times and sizes of the ADR files in the
+	 *         document directory, as computed by rebuild()
+	 */
+	private long filesFingerprint() throws IOException {
+		long files = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(docsPath, filter::test)) {
+			for (Path path : stream) {
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				files ^= fileFingerprint(path.getFileName().toString(), attributes.lastModifiedTime().toMillis(), attributes.size());
+			}
+		}
+		return files;
+	}
+
+	private static long fileFingerprint(String fileName, long modified, long size) {
+		return fingerprint((int) (size ^ (size >>> 32)), fileName, modified);  // The size in place of the id
+	}
+
+	private static long fingerprint(Entry entry) {
+		return fingerprint(entry.id, entry.fileName, entry.modified);
+	}
+
+	/**
+	 * @return The fingerprint of a single ADR. The fingerprint of the index is the exclusive or of
+	 *         the fingerprints of its ADRs, so that it can be updated as ADRs are added and removed.
+	 */
+	static long fingerprint(int id, String fileName, long modified) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		h ^= fileName.hashCode() * 0xC2B2AE3D27D4EB4FL;
+		h ^= modified * 0x165667B19E3779F9L;
+		// Finalizer of MurmurHash3, so that every bit of the input affects the fingerprint
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Reads an ADR file once to both parse its head and compute its hash.
+	 */
+	private static Entry read(Path path, long modified) throws IOException, ADRException {
+		byte[] content = Files.readAllBytes(path);
+		return new Entry(RecordLoader.load(path, content), modified, hash(content));
+	}
+
+	/**
+	 * @return The git blob hash of the content, as <code>git hash-object</code> computes it
+	 */
+	static String hash(byte[] content) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);  // SHA-1 is always supported
+		}
+		digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+		StringBuilder hex = new StringBuilder(2 * IndexFile.HASH_SIZE);
+		for (byte b : digest.digest(content)) {
+			hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private String extensionsLine() {
+		return String.join(",", filter.getExtensions());
+	}
+
+	// Links are written as id:comment:file separated by ';', with the comment and file URL encoded
+	static String encodeLinks(List<ParsedRecord.Link> links) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			for (ParsedRecord.Link link : links) {
+				if (sb.length() > 0) sb.append(';');
+				sb.append(link.id).append(':')
+				  .append(URLEncoder.encode(link.comment, "UTF-8")).append(':')
+				  .append(URLEncoder.encode(link.fileName, "UTF-8"));
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);  // UTF-8 is always supported
+		}
+		return sb.toString();
+	}
+
+	static List<ParsedRecord.Link> decodeLinks(String s) {
+		List<ParsedRecord.Link> links = new ArrayList<ParsedRecord.Link>();
+		if (s.isEmpty()) return links;
+		try {
+			for (String link : s.split(";")) {
+				String[] parts = link.split(":", -1);
+				links.add(new ParsedRecord.Link(Integer.parseInt(parts[0]),
+						                        URLDecoder.decode(parts[1], "UTF-8"),
+						                        URLDecoder.decode(parts[2], "UTF-8")));
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);  // UTF-8 is always supported
+		}
+		return links;
+	}
+
+	static String encodeIds(List<Integer> ids) {
+		StringBuilder sb = new StringBuilder();
+		for (Integer id : ids) {
+			if (sb.length() > 0) sb.append(',');
+			sb.append(id);
+		}
+		return sb.toString();
+	}
+
+	static List<Integer> decodeIds(String s) {
+		List<Integer> ids = new ArrayList<Integer>();
+		if (s.isEmpty()) return ids;
+		for (String id : s.split(",")) {
+			ids.add(Integer.parseInt(id));
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,379 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+
+/**
+ * Checks the ADRs in the document directory for problems:
+ * <ul>
+ * <li>ADRs without a title or a status</li>
+ * <li>template placeholders (e.g. <code>{{{link.file}}}</code>) left in the ADR, outside code blocks</li>
+ * <li>references to ADRs or files that do not exist</li>
+ * <li>more than one ADR with the same id</li>
+ * <li>files that look like ADRs but are not matched by the {@link ADRFilter}, and so are ignored</li>
+ * </ul>
+ *
+ * The ADRs are read and checked in parallel with a fork/join pool: the list of files is split
+ * in halves until the parts are small, and each task returns its own list of diagnostics, which
+ * are joined when the tasks complete. So no state is shared between the threads. The checks that
+ * need all the ADRs (ids and files referenced) are made afterwards on the results.
+ *
+ * When only a few ADRs have changed (e.g. in a git hook) {@link #lint(ADRIndex, ADRIndex.Update)}
+ * checks only the ADRs affected by the changes, and looks up the other ADRs in the index.
+ *
+ * Usage:
+ * <code>
+ *     List<ADRLinter.Diagnostic> diagnostics = new ADRLinter(docsPath, filter).lint();
+ * </code>
+ */
+public class ADRLinter {
+	// Number of files a task checks itself instead of splitting them into two tasks
+	private static final int FILES_PER_TASK = 16;
+
+	/** The severity of a problem */
+	public enum Severity { ERROR, WARNING }
+
+	/**
+	 * A problem found in a file.
+	 */
+	public static class Diagnostic implements Comparable<Diagnostic> {
+		public final String fileName;
+		public final int line;          // 0 if the problem is not on a specific line
+		public final Severity severity;
+		public final String message;
+
+		Diagnostic(String fileName, int line, Severity severity, String message) {
+			this.fileName = fileName;
+			this.line = line;
+			this.severity = severity;
+			this.message = message;
+		}
+
+		@Override
+		public int compareTo(Diagnostic other) {
+			int c = fileName.compareTo(other.fileName);
+			return (c != 0) ? c : Integer.compare(line, other.line);
+		}
+
+		@Override
+		public String toString() {
+			return fileName + ((line > 0) ? ":" + line : "") + ": " + severity + ": " + message;
+		}
+	}
+
+	/**
+	 * A reference from an ADR to another ADR.
+	 */
+	private static class Reference {
+		final int line;
+		final ParsedRecord.Link link;
+
+		Reference(int line, ParsedRecord.Link link) {
+			this.line = line;
+			this.link = link;
+		}
+	}
+
+	/**
+	 * The result of checking a single ADR.
+	 */
+	private static class Result {
+		final String fileName;
+		int id = -1;          // Not known if the ADR cannot be read
+		final List<Reference> references = new ArrayList<Reference>();
+		final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+		Result(String fileName) {
+			this.fileName = fileName;
+		}
+	}
+
+	private final Path docsPath;
+	private final ADRFilter filter;
+	private final int parallelism;
+
+	/**
+	 * @param docsPath The directory where the ADRs are stored
+	 * @param filter   The filter matching the ADR files
+	 */
+	public ADRLinter(Path docsPath, ADRFilter filter) {
+		this(docsPath, filter, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param docsPath    The directory where the ADRs are stored
+	 * @param filter      The filter matching the ADR files
+	 * @param parallelism The number of threads used to check the ADRs
+	 */
+	public ADRLinter(Path docsPath, ADRFilter filter, int parallelism) {
+		this.docsPath = docsPath;
+		this.filter = filter;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Checks all the ADRs in the document directory.
+	 *
+	 * @return The problems found, ordered by file name and line
+	 * @throws ADRException Thrown if the document directory cannot be read
+	 */
+	public List<Diagnostic> lint() throws ADRException {
+		List<Path> adrFiles = new ArrayList<Path>();
+		Set<String> fileNames = new HashSet<String>();
+		List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(docsPath)) {
+			for (Path path : stream) {
+				String fileName = path.getFileName().toString();
+				fileNames.add(fileName);
+				if (filter.test(path)) {
+					adrFiles.add(path);
+				} else if (looksLikeADR(fileName) && Files.isRegularFile(path)) {
+					diagnostics.add(new Diagnostic(fileName, 0, Severity.WARNING,
+							"The file is not recognised as an ADR and is ignored. ADR files start with a four digit id "
+						  + "and have one of the extensions " + String.join(", ", filter.getExtensions()) + "."));
+				}
+			}
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Unable to read the ADR directory " + docsPath, e);
+		}
+
+		List<Result> results = check(adrFiles);
+
+		// Checks over all the ADRs
+		Map<Integer, String> fileOfId = new HashMap<Integer, String>();
+		Collections.sort(results, (a, b) -> a.fileName.compareTo(b.fileName));
+		for (Result result : results) {
+			if (result.id < 0) continue;
+			String first = fileOfId.putIfAbsent(result.id, result.fileName);
+			if (first != null) {
+				result.diagnostics.add(new Diagnostic(result.fileName, 0, Severity.ERROR,
+						"The id " + result.id + " is also used by " + first + "."));
+			}
+		}
+		for (Result result : results) {
+			checkReferences(result, fileOfId::get, fileNames::contains);
+			diagnostics.addAll(result.diagnostics);
+		}
+
+		Collections.sort(diagnostics);
+		return diagnostics;
+	}
+
+	/**
+	 * Checks the ADRs affected by an update of the index: the ADRs that have been added or
+	 * modified, and the ADRs that reference an ADR that has been removed. The other ADRs are not
+	 * read; the ids and files they reference are looked up in the index instead. So the time
+	 * taken depends on the number of changes, not on the number of ADRs.
+	 *
+	 * @param index  The index, already updated
+	 * @param update The changes applied to the index, see {@link ADRIndex#update(java.util.Collection)}
+	 * @return The problems found in the affected ADRs, ordered by file name and line
+	 */
+	public List<Diagnostic> lint(ADRIndex index, ADRIndex.Update update) {
+		List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+		Set<String> affected = new TreeSet<String>();
+		for (ADRIndex.Entry entry : update.updated) {
+			affected.add(entry.fileName);
+		}
+		for (ADRIndex.Entry removed : update.removed) {
+			for (int referrer : index.referencedBy(removed.id)) {
+				String fileName = index.getFileName(referrer);
+				if (!fileName.isEmpty()) affected.add(fileName);
+			}
+		}
+		Path directory = docsPath.toAbsolutePath().normalize();
+		for (Path path : update.ignored) {
+			Path absolute = path.toAbsolutePath().normalize();
+			if (!directory.equals(absolute.getParent()) || !Files.isRegularFile(absolute)) continue;
+			String fileName = absolute.getFileName().toString();
+			if (filter.test(absolute)) {
+				affected.add(fileName);  // Not indexed as another ADR has the same id
+			} else if (looksLikeADR(fileName)) {
+				diagnostics.add(new Diagnostic(fileName, 0, Severity.WARNING,
+						"The file is not recognised as an ADR and is ignored. ADR files start with a four digit id "
+					  + "and have one of the extensions " + String.join(", ", filter.getExtensions()) + "."));
+			}
+		}
+
+		List<Path> adrFiles = new ArrayList<Path>(affected.size());
+		for (String fileName : affected) {
+			adrFiles.add(docsPath.resolve(fileName));
+		}
+		for (Result result : check(adrFiles)) {
+			String indexed = (result.id >= 0) ? index.getFileName(result.id) : "";
+			if (!indexed.isEmpty() && !indexed.equals(result.fileName)) {
+				result.diagnostics.add(new Diagnostic(result.fileName, 0, Severity.ERROR,
+						"The id " + result.id + " is also used by " + indexed + "."));
+			}
+			checkReferences(result, id -> index.exists(id) ? index.getFileName(id) : null,
+					        fileName -> Files.exists(docsPath.resolve(fileName)));
+			diagnostics.addAll(result.diagnostics);
+		}
+
+		Collections.sort(diagnostics);
+		return diagnostics;
+	}
+
+	/**
+	 * Checks the ADR files in parallel.
+	 */
+	private List<Result> check(List<Path> adrFiles) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new LintTask(adrFiles, 0, adrFiles.size()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Checks that the ADRs and files referenced by an ADR exist.
+	 *
+	 * @param fileOfId   The file name of the ADR with an id, null if there is no such ADR
+	 * @param fileExists If a file exists in the document directory
+	 */
+	private static void checkReferences(Result result, IntFunction<String> fileOfId, Predicate<String> fileExists) {
+		for (Reference reference : result.references) {
+			ParsedRecord.Link link = reference.link;
+			String fileName = fileOfId.apply(link.id);
+			if (fileName == null) {
+				result.diagnostics.add(new Diagnostic(result.fileName, reference.line, Severity.ERROR,
+						"References ADR " + link.id + " (" + link.comment + "), but this ADR does not exist."));
+			} else if (!link.fileName.isEmpty() && !link.fileName.contains("/") && !fileExists.test(link.fileName)) {
+				result.diagnostics.add(new Diagnostic(result.fileName, reference.line, Severity.ERROR,
+						"References the file " + link.fileName + ", which does not exist. ADR " + link.id
+					  + " is " + fileName + "."));
+			}
+		}
+	}
+
+	/**
+	 * @return true if the file has one of the ADR extensions or starts with digits,
+	 *         so it is probably meant to be an ADR
+	 */
+	private boolean looksLikeADR(String fileName) {
+		if (!fileName.isEmpty() && Character.isDigit(fileName.charAt(0))) return true;
+		for (String extension : filter.getExtensions()) {
+			if (fileName.endsWith("." + extension)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks a part of the list of ADR files, splitting it if it is large.
+	 */
+	private static class LintTask extends RecursiveTask<List<Result>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Path> files;
+		private final int from;
+		private final int to;
+
+		LintTask(List<Path> files, int from, int to) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Result> compute() {
+			if (to - from <= FILES_PER_TASK) {
+				List<Result> results = new ArrayList<Result>(to - from);
+				for (int i = from; i < to; i++) {
+					results.add(check(files.get(i)));
+				}
+				return results;
+			}
+
+			int middle = (from + to) >>> 1;
+			LintTask first = new LintTask(files, from, middle);
+			first.fork();
+			List<Result> results = new LintTask(files, middle, to).compute();
+			results.addAll(first.join());
+			return results;
+		}
+	}
+
+	/**
+	 * Checks a single ADR.
+	 */
+	private static Result check(Path path) {
+		Result result = new Result(path.getFileName().toString());
+
+		String content;
+		ParsedRecord record;
+		try {
+			byte[] bytes = Files.readAllBytes(path);
+			content = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(bytes))
+					.toString();
+			record = RecordLoader.load(path, bytes);
+		} catch (CharacterCodingException e) {
+			result.diagnostics.add(new Diagnostic(result.fileName, 0, Severity.ERROR, "The file is not UTF-8 encoded."));
+			return result;
+		} catch (IOException | ADRException e) {
+			result.diagnostics.add(new Diagnostic(result.fileName, 0, Severity.ERROR, "The file cannot be read: " + e.getMessage()));
+			return result;
+		}
+
+		result.id = record.getId();
+		if (record.getTitle().isEmpty()) {
+			result.diagnostics.add(new Diagnostic(result.fileName, 1, Severity.ERROR, "The ADR has no title."));
+		}
+		if (record.getStatus().isEmpty()) {
+			result.diagnostics.add(new Diagnostic(result.fileName, 0, Severity.ERROR, "The ADR has no status."));
+		}
+
+		int lineNumber = 0;
+		int start = 0;
+		String fence = null;   // The fence of the code block the line is in, e.g. "```"
+		while (start < content.length()) {
+			int end = content.indexOf('\n', start);
+			if (end < 0) end = content.length();
+			String line = content.substring(start, end);
+			lineNumber++;
+			start = end + 1;
+
+			String trimmed = line.trim();
+			if (fence == null && (trimmed.startsWith("```") || trimmed.startsWith("~~~"))) {
+				fence = trimmed.substring(0, 3);
+			} else if (fence != null) {
+				if (trimmed.startsWith(fence)) fence = null;
+			} else {
+				// Only template tags are placeholders, "{{" can also be part of the text
+				Matcher tag = CompiledTemplate.TAG.matcher(line);
+				if (tag.find()) {
+					result.diagnostics.add(new Diagnostic(result.fileName, lineNumber, Severity.ERROR,
+							"The template placeholder " + tag.group() + " has not been filled in."));
+				}
+			}
+			ParsedRecord.Link link = RecordLoader.reference(trimmed);
+			if (link != null) {
+				result.references.add(new Reference(lineNumber, link));
+			}
+		}
+		return result;
+	}
+}
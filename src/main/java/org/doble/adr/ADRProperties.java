@@ -5,7 +5,13 @@ package org.doble.adr;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.io.BufferedReader;;
 
 /**
@@ -20,8 +26,26 @@ public class ADRProperties extends Properties{
 	public static final String defaultTemplateName = "default_template.md";
 	public static final String defaultInitialTemplateName = "default_initial_template.md";
 	
+	/** Prefix of the properties setting the custom fields of the templates */
+	public static final String FIELD_PREFIX = "field.";
+	
 	private static final long serialVersionUID = 1L;
 	
+	// Properties files already read, keyed by the URI of the file. Used so that a long running 
+	// process only reads a properties file again if it has changed.  
+	private static final Map<String, CachedProperties> cache = new HashMap<String, CachedProperties>();
+	
+	private static class CachedProperties {
+		final long modified;
+		final long size;
+		final Properties properties;
+		
+		CachedProperties(long modified, long size, Properties properties) {
+			this.modified = modified;
+			this.size = size;
+			this.properties = properties;
+		}
+	}
 	
 
 
@@ -45,8 +69,7 @@ public class ADRProperties extends Properties{
 		//properties = new Properties();		
 		
 		// Get the root directory by looking for an .adr directory
-		
-		Path rootPath = env.dir; 
+		Path rootPath = ADR.findRootPath(env).orElse(env.dir);
 		
 		Path propertiesRelPath  = env.fileSystem.getPath(ADR.ADR_DIR_NAME, "adr.properties");
 		
@@ -54,9 +77,25 @@ public class ADRProperties extends Properties{
 		
 		try {
 			if (Files.exists(propertiesPath)) {
-				BufferedReader propertiesReader = Files.newBufferedReader(propertiesPath);
-				load(propertiesReader);
-				propertiesReader.close();
+				BasicFileAttributes attributes = Files.readAttributes(propertiesPath, BasicFileAttributes.class);
+				long modified = attributes.lastModifiedTime().toMillis();
+				String key = propertiesPath.toUri().toString();
+				
+				CachedProperties cached;
+				synchronized (cache) {
+					cached = cache.get(key);
+				}
+				if (cached == null || cached.modified != modified || cached.size != attributes.size()) {
+					Properties properties = new Properties();
+					BufferedReader propertiesReader = Files.newBufferedReader(propertiesPath);
+					properties.load(propertiesReader);
+					propertiesReader.close();
+					cached = new CachedProperties(modified, attributes.size(), properties);
+					synchronized (cache) {
+						cache.put(key, cached);
+					}
+				}
+				putAll(cached.properties);
 			} else {
 				// Set the default values. This should be stored when adr init is called, 
 				setProperty("docPath", defaultDocPath);
@@ -69,4 +108,67 @@ public class ADRProperties extends Properties{
 			
 	}
 
+	/**
+	 * Gets the extensions of the ADR files. These are the extensions set (comma separated)
+	 * in the property <code>extensions</code>, or the default extension (md) if not set.
+	 * The extension of the template file (property <code>templateFile</code>) is always
+	 * included, as new ADRs are given the extension of their template.
+	 *
+	 * @return The extensions without the leading dot
+	 */
+	public List<String> getExtensions() {
+		List<String> extensions = new ArrayList<String>();
+		for (String extension : getProperty("extensions", ADRFilter.DEFAULT_EXTENSION).split(",")) {
+			extension = extension.trim();
+			if (extension.startsWith(".")) extension = extension.substring(1);
+			if (!extension.isEmpty() && !extensions.contains(extension)) extensions.add(extension);
+		}
+
+		String templateFile = getProperty("templateFile");
+		if (templateFile != null && templateFile.lastIndexOf('.') >= 0) {
+			String extension = templateFile.substring(templateFile.lastIndexOf('.') + 1);
+			if (!extension.isEmpty() && !extensions.contains(extension)) extensions.add(extension);
+		}
+
+		if (extensions.isEmpty()) extensions.add(ADRFilter.DEFAULT_EXTENSION);
+		return extensions;
+	}
+
+	/**
+	 * Gets the template engine that renders new ADRs, set in the property <code>templateEngine</code>.
+	 * If the property is not set the bundled engine is used (see {@link TemplateProvider#getEngine(String)}).
+	 *
+	 * @return The template engine
+	 * @throws ADRException if there is no template engine with the name set
+	 */
+	public TemplateEngine getTemplateEngine() throws ADRException {
+		return TemplateProvider.getEngine(getProperty("templateEngine"));
+	}
+
+	/**
+	 * Gets the custom fields of the templates. These are set with properties of the form
+	 * <code>field.&lt;name&gt;=&lt;value&gt;</code>, e.g. <code>field.deciders=Jane, John</code>.
+	 *
+	 * @return The values of the custom fields, keyed by field name
+	 */
+	public Map<String, String> getTemplateFields() {
+		Map<String, String> fields = new TreeMap<String, String>();
+		for (String name : stringPropertyNames()) {
+			if (name.startsWith(FIELD_PREFIX) && name.length() > FIELD_PREFIX.length()) {
+				fields.put(name.substring(FIELD_PREFIX.length()), getProperty(name));
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Gets the changes of status that are allowed, set with properties of the form
+	 * <code>transition.&lt;status&gt;=&lt;status&gt;, ...</code>, see {@link StatusTransitions}.
+	 *
+	 * @return The transitions set, or the default transitions if none are set
+	 */
+	public StatusTransitions getStatusTransitions() {
+		return StatusTransitions.from(this);
+	}
+
 }
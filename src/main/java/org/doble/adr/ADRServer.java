@@ -0,0 +1,353 @@
+package org.doble.adr;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server that runs adr commands in a long running JVM, so that the cost of starting the JVM
+ * and of setting up the command line processing is only paid once. The properties, the ADR
+ * index and the compiled templates are cached between commands (see {@link ADRProperties},
+ * {@link ADRIndex} and {@link TemplateProvider}).
+ *
+ * The server listens on a loopback TCP port. The port and a random access token are written
+ * to the server file (see {@link #serverFile()}), which can only be read by the user. Clients
+ * (see {@link ADRClient}) send the same arguments as given to {@link ADR#run(String[], Environment)},
+ * the working directory, the editor command and the root directory of the project (if set with
+ * <code>ADR_ROOT</code>). The server streams back the standard output,
+ * the standard error and the exit code of the command. When a command opens an editor,
+ * the client is asked to run the editor, and when it reads the standard input (e.g.
+ * <code>adr import</code>) the client is asked for the input as it is read.
+ *
+ * Each connection is handled by a thread of a small pool, and a client has {@value #REQUEST_TIMEOUT}
+ * milliseconds to send its request, so a client that connects and sends nothing cannot block the
+ * other clients. The commands themselves are run one after the other.
+ *
+ * Protocol (all data written with DataOutputStream):
+ * <code>
+ *    client: token (UTF), request (byte: RUN or STOP)
+ *            for RUN: working directory (UTF), has editor (boolean), [editor command (UTF)],
+ *                     has root directory (boolean), [root directory (UTF)],
+ *                     number of arguments (int), arguments (UTF each)
+ *    server: frames of the form type (byte) and data:
+ *            OUT, ERR: length (int), bytes
+ *            EDIT:     path (UTF), editor command (UTF). The client replies with a boolean (true if successful).
+ *            IN:       maximum length (int). The client replies with the length read from its standard input
+ *                      (int, -1 at the end of the input) and the bytes read.
+ *            EXIT:     exit code (int). This is the last frame.
+ * </code>
+ */
+public class ADRServer {
+	static final byte RUN = 'R';
+	static final byte STOP = 'S';
+
+	static final byte OUT = 'O';
+	static final byte ERR = 'E';
+	static final byte EDIT = 'D';
+	static final byte IN = 'I';
+	static final byte EXIT = 'X';
+
+	static final String SERVER_COMMAND = "server";
+
+	// Time a client has to send its request. Not applied while the command runs, as it may wait for the editor.
+	static final int REQUEST_TIMEOUT = 10000;  // Milliseconds
+	// Connections handled at the same time
+	private static final int MAX_CONNECTIONS = 8;
+
+	private final PrintStream log;
+	private final Path serverFile;
+	private final String token;
+	private ServerSocket serverSocket;
+	private volatile boolean running = true;
+	private final Object commandLock = new Object();  // Commands are run one after the other
+
+	/**
+	 * @param log        Stream for the messages of the server
+	 * @param serverFile The file the port and access token are written to, see {@link #serverFile()}
+	 */
+	public ADRServer(PrintStream log, Path serverFile) {
+		this.log = log;
+		this.serverFile = serverFile;
+		byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : random) {
+			sb.append(String.format("%02x", b));
+		}
+		this.token = sb.toString();
+	}
+
+	/**
+	 * @return The default file containing the port and the access token of the running server.
+	 */
+	public static Path serverFile() {
+		return Paths.get(System.getProperty("user.home"), ".adr-j", "server.properties");
+	}
+
+	/**
+	 * Starts listening and serves commands until the server is stopped.
+	 *
+	 * @param port The port to listen on. If 0 any free port is used.
+	 * @throws ADRException Thrown if the server cannot be started
+	 */
+	public void serve(int port) throws ADRException {
+		try {
+			serverSocket = new ServerSocket();
+			serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			writeServerFile(serverSocket.getLocalPort());
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot start the server.", e);
+		}
+
+		log.println("ADR server listening on port " + serverSocket.getLocalPort());
+
+		ExecutorService connections = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+		try {
+			while (running) {
+				Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (IOException e) {
+					if (running && !serverSocket.isClosed()) log.println("WARNING: Connection failed. Exception message ->" + e.getMessage());
+					if (serverSocket.isClosed()) break;
+					continue;
+				}
+				connections.execute(() -> handleConnection(socket));
+			}
+		} finally {
+			connections.shutdown();
+			try {
+				serverSocket.close();
+				Files.deleteIfExists(serverFile);
+			} catch (IOException e) {
+				// Nothing more can be done
+			}
+		}
+		log.println("ADR server stopped");
+	}
+
+	private void writeServerFile(int port) throws IOException {
+		Files.createDirectories(serverFile.getParent());
+		Files.deleteIfExists(serverFile);
+		if (serverFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			// Created with the permissions, so that the token can never be read by other users
+			Files.createFile(serverFile, PosixFilePermissions.asFileAttribute(
+					EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+		} else {
+			// Not a POSIX file system, so rely on the permissions of the home directory
+			Files.createFile(serverFile);
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("port", Integer.toString(port));
+		properties.setProperty("token", token);
+		try (Writer writer = Files.newBufferedWriter(serverFile, StandardCharsets.UTF_8)) {
+			properties.store(writer, "adr-j server");
+		}
+	}
+
+	private void handleConnection(Socket socket) {
+		try (Socket s = socket) {
+			s.setSoTimeout(REQUEST_TIMEOUT);
+			handle(s);
+		} catch (IOException e) {
+			if (running) log.println("WARNING: Connection failed. Exception message ->" + e.getMessage());
+		}
+	}
+
+	private void handle(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		if (!token.equals(in.readUTF())) {
+			log.println("WARNING: Connection with an invalid token refused");
+			return;
+		}
+
+		byte request = in.readByte();
+		if (request == STOP) {
+			running = false;
+			writeExit(out, 0);
+			serverSocket.close();  // Ends the accept loop
+			return;
+		}
+
+		String workingDirectory = in.readUTF();
+		String editorCommand = in.readBoolean() ? in.readUTF() : null;
+		String rootDirectory = in.readBoolean() ? in.readUTF() : null;
+		String[] args = new String[in.readInt()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = in.readUTF();
+		}
+		socket.setSoTimeout(0);  // The command may wait for the editor
+
+		PrintStream outStream = new PrintStream(new FrameOutputStream(out, OUT), true, "UTF-8");
+		PrintStream errStream = new PrintStream(new FrameOutputStream(out, ERR), true, "UTF-8");
+
+		int exitCode;
+		if (args.length > 0 && args[0].equals(SERVER_COMMAND)) {
+			errStream.println("ERROR: The server cannot be started from a client.");
+			exitCode = ADR.ERRORGENERAL;
+		} else {
+			Environment env = new Environment.Builder(FileSystems.getDefault())
+					.out(outStream)
+					.err(errStream)
+					.in(new RemoteInputStream(in, out, outStream, errStream))
+					.userDir(workingDirectory)
+					.rootDir(rootDirectory)
+					.editorCommand(editorCommand)
+					.editorRunner(new RemoteEditorRunner(in, out, outStream, errStream))
+					.build();
+			try {
+				synchronized (commandLock) {
+					exitCode = ADR.run(args, env);
+				}
+			} catch (RuntimeException e) {
+				errStream.println("FATAL: " + e);
+				exitCode = ADR.ERRORGENERAL;
+			}
+			log.println(String.join(" ", Arrays.asList(args)) + " -> " + exitCode);
+		}
+
+		outStream.flush();
+		errStream.flush();
+		writeExit(out, exitCode);
+	}
+
+	private static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+		synchronized (out) {
+			out.writeByte(EXIT);
+			out.writeInt(exitCode);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Output stream that sends everything written to it as frames of the specified type.
+	 */
+	private static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte type;
+
+		FrameOutputStream(DataOutputStream out, byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return;
+			synchronized (out) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Input stream that reads the standard input of the client, asking for it as it is read.
+	 */
+	private static class RemoteInputStream extends InputStream {
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final PrintStream outStream;
+		private final PrintStream errStream;
+		private boolean ended = false;
+
+		RemoteInputStream(DataInputStream in, DataOutputStream out, PrintStream outStream, PrintStream errStream) {
+			this.in = in;
+			this.out = out;
+			this.outStream = outStream;
+			this.errStream = errStream;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			if (ended) return -1;
+
+			outStream.flush();  // E.g. a prompt
+			errStream.flush();
+			synchronized (out) {
+				out.writeByte(IN);
+				out.writeInt(len);
+				out.flush();
+			}
+			int length = in.readInt();
+			if (length < 0) {
+				ended = true;
+				return -1;
+			}
+			if (length > len) throw new IOException("Unexpected input from the client");
+			in.readFully(b, off, length);
+			return length;
+		}
+	}
+
+	/**
+	 * Editor runner that asks the client to run the editor and waits until it has finished.
+	 */
+	private static class RemoteEditorRunner extends EditorRunner {
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final PrintStream outStream;
+		private final PrintStream errStream;
+
+		RemoteEditorRunner(DataInputStream in, DataOutputStream out, PrintStream outStream, PrintStream errStream) {
+			this.in = in;
+			this.out = out;
+			this.outStream = outStream;
+			this.errStream = errStream;
+		}
+
+		@Override
+		public void run(Path path, String editorCommand) throws ADRException {
+			try {
+				outStream.flush();
+				errStream.flush();
+				synchronized (out) {
+					out.writeByte(EDIT);
+					out.writeUTF(path.toString());
+					out.writeUTF(editorCommand);
+					out.flush();
+				}
+				if (!in.readBoolean()) {
+					throw new ADRException("FATAL: Could not open the editor.");
+				}
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Could not open the editor.", e);
+			}
+		}
+	}
+}
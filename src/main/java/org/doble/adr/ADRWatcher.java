@@ -0,0 +1,276 @@
+package org.doble.adr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the ADR index, the search index and, if requested, the HTML site and the table of
+ * contents up to date while the ADRs are edited, as <code>adr watch</code> does.
+ *
+ * The document directory is watched with a {@link WatchService}. The events are collected
+ * until no event has arrived for the debounce time, and then applied as one batch: only the
+ * ADR files named in the events are read again (or removed) and the indexes are written once.
+ * The site is exported incrementally (see {@link SiteExporter}) and the table of contents is
+ * only written again if a title or status has changed or an ADR has been added or removed.
+ * If events have been lost (an <code>OVERFLOW</code> event) the indexes are reconciled with the
+ * whole document directory instead.
+ *
+ * Usage:
+ * <code>
+ *     try (ADRWatcher watcher = new ADRWatcher(adrPath, docsPath, filter).site(sitePath)) {
+ *         while (true) {
+ *             ADRWatcher.Batch batch = watcher.poll(1, TimeUnit.MINUTES);
+ *             ...
+ *         }
+ *     }
+ * </code>
+ */
+public class ADRWatcher implements Closeable {
+	/** Default time without events after which a batch of changes is applied */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+
+	// A batch is applied at the latest after this many debounce times, even if events keep arriving
+	private static final int MAX_DEBOUNCE_COUNT = 20;
+
+	/** The changes applied in one batch */
+	public static class Batch {
+		public final Set<String> changed;    // The names of the ADR files changed, in name order
+		public final boolean overflow;       // Events were lost, so the whole directory was reconciled
+		public final List<Path> written;     // The pages of the site and the table of contents written
+		public final List<String> errors;    // The ADR files that could not be read, with the reason
+		public final long nanos;             // Time taken to apply the batch
+
+		Batch(Set<String> changed, boolean overflow, List<Path> written, List<String> errors, long nanos) {
+			this.changed = Collections.unmodifiableSet(changed);
+			this.overflow = overflow;
+			this.written = Collections.unmodifiableList(written);
+			this.errors = Collections.unmodifiableList(errors);
+			this.nanos = nanos;
+		}
+	}
+
+	private final Path adrPath;
+	private final Path docsPath;
+	private final ADRFilter filter;
+	private final ADRIndex index;
+	private final SearchIndex searchIndex;
+	private final WatchService watchService;
+	private final WatchKey watchKey;
+	private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+	private Path sitePath;
+	private TableOfContents toc;
+	private Path tocPath;
+
+	/**
+	 * Opens the indexes and starts watching the document directory.
+	 *
+	 * @param adrPath  The .adr directory containing the indexes
+	 * @param docsPath The directory where the ADRs are stored
+	 * @param filter   The filter matching the ADR files
+	 * @throws ADRException Thrown if the indexes cannot be opened or the directory cannot be watched
+	 */
+	public ADRWatcher(Path adrPath, Path docsPath, ADRFilter filter) throws ADRException {
+		this.adrPath = adrPath;
+		this.docsPath = docsPath;
+		this.filter = filter;
+		try {
+			watchService = docsPath.getFileSystem().newWatchService();
+			watchKey = docsPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException | UnsupportedOperationException e) {
+			throw new ADRException("FATAL: Cannot watch the ADR directory " + docsPath, e);
+		}
+
+		// Opened after the directory is watched, so that no change is missed
+		index = ADRIndex.open(adrPath, docsPath, filter);
+		searchIndex = SearchIndex.open(adrPath, index);
+		index.save();
+		searchIndex.save();
+	}
+
+	/**
+	 * @param debounceMillis The time without events after which a batch of changes is applied
+	 * @return This watcher
+	 */
+	public ADRWatcher debounce(long debounceMillis) {
+		this.debounceMillis = debounceMillis;
+		return this;
+	}
+
+	/**
+	 * @param sitePath The directory the HTML site is exported to, or null to not export the site
+	 * @return This watcher
+	 */
+	public ADRWatcher site(Path sitePath) {
+		this.sitePath = sitePath;
+		return this;
+	}
+
+	/**
+	 * @param toc     The table of contents, or null to not write a table of contents
+	 * @param tocPath The file the table of contents is written to
+	 * @return This watcher
+	 */
+	public ADRWatcher toc(TableOfContents toc, Path tocPath) {
+		this.toc = toc;
+		this.tocPath = tocPath;
+		return this;
+	}
+
+	/**
+	 * Brings the site and the table of contents up to date with the ADRs before watching.
+	 *
+	 * @return The pages of the site and the table of contents written
+	 * @throws ADRException Thrown if the site or the table of contents cannot be written
+	 */
+	public List<Path> update() throws ADRException {
+		List<Path> written = new ArrayList<Path>();
+		if (sitePath != null) {
+			written.addAll(new SiteExporter(adrPath, index, sitePath).export(false).written);
+			index.save();
+		}
+		if (toc != null) {
+			toc.write(tocPath);
+			written.add(tocPath);
+		}
+		return written;
+	}
+
+	/**
+	 * Waits for changes of the ADR files and applies them as one batch.
+	 *
+	 * @param timeout How long to wait for the first change
+	 * @param unit    The unit of the timeout
+	 * @return The changes applied, or null if no ADR file has changed before the timeout
+	 * @throws ADRException         Thrown if the document directory can no longer be watched
+	 *                              or the indexes, the site or the table of contents cannot be written
+	 * @throws InterruptedException Thrown if the thread is interrupted while waiting
+	 */
+	public Batch poll(long timeout, TimeUnit unit) throws ADRException, InterruptedException {
+		Set<String> changed = new TreeSet<String>();
+		boolean overflow;
+		try {
+			WatchKey key = watchService.poll(timeout, unit);
+			if (key == null) return null;
+			overflow = collect(key, changed);
+
+			// Debounce: wait until the events stop, e.g. when an editor writes a file in several steps
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis * MAX_DEBOUNCE_COUNT);
+			while (System.nanoTime() < deadline && (key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+				overflow |= collect(key, changed);
+			}
+		} catch (ClosedWatchServiceException e) {
+			throw new ADRException("FATAL: The ADR directory " + docsPath + " is no longer watched", e);
+		}
+
+		if (!overflow && changed.isEmpty()) return new Batch(changed, false, new ArrayList<Path>(), new ArrayList<String>(), 0);
+		return apply(changed, overflow);
+	}
+
+	/**
+	 * @return true if events have been lost
+	 */
+	private boolean collect(WatchKey key, Set<String> changed) throws ADRException {
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else {
+				String fileName = ((Path) event.context()).getFileName().toString();
+				if (filter.matches(fileName)) changed.add(fileName);
+			}
+		}
+		if (!key.reset()) {
+			throw new ADRException("FATAL: The ADR directory " + docsPath + " is no longer accessible");
+		}
+		return overflow;
+	}
+
+	/**
+	 * Applies a batch of changes.
+	 *
+	 * @param changed  The names of the ADR files that have been created, modified or deleted
+	 * @param overflow Events have been lost, so reconcile the whole directory
+	 * @return The changes applied
+	 */
+	Batch apply(Set<String> changed, boolean overflow) throws ADRException {
+		long start = System.nanoTime();
+		List<String> errors = new ArrayList<String>();
+		Map<String, String> tocBefore = (toc != null) ? tocEntries(changed, overflow) : null;
+
+		if (overflow) {
+			index.reconcile();
+			searchIndex.refresh(index);
+		} else {
+			// Removed first, so that an ADR renamed in the batch keeps its entry
+			for (String fileName : changed) {
+				if (Files.exists(docsPath.resolve(fileName))) continue;
+				ADRIndex.Entry removed = index.remove(fileName).orElse(null);
+				if (removed != null) searchIndex.remove(removed.id);
+			}
+			for (String fileName : changed) {
+				Path path = docsPath.resolve(fileName);
+				if (!Files.exists(path)) continue;
+				try {
+					index.put(path);
+					searchIndex.put(path);
+				} catch (ADRException e) {
+					errors.add(fileName + ": " + e.getMessage());  // E.g. an ADR without an id, reported by lint
+				}
+			}
+		}
+		index.save();
+		searchIndex.save();
+
+		List<Path> written = new ArrayList<Path>();
+		if (sitePath != null) {
+			written.addAll(new SiteExporter(adrPath, index, sitePath).export(false).written);
+			index.save();
+		}
+		if (toc != null && !tocEntries(changed, overflow).equals(tocBefore)) {
+			toc.write(tocPath);
+			written.add(tocPath);
+		}
+
+		return new Batch(changed, overflow, written, errors, System.nanoTime() - start);
+	}
+
+	/**
+	 * @return The titles and statuses of the changed ADRs (or all ADRs) keyed by file name,
+	 *         used to decide if the table of contents has changed
+	 */
+	private Map<String, String> tocEntries(Set<String> changed, boolean all) {
+		Map<String, String> entries = new HashMap<String, String>();
+		for (ADRIndex.Entry entry : index.entries()) {
+			if (all || changed.contains(entry.fileName)) {
+				entries.put(entry.fileName, Objects.toString(entry.title) + '\t' + Objects.toString(entry.status));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Stops watching the document directory.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchKey.cancel();
+		watchService.close();
+	}
+}
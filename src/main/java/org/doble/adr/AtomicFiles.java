@@ -0,0 +1,65 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Helpers for replacing files so that other processes either see the old or the new
+ * content of a file, never a partially written file.
+ */
+class AtomicFiles {
+
+	private AtomicFiles() {
+	}
+
+	/**
+	 * Creates a temporary file in the same directory as the target file, so that it can
+	 * be moved over the target file. The temporary file has the permissions of the target file
+	 * if it exists, otherwise the default permissions of a new file (unlike
+	 * {@link Files#createTempFile}, which only gives the owner access).
+	 *
+	 * @param target The file that is to be replaced
+	 * @return The temporary file
+	 */
+	static Path createTempSibling(Path target) throws IOException {
+		Path directory = target.toAbsolutePath().getParent();
+		Path tempFile;
+		while (true) {
+			String name = "." + target.getFileName() + "-" + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp";
+			try {
+				tempFile = Files.createFile(directory.resolve(name));
+				break;
+			} catch (FileAlreadyExistsException e) {
+				// Try another name
+			}
+		}
+
+		PosixFileAttributeView view = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		if (view != null && Files.exists(target)) {
+			try {
+				Files.setPosixFilePermissions(tempFile, view.readAttributes().permissions());
+			} catch (IOException | UnsupportedOperationException e) {
+				Files.deleteIfExists(tempFile);
+				throw e;
+			}
+		}
+		return tempFile;
+	}
+
+	/**
+	 * Moves the source file over the target file, atomically if the file system supports it.
+	 */
+	static void moveReplacing(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template of the {@link DefaultTemplateEngine} that has been parsed once into a tree of
+ * literal text, fields and sections, so that it can be rendered many times without reading
+ * or searching the template again.
+ *
+ * The markup is:
+ * - <code>{{field}}</code>, substituted with the value of the field, e.g. <code>{{name}}</code>.
+ *   Fields that are not known are left as they are.
+ * - <code>{{#list}}...{{/list}}</code>, repeated for each item of the list. Within the section
+ *   the fields of the item are available, e.g. <code>{{id}}</code> or <code>{{link.id}}</code>.
+ * - <code>{{#field}}...{{/field}}</code>, rendered if the field has a value, and
+ *   <code>{{^name}}...{{/name}}</code>, rendered if the field has no value or the list is empty.
+ *   A section tag on a line of its own does not leave an empty line.
+ * - a line containing <code>{{{link.id}}}</code> or <code>{{{superseded.id}}}</code> is repeated
+ *   for each link (or superseded ADR) and is left out if there are none, as if it was
+ *   enclosed in a section of the list.
+ * See doc/usage/Writing_Templates.md.
+ *
+ * Example use:
+ * <code>
+ *      CompiledTemplate template = CompiledTemplate.compile(templateText);
+ *      String content = template.render(context);
+ * </code>
+ */
+class CompiledTemplate implements TemplateEngine.Template {
+
+	// Kinds of node
+	private static final int LITERAL = 0;
+	private static final int FIELD = 1;
+	private static final int SECTION = 2;
+
+	// A field ({{name}} or {{{name}}}) or a section tag ({{#name}}, {{^name}}, {{/name}}), also used by ADRLinter
+	static final Pattern TAG = Pattern.compile("\\{\\{\\{([\\w.-]+)\\}\\}\\}|\\{\\{([#^/]?)([\\w.-]+)\\}\\}");
+	private static final Pattern STANDALONE_SECTION_TAG = Pattern.compile("\\s*\\{\\{([#^/])([\\w.-]+)\\}\\}\\s*");
+
+	// The lines of these lists are repeated for each item, see doc/usage/Writing_Templates.md
+	private static final String[] LIST_LINE_MARKERS = {"{{{link.id}}}", "{{{superseded.id}}}"};
+	private static final String[] LIST_LINE_NAMES = {TemplateContext.LINK, TemplateContext.SUPERSEDED};
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	/** A node of the parsed template */
+	private static class Node {
+		final int kind;
+		final String text;       // The literal text, or the name of the field or section
+		final String markup;     // The field as written in the template, rendered if the field is not known
+		final boolean inverted;  // A {{^name}} section
+		final boolean implicit;  // The section of a list fragment line
+		final Node[] children;   // Of a section
+
+		Node(int kind, String text, String markup, boolean inverted, boolean implicit, Node[] children) {
+			this.kind = kind;
+			this.text = text;
+			this.markup = markup;
+			this.inverted = inverted;
+			this.implicit = implicit;
+			this.children = children;
+		}
+	}
+
+	/** A section being parsed */
+	private static class OpenSection {
+		final String name;
+		final String markup;
+		final boolean inverted;
+		final boolean implicit;
+		final List<Node> nodes = new ArrayList<Node>();
+
+		OpenSection(String name, String markup, boolean inverted, boolean implicit) {
+			this.name = name;
+			this.markup = markup;
+			this.inverted = inverted;
+			this.implicit = implicit;
+		}
+	}
+
+	/** The item of a list being rendered, within the items of the enclosing lists */
+	private static class Scope {
+		final String list;
+		final Map<String, String> item;
+		final boolean prefixedOnly;  // Only fields such as {{{link.id}}} are of the item, as in a list fragment line
+		final Scope parent;
+
+		Scope(String list, Map<String, String> item, boolean prefixedOnly, Scope parent) {
+			this.list = list;
+			this.item = item;
+			this.prefixedOnly = prefixedOnly;
+			this.parent = parent;
+		}
+	}
+
+	private final Node[] nodes;
+	private final int literalLength;  // Used to size the output buffer
+
+	private CompiledTemplate(Node[] nodes, int literalLength) {
+		this.nodes = nodes;
+		this.literalLength = literalLength;
+	}
+
+	/**
+	 * Parses the template. The template is parsed leniently: a section that is not closed
+	 * and a closing tag without a section are kept as text.
+	 *
+	 * @param templateText The complete text of the template
+	 * @return The compiled template
+	 */
+	static CompiledTemplate compile(String templateText) {
+		List<OpenSection> stack = new ArrayList<OpenSection>();
+		stack.add(new OpenSection("", "", false, false));   // The template itself
+		int literalLength = 0;
+
+		int start = 0;
+		int length = templateText.length();
+		while (start < length) {
+			int end = templateText.indexOf('\n', start);
+			int next;
+			if (end < 0) {
+				end = length;
+				next = length;
+			} else {
+				next = end + 1;
+			}
+			if (end > start && templateText.charAt(end - 1) == '\r') end--;
+			String line = templateText.substring(start, end);
+			start = next;
+
+			Matcher standalone = STANDALONE_SECTION_TAG.matcher(line);
+			if (standalone.matches()) {
+				tag(standalone.group(1), standalone.group(2), line.trim(), false, stack);
+				continue;
+			}
+
+			String list = null;
+			for (int i = 0; i < LIST_LINE_MARKERS.length && list == null; i++) {
+				if (line.contains(LIST_LINE_MARKERS[i])) list = LIST_LINE_NAMES[i];
+			}
+			if (list != null) tag("#", list, "", true, stack);
+
+			Matcher tag = TAG.matcher(line);
+			int literalStart = 0;
+			while (tag.find()) {
+				if (tag.start() > literalStart) {
+					literalLength += literal(line.substring(literalStart, tag.start()), stack);
+				}
+				if (tag.group(1) != null) {
+					top(stack).add(new Node(FIELD, tag.group(1), tag.group(), false, false, null));
+				} else {
+					tag(tag.group(2), tag.group(3), tag.group(), false, stack);
+				}
+				literalStart = tag.end();
+			}
+			literalLength += literal(line.substring(literalStart) + LINE_SEPARATOR, stack);
+
+			if (list != null) tag("/", list, "", true, stack);
+		}
+
+		// Sections that have not been closed are kept as text
+		while (stack.size() > 1) {
+			OpenSection section = stack.remove(stack.size() - 1);
+			top(stack).add(new Node(LITERAL, section.markup, null, false, false, null));
+			top(stack).addAll(section.nodes);
+		}
+
+		return new CompiledTemplate(stack.get(0).nodes.toArray(new Node[0]), literalLength);
+	}
+
+	private static List<Node> top(List<OpenSection> stack) {
+		return stack.get(stack.size() - 1).nodes;
+	}
+
+	private static int literal(String text, List<OpenSection> stack) {
+		if (!text.isEmpty()) top(stack).add(new Node(LITERAL, text, null, false, false, null));
+		return text.length();
+	}
+
+	private static void tag(String kind, String name, String markup, boolean implicit, List<OpenSection> stack) {
+		switch (kind) {
+		case "#":
+		case "^":
+			stack.add(new OpenSection(name, markup, kind.equals("^"), implicit));
+			break;
+		case "/":
+			OpenSection section = stack.get(stack.size() - 1);
+			if (stack.size() > 1 && section.name.equals(name) && section.implicit == implicit) {
+				stack.remove(stack.size() - 1);
+				top(stack).add(new Node(SECTION, name, section.markup, section.inverted, section.implicit, section.nodes.toArray(new Node[0])));
+			} else {
+				top(stack).add(new Node(LITERAL, markup, null, false, false, null));  // Not closing a section
+			}
+			break;
+		default:
+			top(stack).add(new Node(FIELD, name, markup, false, false, null));
+		}
+	}
+
+	/**
+	 * Renders the template in a single pass.
+	 *
+	 * @param context The values of the fields and lists
+	 * @return The rendered ADR, each line terminated with the system line separator
+	 */
+	@Override
+	public String render(TemplateContext context) {
+		StringBuilder out = new StringBuilder(literalLength + 256);
+		render(nodes, context, null, out);
+		return out.toString();
+	}
+
+	private static void render(Node[] nodes, TemplateContext context, Scope scope, StringBuilder out) {
+		for (Node node : nodes) {
+			switch (node.kind) {
+			case LITERAL:
+				out.append(node.text);
+				break;
+			case FIELD:
+				String value = value(node.text, context, scope);
+				out.append((value != null) ? value : node.markup);
+				break;
+			default:
+				List<Map<String, String>> items = context.getList(node.text);
+				if (items != null) {
+					if (node.inverted) {
+						if (items.isEmpty()) render(node.children, context, scope, out);
+					} else {
+						for (Map<String, String> item : items) {
+							render(node.children, context, new Scope(node.text, item, node.implicit, scope), out);
+						}
+					}
+				} else {
+					String field = value(node.text, context, scope);
+					boolean present = (field != null) && !field.isEmpty();
+					if (present != node.inverted) render(node.children, context, scope, out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The value of the field, looked up in the items being rendered, innermost first,
+	 *         and then in the fields of the ADR. Null if the field is not known.
+	 */
+	private static String value(String name, TemplateContext context, Scope scope) {
+		for (Scope s = scope; s != null; s = s.parent) {
+			String itemField;
+			if (name.startsWith(s.list + ".")) {
+				itemField = name.substring(s.list.length() + 1);
+			} else if (!s.prefixedOnly) {
+				itemField = name;
+			} else {
+				continue;
+			}
+			String value = s.item.get(itemField);
+			if (value != null) return value;
+		}
+		return context.getField(name);
+	}
+}
@@ -0,0 +1,407 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The graph of the ADRs formed by their links and supersedes, built from the entries of an
+ * {@link ADRIndex}.
+ *
+ * The ADRs are the nodes of the graph, numbered in ascending order of their ids. The edges are
+ * held in compressed sparse row form: for each kind of edge an array of offsets, indexed by node,
+ * into an array of target nodes. The graph is built with counting passes over the entries, so
+ * it takes time linear in the number of ADRs and edges, and no objects are created per edge.
+ *
+ * References to ADRs that do not exist are not part of the graph but are kept as
+ * dangling references (see {@link #getDanglingReferences()}).
+ *
+ * Usage:
+ * <code>
+ *     DecisionGraph graph = DecisionGraph.build(index.entries());
+ *     int[] current = graph.effective(3);         // The ADRs that replace ADR 3
+ *     List<int[]> cycles = graph.supersedeCycles();
+ * </code>
+ */
+public class DecisionGraph {
+	private static final int NONE = -1;
+
+	/**
+	 * A reference from an ADR to an ADR that does not exist.
+	 */
+	public static class DanglingReference {
+		public final int fromId;
+		public final int toId;
+		public final String comment;   // The link comment, "Supersedes" for superseded ADRs
+
+		DanglingReference(int fromId, int toId, String comment) {
+			this.fromId = fromId;
+			this.toId = toId;
+			this.comment = comment;
+		}
+	}
+
+	private final int[] ids;                 // Node -> ADR id, ascending
+	private final int[] nodeOfId;            // ADR id -> node, NONE if there is no ADR with the id. Null if the ids are too sparse.
+
+	// Edges, in compressed sparse row form: the targets of node n are targets[offsets[n]] to targets[offsets[n + 1] - 1]
+	private final int[] supersedesOffsets;
+	private final int[] supersedesTargets;
+	private final int[] supersededByOffsets;
+	private final int[] supersededByTargets;
+	private final int[] linkOffsets;
+	private final int[] linkTargets;
+	private final String[] linkComments;
+	private final int[] referencedByOffsets;  // Reverse of both the links and supersedes
+	private final int[] referencedByTargets;
+
+	private final List<DanglingReference> danglingReferences;
+
+	private DecisionGraph(int[] ids, int[] nodeOfId,
+			              int[] supersedesOffsets, int[] supersedesTargets,
+			              int[] linkOffsets, int[] linkTargets, String[] linkComments,
+			              List<DanglingReference> danglingReferences) {
+		this.ids = ids;
+		this.nodeOfId = nodeOfId;
+		this.supersedesOffsets = supersedesOffsets;
+		this.supersedesTargets = supersedesTargets;
+		this.linkOffsets = linkOffsets;
+		this.linkTargets = linkTargets;
+		this.linkComments = linkComments;
+		this.danglingReferences = Collections.unmodifiableList(danglingReferences);
+
+		int nodes = ids.length;
+		this.supersededByOffsets = new int[nodes + 1];
+		this.supersededByTargets = new int[supersedesTargets.length];
+		reverse(supersedesOffsets, supersedesTargets, supersededByOffsets, supersededByTargets);
+
+		// The reverse of the links and supersedes together
+		int[] allOffsets = new int[nodes + 1];
+		int[] allTargets = new int[supersedesTargets.length + linkTargets.length];
+		int e = 0;
+		for (int n = 0; n < nodes; n++) {
+			allOffsets[n] = e;
+			for (int i = supersedesOffsets[n]; i < supersedesOffsets[n + 1]; i++) allTargets[e++] = supersedesTargets[i];
+			for (int i = linkOffsets[n]; i < linkOffsets[n + 1]; i++) allTargets[e++] = linkTargets[i];
+		}
+		allOffsets[nodes] = e;
+		this.referencedByOffsets = new int[nodes + 1];
+		this.referencedByTargets = new int[allTargets.length];
+		reverse(allOffsets, allTargets, referencedByOffsets, referencedByTargets);
+	}
+
+	/**
+	 * Builds the graph of the ADRs.
+	 *
+	 * @param entries The entries of the ADR index, in ascending order of id (see {@link ADRIndex#entries()})
+	 * @return The graph
+	 */
+	public static DecisionGraph build(Collection<ADRIndex.Entry> entries) {
+		int nodes = entries.size();
+		int[] ids = new int[nodes];
+		int supersedesCount = 0;
+		int linkCount = 0;
+		int n = 0;
+		for (ADRIndex.Entry entry : entries) {
+			ids[n++] = entry.id;
+			supersedesCount += entry.supersedes.size();
+			linkCount += entry.links.size();
+		}
+
+		// A direct lookup table from id to node, unless the ids are very sparse
+		int highestId = (nodes == 0) ? 0 : ids[nodes - 1];
+		int[] nodeOfId = null;
+		if (highestId <= 4 * nodes + 1024) {
+			nodeOfId = new int[highestId + 1];
+			Arrays.fill(nodeOfId, NONE);
+			for (n = 0; n < nodes; n++) {
+				if (ids[n] >= 0) nodeOfId[ids[n]] = n;
+			}
+		}
+
+		int[] supersedesOffsets = new int[nodes + 1];
+		int[] supersedesTargets = new int[supersedesCount];
+		int[] linkOffsets = new int[nodes + 1];
+		int[] linkTargets = new int[linkCount];
+		String[] linkComments = new String[linkCount];
+		List<DanglingReference> dangling = new ArrayList<DanglingReference>();
+
+		int s = 0;
+		int l = 0;
+		n = 0;
+		for (ADRIndex.Entry entry : entries) {
+			supersedesOffsets[n] = s;
+			for (int supersededId : entry.supersedes) {
+				int target = nodeOf(ids, nodeOfId, supersededId);
+				if (target == NONE) {
+					dangling.add(new DanglingReference(entry.id, supersededId, "Supersedes"));
+				} else {
+					supersedesTargets[s++] = target;
+				}
+			}
+			linkOffsets[n] = l;
+			for (ParsedRecord.Link link : entry.links) {
+				int target = nodeOf(ids, nodeOfId, link.id);
+				if (target == NONE) {
+					dangling.add(new DanglingReference(entry.id, link.id, link.comment));
+				} else {
+					linkComments[l] = link.comment;
+					linkTargets[l++] = target;
+				}
+			}
+			n++;
+		}
+		supersedesOffsets[nodes] = s;
+		linkOffsets[nodes] = l;
+
+		return new DecisionGraph(ids, nodeOfId,
+				                 supersedesOffsets, Arrays.copyOf(supersedesTargets, s),
+				                 linkOffsets, Arrays.copyOf(linkTargets, l), Arrays.copyOf(linkComments, l),
+				                 dangling);
+	}
+
+	/**
+	 * Fills in the reverse of the edges with a counting sort, so the sources of each
+	 * target are in ascending order.
+	 */
+	private static void reverse(int[] offsets, int[] targets, int[] reverseOffsets, int[] reverseTargets) {
+		int nodes = offsets.length - 1;
+		for (int target : targets) reverseOffsets[target + 1]++;
+		for (int n = 0; n < nodes; n++) reverseOffsets[n + 1] += reverseOffsets[n];
+		int[] next = Arrays.copyOf(reverseOffsets, nodes);
+		for (int n = 0; n < nodes; n++) {
+			for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+				reverseTargets[next[targets[i]]++] = n;
+			}
+		}
+	}
+
+	private int nodeOf(int id) {
+		return nodeOf(ids, nodeOfId, id);
+	}
+
+	private static int nodeOf(int[] ids, int[] nodeOfId, int id) {
+		if (nodeOfId != null) {
+			return (id >= 0 && id < nodeOfId.length) ? nodeOfId[id] : NONE;
+		}
+		int n = Arrays.binarySearch(ids, id);
+		return (n >= 0) ? n : NONE;
+	}
+
+	/** @return The ids of the ADRs in the graph, in ascending order */
+	public int[] getIds() {
+		return ids.clone();
+	}
+
+	/** @return true if the graph has an ADR with the id */
+	public boolean contains(int id) {
+		return nodeOf(id) != NONE;
+	}
+
+	/** @return The ids of the ADRs superseded by the ADR, empty if there is no such ADR */
+	public int[] supersedes(int id) {
+		return targets(id, supersedesOffsets, supersedesTargets);
+	}
+
+	/** @return The ids of the ADRs that supersede the ADR, empty if there is no such ADR */
+	public int[] supersededBy(int id) {
+		return targets(id, supersededByOffsets, supersededByTargets);
+	}
+
+	/** @return The ids of the ADRs linked to by the ADR (not including superseded ADRs), empty if there is no such ADR */
+	public int[] links(int id) {
+		return targets(id, linkOffsets, linkTargets);
+	}
+
+	/** @return The comments of the links of the ADR, in the same order as {@link #links(int)} */
+	public String[] linkComments(int id) {
+		int n = nodeOf(id);
+		if (n == NONE) return new String[0];
+		return Arrays.copyOfRange(linkComments, linkOffsets[n], linkOffsets[n + 1]);
+	}
+
+	/** @return The ids of the ADRs that link to or supersede the ADR, in ascending order without duplicates */
+	public int[] referencedBy(int id) {
+		int[] result = targets(id, referencedByOffsets, referencedByTargets);
+		Arrays.sort(result);
+		int count = 0;
+		for (int i = 0; i < result.length; i++) {
+			if (count == 0 || result[count - 1] != result[i]) result[count++] = result[i];
+		}
+		return (count == result.length) ? result : Arrays.copyOf(result, count);
+	}
+
+	private int[] targets(int id, int[] offsets, int[] targets) {
+		int n = nodeOf(id);
+		if (n == NONE) return new int[0];
+		int[] result = new int[offsets[n + 1] - offsets[n]];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids[targets[offsets[n] + i]];
+		}
+		return result;
+	}
+
+	/** @return The references to ADRs that do not exist, in order of the referencing ADR */
+	public List<DanglingReference> getDanglingReferences() {
+		return danglingReferences;
+	}
+
+	/**
+	 * Finds the decisions currently in effect in place of an ADR, by following the chain of
+	 * ADRs superseding it. If the ADR has not been superseded it is itself in effect.
+	 *
+	 * @param id The id of an ADR
+	 * @return The ids of the ADRs at the ends of the chains of supersedes starting at the ADR,
+	 *         in ascending order. Empty if there is no such ADR or the ADR is only superseded
+	 *         in a cycle.
+	 */
+	public int[] effective(int id) {
+		int start = nodeOf(id);
+		if (start == NONE) return new int[0];
+
+		BitSet visited = new BitSet(ids.length);
+		BitSet result = new BitSet(ids.length);
+		int[] stack = new int[ids.length];
+		int top = 0;
+		stack[top++] = start;
+		visited.set(start);
+		while (top > 0) {
+			int n = stack[--top];
+			if (supersededByOffsets[n] == supersededByOffsets[n + 1]) {
+				result.set(n);
+				continue;
+			}
+			for (int i = supersededByOffsets[n]; i < supersededByOffsets[n + 1]; i++) {
+				int next = supersededByTargets[i];
+				if (!visited.get(next)) {
+					visited.set(next);
+					stack[top++] = next;
+				}
+			}
+		}
+		return toIds(result);
+	}
+
+	/**
+	 * Finds the ADRs affected by a decision: the ADRs that link to it or supersede it,
+	 * the ADRs that link to or supersede those, and so on.
+	 *
+	 * @param id The id of an ADR
+	 * @return The ids of the affected ADRs in ascending order, not including the ADR itself
+	 *         (unless it is affected through a cycle)
+	 */
+	public int[] impact(int id) {
+		int start = nodeOf(id);
+		if (start == NONE) return new int[0];
+
+		BitSet visited = new BitSet(ids.length);
+		int[] queue = new int[ids.length + 1];   // The start and each node visited
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		while (head < tail) {
+			int n = queue[head++];
+			for (int i = referencedByOffsets[n]; i < referencedByOffsets[n + 1]; i++) {
+				int next = referencedByTargets[i];
+				if (!visited.get(next)) {
+					visited.set(next);
+					queue[tail++] = next;
+				}
+			}
+		}
+		return toIds(visited);
+	}
+
+	/**
+	 * Finds the cycles of supersedes, i.e. ADRs that (directly or indirectly) supersede
+	 * themselves. Uses Tarjan's algorithm for strongly connected components, without
+	 * recursion so that long chains of supersedes do not overflow the stack.
+	 *
+	 * @return The cycles, each as the ids of the ADRs in the cycle in ascending order.
+	 *         The cycles are ordered by their lowest id.
+	 */
+	public List<int[]> supersedeCycles() {
+		int nodes = ids.length;
+		int[] index = new int[nodes];
+		int[] lowLink = new int[nodes];
+		int[] edge = new int[nodes];          // Next edge to visit for each node on the call stack
+		int[] callStack = new int[nodes];
+		int[] componentStack = new int[nodes];
+		boolean[] onStack = new boolean[nodes];   // Not a BitSet, clearing its highest bit scans all the lower words
+		Arrays.fill(index, NONE);
+
+		List<int[]> cycles = new ArrayList<int[]>();
+		int nextIndex = 0;
+		int componentTop = 0;
+		for (int root = 0; root < nodes; root++) {
+			if (index[root] != NONE) continue;
+
+			int callTop = 0;
+			callStack[callTop++] = root;
+			index[root] = lowLink[root] = nextIndex++;
+			edge[root] = supersedesOffsets[root];
+			componentStack[componentTop++] = root;
+			onStack[root] = true;
+
+			while (callTop > 0) {
+				int n = callStack[callTop - 1];
+				if (edge[n] < supersedesOffsets[n + 1]) {
+					int next = supersedesTargets[edge[n]++];
+					if (index[next] == NONE) {
+						index[next] = lowLink[next] = nextIndex++;
+						edge[next] = supersedesOffsets[next];
+						componentStack[componentTop++] = next;
+						onStack[next] = true;
+						callStack[callTop++] = next;
+					} else if (onStack[next]) {
+						lowLink[n] = Math.min(lowLink[n], index[next]);
+					}
+					continue;
+				}
+
+				// All the edges of the node have been visited
+				callTop--;
+				if (callTop > 0) {
+					int parent = callStack[callTop - 1];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[n]);
+				}
+				if (lowLink[n] == index[n]) {
+					// The node is the root of a component, which are the nodes above it on the stack
+					int bottom = componentTop;
+					do {
+						onStack[componentStack[--bottom]] = false;
+					} while (componentStack[bottom] != n);
+					if (componentTop - bottom > 1 || supersedesItself(n)) {
+						int[] cycle = new int[componentTop - bottom];
+						for (int i = 0; i < cycle.length; i++) cycle[i] = ids[componentStack[bottom + i]];
+						Arrays.sort(cycle);
+						cycles.add(cycle);
+					}
+					componentTop = bottom;
+				}
+			}
+		}
+
+		cycles.sort((a, b) -> Integer.compare(a[0], b[0]));
+		return cycles;
+	}
+
+	private boolean supersedesItself(int n) {
+		for (int i = supersedesOffsets[n]; i < supersedesOffsets[n + 1]; i++) {
+			if (supersedesTargets[i] == n) return true;
+		}
+		return false;
+	}
+
+	private int[] toIds(BitSet nodes) {
+		int[] result = new int[nodes.cardinality()];
+		int i = 0;
+		for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+			result[i++] = ids[n];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,19 @@
+package org.doble.adr;
+
+/**
+ * The template engine bundled with adr-j. Templates are compiled to a {@link CompiledTemplate}.
+ * See doc/usage/Writing_Templates.md for the markup.
+ */
+public class DefaultTemplateEngine implements TemplateEngine {
+	public static final String NAME = "default";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Template compile(String templateText) {
+		return CompiledTemplate.compile(templateText);
+	}
+}
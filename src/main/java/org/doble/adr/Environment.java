@@ -43,11 +43,18 @@ public class Environment {
 	/** The directory where the tool is running */
 	public final Path dir; 
 	
+	/** The root directory of the project set with ADR_ROOT, or null if it is searched for */
+	public final Path rootDir;
+	
 	/** The command line to run the editor used for editing the ADRs */
 	public final String editorCommand;  
 	
 	/** The runner used for firing up the editor */
 	public final EditorRunner editorRunner;
+	
+	// The root directory once found by ADR.getRootPath. It is kept with the environment
+	// so that it always belongs to the file system of the environment.
+	private volatile Path rootPath;
 
 	/**
 	 * Private Constructor so that only the builder can be used to 
@@ -60,11 +67,20 @@ public class Environment {
 		this.err = builder.errStream;
 		this.in = builder.inStream;
 		this.dir = builder.currentDirectory;
+		this.rootDir = builder.rootDirectory;
 		this.editorCommand = builder.editorCommand;
 		this.editorRunner = builder.editorRunner;
 		
 	}
 
+	Path getRootPath() {
+		return rootPath;
+	}
+
+	void setRootPath(Path rootPath) {
+		this.rootPath = rootPath;
+	}
+
 
 
 	public static class Builder {
@@ -73,6 +89,7 @@ public class Environment {
 		private PrintStream errStream;
 		private InputStream inStream;
 		private Path currentDirectory;
+		private Path rootDirectory;
 		private String editorCommand;
 		private EditorRunner editorRunner;
 
@@ -104,6 +121,18 @@ public class Environment {
 			this.currentDirectory = fileSystem.getPath(currentDirectory);
 			return this;
 		}
+
+		/**
+		 * Sets the root directory of the project, i.e. the directory containing the .adr
+		 * directory, so that it is not searched for. A relative path is resolved against
+		 * the user directory.
+		 * @param rootDirectory The root directory, or null to search for it
+		 * @return Builder
+		 */
+		public Builder rootDir(String rootDirectory) {
+			this.rootDirectory = (rootDirectory == null || rootDirectory.isEmpty()) ? null : fileSystem.getPath(rootDirectory);
+			return this;
+		}
          
 		public Builder editorCommand(String editorCommand) {
 			this.editorCommand = editorCommand;
@@ -116,6 +145,9 @@ public class Environment {
 		}
 		
 		public Environment build() {
+			if (rootDirectory != null && currentDirectory != null) {
+				rootDirectory = currentDirectory.resolve(rootDirectory);
+			}
 			return new Environment(this);
 		}
 
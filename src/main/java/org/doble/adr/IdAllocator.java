@@ -0,0 +1,134 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Allocates the ids of new ADRs, so that ADRs created at the same time (e.g. by two CI jobs
+ * in a shared checkout, or by concurrent requests to the {@link ADRServer}) never get the same id.
+ *
+ * The next free id is stored in the file <code>next-id</code> of the <code>.adr</code> directory.
+ * It is read and updated while holding an exclusive {@link FileLock} on the file
+ * <code>lock</code> of the same directory, which serialises the processes allocating ids.
+ * Within a JVM the allocation is also synchronised, as file locks are held per JVM.
+ *
+ * The caller passes the lowest id it considers free (usually one more than the highest id in
+ * the {@link ADRIndex}), so that ADRs created without the counter, e.g. by hand or by earlier
+ * versions, are not reused. Ids allocated for ADRs that are then not created should be given
+ * back with {@link #release(Path, int, int)}.
+ *
+ * Usage:
+ * <code>
+ *     int id = IdAllocator.allocate(rootPath.resolve(".adr"), index.highestId() + 1);
+ * </code>
+ */
+public class IdAllocator {
+	public static final String LOCK_FILE_NAME = "lock";
+	public static final String COUNTER_FILE_NAME = "next-id";
+
+	// File locks are held on behalf of the whole JVM, so threads are serialised with this
+	private static final Object jvmLock = new Object();
+
+	private IdAllocator() {
+	}
+
+	/**
+	 * Allocates a single id.
+	 *
+	 * @param adrPath The .adr directory
+	 * @param lowest  The lowest id that may be allocated
+	 * @return The id allocated
+	 * @throws ADRException Thrown if the lock or counter file cannot be accessed
+	 */
+	public static int allocate(Path adrPath, int lowest) throws ADRException {
+		return allocate(adrPath, lowest, 1);
+	}
+
+	/**
+	 * Allocates a block of consecutive ids.
+	 *
+	 * @param adrPath The .adr directory
+	 * @param lowest  The lowest id that may be allocated
+	 * @param count   The number of ids to allocate
+	 * @return The first id of the block
+	 * @throws ADRException Thrown if the lock or counter file cannot be accessed
+	 */
+	public static int allocate(Path adrPath, int lowest, int count) throws ADRException {
+		Path lockPath = adrPath.resolve(LOCK_FILE_NAME);
+		Path counterPath = adrPath.resolve(COUNTER_FILE_NAME);
+
+		synchronized (jvmLock) {
+			try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					int first = Math.max(lowest, readCounter(counterPath));
+					writeCounter(counterPath, first + count);
+					return first;
+				} finally {
+					lock.release();
+				}
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Cannot allocate an id for the ADR using " + lockPath, e);
+			}
+		}
+	}
+
+	/**
+	 * Gives back a block of ids that has not been used, e.g. because the ADRs were not created
+	 * after all. The ids are only given back if no ids have been allocated since, so that
+	 * ids are never allocated twice.
+	 *
+	 * @param adrPath The .adr directory
+	 * @param first   The first id of the block, as returned by {@link #allocate(Path, int, int)}
+	 * @param count   The number of ids in the block
+	 * @throws ADRException Thrown if the lock or counter file cannot be accessed
+	 */
+	public static void release(Path adrPath, int first, int count) throws ADRException {
+		Path lockPath = adrPath.resolve(LOCK_FILE_NAME);
+		Path counterPath = adrPath.resolve(COUNTER_FILE_NAME);
+
+		synchronized (jvmLock) {
+			try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					if (readCounter(counterPath) == first + count) {
+						writeCounter(counterPath, first);
+					}
+				} finally {
+					lock.release();
+				}
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Cannot release the ids of the ADRs using " + lockPath, e);
+			}
+		}
+	}
+
+	/**
+	 * @return The id stored in the counter file, 0 if there is no counter or it cannot be read
+	 */
+	private static int readCounter(Path counterPath) throws IOException {
+		try {
+			String content = new String(Files.readAllBytes(counterPath), StandardCharsets.UTF_8).trim();
+			return Integer.parseInt(content);
+		} catch (NoSuchFileException | NumberFormatException e) {
+			return 0;  // The ids in the index are used instead
+		}
+	}
+
+	private static void writeCounter(Path counterPath, int nextId) throws IOException {
+		LocalFiles.ignore(counterPath.getParent());
+		Path tempPath = AtomicFiles.createTempSibling(counterPath);
+		try {
+			Files.write(tempPath, (nextId + "\n").getBytes(StandardCharsets.UTF_8));
+			AtomicFiles.moveReplacing(tempPath, counterPath);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+}
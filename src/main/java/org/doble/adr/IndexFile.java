@@ -0,0 +1,441 @@
+package org.doble.adr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.CRC32;
+
+/**
+ * The binary file of the {@link ADRIndex}, read in place (memory mapped where possible) so that
+ * an ADR is looked up by id without reading or decoding the other entries.
+ *
+ * The file consists of:
+ * <ul>
+ * <li>a header of {@value #HEADER_SIZE} bytes: magic number, version, modification time of the
+ * document directory, fingerprint of the entries, flags, entry count, lowest and highest id,
+ * slot count, offset of the string table, the extensions of the index, offset and count of
+ * the referrers, a CRC-32 checksum of the header and the fingerprint of the files in the
+ * document directory;</li>
+ * <li>the slots, {@value #SLOT_SIZE} bytes each: id, references to the strings of the file name,
+ * title, status, date, links and superseded ADRs, the modification time of the ADR and the git
+ * blob hash of the ADR file (all zero if not known). If the ids are dense the slot of an ADR is
+ * its id less the lowest id (unused slots have no file name), otherwise the slots are ordered by
+ * id and searched;</li>
+ * <li>the referrers, {@value #REFERRER_SIZE} bytes each and ordered by id: an id referenced by
+ * links or supersedes (whether or not the ADR exists) and a reference to the string of the ids
+ * of the ADRs referencing it;</li>
+ * <li>the string table: each string is its length in bytes followed by its UTF-8 bytes. Strings
+ * that occur more than once (e.g. the statuses) are only stored once.</li>
+ * </ul>
+ * Only the header is checked when the file is opened: its checksum and that the parts of the file
+ * fit in its length, so that opening takes the same time whatever the number of ADRs. The slots
+ * and referrers are checked as they are read, and a {@link DamagedException} is thrown if one of
+ * them is damaged.
+ */
+class IndexFile {
+	private static final int MAGIC = 0x41445249;  // "ADRI"
+	private static final int VERSION = 8;
+
+	static final int HEADER_SIZE = 72;
+	static final int SLOT_SIZE = 56;
+	static final int REFERRER_SIZE = 8;
+
+	// Offsets in the header
+	private static final int DIRECTORY_MODIFIED = 8;
+	private static final int FINGERPRINT = 16;
+	private static final int FLAGS = 24;
+	private static final int COUNT = 28;
+	private static final int MIN_ID = 32;
+	private static final int MAX_ID = 36;
+	private static final int SLOT_COUNT = 40;
+	private static final int STRINGS = 44;
+	private static final int EXTENSIONS = 48;
+	private static final int REFERRERS = 52;
+	private static final int REFERRER_COUNT = 56;
+	private static final int CHECKSUM = 60;
+	private static final int FILES_FINGERPRINT = 64;
+
+	// Offsets in a slot
+	private static final int ID = 0;
+	private static final int FILE_NAME = 4;
+	private static final int TITLE = 8;
+	private static final int STATUS = 12;
+	private static final int DATE = 16;
+	private static final int LINKS = 20;
+	private static final int SUPERSEDES = 24;
+	private static final int MODIFIED = 28;
+	private static final int HASH = 36;
+
+	static final int HASH_SIZE = 20;  // SHA-1
+
+	private static final int DENSE = 1;
+	private static final int NONE = -1;  // No file name, i.e. an unused slot
+
+	// The slots are indexed by id if at most this many slots per ADR are unused
+	private static final int MAX_UNUSED_SLOTS_PER_ENTRY = 4;
+
+	/**
+	 * Thrown when a slot or referrer read from the file is found to be damaged. Also thrown by the
+	 * {@link SearchIndex} for the terms and postings it reads from its file in place.
+	 */
+	static class DamagedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		DamagedException(String message) {
+			super(message);
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final boolean dense;
+	private final int minId;
+	private final int slotCount;
+	private final int referrers;
+	private final int referrerCount;
+
+	private IndexFile(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.dense = (buffer.getInt(FLAGS) & DENSE) != 0;
+		this.minId = buffer.getInt(MIN_ID);
+		this.slotCount = buffer.getInt(SLOT_COUNT);
+		this.referrers = buffer.getInt(REFERRERS);
+		this.referrerCount = buffer.getInt(REFERRER_COUNT);
+	}
+
+	/**
+	 * Opens the index file. The file is memory mapped if it is on the default file system, except
+	 * on Windows, where a mapped file could not be replaced when the index is saved again.
+	 *
+	 * @return The index file, or null if it is not an index file of this version or is damaged
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	static IndexFile open(Path path) throws IOException {
+		ByteBuffer buffer;
+		boolean map = path.getFileSystem() == FileSystems.getDefault() && File.separatorChar == '/';
+		if (map) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		} else {
+			buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		}
+
+		IndexFile file = new IndexFile(buffer);
+		return file.isValid() ? file : null;
+	}
+
+	/**
+	 * @return true if the header is intact and the slots, the referrers and the string table are within the file
+	 */
+	private boolean isValid() {
+		int length = buffer.limit();
+		if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return false;
+		if (buffer.getInt(CHECKSUM) != checksum(buffer)) return false;
+		int strings = buffer.getInt(STRINGS);
+		if (slotCount < 0 || referrerCount < 0 || referrers != HEADER_SIZE + (long) slotCount * SLOT_SIZE
+				|| strings != referrers + (long) referrerCount * REFERRER_SIZE || strings > length) return false;
+		return isString(buffer.getInt(EXTENSIONS), strings);
+	}
+
+	/**
+	 * @return The CRC-32 of the header, without the checksum itself
+	 */
+	private static int checksum(ByteBuffer buffer) {
+		byte[] header = new byte[HEADER_SIZE];
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(0);
+		duplicate.get(header);
+		Arrays.fill(header, CHECKSUM, CHECKSUM + 4, (byte) 0);
+		CRC32 crc = new CRC32();
+		crc.update(header, 0, HEADER_SIZE);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Checks the slot before it is decoded: its id and the references to its strings.
+	 *
+	 * @throws DamagedException Thrown if the slot is damaged
+	 */
+	private void checkSlot(int slot) {
+		int offset = HEADER_SIZE + slot * SLOT_SIZE;
+		int id = buffer.getInt(offset + ID);
+		boolean valid = dense ? id == minId + slot : (slot == 0 || id(slot - 1) < id);
+		int strings = buffer.getInt(STRINGS);
+		for (int field = FILE_NAME; field <= SUPERSEDES && valid; field += 4) {
+			valid = isString(buffer.getInt(offset + field), strings);
+		}
+		if (!valid) throw new DamagedException("The slot " + slot + " of the ADR index is damaged");
+	}
+
+	/**
+	 * @return The string the referrer at the offset references
+	 * @throws DamagedException Thrown if the referrer is damaged
+	 */
+	private String referrerIds(int offset) {
+		int ref = buffer.getInt(offset + 4);
+		if (!isString(ref, buffer.getInt(STRINGS))) {
+			throw new DamagedException("The referrers of the ADR " + buffer.getInt(offset) + " in the ADR index are damaged");
+		}
+		return string(ref);
+	}
+
+	private boolean isString(int ref, int strings) {
+		if (ref < strings || ref > buffer.limit() - 4) return false;
+		int length = buffer.getInt(ref);
+		return length >= 0 && length <= buffer.limit() - ref - 4;
+	}
+
+	long directoryModified() {
+		return buffer.getLong(DIRECTORY_MODIFIED);
+	}
+
+	long fingerprint() {
+		return buffer.getLong(FINGERPRINT);
+	}
+
+	long filesFingerprint() {
+		return buffer.getLong(FILES_FINGERPRINT);
+	}
+
+	int count() {
+		return buffer.getInt(COUNT);
+	}
+
+	String extensions() {
+		return string(buffer.getInt(EXTENSIONS));
+	}
+
+	/**
+	 * @return The slot of the ADR with the id, or -1 if there is no such ADR
+	 */
+	int slot(int id) {
+		if (dense) {
+			long slot = (long) id - minId;
+			return (slot >= 0 && slot < slotCount && isUsed((int) slot)) ? (int) slot : -1;
+		}
+
+		int low = 0;
+		int high = slotCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleId = id(middle);
+			if (middleId < id) {
+				low = middle + 1;
+			} else if (middleId > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	int slotCount() {
+		return slotCount;
+	}
+
+	boolean isUsed(int slot) {
+		return buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + FILE_NAME) != NONE;
+	}
+
+	int id(int slot) {
+		return buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + ID);
+	}
+
+	String fileName(int slot) {
+		checkSlot(slot);
+		return string(buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + FILE_NAME));
+	}
+
+	/**
+	 * @return The entry of the ADR in the slot
+	 * @throws DamagedException Thrown if the slot is damaged
+	 */
+	ADRIndex.Entry entry(int slot) {
+		checkSlot(slot);
+		int offset = HEADER_SIZE + slot * SLOT_SIZE;
+		return new ADRIndex.Entry(buffer.getInt(offset + ID),
+				                  string(buffer.getInt(offset + FILE_NAME)),
+				                  string(buffer.getInt(offset + TITLE)),
+				                  string(buffer.getInt(offset + STATUS)),
+				                  string(buffer.getInt(offset + DATE)),
+				                  ADRIndex.decodeLinks(string(buffer.getInt(offset + LINKS))),
+				                  ADRIndex.decodeIds(string(buffer.getInt(offset + SUPERSEDES))),
+				                  buffer.getLong(offset + MODIFIED),
+				                  hash(offset + HASH));
+	}
+
+	/**
+	 * @return The hash at the offset as a hexadecimal string, empty if it is all zero (not known)
+	 */
+	private String hash(int offset) {
+		StringBuilder hex = new StringBuilder(2 * HASH_SIZE);
+		boolean known = false;
+		for (int i = 0; i < HASH_SIZE; i++) {
+			int b = buffer.get(offset + i) & 0xFF;
+			known |= (b != 0);
+			hex.append(Character.forDigit(b >>> 4, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return known ? hex.toString() : "";
+	}
+
+	/**
+	 * @param id The id of an ADR, which need not exist
+	 * @return The ids of the ADRs that link to or supersede the ADR, or null if there are none
+	 */
+	List<Integer> referrers(int id) {
+		int low = 0;
+		int high = referrerCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleId = buffer.getInt(referrers + middle * REFERRER_SIZE);
+			if (middleId < id) {
+				low = middle + 1;
+			} else if (middleId > id) {
+				high = middle - 1;
+			} else {
+				return ADRIndex.decodeIds(referrerIds(referrers + middle * REFERRER_SIZE));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return All the referrers, keyed by the id referenced
+	 */
+	Map<Integer, List<Integer>> allReferrers() {
+		Map<Integer, List<Integer>> all = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < referrerCount; i++) {
+			int offset = referrers + i * REFERRER_SIZE;
+			all.put(buffer.getInt(offset), ADRIndex.decodeIds(referrerIds(offset)));
+		}
+		return all;
+	}
+
+	private String string(int ref) {
+		int length = buffer.getInt(ref);
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + ref + 4, length, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer duplicate = buffer.duplicate();  // Positioned independently, so that lookups can be concurrent
+		duplicate.position(ref + 4);
+		duplicate.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes an index file.
+	 *
+	 * @param out               The stream the file is written to
+	 * @param entries           The entries, in ascending order of id
+	 * @param referrers         The ids of the ADRs referencing each id, in ascending order of id
+	 * @param directoryModified The modification time of the document directory
+	 * @param fingerprint       The fingerprint of the entries, see {@link ADRIndex#fingerprint(int, String, long)}
+	 * @param filesFingerprint  The fingerprint of the files in the document directory
+	 * @param extensions        The extensions of the ADR files
+	 */
+	static void write(OutputStream out, Collection<ADRIndex.Entry> entries, SortedMap<Integer, List<Integer>> referrers,
+			          long directoryModified, long fingerprint, long filesFingerprint, String extensions) throws IOException {
+		int minId = entries.isEmpty() ? 0 : entries.iterator().next().id;
+		int maxId = minId;
+		for (ADRIndex.Entry entry : entries) maxId = entry.id;
+		long range = (long) maxId - minId + 1;
+		boolean dense = !entries.isEmpty() && range <= (long) entries.size() * MAX_UNUSED_SLOTS_PER_ENTRY;
+		int slotCount = dense ? (int) range : entries.size();
+		int referrersOffset = HEADER_SIZE + slotCount * SLOT_SIZE;
+		int stringsOffset = referrersOffset + referrers.size() * REFERRER_SIZE;
+
+		StringTable strings = new StringTable(stringsOffset);
+		ByteBuffer slots = ByteBuffer.allocate(slotCount * SLOT_SIZE);
+		if (dense) {
+			for (int slot = 0; slot < slotCount; slot++) {
+				slots.putInt(slot * SLOT_SIZE + ID, minId + slot);
+				slots.putInt(slot * SLOT_SIZE + FILE_NAME, NONE);
+			}
+		}
+		int slot = 0;
+		for (ADRIndex.Entry entry : entries) {
+			int offset = (dense ? entry.id - minId : slot++) * SLOT_SIZE;
+			slots.putInt(offset + ID, entry.id);
+			slots.putInt(offset + FILE_NAME, strings.ref(entry.fileName));
+			slots.putInt(offset + TITLE, strings.ref(entry.title));
+			slots.putInt(offset + STATUS, strings.ref(entry.status));
+			slots.putInt(offset + DATE, strings.ref(entry.date));
+			slots.putInt(offset + LINKS, strings.ref(ADRIndex.encodeLinks(entry.links)));
+			slots.putInt(offset + SUPERSEDES, strings.ref(ADRIndex.encodeIds(entry.supersedes)));
+			slots.putLong(offset + MODIFIED, entry.modified);
+			if (entry.hash.length() == 2 * HASH_SIZE) {
+				for (int i = 0; i < HASH_SIZE; i++) {
+					slots.put(offset + HASH + i, (byte) Integer.parseInt(entry.hash.substring(2 * i, 2 * i + 2), 16));
+				}
+			}
+		}
+		ByteBuffer referrerTable = ByteBuffer.allocate(referrers.size() * REFERRER_SIZE);
+		for (Map.Entry<Integer, List<Integer>> referrer : referrers.entrySet()) {
+			referrerTable.putInt(referrer.getKey());
+			referrerTable.putInt(strings.ref(ADRIndex.encodeIds(referrer.getValue())));
+		}
+		int extensionsRef = strings.ref(extensions);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putLong(DIRECTORY_MODIFIED, directoryModified);
+		header.putLong(FINGERPRINT, fingerprint);
+		header.putInt(FLAGS, dense ? DENSE : 0);
+		header.putInt(COUNT, entries.size());
+		header.putInt(MIN_ID, minId);
+		header.putInt(MAX_ID, maxId);
+		header.putInt(SLOT_COUNT, slotCount);
+		header.putInt(STRINGS, stringsOffset);
+		header.putInt(EXTENSIONS, extensionsRef);
+		header.putInt(REFERRERS, referrersOffset);
+		header.putInt(REFERRER_COUNT, referrers.size());
+		header.putLong(FILES_FINGERPRINT, filesFingerprint);
+		header.putInt(CHECKSUM, checksum(header));
+
+		out.write(header.array());
+		out.write(slots.array());
+		out.write(referrerTable.array());
+		for (byte[] chunk : strings.chunks) out.write(chunk);
+	}
+
+	/** The strings of a file being written, each stored once */
+	private static class StringTable {
+		final Map<String, Integer> refs = new HashMap<String, Integer>();
+		final List<byte[]> chunks = new ArrayList<byte[]>();
+		int next;
+
+		StringTable(int offset) {
+			this.next = offset;
+		}
+
+		int ref(String s) {
+			Integer ref = refs.get(s);
+			if (ref != null) return ref;
+
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			byte[] chunk = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+			ref = next;
+			next += chunk.length;
+			chunks.add(chunk);
+			refs.put(s, ref);
+			return ref;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The files adr-j generates in the <code>.adr</code> directory for the working copy it runs in:
+ * the ADR and search indexes, the id counter and its lock, and the manifest of the exported site.
+ * Unlike <code>adr.properties</code> they must not be committed, so a <code>.gitignore</code>
+ * listing them is written to the <code>.adr</code> directory when they are first created. An existing
+ * <code>.gitignore</code> is left as it is.
+ *
+ * Usage:
+ * <code>
+ *     LocalFiles.ignore(rootPath.resolve(".adr"));
+ * </code>
+ */
+public class LocalFiles {
+	public static final String GITIGNORE_FILE_NAME = ".gitignore";
+
+	private static final String[] FILE_NAMES = {
+			ADRIndex.INDEX_FILE_NAME,
+			SearchIndex.INDEX_FILE_NAME,
+			IdAllocator.COUNTER_FILE_NAME,
+			IdAllocator.LOCK_FILE_NAME,
+			SiteExporter.MANIFEST_FILE_NAME,
+			".*.tmp"                          // Files being written, see AtomicFiles
+	};
+
+	private LocalFiles() {
+	}
+
+	/**
+	 * Writes the <code>.gitignore</code> of the generated files, unless the <code>.adr</code>
+	 * directory already has one.
+	 *
+	 * @param adrPath The .adr directory
+	 * @throws IOException Thrown if the file cannot be written
+	 */
+	public static void ignore(Path adrPath) throws IOException {
+		Path ignorePath = adrPath.resolve(GITIGNORE_FILE_NAME);
+		if (Files.exists(ignorePath)) return;
+
+		StringBuilder content = new StringBuilder("# Files generated by adr for this working copy\n");
+		for (String fileName : FILE_NAMES) {
+			content.append('/').append(fileName).append('\n');
+		}
+		try {
+			Files.write(ignorePath, content.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (FileAlreadyExistsException e) {
+			// Written by another process at the same time
+		}
+	}
+}
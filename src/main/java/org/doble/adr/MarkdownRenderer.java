@@ -0,0 +1,203 @@
+package org.doble.adr;
+
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the markdown used in ADRs as HTML. Only the markdown found in ADRs is supported:
+ * headings, paragraphs, bulleted and numbered lists, block quotes, fenced code blocks, and
+ * the inline code spans, links, strong and emphasised text. Everything else is rendered as text.
+ *
+ * The targets of links can be rewritten, e.g. to link to the HTML page of an ADR instead of
+ * the markdown file.
+ *
+ * Usage:
+ * <code>
+ *     String html = new MarkdownRenderer(target -> target).render(markdown);
+ * </code>
+ */
+class MarkdownRenderer {
+	private static final Pattern HEADING = Pattern.compile("^(#{1,6})\\s+(.*?)\\s*#*\\s*$");
+	private static final Pattern BULLET = Pattern.compile("^\\s{0,3}[*+-]\\s+(.*)$");
+	private static final Pattern NUMBERED = Pattern.compile("^\\s{0,3}\\d+[.)]\\s+(.*)$");
+	private static final Pattern LINK = Pattern.compile("\\[([^\\]]*)\\]\\(([^)\\s]*)\\)");
+	private static final Pattern STRONG = Pattern.compile("(\\*\\*|__)(?=\\S)(.+?)(?<=\\S)\\1");
+	private static final Pattern EMPHASIS = Pattern.compile("(?<![\\w*])([*_])(?=\\S)(.+?)(?<=\\S)\\1(?![\\w*])");
+
+	private enum Block { NONE, PARAGRAPH, BULLETS, NUMBERS, QUOTE }
+
+	private final Function<String, String> linkTarget;
+
+	/**
+	 * @param linkTarget Maps the target of a link as written in the markdown to the target in the HTML
+	 */
+	MarkdownRenderer(Function<String, String> linkTarget) {
+		this.linkTarget = linkTarget;
+	}
+
+	/**
+	 * @param markdown The markdown text
+	 * @return The HTML of the text, without a surrounding element
+	 */
+	String render(String markdown) {
+		StringBuilder html = new StringBuilder(markdown.length() + markdown.length() / 4);
+		StringBuilder text = new StringBuilder();   // Text of the current paragraph or list item
+		Block block = Block.NONE;
+		boolean inCode = false;
+
+		for (String line : markdown.split("\r?\n", -1)) {
+			if (inCode) {
+				if (line.trim().startsWith("```")) {
+					html.append("</code></pre>\n");
+					inCode = false;
+				} else {
+					escape(line, html).append('\n');
+				}
+				continue;
+			}
+
+			Matcher matcher;
+			if (line.trim().startsWith("```")) {
+				block = close(block, text, html);
+				html.append("<pre><code>");
+				inCode = true;
+			} else if (line.trim().isEmpty()) {
+				block = close(block, text, html);
+			} else if ((matcher = HEADING.matcher(line)).matches()) {
+				block = close(block, text, html);
+				int level = matcher.group(1).length();
+				html.append("<h").append(level).append('>');
+				inline(matcher.group(2), html);
+				html.append("</h").append(level).append(">\n");
+			} else if ((matcher = BULLET.matcher(line)).matches()) {
+				block = item(Block.BULLETS, block, text, html);
+				text.append(matcher.group(1));
+			} else if ((matcher = NUMBERED.matcher(line)).matches()) {
+				block = item(Block.NUMBERS, block, text, html);
+				text.append(matcher.group(1));
+			} else if (line.startsWith(">")) {
+				if (block != Block.QUOTE) {
+					block = close(block, text, html);
+					block = Block.QUOTE;
+				} else {
+					text.append('\n');
+				}
+				text.append(line.substring(1).trim());
+			} else if (block == Block.NONE) {
+				block = Block.PARAGRAPH;
+				text.append(line.trim());
+			} else {
+				// Continuation of the paragraph, list item or quote
+				text.append('\n').append(line.trim());
+			}
+		}
+
+		if (inCode) html.append("</code></pre>\n");
+		close(block, text, html);
+		return html.toString();
+	}
+
+	/**
+	 * Starts a new list item, closing the previous item and, if the kind of list changes, the previous block.
+	 */
+	private Block item(Block list, Block block, StringBuilder text, StringBuilder html) {
+		if (block == list) {
+			endItem(text, html);
+		} else {
+			close(block, text, html);
+			html.append((list == Block.BULLETS) ? "<ul>\n" : "<ol>\n");
+		}
+		return list;
+	}
+
+	private void endItem(StringBuilder text, StringBuilder html) {
+		html.append("<li>");
+		inline(text.toString(), html);
+		html.append("</li>\n");
+		text.setLength(0);
+	}
+
+	private Block close(Block block, StringBuilder text, StringBuilder html) {
+		switch (block) {
+		case PARAGRAPH:
+			html.append("<p>");
+			inline(text.toString(), html);
+			html.append("</p>\n");
+			break;
+		case BULLETS:
+			endItem(text, html);
+			html.append("</ul>\n");
+			break;
+		case NUMBERS:
+			endItem(text, html);
+			html.append("</ol>\n");
+			break;
+		case QUOTE:
+			html.append("<blockquote><p>");
+			inline(text.toString(), html);
+			html.append("</p></blockquote>\n");
+			break;
+		default:
+			break;
+		}
+		text.setLength(0);
+		return Block.NONE;
+	}
+
+	/**
+	 * Renders the inline markup of a text. Code spans are rendered as they are, the other
+	 * markup is only recognised outside of code spans.
+	 */
+	private void inline(String text, StringBuilder html) {
+		String[] parts = text.split("`", -1);
+		for (int i = 0; i < parts.length; i++) {
+			boolean code = (i % 2 == 1) && (i < parts.length - 1);   // An unmatched backtick is text
+			if (code) {
+				escape(parts[i], html.append("<code>")).append("</code>");
+			} else {
+				if (i % 2 == 1) html.append('`');
+				html.append(spans(parts[i]));
+			}
+		}
+	}
+
+	private String spans(String text) {
+		StringBuilder result = new StringBuilder(text.length() + 16);
+		Matcher link = LINK.matcher(text);
+		int start = 0;
+		while (link.find()) {
+			result.append(emphasis(escape(text.substring(start, link.start()), new StringBuilder()).toString()));
+			result.append("<a href=\"");
+			escape(linkTarget.apply(link.group(2)), result);
+			result.append("\">");
+			result.append(emphasis(escape(link.group(1), new StringBuilder()).toString()));
+			result.append("</a>");
+			start = link.end();
+		}
+		result.append(emphasis(escape(text.substring(start), new StringBuilder()).toString()));
+		return result.toString();
+	}
+
+	private static String emphasis(String escaped) {
+		String result = STRONG.matcher(escaped).replaceAll("<strong>$2</strong>");
+		return EMPHASIS.matcher(result).replaceAll("<em>$2</em>");
+	}
+
+	/**
+	 * Appends the text with the characters that have a meaning in HTML escaped.
+	 */
+	static StringBuilder escape(String text, StringBuilder html) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&': html.append("&amp;"); break;
+			case '<': html.append("&lt;"); break;
+			case '>': html.append("&gt;"); break;
+			case '"': html.append("&quot;"); break;
+			default: html.append(c);
+			}
+		}
+		return html;
+	}
+}
@@ -0,0 +1,123 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ADR read from its file, see {@link RecordLoader}. This is the read side counterpart
+ * of {@link Record}.
+ *
+ * Only the head of the ADR (the title, the date and the status section) is read when the
+ * record is loaded. The rest of the ADR (the body) is only read when it is requested with
+ * {@link #getBody()}.
+ */
+public class ParsedRecord {
+
+	/**
+	 * A link from this ADR to another ADR, e.g. <code>* Amends [ADR 4](0004-use-jms.md)</code>
+	 */
+	public static class Link {
+		public final int id;
+		public final String comment;   // E.g. "Amends"
+		public final String fileName;  // The file linked to as written in the ADR, empty if not known
+
+		public Link(int id, String comment, String fileName) {
+			this.id = id;
+			this.comment = comment;
+			this.fileName = fileName;
+		}
+	}
+
+	private final Path path;
+	private final int id;
+	private final String title;
+	private final String date;
+	private final String status;
+	private final List<Link> links;
+	private final List<Integer> supersedes;
+	private final List<Integer> supersededBy;
+	private final long headLength;   // Number of bytes in the head, i.e. where the body starts
+	private String body = null;      // Read when first requested
+
+	ParsedRecord(Path path, int id, String title, String date, String status,
+			     List<Link> links, List<Integer> supersedes, List<Integer> supersededBy, long headLength) {
+		this.path = path;
+		this.id = id;
+		this.title = title;
+		this.date = date;
+		this.status = status;
+		this.links = Collections.unmodifiableList(links);
+		this.supersedes = Collections.unmodifiableList(supersedes);
+		this.supersededBy = Collections.unmodifiableList(supersededBy);
+		this.headLength = headLength;
+	}
+
+	/** @return The ADR file */
+	public Path getPath() {
+		return path;
+	}
+
+	/** @return The id of the ADR, taken from the file name (or the title if the file name has no id). 0 if not known. */
+	public int getId() {
+		return id;
+	}
+
+	/** @return The title of the ADR without the leading id, empty if the ADR has no title. */
+	public String getTitle() {
+		return title;
+	}
+
+	/** @return The date of the ADR as written in the ADR, empty if the ADR has no date. */
+	public String getDate() {
+		return date;
+	}
+
+	/** @return The status of the ADR, e.g. "Accepted", empty if the ADR has no status. */
+	public String getStatus() {
+		return status;
+	}
+
+	/** @return The links to other ADRs, in the order they appear in the ADR, not including supersedes. */
+	public List<Link> getLinks() {
+		return links;
+	}
+
+	/** @return The ids of the ADRs superseded by this ADR. */
+	public List<Integer> getSupersedes() {
+		return supersedes;
+	}
+
+	/** @return The ids of the ADRs that supersede this ADR. */
+	public List<Integer> getSupersededBy() {
+		return supersededBy;
+	}
+
+	/** @return The number of bytes in the head, i.e. where the body starts. */
+	long getHeadLength() {
+		return headLength;
+	}
+
+	/**
+	 * Reads the body of the ADR, i.e. everything after the head, starting with the
+	 * first section after the status (e.g. "## Context").
+	 *
+	 * @return The body of the ADR, empty if the ADR has no body.
+	 * @throws ADRException Thrown if the ADR cannot be read.
+	 */
+	public String getBody() throws ADRException {
+		if (body == null) {
+			try {
+				byte[] content = Files.readAllBytes(path);
+				int start = (int) Math.min(headLength, content.length);
+				body = new String(content, start, content.length - start, StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Cannot read the ADR " + path, e);
+			}
+		}
+		return body;
+	}
+}
@@ -3,17 +3,17 @@ package org.doble.adr;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Record {
@@ -21,23 +21,30 @@ public class Record {
 	private final Optional<String> template;  //Using String type instead of Path as the default template is a resource. 
 	                                          //Resources are not correctly supported by Path. 
 	private final String templateExtension;;
+	private final TemplateEngine templateEngine;
+	private final Map<String, String> customFields;
 	private final Integer id;
 	private final String idFormatted;
 	private final String name;
 	private final Date date;
+	private final String dateText;            // The date as written in an existing ADR, null to format the date
 	private final String status;
+	private final Optional<ADRIndex> index;   // Used to look up other ADRs, if available
+	private final Optional<SearchIndex> searchIndex;
 
 	private ArrayList<Integer> supersedes = new ArrayList<Integer>();
 
 	private class Link {
 
-		Link(Integer id, String comment) {
+		Link(Integer id, String comment, String reverseComment) {
 			this.id = id;
 			this.comment = comment;
+			this.reverseComment = reverseComment;
 		}
 
 		Integer id;
 		String comment = "";
+		String reverseComment = "";   // Empty if no reverse link is written to the ADR linked to
 	}
 	
 	private ArrayList<Link> links = new ArrayList<Link>();
@@ -55,7 +62,12 @@ public class Record {
 		this.idFormatted = builder.idFormatted;
 		this.name = builder.name;
 		this.date = builder.date;
+		this.dateText = builder.dateText;
 		this.status = builder.status;
+		this.index = builder.index;
+		this.searchIndex = builder.searchIndex;
+		this.templateEngine = builder.templateEngine;
+		this.customFields = builder.customFields;
 		
 		if (builder.template.isPresent()) {
 			this.template = builder.template;
@@ -71,6 +83,9 @@ public class Record {
 	 * Generate and store an ADR using the data stored in this record. 
 	 * Generate a file with a name of the form: 
 	 *    (adr id)-(adr name, lower case separated with hyphens).(the extension of the template file used)   //TODO extension
+	 * The ADRs superseded by this record are marked as superseded and the reverse links are
+	 * written to the ADRs linked to. All these ADRs are rewritten together (see {@link RecordRewriter}):
+	 * if any of them cannot be rewritten none of them is changed and the generated ADR is removed.
 	 *
 	 * @return Path The generated ADR file.
 	 */
@@ -85,77 +100,116 @@ public class Record {
 		Path targetFile = docsPath.resolve(targetFileName); // Full path of the ADR file in the document path
 		
 		
-		// Create the link fragment using the line in the template file
-		Optional<String> templateLinkFragment = getFragment("{{{link.id}}}");
-
-		//Now generate link fragments (i.e. the markdown and the template field) for each of the links
-		ArrayList<String> linkFragments = new ArrayList<String>();
-		String linkSectionString;
-		if (templateLinkFragment.isPresent()) {
-			for (Link link: links) {
-				String linkFragment = templateLinkFragment.get();
-				linkFragments.add(linkFragment.replace("{{{link.comment}}}", 
-						capitalizeFirstCharacter(link.comment))
-						.replace("{{{link.id}}}", link.id.toString())
-						.replace("{{{link.file}}}", getADRFileName(link.id))
-						);
+		try {
+			String content = render();
+			// Never overwrite an existing ADR, e.g. one created at the same time by another process
+			Files.write(targetFile, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (FileAlreadyExistsException e) {
+			throw new ADRException("ERROR: The ADR " + targetFile + " already exists.", e);
+		} catch (IOException e) {
+			throw new ADRException("Cannot write ADR", e);
+		}
+
+		// Mark the superseded ADRs as superseded by this ADR and add the reverse links
+		RecordRewriter rewriter = new RecordRewriter();
+		for (Integer supersededId : supersedes) {
+			String supersededFileName = getADRFileName(supersededId);
+			if (supersededFileName.isEmpty()) continue;
+			rewriter.addSupersededBy(docsPath.resolve(supersededFileName), id, targetFileName);
+		}
+		for (Link link : links) {
+			String linkedFileName = getADRFileName(link.id);
+			if (link.reverseComment.isEmpty() || linkedFileName.isEmpty()) continue;
+			rewriter.addLink(docsPath.resolve(linkedFileName), capitalizeFirstCharacter(link.reverseComment), id, targetFileName);
+		}
+
+		List<Path> rewrittenFiles;
+		try {
+			rewrittenFiles = rewriter.commit();
+		} catch (ADRException e) {
+			// Do not leave a new ADR whose links are not reflected in the other ADRs
+			try {
+				Files.deleteIfExists(targetFile);
+			} catch (IOException ioe) {
+				// Nothing more can be done
 			}
-			linkSectionString = linkFragments.stream().collect(Collectors.joining("\n"));
-		} else {
-			linkSectionString = "";
+			throw e;
 		}
 
-		
-		// Create the superseded fragment using the line in the template file
-		Optional<String> templateSupersededFragment;
-		String supersededSectionString;
-		ArrayList<String> supersededFragments = new ArrayList<String>();
-
-		templateSupersededFragment = getFragment("{{{superseded.id}}}");
-       
-		// Now generate superseded string fragments 
-		if (templateSupersededFragment.isPresent()) {
-			for (Integer supersededId: supersedes) {
-				String supersededFragment = templateSupersededFragment.get();
-				supersededFragments.add(supersededFragment.replace("{{{superseded.id}}}", supersededId.toString())
-						.replace("{{{superseded.file}}}", getADRFileName(supersededId))
-						);
+		// Keep the indexes up to date with the new and the rewritten ADRs
+		if (index.isPresent()) {
+			index.get().put(targetFile);
+			for (Path rewrittenFile : rewrittenFiles) {
+				index.get().put(rewrittenFile);
 			}
-			supersededSectionString = supersededFragments.stream().collect(Collectors.joining("\n"));
-		} else {
-			supersededSectionString = "";
 		}
-		
-		// Now substitute the fields in the template and write to the ADR
-		TemplateProvider templateProvider = new TemplateProvider(docsPath.getFileSystem(), ADRProperties.defaultTemplateName);
-		List<String> targetContent = new ArrayList<String>();
-		
-		try (Stream<String> lines = Files.lines(templateProvider.getPath(this.template))) {
-			targetContent = lines
-					.map(line -> line.replaceAll("\\{\\{id\\}\\}", id.toString()))
-					.map(line -> line.replaceAll("\\{\\{name\\}\\}", name))
-					.map(line -> line.replaceAll("\\{\\{status\\}\\}", status))
-					.map(line -> line.replaceAll("\\{\\{date\\}\\}", DateFormat.getDateInstance().format(date)))
-					.filter(line -> !(line.contains("{{{link.id}}}") && linkFragments.size() == 0))        // Remove lines which will be blank
-					.filter(line -> !(line.contains("{{{superseded.id}}}") && supersededFragments.size() == 0)) // Remove lines which will be blank
-					.map(line -> line.contains("{{{link.id}}}")?linkSectionString: line)   
-					.map(line -> line.contains("{{{superseded.id}}}")?supersededSectionString: line)
-					.collect(Collectors.toList());   
-			//targetContent.removeIf(item -> item.isEmpty());  // Remove double empty lines
-			Files.write(targetFile, targetContent);  
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-		   throw new ADRException("Cannot write ADR", e.getCause());
+		if (searchIndex.isPresent()) {
+			searchIndex.get().put(targetFile);
+			for (Path rewrittenFile : rewrittenFiles) {
+				searchIndex.get().put(rewrittenFile);
+			}
 		}
 
         return targetFile;
 	}
 
+	/**
+	 * Renders the ADR from the template without writing it, e.g. to render an existing ADR
+	 * again with another template (see {@link RecordRerenderer}).
+	 *
+	 * @return The content of the ADR
+	 * @throws ADRException Thrown if the template cannot be read
+	 */
+	public String render() throws ADRException {
+		// Collect the values for the lists of the template
+		List<Map<String, String>> linkItems = new ArrayList<Map<String, String>>(links.size());
+		for (Link link : links) {
+			linkItems.add(TemplateContext.item(link.id.toString(),
+					getADRFileName(link.id),
+					capitalizeFirstCharacter(link.comment)));
+		}
+
+		List<Map<String, String>> supersededItems = new ArrayList<Map<String, String>>(supersedes.size());
+		for (Integer supersededId : supersedes) {
+			supersededItems.add(TemplateContext.item(supersededId.toString(),
+					getADRFileName(supersededId),
+					null));
+		}
+
+		Map<String, List<Map<String, String>>> lists = new HashMap<String, List<Map<String, String>>>();
+		lists.put(TemplateContext.LINK, linkItems);
+		lists.put(TemplateContext.SUPERSEDED, supersededItems);
+
+		// The custom fields cannot replace the standard fields
+		Map<String, String> fields = new HashMap<String, String>(customFields);
+		fields.put("id", id.toString());
+		fields.put("name", name);
+		fields.put("status", status);
+		fields.put("date", (dateText != null) ? dateText : DateFormat.getDateInstance().format(date));
+
+		// Now render the template
+		TemplateProvider templateProvider = new TemplateProvider(docsPath.getFileSystem(), ADRProperties.defaultTemplateName);
+
+		try {
+			TemplateEngine.Template compiledTemplate = templateProvider.getTemplate(this.template, templateEngine);
+			return compiledTemplate.render(new TemplateContext(fields, lists));
+		} catch (ADRException e) {
+			throw e;
+		} catch (Exception e) {
+		   throw new ADRException("Cannot render ADR", e.getCause());
+		}
+	}
+
 	private String getADRFileName(int adrId) {
 		String fileName;
 
-		try {
-			Path[] paths = Files.list(docsPath).filter(ADRFilter.filter(adrId)).toArray(Path[]::new);
+		if (index.isPresent()) {
+			return index.get().getFileName(adrId);
+		}
+
+		ADRFilter filter = ADRFilter.filter(Arrays.asList(ADRFilter.DEFAULT_EXTENSION, templateExtension)).withId(adrId);
+		try (Stream<Path> stream = Files.list(docsPath)) {
+			Path[] paths = stream.filter(filter).toArray(Path[]::new);
 
 			if (paths.length == 1) {
 				fileName = paths[0].getFileName().toString();
@@ -174,60 +228,24 @@ public class Record {
 	
 
 	/**
-	 * Writes the ADR (status section) with id supersededID that it has been
-	 * superseded by the ADR with the id supersedesID.
-	 *
-	 * The message written in the superseded ADR has the form
-	 * Superseded by the architecture decision record [supersedesID]
+	 * Adds a link the the record
 	 *
-	 * @param supersededID The id of the superseded ADR.
-	 * @param supersedesID The id of the ADR that supersedes it.
-	 * TODO REMOVE as this is now not used. 
-	 */
-	private void supersede(Path docsPath, int supersededID, int supersedesID) throws ADRException {
-		Path supersededADRFile;
-		Path[] paths;
-
-		// Get the ADR file that is to be superseded
-		try (Stream<Path> stream = Files.list(docsPath)) {
-			paths = stream.filter(ADRFilter.filter((int) supersededID)).toArray(Path[]::new);
-
-			if (paths.length == 1) {
-				supersededADRFile = paths[0];
-
-				// Read in the file
-				List<String> lines = Files.readAllLines(supersededADRFile);
-
-				// Find the Status section (before the context station) and add the reverse link comment
-				String line;
-				for (int index = 0; index < lines.size(); index++) {
-					line = lines.get(index);
-					if (line.startsWith("## Context")) {  // TODO Need to have use constants for the titles
-						lines.add(index, "Superseded by the [architecture decision record " + supersedesID + "](" + getADRFileName(supersedesID) + ")");
-						lines.add(index + 1, "");
-						break;
-					}
-				}
-
-				// Write out the file
-				Files.write(supersededADRFile, lines);  //TODO use a temporary file when making such changes
-			} else {
-				throw new ADRException("FATAL: No matching ADR file found or more than one matching ADR file found with the id " + supersededID);
-			}
-		} catch (Exception e) {
-			throw new ADRException("FATAL: Problem with the superseding of ADR: " + supersededID, e);
-		}
+	 * @param id             the id of the ADR being linked to.
+	 * @param comment        The link comment in this ADR
+	 **/
+	public void addLink(Integer id, String comment) {
+		links.add(new Link(id, comment, ""));
 	}
 
-
 	/**
-	 * Adds a link the the record
+	 * Adds a link the the record and a reverse link to the ADR linked to
 	 *
 	 * @param id             the id of the ADR being linked to.
 	 * @param comment        The link comment in this ADR
+	 * @param reverseComment The link comment written to the ADR linked to
 	 **/
-	public void addLink(Integer id, String comment) {
-		links.add(new Link(id, comment));
+	public void addLink(Integer id, String comment, String reverseComment) {
+		links.add(new Link(id, comment, reverseComment));
 	}
 
 	/**
@@ -235,7 +253,8 @@ public class Record {
 	 * and add it to the record.
 	 * LinkId             - The id of the ADR being linked to.
 	 * LinkComment        - The link comment in this ADR
-	 * ReverseLinkComment - The comment added to the ADR with the specified id.
+	 * ReverseLinkComment - The comment added to the ADR with the specified id. Optional, if not
+	 *                      given no reverse link is written.
 	 *
 	 * @param linkSpec The link specification as string
 	 * @return The id of the ADR linked to
@@ -247,10 +266,11 @@ public class Record {
 		try {
 			if (linkSpec.length() > 0) {
 				String[] linkSpecs = linkSpec.split(":");
-				if (linkSpecs.length == 2) {
+				if (linkSpecs.length == 2 || linkSpecs.length == 3) {
 					linkID = new Integer(linkSpecs[0]);
 					linkComment = linkSpecs[1];
-					links.add(new Link(linkID, linkComment));
+					String reverseLinkComment = (linkSpecs.length == 3) ? linkSpecs[2].trim() : "";
+					links.add(new Link(linkID, linkComment, reverseLinkComment));
 				} else {
 					throw new LinkSpecificationException();
 				}
@@ -272,37 +292,10 @@ public class Record {
 	}
 
 	private String capitalizeFirstCharacter(String s) {
+		if (s.isEmpty()) return s;
 		return s.substring(0, 1).toUpperCase() + s.substring(1);
 	}
 	
-	/**
-	 * Finds and returns the line in the template that contains the specified substitution field.
-	 * Assumes that all the other substitution field for the link are on the same line.
-	 * TODO make sure that the above is in the documentation
-	 * @param substitutionField The substitutionField being looked for
-	 * @returns Optional<String) The fragment found. Optional.empty if no fragment found 
-	 * (e.g. if the substitution field has not been specified in the template).
-	 */
-	private Optional<String> getFragment(String substitutionField) throws ADRException {
-		String templateFragment; 
-		
-		TemplateProvider templateProvider = new TemplateProvider(docsPath.getFileSystem(), ADRProperties.defaultTemplateName);
-		
-		//BufferedReader reader = getTemplateReader();
-		try {
-			Path templatePath = templateProvider.getPath(this.template);
-			Stream<String> templateLines = Files.lines(templatePath);
-			templateFragment = templateLines.filter(line-> line.contains(substitutionField)).findAny().orElse(null);
-			templateLines.close();
-		} 
-		catch (Exception e) {
-			String msg = "Cannot get the template containing " + substitutionField;
-			throw new ADRException(msg, e);
-		}
-		
-		return Optional.ofNullable(templateFragment);
-	}
-	
 	private Optional<String> getTemplate() {
 		return template;
 	}
@@ -317,7 +310,12 @@ public class Record {
 		private String idFormatted;
 		private String name;
 		private Date date = new Date();
+		private String dateText = null;
 		private String status = "Proposed";
+		private Optional<ADRIndex> index = Optional.empty();
+		private Optional<SearchIndex> searchIndex = Optional.empty();
+		private TemplateEngine templateEngine = new DefaultTemplateEngine();
+		private Map<String, String> customFields = new LinkedHashMap<String, String>();
 
 		public Builder(Path docsPath) {
 			this.docsPath = docsPath;
@@ -356,6 +354,18 @@ public class Record {
 
 		public Builder date(Date date) {
 			this.date = date;
+			this.dateText = null;
+			return this;
+		}
+
+		/**
+		 * Sets the date as it is written in the ADR, e.g. the date of an existing ADR that is
+		 * rendered again. The date is then not formatted.
+		 * @param date The date as text
+		 * @return Builder
+		 */
+		public Builder date(String date) {
+			this.dateText = date;
 			return this;
 		}
 
@@ -364,6 +374,52 @@ public class Record {
 			return this;
 		}
 
+		/**
+		 * Sets the index used to look up the other ADRs referenced by this record. When
+		 * the record is stored the index is updated with the new ADR.
+		 * If no index is specified the document directory is scanned instead.
+		 * @param index The ADR index
+		 * @return Builder
+		 */
+		public Builder index(ADRIndex index) {
+			this.index = Optional.ofNullable(index);
+			return this;
+		}
+
+		/**
+		 * Sets the search index that is updated with the new ADR (and the ADRs it
+		 * changes) when the record is stored.
+		 * @param searchIndex The search index
+		 * @return Builder
+		 */
+		public Builder searchIndex(SearchIndex searchIndex) {
+			this.searchIndex = Optional.ofNullable(searchIndex);
+			return this;
+		}
+
+		/**
+		 * Sets the template engine that renders the ADR from the template.
+		 * If no engine is specified the bundled engine ({@link DefaultTemplateEngine}) is used.
+		 * @param templateEngine The template engine
+		 * @return Builder
+		 */
+		public Builder templateEngine(TemplateEngine templateEngine) {
+			this.templateEngine = (templateEngine != null) ? templateEngine : new DefaultTemplateEngine();
+			return this;
+		}
+
+		/**
+		 * Sets a custom field of the template, e.g. <code>{{deciders}}</code>. The fields
+		 * <code>id</code>, <code>name</code>, <code>status</code> and <code>date</code> cannot be set.
+		 * @param name  The name of the field
+		 * @param value The value of the field
+		 * @return Builder
+		 */
+		public Builder field(String name, String value) {
+			this.customFields.put(name, value);
+			return this;
+		}
+
 		public Record build() throws URISyntaxException {
 			return new Record(this);
 		}
@@ -0,0 +1,225 @@
+package org.doble.adr;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads existing ADRs into {@link ParsedRecord}s.
+ *
+ * The loader understands the ADRs generated from the templates supplied with adr-j
+ * (<code>default_template.md</code>, <code>nygard.md</code>) and the MADR example templates:
+ * <code>
+ *     # 12. Use PostgreSQL                          # Use PostgreSQL
+ *
+ *     Date: 2019-10-02                              * Status: accepted
+ *                                                   Supersedes: [ADR 3](0003-use-mysql.md)
+ *     ## Status                                     * Date: 2019-10-02
+ *
+ *     Accepted                                      ## Context and Problem Statement
+ *
+ *     * Supersedes [ADR 3](0003-use-mysql.md)
+ *     * Amends [ADR 4](0004-use-jms.md)
+ *
+ *     ## Context
+ * </code>
+ *
+ * The head of the ADR ends at the first section heading that is not the status section.
+ * Only the head is read, in small blocks, so loading thousands of ADRs only reads the first
+ * few hundred bytes of each. The body is read when requested (see {@link ParsedRecord#getBody()}).
+ */
+public class RecordLoader {
+	private static final int BLOCK_SIZE = 512;
+
+	// A reference to another ADR, e.g. "* Amends [ADR 4](0004-use-jms.md)" or
+	// "Superseded by the [architecture decision record 7](0007-use-rust.md)"
+	private static final Pattern REFERENCE = Pattern.compile(
+			"^(?:[*-]\\s*)?(.*?)\\s*:?\\s*\\[(?:ADR|architecture decision record)\\s+(\\d+)\\]\\(([^)]*)\\)",
+			Pattern.CASE_INSENSITIVE);
+
+	private RecordLoader() {
+	}
+
+	/**
+	 * Reads the head of an ADR.
+	 *
+	 * @param path The ADR file
+	 * @return The parsed ADR
+	 * @throws ADRException Thrown if the ADR cannot be read
+	 */
+	public static ParsedRecord load(Path path) throws ADRException {
+		try {
+			return load(path, Files.newInputStream(path));
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot read the ADR " + path, e);
+		}
+	}
+
+	/**
+	 * Parses the head of an ADR that has already been read, e.g. to compute its hash as well.
+	 *
+	 * @param path The ADR file
+	 * @param content The content of the ADR file
+	 * @return The parsed ADR
+	 * @throws ADRException Thrown if the ADR cannot be parsed
+	 */
+	static ParsedRecord load(Path path, byte[] content) throws ADRException {
+		return load(path, new ByteArrayInputStream(content));
+	}
+
+	private static ParsedRecord load(Path path, InputStream in) throws ADRException {
+		String fileName = path.getFileName().toString();
+		int digits = 0;
+		while (digits < fileName.length() && Character.isDigit(fileName.charAt(digits))) digits++;
+		int id = (digits > 0) ? Integer.parseInt(fileName.substring(0, digits)) : 0;  // Ids above 9999 have more than four digits
+
+		String title = "";
+		String date = "";
+		String status = "";
+		List<ParsedRecord.Link> links = new ArrayList<ParsedRecord.Link>();
+		List<Integer> supersedes = new ArrayList<Integer>();
+		List<Integer> supersededBy = new ArrayList<Integer>();
+		long headLength;
+
+		try (HeadReader reader = new HeadReader(in)) {
+			boolean inStatus = false;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String trimmed = line.trim();
+				if (title.isEmpty() && trimmed.startsWith("# ")) {
+					title = trimmed.substring(2).trim();
+					// Remove any leading "<id>. " from the title
+					int dot = title.indexOf(". ");
+					if (dot > 0 && title.substring(0, dot).chars().allMatch(Character::isDigit)) {
+						if (id == 0) id = Integer.parseInt(title.substring(0, dot));
+						title = title.substring(dot + 2).trim();
+					}
+					continue;
+				}
+				if (trimmed.startsWith("## Status")) {
+					inStatus = true;
+					continue;
+				}
+				if (trimmed.startsWith("##")) {
+					reader.unread();  // The head ends before this section
+					break;
+				}
+
+				if (date.isEmpty() && trimmed.startsWith("Date:")) {
+					date = trimmed.substring("Date:".length()).trim();
+				} else if (date.isEmpty() && trimmed.startsWith("* Date:")) {
+					date = trimmed.substring("* Date:".length()).trim();
+				} else if (status.isEmpty() && trimmed.startsWith("* Status:")) {
+					status = trimmed.substring("* Status:".length()).trim();
+				} else if (!addReference(trimmed, links, supersedes, supersededBy)
+						&& inStatus && status.isEmpty() && !trimmed.isEmpty()) {
+					status = trimmed;
+				}
+			}
+			headLength = reader.position();
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot read the ADR " + path, e);
+		}
+
+		return new ParsedRecord(path, id, title, date, status, links, supersedes, supersededBy, headLength);
+	}
+
+	/**
+	 * @param line A line of an ADR
+	 * @return true if the line references another ADR, e.g. "* Amends [ADR 4](0004-use-jms.md)"
+	 */
+	static boolean isReference(String line) {
+		return reference(line) != null;
+	}
+
+	/**
+	 * @param line A line of an ADR
+	 * @return The reference to another ADR in the line, with the comment as written
+	 *         (e.g. "Amends"), or null if the line has no reference.
+	 */
+	static ParsedRecord.Link reference(String line) {
+		Matcher matcher = REFERENCE.matcher(line);
+		if (!matcher.find()) return null;
+
+		try {
+			return new ParsedRecord.Link(Integer.parseInt(matcher.group(2)), matcher.group(1).trim(), matcher.group(3).trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the reference in the line (if any) to the links, supersedes or superseded by lists.
+	 *
+	 * @return true if the line is a reference to another ADR
+	 */
+	private static boolean addReference(String line, List<ParsedRecord.Link> links,
+			                            List<Integer> supersedes, List<Integer> supersededBy) {
+		ParsedRecord.Link reference = reference(line);
+		if (reference == null) return false;
+
+		String lowerComment = reference.comment.toLowerCase();
+		if (lowerComment.equals("supersedes")) {
+			supersedes.add(reference.id);
+		} else if (lowerComment.startsWith("superseded by")) {
+			supersededBy.add(reference.id);
+		} else {
+			links.add(reference);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads UTF-8 lines from the start of a file in small blocks and keeps track of the
+	 * number of bytes consumed.
+	 */
+	private static class HeadReader implements AutoCloseable {
+		private final InputStream in;
+		private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(128);
+		private long position = 0;         // Bytes consumed, including the last line read
+		private long lastLineStart = 0;
+
+		HeadReader(InputStream in) {
+			this.in = new BufferedInputStream(in, BLOCK_SIZE);
+		}
+
+		/** @return The next line without the line terminator, or null at the end of the file */
+		String readLine() throws IOException {
+			lastLineStart = position;
+			lineBytes.reset();
+			int b;
+			while ((b = in.read()) != -1) {
+				position++;
+				if (b == '\n') break;
+				lineBytes.write(b);
+			}
+			if (b == -1 && lineBytes.size() == 0) return null;
+
+			String line = new String(lineBytes.toByteArray(), StandardCharsets.UTF_8);
+			return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+		}
+
+		/** Marks the last line read as not being part of the head */
+		void unread() {
+			position = lastLineStart;
+		}
+
+		long position() {
+			return position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package org.doble.adr;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Renders existing ADRs again with the current template, as <code>adr rerender</code> does
+ * after the template has been changed.
+ *
+ * The head of each ADR (title, date, status, links and superseded ADRs, see {@link RecordLoader})
+ * is read and rendered through the template as {@link Record#render()} does for a new ADR. The
+ * sections after the head are then taken from the ADR where the template has a section with the
+ * same heading (compared ignoring case), so the text written by hand is kept. The sections of the
+ * template that the ADR does not have are added with the text of the template, and the sections
+ * of the ADR that the template does not have are kept after the section they followed.
+ *
+ * An ADR is only written if its content changes, with an atomic move, so ADRs that are already
+ * rendered with the template keep their modification time. The ADRs are rendered in parallel with
+ * a fork/join pool, as in {@link ADRLinter}.
+ *
+ * Usage:
+ * <code>
+ *     List<RecordRerenderer.Result> results = new RecordRerenderer(index)
+ *             .template(templateFile, templateEngine)
+ *             .fields(properties.getTemplateFields())
+ *             .rerender(adrFiles);
+ * </code>
+ */
+public class RecordRerenderer {
+	// Number of files a task renders itself instead of splitting them into two tasks
+	private static final int FILES_PER_TASK = 8;
+
+	private static final String SUPERSEDED_BY = "Superseded by";
+
+	/** What happened to an ADR */
+	public enum Outcome {
+		RENDERED,   // The ADR has been written
+		UNCHANGED,  // The ADR is already rendered with the template
+		FAILED      // The ADR cannot be read, rendered or written
+	}
+
+	/**
+	 * The result of rendering a single ADR.
+	 */
+	public static class Result {
+		public final Path path;
+		public final Outcome outcome;
+		public final String message;   // Why the ADR has not been rendered, null if it has
+
+		Result(Path path, Outcome outcome, String message) {
+			this.path = path;
+			this.outcome = outcome;
+			this.message = message;
+		}
+	}
+
+	/** A section of an ADR: a level 2 heading and the text up to the next one */
+	private static class Section {
+		final String key;    // The heading in lower case, null for the text before the first heading
+		final String text;   // Including the heading and the line terminators
+
+		Section(String key, String text) {
+			this.key = key;
+			this.text = text;
+		}
+	}
+
+	private final ADRIndex index;
+	private final int parallelism;
+	private String template = null;
+	private TemplateEngine templateEngine = new DefaultTemplateEngine();
+	private Map<String, String> fields = new LinkedHashMap<String, String>();
+
+	/**
+	 * @param index The index of the ADRs, used to look up the ADRs referenced
+	 */
+	public RecordRerenderer(ADRIndex index) {
+		this(index, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param index       The index of the ADRs, used to look up the ADRs referenced
+	 * @param parallelism The number of threads used to render the ADRs
+	 */
+	public RecordRerenderer(ADRIndex index, int parallelism) {
+		this.index = index;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @param template       The template file, or null for the default template
+	 * @param templateEngine The template engine
+	 * @return This renderer
+	 */
+	public RecordRerenderer template(String template, TemplateEngine templateEngine) {
+		this.template = template;
+		this.templateEngine = templateEngine;
+		return this;
+	}
+
+	/**
+	 * @param fields The custom fields of the template, see {@link ADRProperties#getTemplateFields()}
+	 * @return This renderer
+	 */
+	public RecordRerenderer fields(Map<String, String> fields) {
+		this.fields = fields;
+		return this;
+	}
+
+	/**
+	 * Renders the ADRs again.
+	 *
+	 * @param adrFiles The ADR files
+	 * @return The results, in the order of the ADR files
+	 */
+	public List<Result> rerender(List<Path> adrFiles) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new RenderTask(adrFiles, 0, adrFiles.size()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Renders a part of the list of ADR files, splitting it if it is large.
+	 */
+	private class RenderTask extends RecursiveTask<List<Result>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Path> files;
+		private final int from;
+		private final int to;
+
+		RenderTask(List<Path> files, int from, int to) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Result> compute() {
+			if (to - from <= FILES_PER_TASK) {
+				List<Result> results = new ArrayList<Result>(to - from);
+				for (int i = from; i < to; i++) {
+					results.add(rerender(files.get(i)));
+				}
+				return results;
+			}
+
+			int middle = (from + to) >>> 1;
+			RenderTask second = new RenderTask(files, middle, to);
+			second.fork();
+			List<Result> results = new RenderTask(files, from, middle).compute();
+			results.addAll(second.join());
+			return results;
+		}
+	}
+
+	/**
+	 * Renders a single ADR again.
+	 */
+	private Result rerender(Path path) {
+		byte[] content;
+		String rendered;
+		try {
+			content = Files.readAllBytes(path);
+			ParsedRecord parsed = RecordLoader.load(path);
+			if (parsed.getTitle().isEmpty()) return new Result(path, Outcome.FAILED, "The ADR has no title.");
+			rendered = render(parsed);
+
+			int headLength = (int) Math.min(parsed.getHeadLength(), content.length);
+			String body = new String(content, headLength, content.length - headLength, StandardCharsets.UTF_8);
+			rendered = merge(rendered, body);
+		} catch (IOException | ADRException e) {
+			return new Result(path, Outcome.FAILED, e.getMessage());
+		}
+
+		byte[] renderedContent = rendered.getBytes(StandardCharsets.UTF_8);
+		if (Arrays.equals(content, renderedContent)) return new Result(path, Outcome.UNCHANGED, null);
+
+		Path tempFile = null;
+		try {
+			tempFile = AtomicFiles.createTempSibling(path);
+			Files.write(tempFile, renderedContent);
+			AtomicFiles.moveReplacing(tempFile, path);
+			tempFile = null;
+		} catch (IOException e) {
+			return new Result(path, Outcome.FAILED, "Cannot write the ADR: " + e.getMessage());
+		} finally {
+			if (tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e) {
+					// Nothing more can be done
+				}
+			}
+		}
+		return new Result(path, Outcome.RENDERED, null);
+	}
+
+	/**
+	 * Renders the head of the ADR through the template, as a new ADR with the same values.
+	 *
+	 * @return The ADR as rendered from the template, with the sections of the template
+	 */
+	private String render(ParsedRecord parsed) throws ADRException {
+		Record.Builder builder = new Record.Builder(index.getDocsPath())
+				.id(parsed.getId())
+				.name(parsed.getTitle())
+				.date(parsed.getDate())
+				.status(parsed.getStatus())
+				.template(template)
+				.templateEngine(templateEngine)
+				.index(index);
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			builder.field(field.getKey(), field.getValue());
+		}
+
+		Record record;
+		try {
+			record = builder.build();
+		} catch (URISyntaxException e) {
+			throw new ADRException("FATAL: Cannot find the template " + template, e);
+		}
+		for (ParsedRecord.Link link : parsed.getLinks()) {
+			record.addLink(link.id, link.comment);
+		}
+		for (int id : parsed.getSupersededBy()) {
+			record.addLink(id, SUPERSEDED_BY);   // Written as RecordRewriter writes them
+		}
+		for (int id : parsed.getSupersedes()) {
+			record.addSupersedes(id);
+		}
+		return record.render();
+	}
+
+	/**
+	 * Replaces the sections of the rendered ADR with the sections of the body of the existing
+	 * ADR that have the same heading.
+	 *
+	 * @param rendered The ADR rendered from the template
+	 * @param body     The body of the existing ADR, i.e. the text after the head
+	 * @return The ADR with the head of the template and the text of the existing ADR
+	 */
+	static String merge(String rendered, String body) {
+		int headEnd = headLength(rendered);
+		List<Section> templateSections = sections(rendered.substring(headEnd));
+		List<Section> sections = sections(body);
+
+		// The section of the ADR used for each section of the template
+		Set<String> templateKeys = new HashSet<String>();
+		for (Section section : templateSections) {
+			if (section.key != null) templateKeys.add(section.key);
+		}
+		Map<String, Integer> matched = new HashMap<String, Integer>();
+		for (int i = 0; i < sections.size(); i++) {
+			String key = sections.get(i).key;
+			if (key != null && templateKeys.contains(key)) matched.putIfAbsent(key, i);
+		}
+
+		StringBuilder out = new StringBuilder(rendered.length() + body.length());
+		out.append(rendered, 0, headEnd);
+		boolean[] used = new boolean[sections.size()];
+		for (Section templateSection : templateSections) {
+			Integer i = (templateSection.key != null) ? matched.get(templateSection.key) : null;
+			if (i == null) {
+				append(out, templateSection.text);
+				continue;
+			}
+
+			// The sections of the ADR that are not in the template are kept next to the section they follow
+			int first = i;
+			while (first > 0 && !used[first - 1] && !isMatched(sections, first - 1, matched)) first--;
+			int last = i;
+			while (last + 1 < sections.size() && !used[last + 1] && !isMatched(sections, last + 1, matched)) last++;
+			for (int j = first; j <= last; j++) {
+				append(out, sections.get(j).text);
+				used[j] = true;
+			}
+		}
+		for (int j = 0; j < sections.size(); j++) {
+			if (!used[j]) append(out, sections.get(j).text);
+		}
+		return out.toString();
+	}
+
+	private static boolean isMatched(List<Section> sections, int i, Map<String, Integer> matched) {
+		String key = sections.get(i).key;
+		return key != null && Integer.valueOf(i).equals(matched.get(key));
+	}
+
+	/** Appends a section, starting it on a new line */
+	private static void append(StringBuilder out, String text) {
+		if (out.length() > 0 && out.charAt(out.length() - 1) != '\n' && !text.isEmpty()) {
+			out.append(System.lineSeparator());
+		}
+		out.append(text);
+	}
+
+	/**
+	 * @return The length of the head of the ADR, i.e. up to the first heading that is not
+	 *         the status section, as read by {@link RecordLoader}
+	 */
+	private static int headLength(String text) {
+		int start = 0;
+		boolean seenTitle = false;
+		while (start < text.length()) {
+			int end = text.indexOf('\n', start);
+			int next = (end < 0) ? text.length() : end + 1;
+			String trimmed = text.substring(start, (end < 0) ? text.length() : end).trim();
+			if (!seenTitle && trimmed.startsWith("# ")) {
+				seenTitle = true;
+			} else if (trimmed.startsWith("##") && !trimmed.startsWith("## Status")) {
+				return start;
+			}
+			start = next;
+		}
+		return text.length();
+	}
+
+	/**
+	 * Splits the text at the level 2 headings (<code>## ...</code>).
+	 */
+	private static List<Section> sections(String text) {
+		List<Section> sections = new ArrayList<Section>();
+		String key = null;
+		int sectionStart = 0;
+		int start = 0;
+		while (start < text.length()) {
+			int end = text.indexOf('\n', start);
+			int next = (end < 0) ? text.length() : end + 1;
+			String trimmed = text.substring(start, (end < 0) ? text.length() : end).trim();
+			if (trimmed.startsWith("##") && !trimmed.startsWith("###")) {
+				if (start > sectionStart || key != null) sections.add(new Section(key, text.substring(sectionStart, start)));
+				key = trimmed.substring(2).trim().toLowerCase(Locale.ROOT);
+				sectionStart = start;
+			}
+			start = next;
+		}
+		if (text.length() > sectionStart || key != null) sections.add(new Section(key, text.substring(sectionStart)));
+		return sections;
+	}
+}
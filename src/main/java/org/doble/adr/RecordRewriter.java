@@ -0,0 +1,435 @@
+package org.doble.adr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the status sections of existing ADRs, as a batch.
+ *
+ * The changes (superseding an ADR, adding a link to an ADR) are first collected and then
+ * made with {@link #commit()}. Each ADR is read and written once, however many changes are
+ * made to it: its content is read, the references it already contains are parsed from the
+ * content and the content is then rewritten. Only the head of the ADR (see {@link RecordLoader}) is changed: the ADR is copied
+ * to a temporary file line by line until the end of the status section is reached, the
+ * changes are made on the way and the rest of the ADR is copied unchanged. Line endings are
+ * kept as they are.
+ *
+ * The batch is committed in two phases. First the temporary files of all the ADRs are written;
+ * if this fails for any ADR nothing has been changed. Then each ADR is backed up and replaced
+ * by its temporary file with an atomic move; if this fails the ADRs already replaced are
+ * restored from their backups. So either all the ADRs of the batch are changed or none of them.
+ *
+ * ADRs written with the Nygard style templates (with a "## Status" section) and the
+ * MADR templates (with a "* Status:" line) are supported.
+ */
+public class RecordRewriter {
+	/** The status of an ADR that has been superseded */
+	public static final String SUPERSEDED_STATUS = "Superseded";
+
+	private static final String SUPERSEDED_BY = "Superseded by";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Pattern MADR_STATUS = Pattern.compile("^(\\s*\\*\\s*Status:\\s*).*$");
+
+	/**
+	 * The changes to be made to a single ADR
+	 */
+	private static class Changes {
+		String newStatus = null;   // null if the status is kept
+		List<ParsedRecord.Link> addedLinks = new ArrayList<ParsedRecord.Link>();
+	}
+
+	// The changes to be made, in the order the ADRs were first added
+	private final Map<Path, Changes> changes = new LinkedHashMap<Path, Changes>();
+
+	/**
+	 * Marks an ADR as superseded: the status is changed to "Superseded" and the line
+	 * <code>* Superseded by [ADR n](file)</code> is added to the status section.
+	 *
+	 * @param adrFile              The ADR that has been superseded
+	 * @param supersedingId        The id of the ADR that supersedes it
+	 * @param supersedingFileName  The file name of the ADR that supersedes it
+	 * @return This rewriter
+	 */
+	public RecordRewriter addSupersededBy(Path adrFile, int supersedingId, String supersedingFileName) {
+		changesFor(adrFile).addedLinks.add(new ParsedRecord.Link(supersedingId, SUPERSEDED_BY, supersedingFileName));
+		return this;
+	}
+
+	/**
+	 * Adds the line <code>* comment [ADR n](file)</code> to the status section of an ADR.
+	 *
+	 * @param adrFile        The ADR the link is added to
+	 * @param comment        The link comment, e.g. "Amended by"
+	 * @param linkedId       The id of the ADR linked to
+	 * @param linkedFileName The file name of the ADR linked to
+	 * @return This rewriter
+	 */
+	public RecordRewriter addLink(Path adrFile, String comment, int linkedId, String linkedFileName) {
+		changesFor(adrFile).addedLinks.add(new ParsedRecord.Link(linkedId, comment, linkedFileName));
+		return this;
+	}
+
+	private Changes changesFor(Path adrFile) {
+		return changes.computeIfAbsent(adrFile, f -> new Changes());
+	}
+
+	/**
+	 * Marks a single ADR as superseded, see {@link #addSupersededBy(Path, int, String)}.
+	 *
+	 * @return true if the ADR has been changed, false if it already references the superseding
+	 *         ADR or has no status that could be changed
+	 * @throws ADRException Thrown if the ADR cannot be read or written
+	 */
+	public static boolean markSuperseded(Path adrFile, int supersedingId, String supersedingFileName) throws ADRException {
+		return !new RecordRewriter().addSupersededBy(adrFile, supersedingId, supersedingFileName).commit().isEmpty();
+	}
+
+	/**
+	 * Changes the status of a single ADR, without reading it first to check its status. The ADR
+	 * is streamed to a temporary file with the new status, which then replaces the ADR with an
+	 * atomic move, so the ADR is either changed completely or not at all. Used by
+	 * {@link StatusUpdater}, which has already read the status.
+	 *
+	 * @param adrFile The ADR
+	 * @param status  The new status
+	 * @return true if the ADR has been changed, false if it has no status that could be changed
+	 * @throws ADRException Thrown if the ADR cannot be read or written
+	 */
+	static boolean replaceStatus(Path adrFile, String status) throws ADRException {
+		Changes changes = new Changes();
+		changes.newStatus = status;
+		Path tempFile = null;
+		try {
+			tempFile = AtomicFiles.createTempSibling(adrFile);
+			boolean changed;
+			try (Reader reader = Files.newBufferedReader(adrFile, StandardCharsets.UTF_8)) {
+				changed = rewrite(reader, tempFile, changes);
+			}
+			if (!changed) return false;
+			AtomicFiles.moveReplacing(tempFile, adrFile);
+			tempFile = null;
+			return true;
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot rewrite the ADR " + adrFile + ". The ADR has not been changed.", e);
+		} finally {
+			if (tempFile != null) deleteQuietly(tempFile);
+		}
+	}
+
+	/**
+	 * Makes all the changes collected. References that an ADR already contains are not
+	 * added again and ADRs without a status are left unchanged.
+	 *
+	 * @return The ADRs that have been changed
+	 * @throws ADRException Thrown if any of the ADRs cannot be read or written, in which case
+	 *         none of the ADRs have been changed
+	 */
+	public List<Path> commit() throws ADRException {
+		Map<Path, Path> prepared = new LinkedHashMap<Path, Path>();   // ADR -> temporary file
+		Map<Path, Path> backups = new LinkedHashMap<Path, Path>();    // ADR -> backup, for the ADRs replaced
+		Path current = null;
+		boolean committed = false;
+		try {
+			// Phase 1: write the rewritten ADRs to temporary files
+			for (Map.Entry<Path, Changes> entry : changes.entrySet()) {
+				current = entry.getKey();
+				byte[] content = Files.readAllBytes(current);
+				Changes required = withoutExistingReferences(RecordLoader.load(current, content), entry.getValue());
+				if (required.addedLinks.isEmpty()) continue;
+
+				Path tempFile = AtomicFiles.createTempSibling(current);
+				prepared.put(current, tempFile);
+				boolean changed;
+				try (Reader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+					changed = rewrite(reader, tempFile, required);
+				}
+				if (!changed) {
+					Files.delete(tempFile);
+					prepared.remove(current);
+				}
+			}
+
+			// Phase 2: replace the ADRs, keeping backups until all have been replaced
+			for (Map.Entry<Path, Path> entry : prepared.entrySet()) {
+				current = entry.getKey();
+				Path backup = AtomicFiles.createTempSibling(current);
+				Files.copy(current, backup, StandardCopyOption.REPLACE_EXISTING);
+				backups.put(current, backup);
+				AtomicFiles.moveReplacing(entry.getValue(), current);
+			}
+			committed = true;
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot rewrite the ADR " + current + ". No ADR has been changed.", e);
+		} finally {
+			if (!committed) {
+				restore(backups);
+				prepared.values().forEach(RecordRewriter::deleteQuietly);
+			}
+			backups.values().forEach(RecordRewriter::deleteQuietly);
+		}
+
+		changes.clear();
+		return new ArrayList<Path>(prepared.keySet());
+	}
+
+	/**
+	 * Moves the backups back over the ADRs they were taken from. The backups that cannot be
+	 * restored are kept, all others are removed from the map.
+	 */
+	private static void restore(Map<Path, Path> backups) {
+		Iterator<Map.Entry<Path, Path>> iterator = backups.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Path, Path> entry = iterator.next();
+			try {
+				AtomicFiles.moveReplacing(entry.getValue(), entry.getKey());
+				iterator.remove();
+			} catch (IOException e) {
+				// Nothing more can be done, keep the backup so the ADR can be restored by hand
+			}
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// Nothing more can be done
+		}
+	}
+
+	/**
+	 * @return The changes for the ADR without the references the ADR already contains
+	 */
+	private static Changes withoutExistingReferences(ParsedRecord record, Changes requested) {
+		Changes required = new Changes();
+		for (ParsedRecord.Link link : requested.addedLinks) {
+			boolean exists;
+			if (link.comment.equals(SUPERSEDED_BY)) {
+				exists = record.getSupersededBy().contains(link.id);
+				if (!exists) required.newStatus = SUPERSEDED_STATUS;
+			} else {
+				exists = record.getLinks().stream()
+						.anyMatch(l -> l.id == link.id && l.comment.equalsIgnoreCase(link.comment));
+			}
+			if (!exists) required.addedLinks.add(link);
+		}
+		return required;
+	}
+
+	/**
+	 * Streams the content of the ADR to the temporary file, replacing the status (if a new status is given)
+	 * and adding the links to the status section.
+	 *
+	 * @return true if the ADR has been changed
+	 */
+	private static boolean rewrite(Reader source, Path tempFile, Changes changes) throws IOException {
+		List<String> addedLines = new ArrayList<String>(changes.addedLinks.size());
+		for (ParsedRecord.Link link : changes.addedLinks) {
+			addedLines.add("* " + link.comment + " [ADR " + link.id + "](" + link.fileName + ")");
+		}
+		String newStatus = changes.newStatus;
+
+		boolean changed = false;
+		boolean statusReplaced = false;
+		try (Reader reader = new BufferedReader(source, BUFFER_SIZE);
+			 Writer writer = new BufferedWriter(Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			LineReader lines = new LineReader(reader);
+			String lineSeparator = System.lineSeparator();
+			boolean inStatus = false;
+			boolean seenTitle = false;
+			boolean lastLineTerminated = true;
+			boolean lastWasReference = false;               // The last line of the status section is a reference
+			StringBuilder heldLines = new StringBuilder();  // Empty lines at the end of the status section so far
+			String line;
+			while ((line = lines.readLine()) != null) {
+				String content = lines.content();
+				String trimmed = content.trim();
+				lastLineTerminated = !lines.terminator().isEmpty();
+				if (lastLineTerminated) lineSeparator = lines.terminator();
+
+				if (!seenTitle && trimmed.startsWith("# ")) {
+					seenTitle = true;
+					writer.write(line);
+					continue;
+				}
+
+				if (trimmed.startsWith("## Status")) {
+					inStatus = true;
+					writer.write(line);
+					continue;
+				}
+
+				Matcher madrStatus = MADR_STATUS.matcher(content);
+				if (!changed && !inStatus && madrStatus.matches()) {
+					// MADR: replace the status and add the references on the next lines
+					writer.write((newStatus == null) ? content : madrStatus.group(1) + newStatus.toLowerCase());
+					writer.write(lineSeparator);
+					writeLines(writer, addedLines, lineSeparator);
+					changed = true;
+					statusReplaced = true;
+					continue;
+				}
+
+				if (trimmed.startsWith("##")) {
+					// End of the head. If it was the status section add the references at its end,
+					// directly after the existing references so that they stay a single list.
+					if (inStatus && !changed) {
+						if (lastWasReference) {
+							writeLines(writer, addedLines, lineSeparator);
+							writer.write(heldLines.toString());
+						} else {
+							writer.write(heldLines.toString());
+							if (!addedLines.isEmpty()) {
+								writeLines(writer, addedLines, lineSeparator);
+								writer.write(lineSeparator);
+							}
+						}
+						changed = true;
+					}
+					writer.write(line);
+					break;
+				}
+
+				if (inStatus && !changed) {
+					if (trimmed.isEmpty()) {
+						heldLines.append(line);
+						continue;
+					}
+					writer.write(heldLines.toString());
+					heldLines.setLength(0);
+					lastWasReference = RecordLoader.isReference(trimmed);
+				}
+
+				if (newStatus != null && inStatus && !statusReplaced && !trimmed.isEmpty() && !trimmed.startsWith("*")
+						&& !RecordLoader.isReference(trimmed)) {
+					// Nygard: the first line of the status section is the status
+					int indent = content.indexOf(trimmed);
+					writer.write(content.substring(0, indent) + newStatus + lines.terminator());
+					statusReplaced = true;
+					continue;
+				}
+
+				writer.write(line);
+			}
+
+			if (line == null && inStatus && !changed) {
+				// The status section is the last section of the ADR
+				if (lastWasReference) {
+					if (!addedLines.isEmpty() && heldLines.length() == 0 && !lastLineTerminated) writer.write(lineSeparator);
+					writeLines(writer, addedLines, lineSeparator);
+					writer.write(heldLines.toString());
+				} else {
+					writer.write(heldLines.toString());
+					if (!addedLines.isEmpty()) {
+						if (!lastLineTerminated) writer.write(lineSeparator);
+						writer.write(lineSeparator);
+						writeLines(writer, addedLines, lineSeparator);
+					}
+				}
+				changed = true;
+			}
+
+			// Copy the rest of the ADR unchanged
+			lines.writePending(writer);
+			char[] buffer = new char[BUFFER_SIZE];
+			int n;
+			while ((n = reader.read(buffer)) != -1) {
+				writer.write(buffer, 0, n);
+			}
+		}
+		// Nothing has been changed if only the status was to be changed, but the ADR has none
+		return changed && (statusReplaced || newStatus == null || !addedLines.isEmpty());
+	}
+
+	private static void writeLines(Writer writer, List<String> lines, String lineSeparator) throws IOException {
+		for (String line : lines) {
+			writer.write(line);
+			writer.write(lineSeparator);
+		}
+	}
+
+	/**
+	 * Reads lines including their terminators, so that they can be copied unchanged.
+	 */
+	private static class LineReader {
+		private final Reader reader;
+		private final StringBuilder line = new StringBuilder(128);
+		private String terminator = "";
+		private int pending = -1;   // A character read ahead after a '\r'
+
+		LineReader(Reader reader) {
+			this.reader = reader;
+		}
+
+		/** @return The next line including its terminator, or null at the end of the file */
+		String readLine() throws IOException {
+			line.setLength(0);
+			terminator = "";
+			int c;
+			while ((c = next()) != -1) {
+				if (c == '\n') {
+					terminator = "\n";
+					break;
+				}
+				if (c == '\r') {
+					int following = next();
+					if (following == '\n') {
+						terminator = "\r\n";
+					} else {
+						terminator = "\r";
+						pending = following;
+					}
+					break;
+				}
+				line.append((char) c);
+			}
+			if (c == -1 && line.length() == 0) return null;
+			return line + terminator;
+		}
+
+		/** @return The last line read without its terminator */
+		String content() {
+			return line.toString();
+		}
+
+		/** @return The terminator of the last line read, empty if the file ended without one */
+		String terminator() {
+			return terminator;
+		}
+
+		/** Writes the character read ahead, if any */
+		void writePending(Writer writer) throws IOException {
+			if (pending != -1) {
+				writer.write(pending);
+				pending = -1;
+			}
+		}
+
+		private int next() throws IOException {
+			if (pending != -1) {
+				int c = pending;
+				pending = -1;
+				return c;
+			}
+			return reader.read();
+		}
+	}
+}
@@ -0,0 +1,883 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Full text index of the ADRs, stored in the <code>.adr</code> directory.
+ *
+ * The index is an inverted index mapping each term (a lower case word) to the ADRs
+ * containing it and the positions of the term in each ADR. The postings of a term are
+ * held in a single byte array as variable length integers:
+ * <code>
+ *     (id - previous id) (frequency) (position - previous position) ... (id - previous id) ...
+ * </code>
+ * so even the postings of thousands of ADRs take little space and a query only reads the
+ * postings of the terms it contains, never the ADRs themselves. Each ADR also has the list of
+ * its terms (a forward index), so removing an ADR only rewrites the postings of its own terms.
+ *
+ * The index file holds the ADRs with the numbers of their terms, then a dictionary of the terms
+ * in order ({@value #TERM_ENTRY_SIZE} bytes per term: references to the term and its postings,
+ * the number of ADRs and the last id), the terms and the postings. The file is read in place:
+ * opening the index only decodes the ADRs, a term is found by a binary search of the dictionary
+ * and its postings are only decoded when the term is queried or changed.
+ *
+ * The index is kept consistent with an {@link ADRIndex}: when it is opened the ADRs that are
+ * new or have been modified since they were indexed are indexed again and those that no
+ * longer exist are removed. ADRs written by {@link Record#store()} are added with
+ * {@link #put(Path)}.
+ *
+ * Queries consist of words, which all have to be found in an ADR. A word ending with
+ * <code>*</code> matches all the terms starting with the word and words in double quotes
+ * are a phrase that has to be found as written. The matching ADRs are ranked by TF-IDF.
+ *
+ * Usage:
+ * <code>
+ *     SearchIndex searchIndex = SearchIndex.open(rootPath.resolve(".adr"), index);
+ *     for (SearchIndex.Hit hit : searchIndex.search("\"message queue\" perf*")) {
+ *         ...
+ *     }
+ *     searchIndex.save();
+ * </code>
+ */
+public class SearchIndex {
+	public static final String INDEX_FILE_NAME = "search";
+
+	private static final String FORMAT_HEADER = "# adr-j search 2";
+
+	// Offsets in an entry of the dictionary of the index file
+	private static final int TERM = 0;
+	private static final int TERM_LENGTH = 4;
+	private static final int POSTINGS = 8;
+	private static final int POSTINGS_LENGTH = 12;
+	private static final int POSTINGS_COUNT = 16;
+	private static final int LAST_ID = 20;
+	private static final int TERM_ENTRY_SIZE = 24;
+
+	// Longer words (e.g. encoded images) are not indexed
+	private static final int MAX_TERM_LENGTH = 64;
+
+	// Indexes already opened, keyed by the URI of the index file, least recently used first
+	private static final int MAX_CACHED_INDEXES = 8;
+	private static final Map<String, SearchIndex> openIndexes = new LinkedHashMap<String, SearchIndex>(MAX_CACHED_INDEXES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SearchIndex> eldest) {
+			return size() > MAX_CACHED_INDEXES;
+		}
+	};
+
+	/**
+	 * An ADR found by a query.
+	 */
+	public static class Hit {
+		public final int id;
+		public final String fileName;
+		public final double score;   // Higher is better
+
+		Hit(int id, String fileName, double score) {
+			this.id = id;
+			this.fileName = fileName;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * An ADR in the index.
+	 */
+	private static class Document {
+		final String fileName;
+		final long modified;        // Last modification time of the ADR file when it was indexed, see ADRIndex.trusted()
+		final String[] terms;       // The terms of the ADR, null if it was read from the index file
+		final int[] termNumbers;    // The numbers of the terms in the dictionary of the index file, if read from it
+
+		Document(String fileName, long modified, String[] terms, int[] termNumbers) {
+			this.fileName = fileName;
+			this.modified = modified;
+			this.terms = terms;
+			this.termNumbers = termNumbers;
+		}
+	}
+
+	/**
+	 * The postings of a term, in ascending order of the ADR id.
+	 */
+	private static class Postings {
+		int count = 0;       // Number of ADRs containing the term
+		int lastId = 0;      // Id of the last ADR in the postings
+		byte[] bytes = new byte[16];
+		int length = 0;
+
+		void write(int value) {
+			if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+			while ((value & ~0x7F) != 0) {
+				bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		/** Appends an ADR, which must have a higher id than all the ADRs in the postings */
+		void append(int id, int[] positions, int positionCount) {
+			write(id - lastId);
+			write(positionCount);
+			int previous = 0;
+			for (int i = 0; i < positionCount; i++) {
+				write(positions[i] - previous);
+				previous = positions[i];
+			}
+			count++;
+			lastId = id;
+		}
+	}
+
+	/**
+	 * Reads postings one ADR at a time.
+	 */
+	private static class PostingsReader {
+		private final Postings postings;
+		private int offset = 0;
+		private int remaining;
+		int id = 0;
+		int frequency = 0;
+		int[] positions = new int[8];
+
+		PostingsReader(Postings postings) {
+			this.postings = postings;
+			this.remaining = postings.count;
+		}
+
+		/** @return true if there is another ADR, which is then in id, frequency and positions */
+		boolean next() {
+			if (remaining-- <= 0) return false;
+			id += read();
+			frequency = read();
+			if (positions.length < frequency) positions = new int[frequency];
+			int position = 0;
+			for (int i = 0; i < frequency; i++) {
+				position += read();
+				positions[i] = position;
+			}
+			return true;
+		}
+
+		private int read() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (offset >= postings.length) throw new IndexFile.DamagedException("Postings end in a variable length integer");
+				b = postings.bytes[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+
+	private final Path indexPath;
+	private final TreeMap<Integer, Document> documents = new TreeMap<Integer, Document>();
+	// The terms read from the index file or changed since it was read, ordered for prefix queries.
+	// Null if the term has been removed.
+	private final TreeMap<String, Postings> terms = new TreeMap<String, Postings>();
+	private ByteBuffer file;     // The content of the index file, null if there is none
+	private int storedTermCount;  // The number of terms in the dictionary of the index file
+	private int dictionary;       // Offsets of the dictionary, the terms and the postings in the index file
+	private int termStrings;
+	private int postingsBytes;
+	private ADRIndex index;       // The ADR index last refreshed from, to rebuild the index if the file is damaged
+	private long fingerprint = 0;  // Of the documents, as of the ADR index (see ADRIndex#fingerprint())
+	private int racyDocuments = 0;  // Documents whose modification time is not trusted, so they are indexed again
+	private boolean changed = false;
+	private String indexFileState = "";  // State of the index file when last read or written
+
+	private SearchIndex(Path adrPath) {
+		this.indexPath = adrPath.resolve(INDEX_FILE_NAME);
+	}
+
+	/**
+	 * Opens the search index stored in the specified .adr directory and brings it up to date
+	 * with the ADR index. If no search index exists it is built.
+	 *
+	 * @param adrPath The .adr directory containing the index file
+	 * @param index   The index of the ADRs, see {@link ADRIndex#open(Path, Path, ADRFilter)}
+	 * @return A search index consistent with the ADR index
+	 * @throws ADRException Thrown if an ADR that has to be indexed cannot be read
+	 */
+	public static SearchIndex open(Path adrPath, ADRIndex index) throws ADRException {
+		Path indexPath = adrPath.resolve(INDEX_FILE_NAME);
+		String key = indexPath.toUri().toString();
+
+		synchronized (openIndexes) {
+			SearchIndex searchIndex = openIndexes.get(key);
+			if (searchIndex == null || !searchIndex.indexFileState.equals(ADRIndex.fileState(indexPath))) {
+				searchIndex = new SearchIndex(adrPath);
+				searchIndex.load();
+				openIndexes.put(key, searchIndex);
+			}
+			searchIndex.refresh(index);
+			return searchIndex;
+		}
+	}
+
+	/**
+	 * Forgets the indexes held in memory, so that the next {@link #open(Path, ADRIndex)} reads
+	 * the index file again.
+	 */
+	static void clearCache() {
+		synchronized (openIndexes) {
+			openIndexes.clear();
+		}
+	}
+
+	/**
+	 * Reads the ADRs from the index file. The dictionary and the postings are read when they are
+	 * needed. A missing or unreadable index file results in an empty index that is rebuilt on the
+	 * next refresh.
+	 */
+	private void load() {
+		indexFileState = ADRIndex.fileState(indexPath);
+		if (!Files.exists(indexPath)) return;
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+			if (!FORMAT_HEADER.equals(readString(buffer))) return;  // Unknown format, so rebuild
+
+			int documentCount = buffer.getInt();
+			for (int i = 0; i < documentCount; i++) {
+				int id = buffer.getInt();
+				String fileName = readString(buffer);
+				long modified = buffer.getLong();
+				int[] termNumbers = new int[buffer.getInt()];
+				for (int t = 0; t < termNumbers.length; t++) termNumbers[t] = buffer.getInt();
+				documents.put(id, new Document(fileName, modified, null, termNumbers));
+				fingerprint ^= ADRIndex.fingerprint(id, fileName, modified);
+				if (modified == ADRIndex.UNKNOWN) racyDocuments++;
+			}
+
+			storedTermCount = buffer.getInt();
+			int stringsLength = buffer.getInt();
+			int postingsLength = buffer.getInt();
+			dictionary = buffer.position();
+			if (storedTermCount < 0 || stringsLength < 0 || postingsLength < 0
+					|| dictionary + (long) storedTermCount * TERM_ENTRY_SIZE + stringsLength + postingsLength != buffer.limit()) {
+				throw new IOException("The parts of the search index do not fit its length");
+			}
+			termStrings = dictionary + storedTermCount * TERM_ENTRY_SIZE;
+			postingsBytes = termStrings + stringsLength;
+			for (Document document : documents.values()) {
+				for (int number : document.termNumbers) {
+					if (number < 0 || number >= storedTermCount) throw new IOException("Unknown term of " + document.fileName);
+				}
+			}
+			file = buffer;
+		} catch (IOException | RuntimeException e) {
+			// The index is only a cache, so start again from an empty index
+			documents.clear();
+			fingerprint = 0;
+			racyDocuments = 0;
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return The term with the number in the dictionary of the index file
+	 * @throws IndexFile.DamagedException Thrown if the entry of the term is damaged
+	 */
+	private String storedTerm(int number) {
+		int entry = dictionary + number * TERM_ENTRY_SIZE;
+		int offset = file.getInt(entry + TERM);
+		int length = file.getInt(entry + TERM_LENGTH);
+		if (offset < 0 || length < 0 || (long) offset + length > postingsBytes - termStrings) {
+			throw new IndexFile.DamagedException("Damaged term " + number + " in " + indexPath);
+		}
+		byte[] bytes = new byte[length];
+		((ByteBuffer) file.duplicate().position(termStrings + offset)).get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The postings of the term with the number in the dictionary of the index file
+	 * @throws IndexFile.DamagedException Thrown if the entry of the term is damaged
+	 */
+	private Postings storedPostings(int number) {
+		int entry = dictionary + number * TERM_ENTRY_SIZE;
+		int offset = file.getInt(entry + POSTINGS);
+		Postings postings = new Postings();
+		postings.length = file.getInt(entry + POSTINGS_LENGTH);
+		postings.count = file.getInt(entry + POSTINGS_COUNT);
+		postings.lastId = file.getInt(entry + LAST_ID);
+		if (offset < 0 || postings.length < 0 || postings.count <= 0
+				|| (long) offset + postings.length > file.limit() - postingsBytes) {
+			throw new IndexFile.DamagedException("Damaged postings of term " + number + " in " + indexPath);
+		}
+		postings.bytes = new byte[postings.length];
+		((ByteBuffer) file.duplicate().position(postingsBytes + offset)).get(postings.bytes);
+		return postings;
+	}
+
+	/**
+	 * @return The number of the term in the dictionary of the index file, or (-(insertion point) - 1)
+	 *         if the index file does not contain the term
+	 */
+	private int findStored(String term) {
+		int low = 0;
+		int high = storedTermCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int order = storedTerm(middle).compareTo(term);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return The postings of the term, read from the index file the first time, or null if no ADR
+	 *         contains the term
+	 */
+	private Postings postings(String term) {
+		if (terms.containsKey(term)) return terms.get(term);
+		int number = (file != null) ? findStored(term) : -1;
+		if (number < 0) return null;
+		Postings postings = storedPostings(number);
+		terms.put(term, postings);
+		return postings;
+	}
+
+	/**
+	 * @return The terms starting with the prefix, in order. Some may have been removed since the
+	 *         index file was read, see {@link #postings(String)}.
+	 */
+	private SortedSet<String> termsStartingWith(String prefix) {
+		SortedSet<String> found = new TreeSet<String>(terms.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+		if (file != null) {
+			int number = findStored(prefix);
+			for (number = (number < 0) ? -number - 1 : number; number < storedTermCount; number++) {
+				String term = storedTerm(number);
+				if (!term.startsWith(prefix)) break;
+				found.add(term);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return The terms of an ADR in the index
+	 */
+	private List<String> termsOf(Document document) {
+		if (document.terms != null) return Arrays.asList(document.terms);
+		List<String> documentTerms = new ArrayList<String>(document.termNumbers.length);
+		for (int number : document.termNumbers) {
+			documentTerms.add(storedTerm(number));
+		}
+		return documentTerms;
+	}
+
+	/**
+	 * Rebuilds the index from the ADRs when a damaged part of the index file is found. The index
+	 * file is only a cache, so the ADRs are all read again.
+	 */
+	private void recover(IndexFile.DamagedException damaged) {
+		file = null;
+		documents.clear();
+		terms.clear();
+		fingerprint = 0;
+		racyDocuments = 0;
+		try {
+			update(index);
+		} catch (ADRException e) {
+			e.addSuppressed(damaged);
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		changed = true;
+	}
+
+	/**
+	 * Indexes the ADRs that are new or have been modified since they were indexed and
+	 * removes the ADRs that no longer exist.
+	 *
+	 * @param index The index of the ADRs
+	 * @throws ADRException Thrown if an ADR cannot be read
+	 */
+	public void refresh(ADRIndex index) throws ADRException {
+		this.index = index;
+		try {
+			update(index);
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+		}
+	}
+
+	private void update(ADRIndex index) throws ADRException {
+		// The same ADRs, so there is nothing to do, unless an ADR may have changed in the clock tick it was indexed in
+		if (fingerprint == index.fingerprint() && racyDocuments == 0) return;
+
+		Set<Integer> removed = new HashSet<Integer>(documents.keySet());
+		List<ADRIndex.Entry> modified = new ArrayList<ADRIndex.Entry>();
+		for (ADRIndex.Entry entry : index.entries()) {
+			removed.remove(entry.id);
+			Document document = documents.get(entry.id);
+			if (document == null || document.modified != entry.modified || document.modified == ADRIndex.UNKNOWN
+					|| !document.fileName.equals(entry.fileName)) {
+				modified.add(entry);
+				if (document != null) removed.add(entry.id);
+			}
+		}
+
+		removeAll(removed);
+		Path docsPath = index.getDocsPath();
+		for (ADRIndex.Entry entry : modified) {  // In ascending id order, so the postings are appended
+			add(entry.id, docsPath.resolve(entry.fileName), entry.modified);
+		}
+	}
+
+	/**
+	 * Adds (or replaces) an ADR that has just been written.
+	 *
+	 * @param path The ADR file
+	 * @throws ADRException Thrown if the ADR cannot be read
+	 */
+	public void put(Path path) throws ADRException {
+		int id = RecordLoader.load(path).getId();
+		try {
+			if (documents.containsKey(id)) removeAll(Collections.singleton(id));
+			add(id, path, ADRIndex.trusted(Files.getLastModifiedTime(path).toMillis()));
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			put(path);
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot access the ADR " + path, e);
+		}
+	}
+
+	/**
+	 * Removes an ADR that has been deleted.
+	 *
+	 * @param id The id of the ADR
+	 */
+	public void remove(int id) {
+		try {
+			if (documents.containsKey(id)) removeAll(Collections.singleton(id));
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			remove(id);
+		}
+	}
+
+	/**
+	 * Indexes an ADR that is not in the index.
+	 */
+	private void add(int id, Path path, long modified) throws ADRException {
+		String text;
+		try {
+			text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot read the ADR " + path, e);
+		}
+
+		// Collect the positions of each term
+		Map<String, int[]> positions = new HashMap<String, int[]>();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		List<String> tokens = tokenize(text);
+		for (int position = 0; position < tokens.size(); position++) {
+			String term = tokens.get(position);
+			if (term.length() > MAX_TERM_LENGTH) continue;
+			int[] termPositions = positions.get(term);
+			int count = counts.getOrDefault(term, 0);
+			if (termPositions == null) {
+				termPositions = new int[4];
+			} else if (count == termPositions.length) {
+				termPositions = Arrays.copyOf(termPositions, count * 2);
+			}
+			termPositions[count] = position;
+			positions.put(term, termPositions);
+			counts.put(term, count + 1);
+		}
+
+		for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+			Postings postings = postings(entry.getKey());
+			if (postings == null) {
+				postings = new Postings();
+				terms.put(entry.getKey(), postings);
+			}
+			int count = counts.get(entry.getKey());
+			if (postings.count == 0 || id > postings.lastId) {
+				postings.append(id, entry.getValue(), count);
+			} else {
+				terms.put(entry.getKey(), insert(postings, id, entry.getValue(), count));
+			}
+		}
+
+		documents.put(id, new Document(path.getFileName().toString(), modified, positions.keySet().toArray(new String[0]), null));
+		fingerprint ^= ADRIndex.fingerprint(id, path.getFileName().toString(), modified);
+		if (modified == ADRIndex.UNKNOWN) racyDocuments++;
+		changed = true;
+	}
+
+	/**
+	 * @return A copy of the postings with the ADR inserted in id order
+	 */
+	private static Postings insert(Postings postings, int id, int[] positions, int positionCount) {
+		Postings result = new Postings();
+		PostingsReader reader = new PostingsReader(postings);
+		boolean inserted = false;
+		while (reader.next()) {
+			if (!inserted && reader.id > id) {
+				result.append(id, positions, positionCount);
+				inserted = true;
+			}
+			result.append(reader.id, reader.positions, reader.frequency);
+		}
+		if (!inserted) result.append(id, positions, positionCount);
+		return result;
+	}
+
+	/**
+	 * Removes ADRs from the index. Only the postings of the terms of the ADRs are read and
+	 * written again.
+	 */
+	private void removeAll(Set<Integer> ids) {
+		if (ids.isEmpty()) return;
+		if (ids.containsAll(documents.keySet())) {
+			// All the ADRs, e.g. when they are all indexed again, so no postings are kept
+			file = null;
+			terms.clear();
+			documents.clear();
+			fingerprint = 0;
+			racyDocuments = 0;
+			changed = true;
+			return;
+		}
+
+		Set<String> affected = new HashSet<String>();
+		for (Integer id : ids) {
+			Document document = documents.get(id);
+			if (document != null) affected.addAll(termsOf(document));
+		}
+		for (String term : affected) {
+			Postings postings = postings(term);
+			if (postings == null) continue;
+
+			Postings remaining = new Postings();
+			PostingsReader reader = new PostingsReader(postings);
+			while (reader.next()) {
+				if (!ids.contains(reader.id)) remaining.append(reader.id, reader.positions, reader.frequency);
+			}
+			terms.put(term, (remaining.count == 0) ? null : remaining);
+		}
+
+		for (Integer id : ids) {
+			Document document = documents.remove(id);
+			if (document != null) {
+				fingerprint ^= ADRIndex.fingerprint(id, document.fileName, document.modified);
+				if (document.modified == ADRIndex.UNKNOWN) racyDocuments--;
+			}
+		}
+		changed = true;
+	}
+
+	/**
+	 * Writes the index to the .adr directory if it has changed since it was opened.
+	 *
+	 * @throws ADRException Thrown if the index file cannot be written
+	 */
+	public void save() throws ADRException {
+		if (!changed) return;
+
+		try {
+			byte[] content;
+			try {
+				content = encode();
+			} catch (IndexFile.DamagedException e) {
+				recover(e);
+				content = encode();
+			}
+
+			LocalFiles.ignore(indexPath.getParent());
+			// A temporary file of its own, as other processes may be saving the index at the same time
+			Path tempPath = AtomicFiles.createTempSibling(indexPath);
+			try {
+				Files.write(tempPath, content);
+				AtomicFiles.moveReplacing(tempPath, indexPath);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+			indexFileState = ADRIndex.fileState(indexPath);
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Unable to write the search index " + indexPath, e);
+		}
+		changed = false;
+	}
+
+	/**
+	 * @return The content of the index file. The terms of the index file read are merged with the
+	 *         terms read or changed since, and the terms are numbered again.
+	 */
+	private byte[] encode() throws IOException {
+		ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+		DataOutputStream dictionaryOut = new DataOutputStream(dictionaryBytes);
+		ByteArrayOutputStream stringsOut = new ByteArrayOutputStream();
+		ByteArrayOutputStream postingsOut = new ByteArrayOutputStream();
+		int[] renumbered = new int[file != null ? storedTermCount : 0];     // Number in the index file -> new number
+		Map<String, Integer> numbers = new HashMap<String, Integer>();      // Term read or changed -> new number
+
+		int termCount = 0;
+		int number = 0;
+		Iterator<Map.Entry<String, Postings>> changedTerms = terms.entrySet().iterator();
+		Map.Entry<String, Postings> changedTerm = changedTerms.hasNext() ? changedTerms.next() : null;
+		String storedTerm = (number < renumbered.length) ? storedTerm(number) : null;
+		while (changedTerm != null || storedTerm != null) {
+			int order = (changedTerm == null) ? 1 : (storedTerm == null) ? -1 : changedTerm.getKey().compareTo(storedTerm);
+			String term;
+			Postings postings;
+			if (order <= 0) {
+				term = changedTerm.getKey();
+				postings = changedTerm.getValue();
+				changedTerm = changedTerms.hasNext() ? changedTerms.next() : null;
+				if (postings != null) numbers.put(term, termCount);
+			} else {
+				term = storedTerm;
+				postings = storedPostings(number);
+			}
+			if (order >= 0) {
+				renumbered[number] = termCount;
+				number++;
+				storedTerm = (number < renumbered.length) ? storedTerm(number) : null;
+			}
+			if (postings == null) continue;  // Removed
+
+			byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+			dictionaryOut.writeInt(stringsOut.size());
+			dictionaryOut.writeInt(termBytes.length);
+			dictionaryOut.writeInt(postingsOut.size());
+			dictionaryOut.writeInt(postings.length);
+			dictionaryOut.writeInt(postings.count);
+			dictionaryOut.writeInt(postings.lastId);
+			stringsOut.write(termBytes);
+			postingsOut.write(postings.bytes, 0, postings.length);
+			termCount++;
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream(dictionaryBytes.size() + stringsOut.size() + postingsOut.size() + 64 * documents.size());
+		DataOutputStream out = new DataOutputStream(content);
+		writeString(out, FORMAT_HEADER);
+		out.writeInt(documents.size());
+		for (Map.Entry<Integer, Document> entry : documents.entrySet()) {
+			Document document = entry.getValue();
+			out.writeInt(entry.getKey());
+			writeString(out, document.fileName);
+			out.writeLong(document.modified);
+			if (document.terms != null) {
+				out.writeInt(document.terms.length);
+				for (String term : document.terms) out.writeInt(numbers.get(term));
+			} else {
+				out.writeInt(document.termNumbers.length);
+				for (int termNumber : document.termNumbers) out.writeInt(renumbered[termNumber]);
+			}
+		}
+		out.writeInt(termCount);
+		out.writeInt(stringsOut.size());
+		out.writeInt(postingsOut.size());
+		dictionaryBytes.writeTo(out);
+		stringsOut.writeTo(out);
+		postingsOut.writeTo(out);
+		out.flush();
+		return content.toByteArray();
+	}
+
+	/**
+	 * Finds the ADRs matching a query.
+	 *
+	 * @param query Words to be found in the ADRs, see {@link SearchIndex}
+	 * @return The ADRs containing all the words of the query, best match first
+	 */
+	public List<Hit> search(String query) {
+		Map<Integer, Double> scores;
+		try {
+			scores = score(query);
+		} catch (IndexFile.DamagedException e) {
+			recover(e);
+			scores = score(query);
+		}
+
+		List<Hit> hits = new ArrayList<Hit>();
+		if (scores == null) return hits;
+		for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+			hits.add(new Hit(entry.getKey(), documents.get(entry.getKey()).fileName, entry.getValue()));
+		}
+		hits.sort((a, b) -> (a.score != b.score) ? Double.compare(b.score, a.score) : Integer.compare(a.id, b.id));
+		return hits;
+	}
+
+	/**
+	 * @return The scores of the ADRs containing all the words of the query, null if the query has no words
+	 */
+	private Map<Integer, Double> score(String query) {
+		Map<Integer, Double> scores = null;
+		for (List<String> clause : parseQuery(query)) {
+			Map<Integer, Double> clauseScores;
+			if (clause.size() == 1 && clause.get(0).endsWith("*")) {
+				clauseScores = matchPrefix(clause.get(0).substring(0, clause.get(0).length() - 1));
+			} else if (clause.size() == 1) {
+				clauseScores = matchTerm(clause.get(0));
+			} else {
+				clauseScores = matchPhrase(clause);
+			}
+
+			if (scores == null) {
+				scores = clauseScores;
+			} else {
+				// Only keep the ADRs matching all the clauses
+				Map<Integer, Double> combined = new HashMap<Integer, Double>();
+				for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+					Double score = clauseScores.get(entry.getKey());
+					if (score != null) combined.put(entry.getKey(), entry.getValue() + score);
+				}
+				scores = combined;
+			}
+			if (scores.isEmpty()) break;
+		}
+		return scores;
+	}
+
+	private Map<Integer, Double> matchTerm(String term) {
+		Map<Integer, Double> scores = new HashMap<Integer, Double>();
+		Postings postings = postings(term);
+		if (postings == null) return scores;
+
+		double idf = idf(postings);
+		PostingsReader reader = new PostingsReader(postings);
+		while (reader.next()) {
+			scores.put(reader.id, tf(reader.frequency) * idf);
+		}
+		return scores;
+	}
+
+	private Map<Integer, Double> matchPrefix(String prefix) {
+		Map<Integer, Double> scores = new HashMap<Integer, Double>();
+		for (String term : termsStartingWith(prefix)) {
+			Postings postings = postings(term);
+			if (postings == null) continue;  // Removed
+			double idf = idf(postings);
+			PostingsReader reader = new PostingsReader(postings);
+			while (reader.next()) {
+				scores.merge(reader.id, tf(reader.frequency) * idf, Double::sum);
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * Finds the ADRs containing the terms one after the other. The positions of the first
+	 * term where the phrase can start are narrowed down term by term.
+	 */
+	private Map<Integer, Double> matchPhrase(List<String> phrase) {
+		Map<Integer, Double> scores = new HashMap<Integer, Double>();
+		double idf = 0;
+		Map<Integer, BitSet> starts = null;   // ADR id -> positions where the phrase can start
+		for (int i = 0; i < phrase.size(); i++) {
+			Postings postings = postings(phrase.get(i));
+			if (postings == null) return scores;
+			idf += idf(postings);
+
+			Map<Integer, BitSet> next = new HashMap<Integer, BitSet>();
+			PostingsReader reader = new PostingsReader(postings);
+			while (reader.next()) {
+				BitSet previous = (starts == null) ? null : starts.get(reader.id);
+				if (starts != null && previous == null) continue;
+
+				BitSet current = new BitSet();
+				for (int p = 0; p < reader.frequency; p++) {
+					int start = reader.positions[p] - i;
+					if (start >= 0 && (previous == null || previous.get(start))) current.set(start);
+				}
+				if (!current.isEmpty()) next.put(reader.id, current);
+			}
+			starts = next;
+			if (starts.isEmpty()) return scores;
+		}
+
+		for (Map.Entry<Integer, BitSet> entry : starts.entrySet()) {
+			scores.put(entry.getKey(), tf(entry.getValue().cardinality()) * idf);
+		}
+		return scores;
+	}
+
+	private static double tf(int frequency) {
+		return 1 + Math.log(frequency);
+	}
+
+	private double idf(Postings postings) {
+		return Math.log(1 + (double) documents.size() / postings.count);
+	}
+
+	/**
+	 * Splits a query into clauses. Each clause is a single term (ending with <code>*</code> for
+	 * a prefix) or the terms of a phrase.
+	 */
+	static List<List<String>> parseQuery(String query) {
+		List<List<String>> clauses = new ArrayList<List<String>>();
+		String[] parts = query.split("\"", -1);
+		for (int i = 0; i < parts.length; i++) {
+			if (i % 2 == 1) {
+				// Inside quotes
+				List<String> phrase = tokenize(parts[i]);
+				if (!phrase.isEmpty()) clauses.add(phrase);
+				continue;
+			}
+			for (String word : parts[i].trim().split("\\s+")) {
+				boolean prefix = word.endsWith("*");
+				List<String> wordTerms = tokenize(word);
+				if (wordTerms.isEmpty()) continue;
+				if (prefix && wordTerms.size() == 1) {
+					clauses.add(Collections.singletonList(wordTerms.get(0) + "*"));
+				} else {
+					clauses.add(wordTerms);  // E.g. "event-driven" is a phrase of two terms
+				}
+			}
+		}
+		return clauses;
+	}
+
+	/**
+	 * @return The terms of the text: the sequences of letters and digits, in lower case
+	 */
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder token = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = (i < text.length()) ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				token.append(Character.toLowerCase(c));
+			} else if (token.length() > 0) {
+				tokens.add(token.toString());
+				token.setLength(0);
+			}
+		}
+		return tokens;
+	}
+}
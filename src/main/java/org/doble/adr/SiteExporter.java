@@ -0,0 +1,484 @@
+package org.doble.adr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exports the ADRs as a static HTML site: a page for each ADR, with a table of the ADRs it
+ * supersedes, is superseded by, links to and is referenced by, and an index page listing all the ADRs.
+ *
+ * The export is incremental. For each ADR the hash of its content and the hash of its page
+ * (the content together with the titles and statuses of the related ADRs shown in the table)
+ * are stored in the file <code>export</code> of the <code>.adr</code> directory. A page is only
+ * rendered again if its hash has changed, so changing an ADR renders its own page, the pages
+ * of the ADRs related to it if its title or status changed, and the index page. The content of
+ * an ADR is only read again if its modification time or size has changed.
+ *
+ * The pages are rendered in parallel with a fork/join pool, in the same way as {@link ADRLinter}:
+ * each task returns the pages it has handled and no state is shared between the threads.
+ *
+ * Usage:
+ * <code>
+ *     SiteExporter.Result result = new SiteExporter(adrPath, index, sitePath).export(false);
+ *     index.save();
+ * </code>
+ */
+public class SiteExporter {
+	public static final String MANIFEST_FILE_NAME = "export";
+	public static final String INDEX_PAGE = "index.html";
+	public static final String STYLE_SHEET = "style.css";
+
+	private static final String FORMAT_HEADER = "# adr-j export 1";
+	private static final String LAYOUT_VERSION = "1";   // Change when the layout of the pages changes, so all pages are rendered again
+	private static final int PAGES_PER_TASK = 16;
+	private static final long RACY_INTERVAL = 2000;     // Milliseconds, see ADRIndex
+	private static final long UNKNOWN = -1;
+
+	private static final String STYLE = "body { font-family: sans-serif; max-width: 50em; margin: 0 auto; padding: 1em; line-height: 1.4; }\n"
+			+ "nav { margin-bottom: 1em; }\n"
+			+ "table { border-collapse: collapse; }\n"
+			+ "th, td { text-align: left; vertical-align: top; padding: 0.25em 0.75em 0.25em 0; border-bottom: 1px solid #ddd; }\n"
+			+ "aside { margin-top: 2em; }\n"
+			+ "pre { background: #f6f6f6; padding: 0.5em; overflow: auto; }\n";
+
+	/**
+	 * The outcome of an export.
+	 */
+	public static class Result {
+		public final List<Path> written;   // The pages written, in order of the ADR ids and then the index page
+		public final List<Path> removed;   // The pages of ADRs that no longer exist
+		public final int adrCount;
+
+		Result(List<Path> written, List<Path> removed, int adrCount) {
+			this.written = Collections.unmodifiableList(written);
+			this.removed = Collections.unmodifiableList(removed);
+			this.adrCount = adrCount;
+		}
+	}
+
+	/**
+	 * The state of the page of an ADR, as stored in the manifest.
+	 */
+	private static class Page {
+		final String fileName;
+		final long modified;       // Of the ADR file, UNKNOWN if the content hash is not trusted
+		final long size;
+		final String sourceHash;
+		final String pageHash;
+		boolean written;           // Rendered by this export, not stored
+
+		Page(String fileName, long modified, long size, String sourceHash, String pageHash) {
+			this.fileName = fileName;
+			this.modified = modified;
+			this.size = size;
+			this.sourceHash = sourceHash;
+			this.pageHash = pageHash;
+		}
+	}
+
+	/**
+	 * An ADR whose page is to be checked and, if it has changed, rendered.
+	 */
+	private static class Job {
+		final ADRIndex.Entry entry;
+		final BasicFileAttributes attributes;
+		final String navigation;   // The HTML of the table of the related ADRs
+		final Page previous;       // Null if the page has not been exported before
+
+		Job(ADRIndex.Entry entry, BasicFileAttributes attributes, String navigation, Page previous) {
+			this.entry = entry;
+			this.attributes = attributes;
+			this.navigation = navigation;
+			this.previous = previous;
+		}
+	}
+
+	private final Path manifestPath;
+	private final ADRIndex index;
+	private final Path docsPath;
+	private final Path sitePath;
+	private final int parallelism;
+	private Set<String> fileNames = Collections.emptySet();   // Of the ADRs exported, to recognise links to ADRs
+
+	/**
+	 * @param adrPath  The .adr directory, where the manifest of the export is stored
+	 * @param index    The index of the ADRs to be exported
+	 * @param sitePath The directory the site is written to
+	 */
+	public SiteExporter(Path adrPath, ADRIndex index, Path sitePath) {
+		this(adrPath, index, sitePath, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param adrPath     The .adr directory, where the manifest of the export is stored
+	 * @param index       The index of the ADRs to be exported
+	 * @param sitePath    The directory the site is written to
+	 * @param parallelism The number of threads used to render the pages
+	 */
+	public SiteExporter(Path adrPath, ADRIndex index, Path sitePath, int parallelism) {
+		this.manifestPath = adrPath.resolve(MANIFEST_FILE_NAME);
+		this.index = index;
+		this.docsPath = index.getDocsPath();
+		this.sitePath = sitePath;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Exports the ADRs, rendering only the pages that have changed since the last export.
+	 * The entries of the index are brought up to date with ADRs that have been edited, so the
+	 * index should be saved afterwards.
+	 *
+	 * @param force Render all the pages, even if they have not changed
+	 * @return The pages written and removed
+	 * @throws ADRException Thrown if an ADR cannot be read or a page cannot be written
+	 */
+	public Result export(boolean force) throws ADRException {
+		Map<String, Page> previous = new HashMap<String, Page>();
+		String previousIndexHash = loadManifest(previous);
+
+		// The index only notices ADRs edited in place if the directory has changed as well
+		Map<String, BasicFileAttributes> attributes = new HashMap<String, BasicFileAttributes>();
+		for (ADRIndex.Entry entry : new ArrayList<ADRIndex.Entry>(index.entries())) {
+			Path path = docsPath.resolve(entry.fileName);
+			try {
+				BasicFileAttributes fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+				if (fileAttributes.lastModifiedTime().toMillis() != entry.modified) index.put(path);
+				attributes.put(entry.fileName, fileAttributes);
+			} catch (IOException e) {
+				throw new ADRException("FATAL: Cannot access the ADR " + path, e);
+			}
+		}
+
+		Collection<ADRIndex.Entry> entries = index.entries();
+		DecisionGraph graph = DecisionGraph.build(entries);
+		List<Job> jobs = new ArrayList<Job>(entries.size());
+		fileNames = new HashSet<String>();
+		for (ADRIndex.Entry entry : entries) {
+			jobs.add(new Job(entry, attributes.get(entry.fileName), navigation(entry.id, graph), force ? null : previous.get(entry.fileName)));
+			fileNames.add(entry.fileName);
+		}
+
+		List<Page> pages;
+		List<Path> written = new ArrayList<Path>();
+		List<Path> removed = new ArrayList<Path>();
+		try {
+			Files.createDirectories(sitePath);
+
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pages = pool.invoke(new RenderTask(this, jobs, 0, jobs.size()));
+			} finally {
+				pool.shutdown();
+			}
+			for (Page page : pages) {
+				if (page.written) written.add(sitePath.resolve(pageName(page.fileName)));
+			}
+
+			if (writeIfChanged(sitePath.resolve(STYLE_SHEET), STYLE.getBytes(StandardCharsets.UTF_8), force)) {
+				written.add(sitePath.resolve(STYLE_SHEET));
+			}
+
+			byte[] indexPage = indexPage(entries, graph).getBytes(StandardCharsets.UTF_8);
+			String indexHash = sha256(indexPage);
+			Path indexPath = sitePath.resolve(INDEX_PAGE);
+			if (force || !indexHash.equals(previousIndexHash) || !Files.exists(indexPath)) {
+				Files.write(indexPath, indexPage);
+				written.add(indexPath);
+			}
+
+			for (String fileName : previous.keySet()) {
+				if (!fileNames.contains(fileName) && Files.deleteIfExists(sitePath.resolve(pageName(fileName)))) {
+					removed.add(sitePath.resolve(pageName(fileName)));
+				}
+			}
+			Collections.sort(removed);
+
+			saveManifest(pages, indexHash);
+		} catch (UncheckedIOException e) {
+			throw new ADRException("FATAL: " + e.getMessage(), e.getCause());
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot write the site to " + sitePath, e);
+		}
+
+		return new Result(written, removed, jobs.size());
+	}
+
+	/**
+	 * Renders a part of the list of pages, splitting it if it is large.
+	 */
+	private static class RenderTask extends RecursiveTask<List<Page>> {
+		private static final long serialVersionUID = 1L;
+
+		private final SiteExporter exporter;
+		private final List<Job> jobs;
+		private final int from;
+		private final int to;
+
+		RenderTask(SiteExporter exporter, List<Job> jobs, int from, int to) {
+			this.exporter = exporter;
+			this.jobs = jobs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Page> compute() {
+			if (to - from <= PAGES_PER_TASK) {
+				List<Page> pages = new ArrayList<Page>(to - from);
+				for (int i = from; i < to; i++) {
+					pages.add(exporter.export(jobs.get(i)));
+				}
+				return pages;
+			}
+
+			int middle = (from + to) >>> 1;
+			RenderTask first = new RenderTask(exporter, jobs, from, middle);
+			first.fork();
+			List<Page> second = new RenderTask(exporter, jobs, middle, to).compute();
+			List<Page> pages = first.join();
+			pages.addAll(second);
+			return pages;
+		}
+	}
+
+	/**
+	 * Renders the page of an ADR if it has changed.
+	 */
+	private Page export(Job job) {
+		Path sourcePath = docsPath.resolve(job.entry.fileName);
+		Path pagePath = sitePath.resolve(pageName(job.entry.fileName));
+		long modified = job.attributes.lastModifiedTime().toMillis();
+		long size = job.attributes.size();
+
+		try {
+			byte[] content = null;
+			String sourceHash;
+			if (job.previous != null && job.previous.modified == modified && job.previous.size == size) {
+				sourceHash = job.previous.sourceHash;
+			} else {
+				content = Files.readAllBytes(sourcePath);
+				sourceHash = sha256(content);
+			}
+			String pageHash = sha256((LAYOUT_VERSION + "\n" + sourceHash + "\n" + job.navigation).getBytes(StandardCharsets.UTF_8));
+
+			if (System.currentTimeMillis() - modified < RACY_INTERVAL) {
+				modified = UNKNOWN;   // The file may still change within the same clock tick, so read it again next time
+			}
+			Page page = new Page(job.entry.fileName, modified, size, sourceHash, pageHash);
+
+			if (job.previous == null || !job.previous.pageHash.equals(pageHash) || !Files.exists(pagePath)) {
+				if (content == null) content = Files.readAllBytes(sourcePath);
+				Files.write(pagePath, page(job.entry, new String(content, StandardCharsets.UTF_8), job.navigation).getBytes(StandardCharsets.UTF_8));
+				page.written = true;
+			}
+			return page;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot export the ADR " + sourcePath + " to " + pagePath, e);
+		}
+	}
+
+	private String page(ADRIndex.Entry entry, String content, String navigation) {
+		StringBuilder html = new StringBuilder(content.length() * 2 + navigation.length() + 512);
+		header(entry.id + ". " + entry.title, html);
+		html.append("<main>\n");
+		if (entry.fileName.endsWith("." + ADRFilter.DEFAULT_EXTENSION)) {
+			html.append(new MarkdownRenderer(this::linkTarget).render(content));
+		} else {
+			// Other markup languages are shown as they are
+			MarkdownRenderer.escape(content, html.append("<pre>")).append("</pre>\n");
+		}
+		html.append("</main>\n");
+		html.append(navigation);
+		return footer(html).toString();
+	}
+
+	private String indexPage(Collection<ADRIndex.Entry> entries, DecisionGraph graph) {
+		StringBuilder html = new StringBuilder(entries.size() * 200 + 512);
+		header("Architecture Decision Records", html);
+		html.append("<main>\n<h1>Architecture Decision Records</h1>\n");
+		html.append("<table class=\"adrs\">\n<thead><tr><th>Id</th><th>Title</th><th>Status</th><th>Date</th><th>Superseded by</th></tr></thead>\n<tbody>\n");
+		for (ADRIndex.Entry entry : entries) {
+			html.append("<tr><td>").append(entry.id).append("</td><td>");
+			MarkdownRenderer.escape(pageName(entry.fileName), html.append("<a href=\"")).append("\">");
+			MarkdownRenderer.escape(entry.title, html).append("</a></td><td>");
+			MarkdownRenderer.escape(entry.status, html).append("</td><td>");
+			MarkdownRenderer.escape(entry.date, html).append("</td><td>");
+			int[] supersededBy = graph.supersededBy(entry.id);
+			for (int i = 0; i < supersededBy.length; i++) {
+				if (i > 0) html.append(", ");
+				reference(supersededBy[i], false, html);
+			}
+			html.append("</td></tr>\n");
+		}
+		html.append("</tbody>\n</table>\n</main>\n");
+		return footer(html).toString();
+	}
+
+	private static void header(String title, StringBuilder html) {
+		html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>");
+		MarkdownRenderer.escape(title, html);
+		html.append("</title>\n<link rel=\"stylesheet\" href=\"").append(STYLE_SHEET).append("\">\n</head>\n<body>\n");
+		html.append("<nav><a href=\"").append(INDEX_PAGE).append("\">All decisions</a></nav>\n");
+	}
+
+	private static StringBuilder footer(StringBuilder html) {
+		return html.append("</body>\n</html>\n");
+	}
+
+	/**
+	 * @return The HTML of the table of the ADRs related to the ADR, empty if there are none
+	 */
+	private String navigation(int id, DecisionGraph graph) {
+		StringBuilder html = new StringBuilder();
+		row("Supersedes", graph.supersedes(id), html);
+		row("Superseded by", graph.supersededBy(id), html);
+		int[] links = graph.links(id);
+		String[] comments = graph.linkComments(id);
+		for (int i = 0; i < links.length; i++) {
+			row(comments[i], new int[] {links[i]}, html);
+		}
+		row("Referenced by", graph.referencedBy(id), html);
+		if (html.length() == 0) return "";
+		return "<aside>\n<table class=\"relations\">\n" + html + "</table>\n</aside>\n";
+	}
+
+	private void row(String heading, int[] ids, StringBuilder html) {
+		if (ids.length == 0) return;
+		MarkdownRenderer.escape(heading, html.append("<tr><th>")).append("</th><td>");
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) html.append("<br>");
+			reference(ids[i], true, html);
+		}
+		html.append("</td></tr>\n");
+	}
+
+	/**
+	 * Appends a link to the page of an ADR, with the title of the ADR and, if requested, its status.
+	 */
+	private void reference(int id, boolean withStatus, StringBuilder html) {
+		Optional<ADRIndex.Entry> entry = index.get(id);
+		if (!entry.isPresent()) {
+			html.append(id);
+			return;
+		}
+		MarkdownRenderer.escape(pageName(entry.get().fileName), html.append("<a href=\"")).append("\">");
+		MarkdownRenderer.escape(id + ". " + entry.get().title, html).append("</a>");
+		if (withStatus && !entry.get().status.isEmpty()) {
+			MarkdownRenderer.escape(entry.get().status, html.append(" (")).append(")");
+		}
+	}
+
+	/**
+	 * Links to other ADRs are changed to link to their pages.
+	 */
+	private String linkTarget(String target) {
+		int hash = target.indexOf('#');
+		String file = (hash < 0) ? target : target.substring(0, hash);
+		if (file.isEmpty() || file.contains("/") || file.contains(":")) return target;
+
+		if (!fileNames.contains(file)) return target;
+		return pageName(file) + ((hash < 0) ? "" : target.substring(hash));
+	}
+
+	/**
+	 * @return The file name of the page of the ADR file
+	 */
+	static String pageName(String fileName) {
+		int dot = fileName.lastIndexOf('.');
+		return ((dot > 0) ? fileName.substring(0, dot) : fileName) + ".html";
+	}
+
+	private static boolean writeIfChanged(Path path, byte[] content, boolean force) throws IOException {
+		if (!force && Files.exists(path) && Arrays.equals(Files.readAllBytes(path), content)) return false;
+		Files.write(path, content);
+		return true;
+	}
+
+	/**
+	 * Reads the manifest of the last export to this site.
+	 *
+	 * @param pages Filled with the pages exported, keyed by ADR file name
+	 * @return The hash of the index page, empty if the site has not been exported before
+	 */
+	private String loadManifest(Map<String, Page> pages) {
+		if (!Files.exists(manifestPath)) return "";
+
+		try (BufferedReader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+			if (!FORMAT_HEADER.equals(reader.readLine())) return "";
+			if (!siteLine().equals(reader.readLine())) return "";   // Another site or layout, so export everything
+			String indexHash = reader.readLine();
+			if (indexHash == null) return "";
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 5) continue;
+				pages.put(fields[0], new Page(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4]));
+			}
+			return indexHash;
+		} catch (IOException | RuntimeException e) {
+			// The manifest is only a cache, so export everything again
+			pages.clear();
+			return "";
+		}
+	}
+
+	private void saveManifest(List<Page> pages, String indexHash) throws IOException {
+		LocalFiles.ignore(manifestPath.getParent());
+		Path tempPath = AtomicFiles.createTempSibling(manifestPath);
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+				writer.write(FORMAT_HEADER);
+				writer.newLine();
+				writer.write(siteLine());
+				writer.newLine();
+				writer.write(indexHash);
+				writer.newLine();
+				for (Page page : pages) {
+					writer.write(page.fileName + "\t" + page.modified + "\t" + page.size + "\t" + page.sourceHash + "\t" + page.pageHash);
+					writer.newLine();
+				}
+			}
+			AtomicFiles.moveReplacing(tempPath, manifestPath);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private String siteLine() {
+		return LAYOUT_VERSION + "\t" + sitePath.toAbsolutePath().toUri();
+	}
+
+	static String sha256(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);   // Every JVM supports SHA-256
+		}
+	}
+}
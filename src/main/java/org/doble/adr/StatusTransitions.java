@@ -0,0 +1,107 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The statuses an ADR can have and the changes of status that are allowed, i.e. the state
+ * machine checked by <code>adr status</code>.
+ *
+ * The transitions are set in <code>.adr/adr.properties</code> with a property for each status
+ * listing the statuses it can change to, e.g.
+ * <code>
+ *     transition.Proposed=Accepted, Rejected
+ *     transition.Accepted=Deprecated, Superseded
+ * </code>
+ * A status without such a property (or with an empty list) cannot be changed. If no transitions
+ * are set the {@link #DEFAULT} transitions are used. Statuses are compared ignoring case, as
+ * the MADR templates write them in lower case.
+ */
+public class StatusTransitions {
+	/** Prefix of the properties setting the transitions */
+	public static final String TRANSITION_PREFIX = "transition.";
+
+	/** The transitions used if none are set */
+	public static final StatusTransitions DEFAULT = new StatusTransitions()
+			.add("Proposed", "Accepted", "Rejected")
+			.add("Accepted", "Deprecated", "Superseded")
+			.add("Rejected")
+			.add("Deprecated")
+			.add("Superseded");
+
+	// The statuses as written in the transitions, keyed by the lower case status
+	private final Map<String, String> statuses = new LinkedHashMap<String, String>();
+
+	// The statuses a status can change to, keyed by the lower case status
+	private final Map<String, List<String>> targets = new LinkedHashMap<String, List<String>>();
+
+	private StatusTransitions() {
+	}
+
+	private StatusTransitions add(String from, String... to) {
+		String key = key(from);
+		statuses.putIfAbsent(key, from);
+		List<String> list = targets.computeIfAbsent(key, k -> new ArrayList<String>());
+		for (String status : to) {
+			String known = statuses.computeIfAbsent(key(status), k -> status);
+			if (!list.contains(known)) list.add(known);
+		}
+		return this;
+	}
+
+	/**
+	 * Reads the transitions from the <code>transition.&lt;status&gt;</code> properties.
+	 *
+	 * @param properties The properties of the project
+	 * @return The transitions set, or the {@link #DEFAULT} transitions if none are set
+	 */
+	public static StatusTransitions from(Properties properties) {
+		StatusTransitions transitions = new StatusTransitions();
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith(TRANSITION_PREFIX) && name.length() > TRANSITION_PREFIX.length()) {
+				List<String> to = new ArrayList<String>();
+				for (String status : properties.getProperty(name).split(",")) {
+					if (!status.trim().isEmpty()) to.add(status.trim());
+				}
+				transitions.add(name.substring(TRANSITION_PREFIX.length()).trim(), to.toArray(new String[0]));
+			}
+		}
+		return transitions.targets.isEmpty() ? DEFAULT : transitions;
+	}
+
+	/**
+	 * @param status A status, in any case
+	 * @return The status as written in the transitions, or the status itself if it is not known
+	 */
+	public String canonical(String status) {
+		String known = statuses.get(key(status));
+		return (known != null) ? known : status;
+	}
+
+	/**
+	 * @param from The current status
+	 * @param to   The new status
+	 * @return true if the status can be changed
+	 */
+	public boolean isAllowed(String from, String to) {
+		return targets(from).stream().anyMatch(status -> status.equalsIgnoreCase(to.trim()));
+	}
+
+	/**
+	 * @param from A status
+	 * @return The statuses it can change to, empty if it cannot be changed or is not known
+	 */
+	public List<String> targets(String from) {
+		List<String> list = targets.get(key(from));
+		return (list != null) ? Collections.unmodifiableList(list) : Collections.<String>emptyList();
+	}
+
+	private static String key(String status) {
+		return status.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,171 @@
+package org.doble.adr;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Changes the status of many ADRs at once, as <code>adr status</code> does.
+ *
+ * Each ADR is handled on its own: its head is read to get the current status, the change is
+ * checked against the {@link StatusTransitions} and, if it is allowed, only the status is
+ * rewritten (see {@link RecordRewriter#replaceStatus(Path, String)}) with an atomic move. So an
+ * ADR that cannot be changed does not stop the others from being changed, and each ADR is either
+ * changed completely or not at all. The ADRs are handled in parallel with a fork/join pool, as
+ * in {@link ADRLinter}.
+ *
+ * Usage:
+ * <code>
+ *     List<StatusUpdater.Result> results = new StatusUpdater(transitions).update(adrFiles, "Accepted");
+ * </code>
+ */
+public class StatusUpdater {
+	// Number of files a task changes itself instead of splitting them into two tasks
+	private static final int FILES_PER_TASK = 8;
+
+	/** What happened to an ADR */
+	public enum Outcome {
+		CHANGED,    // The status has been changed
+		UNCHANGED,  // The ADR already has the status
+		REJECTED,   // The change of status is not allowed
+		FAILED      // The ADR has no status or cannot be read or written
+	}
+
+	/**
+	 * The result of changing the status of a single ADR.
+	 */
+	public static class Result {
+		public final Path path;
+		public final String previousStatus;  // Empty if the ADR cannot be read or has no status
+		public final Outcome outcome;
+		public final String message;         // Why the ADR has not been changed, null if it has
+
+		Result(Path path, String previousStatus, Outcome outcome, String message) {
+			this.path = path;
+			this.previousStatus = previousStatus;
+			this.outcome = outcome;
+			this.message = message;
+		}
+	}
+
+	private final StatusTransitions transitions;
+	private final int parallelism;
+	private boolean force = false;
+
+	/**
+	 * @param transitions The changes of status that are allowed
+	 */
+	public StatusUpdater(StatusTransitions transitions) {
+		this(transitions, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param transitions The changes of status that are allowed
+	 * @param parallelism The number of threads used to change the ADRs
+	 */
+	public StatusUpdater(StatusTransitions transitions, int parallelism) {
+		this.transitions = transitions;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @param force true to change the status even if the change is not allowed by the transitions
+	 * @return This updater
+	 */
+	public StatusUpdater force(boolean force) {
+		this.force = force;
+		return this;
+	}
+
+	/**
+	 * Changes the status of the ADRs.
+	 *
+	 * @param adrFiles The ADR files
+	 * @param status   The new status. It is written as in the transitions, e.g. "accepted" is
+	 *                 written as "Accepted" with the default transitions.
+	 * @return The results, in the order of the ADR files
+	 */
+	public List<Result> update(List<Path> adrFiles, String status) {
+		String newStatus = transitions.canonical(status.trim());
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new UpdateTask(adrFiles, 0, adrFiles.size(), newStatus));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Changes a part of the list of ADR files, splitting it if it is large.
+	 */
+	private class UpdateTask extends RecursiveTask<List<Result>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Path> files;
+		private final int from;
+		private final int to;
+		private final String status;
+
+		UpdateTask(List<Path> files, int from, int to, String status) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+			this.status = status;
+		}
+
+		@Override
+		protected List<Result> compute() {
+			if (to - from <= FILES_PER_TASK) {
+				List<Result> results = new ArrayList<Result>(to - from);
+				for (int i = from; i < to; i++) {
+					results.add(update(files.get(i), status));
+				}
+				return results;
+			}
+
+			int middle = (from + to) >>> 1;
+			UpdateTask second = new UpdateTask(files, middle, to, status);
+			second.fork();
+			List<Result> results = new UpdateTask(files, from, middle, status).compute();
+			results.addAll(second.join());
+			return results;
+		}
+	}
+
+	/**
+	 * Changes the status of a single ADR.
+	 */
+	private Result update(Path path, String status) {
+		String previous;
+		try {
+			previous = RecordLoader.load(path).getStatus();
+		} catch (ADRException e) {
+			return new Result(path, "", Outcome.FAILED, e.getMessage());
+		}
+
+		if (previous.isEmpty()) {
+			return new Result(path, previous, Outcome.FAILED, "The ADR has no status.");
+		}
+		if (previous.equalsIgnoreCase(status)) {
+			return new Result(path, previous, Outcome.UNCHANGED, null);
+		}
+		if (!force && !transitions.isAllowed(previous, status)) {
+			List<String> targets = transitions.targets(previous);
+			return new Result(path, previous, Outcome.REJECTED,
+					"The status cannot be changed from " + previous + " to " + status + ". "
+				  + (targets.isEmpty() ? "The status " + previous + " cannot be changed."
+						               : "It can be changed to " + String.join(", ", targets) + "."));
+		}
+
+		try {
+			if (!RecordRewriter.replaceStatus(path, status)) {
+				return new Result(path, previous, Outcome.FAILED, "The status of the ADR cannot be found.");
+			}
+		} catch (ADRException e) {
+			return new Result(path, previous, Outcome.FAILED, e.getMessage());
+		}
+		return new Result(path, previous, Outcome.CHANGED, null);
+	}
+}
@@ -0,0 +1,199 @@
+package org.doble.adr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generates a table of contents of the ADRs in markdown, in the same form as
+ * <code>adr generate toc</code> of adr-tools:
+ * <code>
+ *     # Architecture Decision Records
+ *
+ *     * [1. Record architecture decisions](0001-record-architecture-decisions.md)
+ *     * [2. Use PostgreSQL](0002-use-postgresql.md)
+ * </code>
+ *
+ * The document directory is listed once and the ADR files (those matched by the {@link ADRFilter},
+ * i.e. named as by {@link Record#store()}) are ordered by id. Then each ADR is read and its entry
+ * written straight away, so only the file names are held in memory. Only the title line of each ADR
+ * is read, unless the status is shown as well, in which case the head of the ADR is read
+ * (see {@link RecordLoader}).
+ *
+ * Usage:
+ * <code>
+ *     new TableOfContents(docsPath, ADRFilter.filter(properties.getExtensions())).write(writer);
+ * </code>
+ */
+public class TableOfContents {
+	public static final String HEADING = "# Architecture Decision Records";
+
+	// Order of the ADR files: by the id at the start of the file name, so that ids above 9999
+	// (with more than four digits) come last, and then by name
+	private static final Comparator<String> BY_ID = Comparator.comparingInt(TableOfContents::idLength)
+			.thenComparing(Comparator.naturalOrder());
+
+	private final Path docsPath;
+	private final ADRFilter filter;
+	private String linkPrefix = "";
+	private boolean withStatus = false;
+	private Path intro;
+	private Path outro;
+
+	/**
+	 * @param docsPath The directory where the ADRs are stored
+	 * @param filter   The filter matching the ADR files
+	 */
+	public TableOfContents(Path docsPath, ADRFilter filter) {
+		this.docsPath = docsPath;
+		this.filter = filter;
+	}
+
+	/**
+	 * @param linkPrefix Put in front of the file names of the ADRs in the links, e.g. "doc/adr/"
+	 * @return This table of contents
+	 */
+	public TableOfContents linkPrefix(String linkPrefix) {
+		this.linkPrefix = (linkPrefix == null) ? "" : linkPrefix;
+		return this;
+	}
+
+	/**
+	 * @param withStatus Show the status of each ADR after its title
+	 * @return This table of contents
+	 */
+	public TableOfContents withStatus(boolean withStatus) {
+		this.withStatus = withStatus;
+		return this;
+	}
+
+	/**
+	 * @param intro A file whose content is written before the entries, or null for none
+	 * @return This table of contents
+	 */
+	public TableOfContents intro(Path intro) {
+		this.intro = intro;
+		return this;
+	}
+
+	/**
+	 * @param outro A file whose content is written after the entries, or null for none
+	 * @return This table of contents
+	 */
+	public TableOfContents outro(Path outro) {
+		this.outro = outro;
+		return this;
+	}
+
+	/**
+	 * Writes the table of contents.
+	 *
+	 * @param out The writer the table of contents is written to. It is not closed.
+	 * @throws ADRException Thrown if the ADRs, the intro or the outro cannot be read
+	 * @throws IOException  Thrown if the table of contents cannot be written
+	 */
+	public void write(Writer out) throws ADRException, IOException {
+		List<String> fileNames = new ArrayList<String>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(docsPath, filter::test)) {
+			for (Path path : stream) {
+				fileNames.add(path.getFileName().toString());
+			}
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Unable to read the ADR directory " + docsPath, e);
+		}
+		Collections.sort(fileNames, BY_ID);
+
+		out.write(HEADING + "\n\n");
+		if (intro != null) {
+			copy(intro, out);
+			out.write("\n");
+		}
+
+		for (String fileName : fileNames) {
+			Path path = docsPath.resolve(fileName);
+			out.write("* [");
+			out.write(title(path));
+			out.write("](");
+			out.write(linkPrefix);
+			out.write(fileName);
+			out.write(")");
+			if (withStatus) {
+				String status = RecordLoader.load(path).getStatus();
+				if (!status.isEmpty()) out.write(" (" + status + ")");
+			}
+			out.write("\n");
+		}
+
+		if (outro != null) {
+			out.write("\n");
+			copy(outro, out);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the table of contents to a file. The file is replaced when the table of contents
+	 * has been written completely, so it is never left half written.
+	 *
+	 * @param target The file
+	 * @throws ADRException Thrown if the ADRs cannot be read or the file cannot be written
+	 */
+	public void write(Path target) throws ADRException {
+		try {
+			Path tempPath = AtomicFiles.createTempSibling(target);
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+					write(writer);
+				}
+				AtomicFiles.moveReplacing(tempPath, target);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot write the table of contents to " + target, e);
+		}
+	}
+
+	/**
+	 * @return The title line of the ADR without the heading markup, e.g. "1. Record architecture decisions"
+	 */
+	private static String title(Path path) throws ADRException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), 256)) {
+			String line = reader.readLine();
+			if (line == null) return "";
+			int start = 0;
+			while (start < line.length() && (line.charAt(start) == '#' || line.charAt(start) == '=')) start++;  // Markdown or AsciiDoc
+			return line.substring(start).trim();
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot read the ADR " + path, e);
+		}
+	}
+
+	private static void copy(Path path, Writer out) throws ADRException, IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			char[] buffer = new char[4096];
+			int count;
+			while ((count = reader.read(buffer)) > 0) {
+				out.write(buffer, 0, count);
+			}
+		} catch (IOException e) {
+			throw new ADRException("FATAL: Cannot read the file " + path, e);
+		}
+	}
+
+	private static int idLength(String fileName) {
+		int digits = 0;
+		while (digits < fileName.length() && Character.isDigit(fileName.charAt(digits))) digits++;
+		return digits;
+	}
+}
@@ -0,0 +1,69 @@
+package org.doble.adr;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values an ADR is rendered with by a {@link TemplateEngine}:
+ * <ul>
+ * <li>the fields <code>id</code>, <code>name</code>, <code>status</code> and <code>date</code>, and
+ * the custom fields set with the properties <code>field.&lt;name&gt;</code> in <code>adr.properties</code>
+ * or with <code>adr new -field &lt;name&gt;=&lt;value&gt;</code>.</li>
+ * <li>the lists <code>link</code>, whose items have the fields <code>id</code>, <code>file</code> and
+ * <code>comment</code>, and <code>superseded</code>, whose items have the fields <code>id</code> and
+ * <code>file</code>.</li>
+ * </ul>
+ */
+public class TemplateContext {
+	public static final String LINK = "link";
+	public static final String SUPERSEDED = "superseded";
+
+	private final Map<String, String> fields;
+	private final Map<String, List<Map<String, String>>> lists;
+
+	/**
+	 * @param fields The values of the fields, keyed by field name
+	 * @param lists  The items of the lists, keyed by list name. Each item maps the item field names to their values.
+	 */
+	public TemplateContext(Map<String, String> fields, Map<String, List<Map<String, String>>> lists) {
+		this.fields = Collections.unmodifiableMap(fields);
+		this.lists = Collections.unmodifiableMap(lists);
+	}
+
+	/**
+	 * @return The value of the field, or null if there is no such field
+	 */
+	public String getField(String name) {
+		return fields.get(name);
+	}
+
+	/**
+	 * @return The items of the list, or null if there is no such list
+	 */
+	public List<Map<String, String>> getList(String name) {
+		return lists.get(name);
+	}
+
+	/** @return The fields, keyed by field name */
+	public Map<String, String> getFields() {
+		return fields;
+	}
+
+	/** @return The lists, keyed by list name */
+	public Map<String, List<Map<String, String>>> getLists() {
+		return lists;
+	}
+
+	/**
+	 * @return An item of a list with the fields id, file and, if not null, comment
+	 */
+	static Map<String, String> item(String id, String file, String comment) {
+		Map<String, String> item = new HashMap<String, String>(4);
+		item.put("id", id);
+		item.put("file", file);
+		if (comment != null) item.put("comment", comment);
+		return item;
+	}
+}
@@ -0,0 +1,44 @@
+package org.doble.adr;
+
+/**
+ * Service interface of the engines that render ADRs from templates.
+ *
+ * Template engines are found with {@link java.util.ServiceLoader}: a JAR on the class path provides
+ * an engine by naming its class in the file <code>META-INF/services/org.doble.adr.TemplateEngine</code>.
+ * The engine used is selected with the property <code>templateEngine</code> in
+ * <code>.adr/adr.properties</code>. If the property is not set the bundled engine
+ * ({@link DefaultTemplateEngine}) is used.
+ *
+ * A template is compiled once and then rendered for each ADR created (see {@link TemplateProvider}),
+ * so a compiled template may be rendered by several threads at the same time.
+ */
+public interface TemplateEngine {
+
+	/**
+	 * @return The name of the engine, as set in the property <code>templateEngine</code>
+	 */
+	String getName();
+
+	/**
+	 * Compiles a template.
+	 *
+	 * @param templateText The complete text of the template
+	 * @return The compiled template
+	 * @throws ADRException Thrown if the template cannot be compiled
+	 */
+	Template compile(String templateText) throws ADRException;
+
+	/**
+	 * A compiled template.
+	 */
+	interface Template {
+
+		/**
+		 * Renders an ADR.
+		 *
+		 * @param context The values of the fields and lists of the ADR
+		 * @return The content of the ADR
+		 */
+		String render(TemplateContext context);
+	}
+}
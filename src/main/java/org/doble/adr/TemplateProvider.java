@@ -1,8 +1,11 @@
 package org.doble.adr;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.*;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.stream.*;
 
@@ -21,7 +24,10 @@ import java.util.stream.*;
  *       }
  * </code>
  * 
- * See https://stackoverflow.com/questions/22605666/java-access-files-in-jar-causes-java-nio-file-filesystemnotfoundexception
+ * Compiled templates are cached and shared by all template providers, so that an unchanged
+ * template is only read and parsed once, however many ADRs are created. 
+ * 
+ * Templates are compiled by a {@link TemplateEngine}, found with {@link #getEngine(String)}.
  *			
  * @author adoble
  *
@@ -31,9 +37,39 @@ public class TemplateProvider  {
 	String defaultTemplateName;
 	FileSystem fileSystem;  // The file system for the normal files
 	
-	FileSystem jarFileSystem = null;
-	
 	Stream<String> lineStream;
+	
+	/** Maximum number of compiled templates held in the cache */
+	static final int MAX_CACHED_TEMPLATES = 16;
+	
+	/** A compiled template together with the state of the template file it was compiled from */
+	private static class CacheEntry {
+		final TemplateEngine.Template template;
+		final long modified;
+		final long size;
+		
+		CacheEntry(TemplateEngine.Template template, long modified, long size) {
+			this.template = template;
+			this.modified = modified;
+			this.size = size;
+		}
+	}
+	
+	// Compiled templates keyed by the engine name and the URI of the template file, least recently used first
+	private static final Map<String, CacheEntry> templateCache = new LinkedHashMap<String, CacheEntry>(MAX_CACHED_TEMPLATES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			return size() > MAX_CACHED_TEMPLATES;
+		}
+	};
+	
+	/** Prefix marking a template that is a resource */
+	static final String RESOURCE_PREFIX = "rsrc:";
+	
+	// The template engines found, keyed by name, once they have been looked up
+	private static Map<String, TemplateEngine> engines = null;
 
 
 	/**
@@ -47,78 +83,124 @@ public class TemplateProvider  {
 	}
 
 	/**
-	 * Get a Path from the template file specified in the file <code>templateFileName</code>. A Path is
-	 * returned independent of if the template file is a normal file or a resource and 
-	 * independent of if the resource file is packaged in a JAR or not. 
-	 * Rules are: 
-	 * - If the template specified is a normal file (i.e. a normal file path) then a Path to that is 
-	 * returned.
-	 * - If the template is defined using "rsrc:" at the start then a Path to the resource is 
-	 * returned. For instance, if the template is defined as <code>rsrc:default_init_file.md</code>
-	 * then a Path to the resource file (under src/main/resources) is returned, independent of 
-	 * if the resource file is in a JAR or not. 
-	 * - If a template is not specified (the optional field template is empty), then a Path to the default 
-	 * template (defined in ADRProperties) is given, independent of 
-	 * if the resource file is in a JAR or not.
+	 * @return The name of the resource for a template that is a resource, i.e. is either
+	 * specified with "rsrc:" or is not specified at all (the default template).
 	 */
-   Path getPath(Optional<String> templateFileName) throws IOException, URISyntaxException{
-	   
-	   Path templatePath;
-		if (templateFileName.isPresent() && !templateFileName.get().substring(0,5).equals("rsrc:")) {
-			// Template has been specified by user and is a normal file
-			templatePath =  fileSystem.getPath(templateFileName.get());
-			
-		} else if (templateFileName.isPresent() && templateFileName.get().substring(0,5).equals("rsrc:")) {
-			// Template is user specified resource.
-			String templateResourceName = templateFileName.get().substring(5, templateFileName.get().length()); // Remove the 'resource" indicator
-			
-			templatePath = getResourcePath(templateResourceName);
-			
-			
+	private static String getResourceName(Optional<String> templateFileName) {
+		if (templateFileName.isPresent()) {
+			return templateFileName.get().substring(RESOURCE_PREFIX.length()); // Remove the 'resource" indicator
 		} else {
-			// Template has not been specified so get an input stream to the default template resource
-			templatePath = getResourcePath(ADRProperties.defaultTemplateName);
-			
+			return ADRProperties.defaultTemplateName;
 		}
-		
-		return templatePath;
-
-   }
+	}
 
+	/**
+	 * Finds a template engine. The bundled engine ({@link DefaultTemplateEngine}) is always
+	 * available, other engines are found with {@link ServiceLoader}.
+	 * @param name The name of the engine, or null for the bundled engine
+	 * @return The template engine
+	 * @throws ADRException Thrown if there is no engine with the name
+	 */
+	public static TemplateEngine getEngine(String name) throws ADRException {
+		if (name == null || name.trim().isEmpty()) {
+			name = DefaultTemplateEngine.NAME;
+		}
+		
+		synchronized (TemplateProvider.class) {
+			if (engines == null) {
+				Map<String, TemplateEngine> found = new HashMap<String, TemplateEngine>();
+				found.put(DefaultTemplateEngine.NAME, new DefaultTemplateEngine());
+				try {
+					for (TemplateEngine engine : ServiceLoader.load(TemplateEngine.class)) {
+						found.putIfAbsent(engine.getName(), engine);
+					}
+				} catch (ServiceConfigurationError e) {
+					throw new ADRException("ERROR: Cannot load the template engines. Exception message -> " + e.getMessage(), e);
+				}
+				engines = found;
+			}
+		}
+		
+		TemplateEngine engine = engines.get(name.trim());
+		if (engine == null) {
+			throw new ADRException("ERROR: The template engine " + name.trim() + " cannot be found. Known template engines are "
+					+ new TreeSet<String>(engines.keySet()));
+		}
+		return engine;
+	}
 
-private Path getResourcePath(String templateFileName) throws URISyntaxException, IOException {
-	Path templatePath;
-	URI uri = ClassLoader.getSystemResource(templateFileName).toURI();
-	
-	// Now check if the system resource is either a normal file (e.g. we are running in an IDE) or
-	// the system resource is is a packaged JAR (e.g. we are running a packaged JAR file) 
-	if (uri.getScheme().equalsIgnoreCase("jar")) {
-		// Running as a packaged JAR so set up a file system to read this jar using the first 
-		// part of the URI (separated with '!') as the file to use
-		String[] uriParts = uri.toString().split("!");
+	/**
+	 * Reads and compiles the template. The template is read in one go and compiled once
+	 * for each engine.
+	 * Rules are: 
+	 * - If the template specified is a normal file (i.e. a normal file path) then that file is read.
+	 * - If the template is defined using "rsrc:" at the start then the resource is read. For instance, 
+	 * if the template is defined as <code>rsrc:default_init_file.md</code> then the resource file 
+	 * (under src/main/resources) is read, independent of if the resource file is in a JAR or not. 
+	 * - If a template is not specified (the optional field template is empty), then the default 
+	 * template (defined in ADRProperties) is read, independent of if the resource file is in a JAR or not.
+	 * @param templateFileName The name of the template
+	 * @param engine The template engine compiling the template
+	 * @return The compiled template
+	 */
+	TemplateEngine.Template getTemplate(Optional<String> templateFileName, TemplateEngine engine) throws IOException, ADRException {
+		if (!templateFileName.isPresent() || templateFileName.get().startsWith(RESOURCE_PREFIX)) {
+			return getResourceTemplate(getResourceName(templateFileName), engine);
+		}
+		
+		// Template has been specified by user and is a normal file
+		Path templatePath = fileSystem.getPath(templateFileName.get());
+		String key = engine.getName() + ':' + templatePath.toUri().toString();
+		BasicFileAttributes attributes = Files.readAttributes(templatePath, BasicFileAttributes.class);
+		long modified = attributes.lastModifiedTime().toMillis();
+		
+		synchronized (templateCache) {
+			CacheEntry entry = templateCache.get(key);
+			if (entry != null && entry.modified == modified && entry.size == attributes.size()) {
+				return entry.template;
+			}
+		}
+		
+		byte[] content = Files.readAllBytes(templatePath);
+		TemplateEngine.Template template = engine.compile(new String(content, StandardCharsets.UTF_8));
 		
-		try {
-		   jarFileSystem = FileSystems.getFileSystem(URI.create(uriParts[0]));
+		synchronized (templateCache) {
+			templateCache.put(key, new CacheEntry(template, modified, content.length));
+		}
+		return template;
+	}
+
+	/**
+	 * Reads and compiles a template that is a resource. The resource is read as a stream, which
+	 * works the same whether the resources are normal files, are packaged in a JAR or are
+	 * included in a native image. Resources do not change, so they are only read once. 
+	 */
+	private static TemplateEngine.Template getResourceTemplate(String resourceName, TemplateEngine engine) throws IOException, ADRException {
+		String key = engine.getName() + ':' + RESOURCE_PREFIX + resourceName;
+		synchronized (templateCache) {
+			CacheEntry entry = templateCache.get(key);
+			if (entry != null) {
+				return entry.template;
+			}
 		}
-		catch(FileSystemNotFoundException e) {
-			jarFileSystem = FileSystems.newFileSystem(URI.create(uriParts[0]), new HashMap<>());
+		
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (InputStream in = TemplateProvider.class.getResourceAsStream("/" + resourceName)) {
+			if (in == null) {
+				throw new IOException("The template resource " + resourceName + " cannot be found");
+			}
+			byte[] buffer = new byte[4096];
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				content.write(buffer, 0, length);
+			}
 		}
-		templatePath = jarFileSystem.getPath(uriParts[1]);
-	} else {
-		// Assume that the system resource is a normal file (e.g. we are running in an IDE). 
-		String pathName = uri.getSchemeSpecificPart();
-		// If there is a leading '/' then remove it so we have a correct path specification. 
-		if (pathName.startsWith("/")) { 
-			pathName = pathName.substring(1);
+		TemplateEngine.Template template = engine.compile(new String(content.toByteArray(), StandardCharsets.UTF_8));
+		
+		synchronized (templateCache) {
+			templateCache.put(key, new CacheEntry(template, 0, content.size()));
 		}
-		// The resource file is in the default file system and not any file system
-		// that is being used for e.g. test. Returned path should therefore be 
-		// associated with the default file system. 
-		FileSystem fs = FileSystems.getDefault();
-		templatePath = fs.getPath(pathName);  
+		return template;
 	}
-	return templatePath;
-}
-   
 	
 }
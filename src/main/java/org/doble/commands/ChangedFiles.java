@@ -0,0 +1,74 @@
+package org.doble.commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.doble.adr.Environment;
+
+/**
+ * Helpers for reading lists of changed files, e.g. the output of <code>git diff --name-only</code>.
+ */
+class ChangedFiles {
+
+	/** The name that stands for the standard input */
+	static final String STANDARD_INPUT = "-";
+
+	private ChangedFiles() {
+	}
+
+	/**
+	 * @param env      The environment, whose standard input is read for {@link #STANDARD_INPUT}
+	 * @param basePath The directory relative paths are resolved against
+	 * @param names    The files, or {@link #STANDARD_INPUT} to read the files from the standard input, one per line
+	 * @return The files as absolute paths
+	 * @throws IOException Thrown if the standard input cannot be read or a name is not a valid path
+	 */
+	static List<Path> read(Environment env, Path basePath, List<String> names) throws IOException {
+		List<Path> paths = new ArrayList<Path>();
+		for (String name : names) {
+			if (name.equals(STANDARD_INPUT)) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(env.in, StandardCharsets.UTF_8));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.trim().isEmpty()) paths.add(resolve(basePath, line.trim()));
+				}
+			} else {
+				paths.add(resolve(basePath, name));
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * @param env      The environment, whose standard input is read if the list is {@link #STANDARD_INPUT}
+	 * @param basePath The directory relative paths are resolved against
+	 * @param list     A file listing the files, one per line, or {@link #STANDARD_INPUT}
+	 * @return The files listed as absolute paths
+	 * @throws IOException Thrown if the list cannot be read or a line is not a valid path
+	 */
+	static List<Path> readList(Environment env, Path basePath, String list) throws IOException {
+		if (list.equals(STANDARD_INPUT)) return read(env, basePath, Collections.singletonList(STANDARD_INPUT));
+
+		List<Path> paths = new ArrayList<Path>();
+		for (String line : Files.readAllLines(env.dir.resolve(list), StandardCharsets.UTF_8)) {
+			if (!line.trim().isEmpty()) paths.add(resolve(basePath, line.trim()));
+		}
+		return paths;
+	}
+
+	private static Path resolve(Path basePath, String name) throws IOException {
+		try {
+			return basePath.resolve(name).toAbsolutePath().normalize();
+		} catch (InvalidPathException e) {
+			throw new IOException("Invalid path " + name, e);
+		}
+	}
+}
@@ -27,7 +27,18 @@ import picocli.CommandLine.HelpCommand;
 		 },
 		 subcommands = {CommandInit.class, 
 		         		CommandNew.class,
+		         		CommandImport.class,
 				        CommandList.class,
+				        CommandSearch.class,
+				        CommandGraph.class,
+				        CommandStatus.class,
+				        CommandRerender.class,
+				        CommandLint.class,
+				        CommandIndex.class,
+				        CommandExport.class,
+				        CommandGenerate.class,
+				        CommandWatch.class,
+				        CommandServer.class,
 				        CommandVersion.class,
 				        HelpCommand.class   // Built in help command
 				       }
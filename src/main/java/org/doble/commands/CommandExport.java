@@ -0,0 +1,86 @@
+package org.doble.commands;
+
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to export the architecture decision records as a static HTML site
+ *
+ */
+@Command(name = "export",
+         description = "Exports the ADRs as a static HTML site with a page for each ADR and an index page. "
+        		    + "Only the pages of ADRs that have changed (or whose related ADRs have changed) since the last export are written. "
+        		    + "The files written are listed.")
+public class CommandExport implements Callable<Integer> {
+
+	@Option(names = {"-html"}, description = "Exports the ADRs as HTML.")
+	boolean html;
+
+	@Option(names = {"-o", "-output"}, paramLabel = "DIR",
+			description = "The directory the site is written to, relative to the root directory of the project. Default is ${DEFAULT-VALUE}.")
+	String output = "site";
+
+	@Option(names = {"-threads"}, paramLabel = "N",
+			description = "The number of threads used to render the pages. Default is the number of processors.")
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = {"-force"}, description = "Writes all the pages, even those that have not changed.")
+	boolean force;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (!html) {
+			env.err.println("ERROR: Specify the format to export to (-html).");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (threads < 1) {
+			env.err.println("ERROR: The number of threads must be at least 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+
+		SiteExporter.Result result;
+		try {
+			ADRIndex index = ADRIndex.open(adrPath, docsPath, ADRFilter.filter(properties.getExtensions()));
+			result = new SiteExporter(adrPath, index, rootPath.resolve(output), threads).export(force);
+			index.save();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot export the ADRs. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+
+		for (Path path : result.written) {
+			env.out.println(path.toString());
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,33 @@
+package org.doble.commands;
+
+import java.util.concurrent.Callable;
+
+import org.doble.adr.Environment;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand grouping the commands that generate documents from the architecture decision records
+ *
+ */
+@Command(name = "generate",
+         description = "Generates documents from the ADRs.",
+         subcommands = {CommandGenerateToc.class})
+public class CommandGenerate implements Callable<Integer> {
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	public Environment getEnvironment() {
+		return commandADR.getEnvironment();
+	}
+
+	@Override
+	public Integer call() {
+		// A document has to be specified
+		CommandLine.usage(this, getEnvironment().err);
+		return CommandLine.ExitCode.USAGE;
+	}
+}
@@ -0,0 +1,85 @@
+package org.doble.commands;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to generate a table of contents of the architecture decision records
+ *
+ */
+@Command(name = "toc",
+         description = "Generates a table of contents of the ADRs in markdown, with a link to each ADR. "
+        		    + "The table of contents is written to standard output unless -output is given.")
+public class CommandGenerateToc implements Callable<Integer> {
+
+	@Option(names = {"-i", "-intro"}, paramLabel = "FILE",
+			description = "A file whose content is put before the list of ADRs.")
+	String intro;
+
+	@Option(names = {"-outro"}, paramLabel = "FILE",
+			description = "A file whose content is put after the list of ADRs.")
+	String outro;
+
+	@Option(names = {"-p", "-prefix"}, paramLabel = "PREFIX",
+			description = "Put in front of the file names of the ADRs in the links, e.g. doc/adr/.")
+	String prefix = "";
+
+	@Option(names = {"-status"}, description = "Shows the status of each ADR after its title.")
+	boolean status;
+
+	@Option(names = {"-output"}, paramLabel = "FILE",
+			description = "The file the table of contents is written to, e.g. README.md in the ADR directory.")
+	String output;
+
+	@ParentCommand
+	CommandGenerate commandGenerate;
+
+	@Override
+	public Integer call() {
+		Environment env = commandGenerate.getEnvironment();
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		TableOfContents toc = new TableOfContents(docsPath, ADRFilter.filter(properties.getExtensions()))
+				.linkPrefix(prefix)
+				.withStatus(status)
+				.intro((intro != null) ? env.dir.resolve(intro) : null)
+				.outro((outro != null) ? env.dir.resolve(outro) : null);
+		try {
+			if (output != null) {
+				toc.write(env.dir.resolve(output));
+			} else {
+				toc.write(new BufferedWriter(new OutputStreamWriter(env.out, StandardCharsets.UTF_8)));
+			}
+		} catch (ADRException | IOException e) {
+			env.err.println("FATAL: Cannot generate the table of contents. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+		return 0;
+	}
+}
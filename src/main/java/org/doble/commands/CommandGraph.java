@@ -0,0 +1,203 @@
+package org.doble.commands;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to export and query the graph of the links and supersedes between the
+ * architecture decision records
+ *
+ */
+@Command(name = "graph",
+         description = "Exports the graph of the links and supersedes between the ADRs in the DOT (Graphviz) or JSON format. "
+        		    + "With -check the graph is checked for links to ADRs that do not exist and for cycles of supersedes, "
+        		    + "with -effective and -impact it is queried.")
+public class CommandGraph implements Callable<Integer> {
+
+	/** The formats the graph can be exported in */
+	enum Format { dot, json }
+
+	@Option(names = {"-f", "-format"}, paramLabel = "FORMAT",
+			description = "The output format: ${COMPLETION-CANDIDATES}. Default is ${DEFAULT-VALUE}.")
+	Format format = Format.dot;
+
+	@Option(names = {"-check"},
+			description = "Reports links and supersedes to ADRs that do not exist and cycles of supersedes. "
+					    + "The exit code is 1 if any are found.")
+	boolean check;
+
+	@Option(names = {"-effective"}, paramLabel = "ID",
+			description = "Lists the ADRs currently in effect in place of the ADR, i.e. the ADRs at the end of its chain of supersedes.")
+	Integer effectiveId;
+
+	@Option(names = {"-impact"}, paramLabel = "ID",
+			description = "Lists the ADRs that link to or supersede the ADR, directly or indirectly.")
+	Integer impactId;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	private Environment env;
+
+	@Override
+	public Integer call() {
+		env = commandADR.getEnvironment();
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		ADRIndex index;
+		try {
+			index = ADRIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), docsPath, ADRFilter.filter(properties.getExtensions()));
+			index.save();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot access directory. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+
+		DecisionGraph graph = DecisionGraph.build(index.entries());
+
+		if (effectiveId != null || impactId != null) {
+			int id = (effectiveId != null) ? effectiveId : impactId;
+			if (!graph.contains(id)) {
+				env.err.println("ERROR: ADR " + id + " does not exist.");
+				return CommandLine.ExitCode.USAGE;
+			}
+			for (int result : (effectiveId != null) ? graph.effective(id) : graph.impact(id)) {
+				env.out.println(index.getFileName(result));
+			}
+			return 0;
+		}
+
+		if (check) {
+			return check(graph);
+		}
+
+		if (format == Format.json) {
+			printJSON(graph, index);
+		} else {
+			printDOT(graph, index);
+		}
+		return 0;
+	}
+
+	private int check(DecisionGraph graph) {
+		int problems = 0;
+		for (DecisionGraph.DanglingReference reference : graph.getDanglingReferences()) {
+			env.err.println("ERROR: ADR " + reference.fromId + " references ADR " + reference.toId
+					      + " (" + reference.comment + "), but this ADR does not exist.");
+			problems++;
+		}
+		for (int[] cycle : graph.supersedeCycles()) {
+			env.err.println("ERROR: The ADRs " + idList(cycle) + " supersede each other.");
+			problems++;
+		}
+		return (problems == 0) ? 0 : ADR.ERRORGENERAL;
+	}
+
+	private void printDOT(DecisionGraph graph, ADRIndex index) {
+		env.out.println("digraph adr {");
+		env.out.println("  node [shape=box];");
+		for (ADRIndex.Entry entry : index.entries()) {
+			env.out.println("  adr" + entry.id + " [label=" + dotQuote(entry.id + ". " + entry.title + "\n" + entry.status) + "];");
+		}
+		for (int id : graph.getIds()) {
+			for (int superseded : graph.supersedes(id)) {
+				env.out.println("  adr" + id + " -> adr" + superseded + " [label=\"Supersedes\", style=dashed];");
+			}
+			int[] links = graph.links(id);
+			String[] comments = graph.linkComments(id);
+			for (int i = 0; i < links.length; i++) {
+				env.out.println("  adr" + id + " -> adr" + links[i] + " [label=" + dotQuote(comments[i]) + "];");
+			}
+		}
+		env.out.println("}");
+	}
+
+	private void printJSON(DecisionGraph graph, ADRIndex index) {
+		env.out.println("{");
+		env.out.print("\"nodes\": [");
+		boolean first = true;
+		for (ADRIndex.Entry entry : index.entries()) {
+			env.out.print(first ? "\n" : ",\n");
+			env.out.print("{\"id\": " + entry.id
+					     + ", \"title\": " + JsonOutput.quote(entry.title)
+					     + ", \"status\": " + JsonOutput.quote(entry.status)
+					     + ", \"file\": " + JsonOutput.quote(entry.fileName) + "}");
+			first = false;
+		}
+		env.out.println(first ? "]," : "\n],");
+
+		env.out.print("\"edges\": [");
+		first = true;
+		for (int id : graph.getIds()) {
+			for (int superseded : graph.supersedes(id)) {
+				env.out.print(first ? "\n" : ",\n");
+				env.out.print("{\"from\": " + id + ", \"to\": " + superseded + ", \"type\": \"supersedes\"}");
+				first = false;
+			}
+			int[] links = graph.links(id);
+			String[] comments = graph.linkComments(id);
+			for (int i = 0; i < links.length; i++) {
+				env.out.print(first ? "\n" : ",\n");
+				env.out.print("{\"from\": " + id + ", \"to\": " + links[i] + ", \"type\": \"link\", \"comment\": "
+						     + JsonOutput.quote(comments[i]) + "}");
+				first = false;
+			}
+		}
+		env.out.println(first ? "]," : "\n],");
+
+		env.out.print("\"dangling\": [");
+		first = true;
+		for (DecisionGraph.DanglingReference reference : graph.getDanglingReferences()) {
+			env.out.print(first ? "\n" : ",\n");
+			env.out.print("{\"from\": " + reference.fromId + ", \"to\": " + reference.toId
+					     + ", \"comment\": " + JsonOutput.quote(reference.comment) + "}");
+			first = false;
+		}
+		env.out.println(first ? "]," : "\n],");
+
+		env.out.print("\"cycles\": [");
+		List<int[]> cycles = graph.supersedeCycles();
+		for (int i = 0; i < cycles.size(); i++) {
+			env.out.print(((i == 0) ? "" : ", ") + "[" + idList(cycles.get(i)) + "]");
+		}
+		env.out.println("]");
+		env.out.println("}");
+	}
+
+	private static String idList(int[] ids) {
+		StringBuilder sb = new StringBuilder();
+		for (int id : ids) {
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(id);
+		}
+		return sb.toString();
+	}
+
+	private static String dotQuote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package org.doble.commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.ADR;
+import org.doble.adr.ADRException;
+import org.doble.adr.ADRFilter;
+import org.doble.adr.ADRIndex;
+import org.doble.adr.ADRProperties;
+import org.doble.adr.Environment;
+import org.doble.adr.IdAllocator;
+import org.doble.adr.LinkSpecificationException;
+import org.doble.adr.Record;
+import org.doble.adr.SearchIndex;
+import org.doble.adr.TemplateEngine;
+
+import picocli.CommandLine;
+import picocli.CommandLine.*;
+
+
+/**
+ * Subcommand to create a batch of new, numbered ADRs from a file or standard input.
+ */
+
+@Command(name = "import",
+         aliases = {"batch"},
+         description = "Creates a batch of new, numbered ADRs from the specifications in FILE "
+         		    + "(or standard input if FILE is not given or is '-'). Each specification gives the "
+         		    + "title and optionally the status, date (yyyy-MM-dd), links and superseded ADRs of an ADR, either as "
+         		    + "CSV with a header line (e.g. title,status,date,links,supersedes) or as JSON lines "
+         		    + "(e.g. {\"title\": \"Use JMS\", \"links\": [\"4:Links to\"], \"supersedes\": [3]}). "
+         		    + "Multiple links or superseded ADRs in CSV are separated with ';'. "
+         		    + "The ADRs are numbered in the order given and links can refer to ADRs created earlier in the batch. "
+         		    + "No ADR is created if any specification is invalid. No editor is opened. "
+         		    + "The file names of the created ADRs are output to stdout.")
+public class CommandImport implements Callable<Integer> {
+
+	@Parameters(arity = "0..1", paramLabel = "FILE", description = "The file containing the ADR specifications.")
+	String specFileName;
+
+	@Option(names = {"-f", "-format"}, paramLabel = "FORMAT",
+			description = "The format of the specifications: ${COMPLETION-CANDIDATES}. "
+					    + "If not given, the format is determined from the first line.")
+	RecordSpecReader.Format format;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	private Environment env;
+
+	@Override
+	public Integer call() throws Exception {
+		env = commandADR.getEnvironment();
+
+		Path rootPath = ADR.getRootPath(env);
+
+		ADRProperties properties = new ADRProperties(env);
+		properties.load();
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		String templatePathName = properties.getProperty("templateFile");
+		if (templatePathName != null && !Files.exists(env.fileSystem.getPath(templatePathName))) {
+			String msg = "The project has been initialised with the template \'" +
+					templatePathName +
+					"\' which does not now exist.";
+			env.err.println("ERROR: " + msg);
+			throw new ADRException(msg);
+		}
+		TemplateEngine templateEngine = properties.getTemplateEngine();
+		Map<String, String> templateFields = properties.getTemplateFields();
+
+		// Read all the specifications before creating any ADR
+		List<RecordSpecReader.RecordSpec> specs;
+		boolean fromStdin = (specFileName == null || specFileName.equals("-"));
+		try {
+			BufferedReader reader = fromStdin
+					? new BufferedReader(new InputStreamReader(env.in, StandardCharsets.UTF_8))
+					: Files.newBufferedReader(env.dir.resolve(specFileName), StandardCharsets.UTF_8);
+			try {
+				specs = new RecordSpecReader(reader, format).readAll();
+			} finally {
+				if (!fromStdin) reader.close();  // Leave standard input open
+			}
+		} catch (RecordSpecReader.SpecException e) {
+			env.err.println("ERROR: " + e.getMessage());
+			return CommandLine.ExitCode.USAGE;
+		} catch (IOException e) {
+			env.err.println("ERROR: Cannot read the ADR specifications. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+
+		// Assign the ids from a single scan and build and check all the records
+		ADRIndex index = ADRIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), docsPath, ADRFilter.filter(properties.getExtensions()));
+		SearchIndex searchIndex = SearchIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), index);
+		Path adrDirPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		int firstId = IdAllocator.allocate(adrDirPath, index.highestId() + 1, specs.size());
+		int lastId = firstId + specs.size() - 1;
+
+		// The ids are given back if none of the ADRs is created
+		boolean created = false;
+		try {
+			List<Record> records = new ArrayList<Record>(specs.size());
+			for (int i = 0; i < specs.size(); i++) {
+				RecordSpecReader.RecordSpec spec = specs.get(i);
+				Record.Builder builder = new Record.Builder(docsPath)
+						.id(firstId + i)
+						.name(spec.title)
+						.date(spec.date != null ? spec.date : new Date())
+						.template(templatePathName)
+						.templateEngine(templateEngine)
+						.index(index)
+						.searchIndex(searchIndex);
+				for (Map.Entry<String, String> field : templateFields.entrySet()) {
+					builder.field(field.getKey(), field.getValue());
+				}
+				if (spec.status != null) builder.status(spec.status);
+				Record record = builder.build();
+
+				for (Integer supersedeId : spec.supersedes) {
+					if (!exists(index, supersedeId, firstId, lastId)) {
+						env.err.println("ERROR: line " + spec.lineNumber + ": ADR to be superseded (ADR " + supersedeId + ") does not exist");
+						return CommandLine.ExitCode.USAGE;
+					}
+					record.addSupersedes(supersedeId);
+				}
+
+				for (String link : spec.links) {
+					int linkedToADRID;
+					try {
+						linkedToADRID = record.addLink(link);
+					} catch (LinkSpecificationException e) {
+						env.err.println("ERROR: line " + spec.lineNumber + ": link '" + link + "' incorrectly formed.");
+						return CommandLine.ExitCode.USAGE;
+					}
+					if (!exists(index, linkedToADRID, firstId, lastId)) {
+						env.err.println("ERROR: line " + spec.lineNumber + ": Linked to ADR (" + linkedToADRID + "), but this ADR does not exist");
+						return CommandLine.ExitCode.USAGE;
+					}
+				}
+
+				records.add(record);
+			}
+
+			// Now write all the ADRs. The index is updated as each ADR is stored, so
+			// that links to ADRs earlier in the batch are resolved.
+			for (Record record : records) {
+				Path adrPath = record.store();
+				env.out.println(adrPath.toString());
+				created = true;
+			}
+		} finally {
+			if (!created) IdAllocator.release(adrDirPath, firstId, specs.size());
+		}
+
+		index.save();
+		searchIndex.save();
+
+		return 0;
+	}
+
+	private static boolean exists(ADRIndex index, int id, int firstId, int lastId) {
+		return index.exists(id) || (id >= firstId && id <= lastId);
+	}
+}
@@ -0,0 +1,86 @@
+package org.doble.commands;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to bring the ADR index up to date, either with the whole document directory or
+ * only with the files that have changed
+ *
+ */
+@Command(name = "index",
+         description = "Brings the ADR index up to date. Without files the whole ADR directory is checked, e.g. after ADRs have been "
+        		    + "edited outside of adr. With files, e.g. the output of git diff --name-only, only those files are read: deleted "
+        		    + "ADRs are removed from the index, added and modified ADRs are read again and files that are not ADRs are ignored. "
+        		    + "So the time taken depends on the number of files changed, not on the number of ADRs.")
+public class CommandIndex implements Callable<Integer> {
+
+	@Parameters(arity = "0..*", paramLabel = "FILE",
+			    description = "The files that have changed, relative to the root directory of the project. - reads the files from "
+			    		    + "the standard input, one per line, e.g. git diff --name-only | adr index -")
+	List<String> files = new ArrayList<String>();
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+		ADRFilter filter = ADRFilter.filter(properties.getExtensions());
+
+		try {
+			if (files.isEmpty()) {
+				ADRIndex index = ADRIndex.openStored(adrPath, docsPath, filter);
+				index.reconcile();
+				index.save();
+				env.out.println("Indexed " + index.entries().size() + " ADR(s).");
+				return 0;
+			}
+
+			List<Path> paths;
+			try {
+				paths = ChangedFiles.read(env, rootPath, files);
+			} catch (IOException e) {
+				env.err.println("FATAL: Cannot read the list of files. Exception message ->" + e.getMessage());
+				return ADR.ERRORGENERAL;
+			}
+
+			ADRIndex index = ADRIndex.openStored(adrPath, docsPath, filter);
+			ADRIndex.Update update = index.update(paths);
+			index.save();
+			env.out.println("Updated " + update.updated.size() + " ADR(s), removed " + update.removed.size()
+					      + ", " + update.unchanged.size() + " unchanged.");
+			return 0;
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot update the ADR index. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+	}
+}
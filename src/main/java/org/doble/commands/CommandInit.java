@@ -69,7 +69,9 @@ public class CommandInit implements Callable<Integer> {
 		if (template != null) properties.setProperty("templateFile", template.toString());
         if (initialTemplate != null) properties.setProperty("initialTemplateFile", initialTemplate.toString());
 
-		Path adrPath = env.dir.resolve(".adr");
+		// Initialise the root directory set with ADR_ROOT, or else the current directory
+		Path rootPath = (env.rootDir != null) ? env.rootDir : env.dir;
+		Path adrPath = rootPath.resolve(".adr");
 
         // Check if the directory has already been initialized
 		if (Files.notExists(adrPath)) {
@@ -110,9 +112,10 @@ public class CommandInit implements Callable<Integer> {
 
 		properties.store(writer, null);
 		writer.close();
+		LocalFiles.ignore(adrPath);
 
 		// Now create the docs directory which contains the adr directory
-		Path docsPath = env.dir.resolve(properties.getProperty("docPath"));
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
 		env.out.println("Creating ADR directory at " + docsPath);
 		Files.createDirectories(docsPath);
 
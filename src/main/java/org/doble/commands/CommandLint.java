@@ -0,0 +1,117 @@
+package org.doble.commands;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to check the architecture decision records for problems
+ *
+ */
+@Command(name = "lint",
+         description = "Checks the ADRs for problems: missing titles or statuses, template placeholders that have not been filled in, "
+        		    + "references to ADRs or files that do not exist, ids used by more than one ADR and files that are not "
+        		    + "recognised as ADRs. With -changed only the ADRs affected by the files listed are checked, e.g. in a git "
+        		    + "pre-commit hook. The exit code is 1 if any errors are found.")
+public class CommandLint implements Callable<Integer> {
+
+	/** The formats the problems can be reported in */
+	enum Format { text, json }
+
+	@Option(names = {"-f", "-format"}, paramLabel = "FORMAT",
+			description = "The output format: ${COMPLETION-CANDIDATES}. Default is ${DEFAULT-VALUE}.")
+	Format format = Format.text;
+
+	@Option(names = {"-threads"}, paramLabel = "N",
+			description = "The number of threads used to check the ADRs. Default is the number of processors.")
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = {"-strict"}, description = "Also fails (exit code 1) if only warnings are found.")
+	boolean strict;
+
+	@Option(names = {"-changed"}, paramLabel = "FILE",
+			description = "Only checks the ADRs affected by the changes to the files listed in FILE, one per line and relative to the "
+					    + "root directory of the project: the ADRs added or modified and the ADRs referencing ADRs that have been "
+					    + "deleted. - reads the list from the standard input, e.g. git diff --cached --name-only --no-renames | adr lint -changed -")
+	String changed;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (threads < 1) {
+			env.err.println("ERROR: The number of threads must be at least 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+		ADRFilter filter = ADRFilter.filter(properties.getExtensions());
+
+		List<ADRLinter.Diagnostic> diagnostics;
+		try {
+			ADRLinter linter = new ADRLinter(docsPath, filter, threads);
+			if (changed == null) {
+				diagnostics = linter.lint();
+			} else {
+				List<Path> paths;
+				try {
+					paths = ChangedFiles.readList(env, rootPath, changed);
+				} catch (IOException e) {
+					env.err.println("FATAL: Cannot read the list of changed files. Exception message ->" + e.getMessage());
+					return ADR.ERRORGENERAL;
+				}
+				ADRIndex index = ADRIndex.openStored(rootPath.resolve(ADR.ADR_DIR_NAME), docsPath, filter);
+				ADRIndex.Update update = index.update(paths);
+				diagnostics = linter.lint(index, update);  // The index is not saved, use the index command for that
+			}
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot access directory. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+
+		int errors = 0;
+		if (format == Format.json) env.out.print("[");
+		for (ADRLinter.Diagnostic diagnostic : diagnostics) {
+			if (format == Format.json) {
+				env.out.print((diagnostic == diagnostics.get(0)) ? "\n" : ",\n");
+				env.out.print("{\"file\": " + JsonOutput.quote(diagnostic.fileName)
+						     + ", \"line\": " + diagnostic.line
+						     + ", \"severity\": " + JsonOutput.quote(diagnostic.severity.name().toLowerCase())
+						     + ", \"message\": " + JsonOutput.quote(diagnostic.message) + "}");
+			} else {
+				env.out.println(diagnostic);
+			}
+			if (diagnostic.severity == ADRLinter.Severity.ERROR) errors++;
+		}
+		if (format == Format.json) env.out.println(diagnostics.isEmpty() ? "]" : "\n]");
+
+		boolean failed = (errors > 0) || (strict && !diagnostics.isEmpty());
+		return failed ? ADR.ERRORGENERAL : 0;
+	}
+}
@@ -1,36 +1,66 @@
 /**
- * 
+ *
  */
 package org.doble.commands;
 
 
-import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.stream.Stream;
 
 import org.doble.adr.*;
+import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.ParentCommand;
 
 /**
- * Subcommand to list the filenames of the currently created architecture decision records
- * 
+ * Subcommand to list the currently created architecture decision records
+ *
  * @author adoble
  *
  */
 
 @Command(name = "list",
-         description = "Lists the filenames of the currently created architecture decision records.")
+         description = "Lists the currently created architecture decision records, ordered by id. "
+         		    + "By default the filenames are listed. The formats json and tsv also give the id, title, status and date "
+         		    + "of each ADR (read from the ADR index, so the ADRs themselves are not opened).")
 public class CommandList implements Callable<Integer> {
+
+	/** The formats the ADRs can be listed in */
+	enum Format { name, tsv, json }
+
+	/** The keys the ADRs can be sorted with */
+	enum SortKey { id, title, status }
+
+	@Option(names = {"-f", "-format"}, paramLabel = "FORMAT",
+			description = "The output format: ${COMPLETION-CANDIDATES}. Default is ${DEFAULT-VALUE}.")
+	Format format = Format.name;
+
+	@Option(names = {"-sort"}, paramLabel = "KEY",
+			description = "Sorts the ADRs by ${COMPLETION-CANDIDATES}. Default is ${DEFAULT-VALUE}. "
+					    + "ADRs with the same title or status are ordered by id.")
+	SortKey sortKey = SortKey.id;
+
+	@Option(names = {"-r", "-reverse"}, description = "Lists the ADRs in reverse order.")
+	boolean reverse;
+
+	@Option(names = {"-limit"}, paramLabel = "N", description = "Lists at most N ADRs.")
+	int limit = -1;
+
+	@Option(names = {"-offset"}, paramLabel = "N", description = "Skips the first N ADRs.")
+	int offset = 0;
+
 	@ParentCommand
 	CommandADR commandADR;
-	
+
 	private Environment env;
-	private ADRProperties properties; 
+	private ADRProperties properties;
 
 	/**
-	 * 
+	 *
 	 */
 	public CommandList()  {
 
@@ -41,11 +71,16 @@ public class CommandList implements Callable<Integer> {
 	 */
 	@Override
 	public Integer call() {
-		
+
 		env = commandADR.getEnvironment();
-		
+
+		if (offset < 0 || (limit < 0 && limit != -1)) {
+			env.err.println("ERROR: The offset and the limit cannot be negative.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
 		properties = new ADRProperties(env);
-					
+
 		// Load the properties
 		try {
 			properties.load();
@@ -53,7 +88,7 @@ public class CommandList implements Callable<Integer> {
 			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
 			return ADR.ERRORGENERAL;
 		}
-		
+
 		Path rootPath;
 		try {
 			rootPath = ADR.getRootPath(env);
@@ -61,21 +96,82 @@ public class CommandList implements Callable<Integer> {
 			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
 			return ADR.ERRORGENERAL;
 		}
-		
-		
+
+
 		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
 
-		try (Stream<Path> stream = Files.list(docsPath)){
-			stream.map(Path::getFileName).filter(ADRFilter.filter()).forEachOrdered(env.out::println);
-		} catch (IOException e) {
+		try {
+			ADRIndex index = ADRIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), docsPath, ADRFilter.filter(properties.getExtensions()));
+			print(selectedEntries(index));
+			index.save();
+		} catch (ADRException e) {
 			env.out.println("FATAL: Cannot access directory. Exception message ->" + e.getMessage());
 			return ADR.ERRORGENERAL;
 		}
 
-		        
+
 		return 0;
 	}
 
+	/**
+	 * @return The entries of the index in the requested order, without the first <code>offset</code>
+	 * entries and at most <code>limit</code> entries. Ordering by id uses the order of the index
+	 * itself, so only the entries listed are decoded. Ordering by title or status needs all the entries.
+	 */
+	private List<ADRIndex.Entry> selectedEntries(ADRIndex index) {
+		if (sortKey == SortKey.id) {
+			return index.entries(offset, limit, reverse);
+		}
+
+		Comparator<ADRIndex.Entry> comparator;
+		if (sortKey == SortKey.title) {
+			comparator = Comparator.comparing((ADRIndex.Entry e) -> e.title, String.CASE_INSENSITIVE_ORDER);
+		} else {
+			comparator = Comparator.comparing((ADRIndex.Entry e) -> e.status, String.CASE_INSENSITIVE_ORDER);
+		}
+		comparator = comparator.thenComparingInt(e -> e.id);
+		if (reverse) comparator = comparator.reversed();
+
+		List<ADRIndex.Entry> sorted = new ArrayList<ADRIndex.Entry>(index.entries());
+		sorted.sort(comparator);
+		int from = Math.min(offset, sorted.size());
+		int to = (limit < 0) ? sorted.size() : (int) Math.min((long) from + limit, sorted.size());
+		return sorted.subList(from, to);
+	}
+
+	/**
+	 * Prints the entries one by one.
+	 */
+	private void print(List<ADRIndex.Entry> entries) {
+		if (format == Format.tsv) env.out.println("id\ttitle\tstatus\tdate\tfile");
+		if (format == Format.json) env.out.print("[");
 
+		int printed = 0;
+		for (ADRIndex.Entry entry : entries) {
+			switch (format) {
+			case tsv:
+				env.out.println(entry.id + "\t" + tsvField(entry.title) + "\t" + tsvField(entry.status) + "\t"
+			                    + tsvField(entry.date) + "\t" + tsvField(entry.fileName));
+				break;
+			case json:
+				env.out.print((printed == 0) ? "\n" : ",\n");
+				env.out.print("{\"id\": " + entry.id
+						     + ", \"title\": " + JsonOutput.quote(entry.title)
+						     + ", \"status\": " + JsonOutput.quote(entry.status)
+						     + ", \"date\": " + JsonOutput.quote(entry.date)
+						     + ", \"file\": " + JsonOutput.quote(entry.fileName) + "}");
+				break;
+			default:
+				env.out.println(entry.fileName);
+			}
+			printed++;
+		}
+
+		if (format == Format.json) env.out.println((printed == 0) ? "]" : "\n]");
+	}
+
+	private static String tsvField(String s) {
+		return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
 
 }
@@ -3,26 +3,27 @@
  */
 package org.doble.commands;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
 
 import org.doble.adr.ADR;
 import org.doble.adr.ADRException;
+import org.doble.adr.ADRFilter;
+import org.doble.adr.ADRIndex;
 import org.doble.adr.ADRProperties;
 import org.doble.adr.EditorRunner;
 import org.doble.adr.Environment;
+import org.doble.adr.IdAllocator;
 import org.doble.adr.LinkSpecificationException;
 import org.doble.adr.Record;
+import org.doble.adr.SearchIndex;
+import org.doble.adr.TemplateEngine;
 //import org.doble.annotations.Cmd;
 
 import picocli.CommandLine;
@@ -64,6 +65,12 @@ public class CommandNew implements Callable<Integer> {
 			+ " it has been superseded by the new ADR."
 			+ " Multiple -s options can be given, so that the new ADR can supersede multiple existing ADRs")
 	ArrayList<Integer> supersedes = new ArrayList<Integer>();
+
+	@Option(names = {"-f", "-field"}, paramLabel = "NAME=VALUE",
+			description = "Sets a custom field of the template, e.g. -field deciders=\"Jane, John\"."
+			+ " Overrides a field of the same name set in the project properties (field.<name>)."
+			+ " Multiple -field options can be given.")
+	Map<String, String> fields = new TreeMap<String, String>();
 	
 	@ParentCommand
 	CommandADR commandADR; 
@@ -71,6 +78,10 @@ public class CommandNew implements Callable<Integer> {
 	private Environment env;
 	
 	ADRProperties properties;
+	
+	private ADRIndex index;
+
+	private SearchIndex searchIndex;
 
 
 
@@ -94,6 +105,10 @@ public class CommandNew implements Callable<Integer> {
 		// Determine where the ADRs are stored and 
 		// set up the record object 
 		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+		
+		// Open the index of the existing ADRs
+		index = ADRIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), docsPath, ADRFilter.filter(properties.getExtensions()));
+		searchIndex = SearchIndex.open(rootPath.resolve(ADR.ADR_DIR_NAME), index);
 
 		// Check to see if the editor command has been set.
 		if (env.editorCommand == null) {
@@ -118,6 +133,8 @@ public class CommandNew implements Callable<Integer> {
 		    }
 		
 	    } 
+	    
+	    TemplateEngine templateEngine = properties.getTemplateEngine();
 	    		
 		// Create the ADR title from the arguments
 		StringBuilder sb = new StringBuilder();
@@ -128,78 +145,83 @@ public class CommandNew implements Callable<Integer> {
 		}
 		adrTitle = sb.toString().trim(); //Remove the last space
 		
-		// Build the record
-		Record record = new Record.Builder(docsPath)
-				.id(highestIndex() + 1)
-				.name(adrTitle)
-				.date(new Date())
-				.template(templatePathName)
-				.build();
-
-		for (Integer supersedeId : supersedes) {
-			// Check that a ADR with the specified ID exists, i.e. there is an ADR 
-			// that can be superseded.
-			if (!checkADRExists(supersedeId)) {
-				String msg = "ADR to be superseded (ADR " + supersedeId + ") does not exist";
-				env.err.println("ERROR: " + msg);
-				throw new ADRException(msg);
-			}
-			record.addSupersedes(supersedeId);
-		}
-
-		//TODO check that record can handle multiple links
-		
+		// Build the record. The id is given back if the ADR is not created.
+		Path adrDirPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		int id = IdAllocator.allocate(adrDirPath, index.highestId() + 1);
+		boolean created = false;
+		Throwable failure = null;
+		Path adrPath;
 		try {
-			for (String link: links) {
-				int linkedToADRID = record.addLink(link);
-				// Check that the ADR linked to really exists.
-				if (!checkADRExists(linkedToADRID)) {
-					System.err.println("ERROR: Linked to ADR (" + linkedToADRID + "), but this ADR does not exist");
-					throw new ADRException("Linked to ADR (" + linkedToADRID + "), but this ADR does not exist");
+			Record.Builder builder = new Record.Builder(docsPath)
+					.id(id)
+					.name(adrTitle)
+					.date(new Date())
+					.template(templatePathName)
+					.templateEngine(templateEngine)
+					.index(index)
+					.searchIndex(searchIndex);
+			for (Map.Entry<String, String> field : properties.getTemplateFields().entrySet()) {
+				builder.field(field.getKey(), field.getValue());
+			}
+			for (Map.Entry<String, String> field : fields.entrySet()) {
+				builder.field(field.getKey(), field.getValue());
+			}
+			Record record = builder.build();
+
+			for (Integer supersedeId : supersedes) {
+				// Check that a ADR with the specified ID exists, i.e. there is an ADR 
+				// that can be superseded.
+				if (!index.exists(supersedeId)) {
+					String msg = "ADR to be superseded (ADR " + supersedeId + ") does not exist";
+					env.err.println("ERROR: " + msg);
+					throw new ADRException(msg);
 				}
+				record.addSupersedes(supersedeId);
 			}
-			
-		} catch (LinkSpecificationException e) {
-			String msg = "ERROR: -l parameter incorrectly formed.";
-			env.err.println(msg);   //TODO check that there is a test for this.
-			return CommandLine.ExitCode.USAGE;  // Ensure that the usage instruction are shown
-		}
 
-		
-		createADR(record);
-		
-		
-		return exitCode;
-	}
+			//TODO check that record can handle multiple links
+			
+			try {
+				for (String link: links) {
+					int linkedToADRID = record.addLink(link);
+					// Check that the ADR linked to really exists.
+					if (!index.exists(linkedToADRID)) {
+						System.err.println("ERROR: Linked to ADR (" + linkedToADRID + "), but this ADR does not exist");
+						throw new ADRException("Linked to ADR (" + linkedToADRID + "), but this ADR does not exist");
+					}
+				}
+				
+			} catch (LinkSpecificationException e) {
+				String msg = "ERROR: -l parameter incorrectly formed.";
+				env.err.println(msg);   //TODO check that there is a test for this.
+				return CommandLine.ExitCode.USAGE;  // Ensure that the usage instruction are shown
+			}
 
-	private boolean checkADRExists(Integer adrID) throws ADRException, IOException {
-		// Get the doc path
-		Path rootPath = ADR.getRootPath(env);
-		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
-		
-		// Format the ADR ID
-		String formattedADRID = String.format("%04d", adrID);
-		
-		boolean found = false;
-		try (DirectoryStream<Path>  stream = Files.newDirectoryStream(docsPath)) {
-			for (Path entry: stream) {
-				if (entry.getFileName().toString().startsWith(formattedADRID)) {
-					found = true;
-					break;
+			env.out.println("Creating ADR");
+			adrPath = record.store();
+			created = true;  // The id is used from now on, even if the rest fails
+		} catch (Throwable t) {
+			failure = t;
+			throw t;
+		} finally {
+			if (!created) {
+				try {
+					IdAllocator.release(adrDirPath, id, 1);
+				} catch (ADRException e) {
+					if (failure == null) throw e;
+					failure.addSuppressed(e);  // Do not hide why the ADR was not created
 				}
 			}
 		}
-	    
-		return found;
-	}
 
-	private void createADR(Record record) throws ADRException {
-		// The ADR file that is created
-		Path adrPath;
+		openADR(adrPath);
 		
-		env.out.println("Creating ADR");
+		return exitCode;
+	}
 
-		adrPath = record.store();
+	private void openADR(Path adrPath) throws ADRException {
+		index.save();
+		searchIndex.save();
 		
 		env.out.println("Created ADR at " + adrPath.toString());
 
@@ -212,34 +234,4 @@ public class CommandNew implements Callable<Integer> {
 
 		env.out.println(adrPath.toString());  // Return the file name of the ADR
 	}
-
-	/**
-	 * Find the highest index of the ADRs in the adr directory by iterating
-	 * through all the files
-	 *
-	 * @return int The highest index found. If no files are found returns 0.
-	 */
-	private int highestIndex() throws ADRException {
-		OptionalInt highestIndex;
-
-		Path docPath = env.fileSystem.getPath(properties.getProperty("docPath"));
-		Path rootPath = ADR.getRootPath(env);
-		Path adrPath = rootPath.resolve(docPath);
-
-		try {
-			highestIndex = Files.list(adrPath).mapToInt(CommandNew::toInt).max();
-		} catch (IOException e) {
-			throw new ADRException("FATAL: Unable to determine the indexes of the ADRs.", e);
-		}
-
-		return (highestIndex.isPresent() ? highestIndex.getAsInt() : 0);
-	}
-
-	private static int toInt(Path p) {
-		String name = p.getFileName().toString();
-
-		// Extract the first 4 characters
-		String id = name.substring(0, 4);
-		return new Integer(id);
-	}
 }
@@ -0,0 +1,125 @@
+package org.doble.commands;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to render existing architecture decision records again with the current template
+ *
+ */
+@Command(name = "rerender",
+         description = "Renders the ADRs again with the current template (property templateFile in .adr/adr.properties), e.g. after "
+        		    + "the template has been changed. The title, date, status and links of each ADR are rendered through the template "
+        		    + "and the sections after the status that the template also has (e.g. Context) keep the text of the ADR. Sections "
+        		    + "that only the ADR has are kept as well. ADRs whose content does not change are not written. "
+        		    + "The exit code is 1 if any ADR could not be rendered.")
+public class CommandRerender implements Callable<Integer> {
+
+	@Parameters(arity = "0..*", paramLabel = "ID", description = "The ids of the ADRs. Default is all the ADRs.")
+	List<Integer> ids = new ArrayList<Integer>();
+
+	@Option(names = {"-threads"}, paramLabel = "N",
+			description = "The number of threads used to render the ADRs. Default is the number of processors.")
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (threads < 1) {
+			env.err.println("ERROR: The number of threads must be at least 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		String templatePathName = properties.getProperty("templateFile");
+		if (templatePathName != null && !Files.exists(env.fileSystem.getPath(templatePathName))) {
+			env.err.println("ERROR: The project has been initialised with the template \'" + templatePathName
+					      + "\' which does not now exist.");
+			return ADR.ERRORGENERAL;
+		}
+
+		try {
+			TemplateEngine templateEngine = properties.getTemplateEngine();
+			ADRIndex index = ADRIndex.open(adrPath, docsPath, ADRFilter.filter(properties.getExtensions()));
+			SearchIndex searchIndex = SearchIndex.open(adrPath, index);
+
+			List<Path> adrFiles = new ArrayList<Path>();
+			if (ids.isEmpty()) {
+				for (ADRIndex.Entry entry : index.entries()) {
+					adrFiles.add(docsPath.resolve(entry.fileName));
+				}
+			} else {
+				for (int id : ids) {
+					if (!index.exists(id)) {
+						env.err.println("ERROR: There is no ADR with the id " + id + ".");
+						return CommandLine.ExitCode.USAGE;
+					}
+					adrFiles.add(docsPath.resolve(index.getFileName(id)));
+				}
+			}
+
+			List<RecordRerenderer.Result> results = new RecordRerenderer(index, threads)
+					.template(templatePathName, templateEngine)
+					.fields(properties.getTemplateFields())
+					.rerender(adrFiles);
+
+			int rendered = 0;
+			boolean failed = false;
+			for (RecordRerenderer.Result result : results) {
+				switch (result.outcome) {
+				case RENDERED:
+					index.put(result.path);
+					searchIndex.put(result.path);
+					env.out.println(result.path.getFileName());
+					rendered++;
+					break;
+				case UNCHANGED:
+					break;
+				default:
+					env.err.println("ERROR: " + result.path.getFileName() + ": " + result.message);
+					failed = true;
+				}
+			}
+			env.out.println("Rendered " + rendered + " of " + results.size() + " ADR(s).");
+
+			index.save();
+			searchIndex.save();
+			return failed ? ADR.ERRORGENERAL : 0;
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot render the ADRs. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.doble.commands;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to search the text of the architecture decision records
+ *
+ */
+@Command(name = "search",
+         description = "Searches the architecture decision records and lists the file names of the ADRs found, best match first. "
+        		    + "All the words of the query have to be found in an ADR. A word ending with * matches all words starting with it "
+        		    + "and words in double quotes have to be found as a phrase. "
+        		    + "The search uses an index stored in the .adr directory, so the ADRs themselves are only read when they have changed.")
+public class CommandSearch implements Callable<Integer> {
+
+	@Parameters(arity = "1..*", paramLabel = "QUERY", description = "The words to search for.")
+	String[] queryParts;
+
+	@Option(names = {"-limit"}, paramLabel = "N", description = "Lists at most N ADRs.")
+	int limit = -1;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (limit < 0 && limit != -1) {
+			env.err.println("ERROR: The limit cannot be negative.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		try {
+			ADRIndex index = ADRIndex.open(adrPath, docsPath, ADRFilter.filter(properties.getExtensions()));
+			SearchIndex searchIndex = SearchIndex.open(adrPath, index);
+
+			List<SearchIndex.Hit> hits = searchIndex.search(String.join(" ", queryParts));
+			int count = (limit >= 0) ? Math.min(limit, hits.size()) : hits.size();
+			for (SearchIndex.Hit hit : hits.subList(0, count)) {
+				env.out.println(hit.fileName);
+			}
+
+			index.save();
+			searchIndex.save();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot search the ADRs. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+
+		return 0;
+	}
+}
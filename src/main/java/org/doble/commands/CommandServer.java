@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package org.doble.commands;
+
+import java.util.concurrent.Callable;
+
+import org.doble.adr.ADR;
+import org.doble.adr.ADRClient;
+import org.doble.adr.ADRServer;
+import org.doble.adr.Environment;
+
+import picocli.CommandLine.*;
+
+
+/**
+ * Subcommand to run adr as a server, so that commands are answered by a warm JVM.
+ */
+
+@Command(name = "server",
+         description = "Runs adr as a server on a local (loopback) port, keeping the properties, the ADR index and the "
+         		    + "templates in memory between commands. If the environment variable ADR_CLIENT is set, "
+         		    + "adr forwards its arguments to the running server instead of executing the command itself. "
+         		    + "Standard input is not forwarded to the server.")
+public class CommandServer implements Callable<Integer> {
+
+	@Option(names = {"-p", "-port"}, paramLabel = "PORT",
+			description = "The port the server listens on. Default is any free port.")
+	int port = 0;
+
+	@Option(names = {"-stop"}, description = "Stops the running server.")
+	boolean stop;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() throws Exception {
+		Environment env = commandADR.getEnvironment();
+
+		if (stop) {
+			if (new ADRClient(ADRServer.serverFile(), env.out, env.err).stop()) {
+				env.out.println("ADR server stopped");
+				return 0;
+			} else {
+				env.err.println("ERROR: No ADR server is running.");
+				return ADR.ERRORGENERAL;
+			}
+		}
+
+		new ADRServer(env.out, ADRServer.serverFile()).serve(port);
+		return 0;
+	}
+}
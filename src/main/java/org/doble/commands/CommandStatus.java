@@ -0,0 +1,145 @@
+package org.doble.commands;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to change the status of architecture decision records
+ *
+ */
+@Command(name = "status",
+         description = "Changes the status of one or more ADRs, given by their ids or found with a search query (see the search command). "
+        		    + "Only the status of each ADR is rewritten. The change is checked against the transitions set with "
+        		    + "transition.<status> properties in .adr/adr.properties (by default Proposed -> Accepted, Rejected and "
+        		    + "Accepted -> Deprecated, Superseded). ADRs whose status cannot be changed are reported and the others are "
+        		    + "changed. The exit code is 1 if the status of any ADR could not be changed.")
+public class CommandStatus implements Callable<Integer> {
+
+	@Parameters(index = "0", paramLabel = "STATUS", description = "The new status, e.g. Accepted.")
+	String status;
+
+	@Parameters(index = "1..*", arity = "0..*", paramLabel = "ID", description = "The ids of the ADRs.")
+	List<Integer> ids = new ArrayList<Integer>();
+
+	@Option(names = {"-q", "-query"}, paramLabel = "QUERY",
+			description = "Changes the ADRs found with the search query, in addition to the ADRs given by id.")
+	String query;
+
+	@Option(names = {"-force"}, description = "Changes the status even if the transition is not allowed.")
+	boolean force;
+
+	@Option(names = {"-threads"}, paramLabel = "N",
+			description = "The number of threads used to change the ADRs. Default is the number of processors.")
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (status.trim().isEmpty()) {
+			env.err.println("ERROR: The status cannot be empty.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (ids.isEmpty() && query == null) {
+			env.err.println("ERROR: Give the ids of the ADRs or a query (-query) to find them.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (threads < 1) {
+			env.err.println("ERROR: The number of threads must be at least 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+
+		try {
+			ADRIndex index = ADRIndex.open(adrPath, docsPath, ADRFilter.filter(properties.getExtensions()));
+			SearchIndex searchIndex = SearchIndex.open(adrPath, index);
+
+			// The ADRs given by id must all exist before any ADR is changed
+			Set<Integer> selected = new LinkedHashSet<Integer>();
+			for (int id : ids) {
+				if (!index.exists(id)) {
+					env.err.println("ERROR: There is no ADR with the id " + id + ".");
+					return CommandLine.ExitCode.USAGE;
+				}
+				selected.add(id);
+			}
+			if (query != null) {
+				for (SearchIndex.Hit hit : searchIndex.search(query)) {
+					selected.add(hit.id);
+				}
+			}
+			if (selected.isEmpty()) {
+				env.out.println("No ADRs found.");
+				return 0;
+			}
+
+			List<Path> adrFiles = new ArrayList<Path>(selected.size());
+			for (int id : selected) {
+				adrFiles.add(docsPath.resolve(index.getFileName(id)));
+			}
+
+			StatusTransitions transitions = properties.getStatusTransitions();
+			String newStatus = transitions.canonical(status.trim());
+			List<StatusUpdater.Result> results = new StatusUpdater(transitions, threads)
+					.force(force)
+					.update(adrFiles, newStatus);
+
+			boolean failed = false;
+			for (StatusUpdater.Result result : results) {
+				String fileName = result.path.getFileName().toString();
+				switch (result.outcome) {
+				case CHANGED:
+					index.put(result.path);
+					searchIndex.put(result.path);
+					env.out.println(fileName + ": " + result.previousStatus + " -> " + newStatus);
+					break;
+				case UNCHANGED:
+					env.out.println(fileName + ": " + result.previousStatus + " (unchanged)");
+					break;
+				default:
+					env.err.println("ERROR: " + fileName + ": " + result.message);
+					failed = true;
+				}
+			}
+
+			index.save();
+			searchIndex.save();
+			return failed ? ADR.ERRORGENERAL : 0;
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot change the status of the ADRs. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		}
+	}
+}
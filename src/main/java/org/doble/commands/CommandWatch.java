@@ -0,0 +1,110 @@
+package org.doble.commands;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.doble.adr.*;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Subcommand to keep the indexes, the HTML site and the table of contents up to date while the ADRs are edited
+ *
+ */
+@Command(name = "watch",
+         description = "Watches the ADR directory and keeps the ADR index and the search index up to date as ADRs are "
+        		    + "created, edited and deleted. Optionally the HTML site (-html) and a table of contents (-toc) are "
+        		    + "kept up to date as well. Changes are applied in batches and only the ADRs that have changed are read "
+        		    + "again. Runs until interrupted, unless -timeout is given.")
+public class CommandWatch implements Callable<Integer> {
+
+	@Option(names = {"-html"}, description = "Keeps the HTML site up to date, see the export command.")
+	boolean html;
+
+	@Option(names = {"-o", "-output"}, paramLabel = "DIR",
+			description = "The directory the site is written to, relative to the root directory of the project. Default is ${DEFAULT-VALUE}.")
+	String output = "site";
+
+	@Option(names = {"-toc"}, paramLabel = "FILE",
+			description = "Keeps a table of contents up to date in the file, e.g. README.md in the ADR directory. See the generate toc command.")
+	String tocFile;
+
+	@Option(names = {"-debounce"}, paramLabel = "MS",
+			description = "The time in milliseconds without changes after which the changes are applied. Default is ${DEFAULT-VALUE}.")
+	long debounce = ADRWatcher.DEFAULT_DEBOUNCE_MILLIS;
+
+	@Option(names = {"-timeout"}, paramLabel = "SECONDS",
+			description = "Stops watching when no ADR has changed for this number of seconds.")
+	long timeout = 0;
+
+	@ParentCommand
+	CommandADR commandADR;
+
+	@Override
+	public Integer call() {
+		Environment env = commandADR.getEnvironment();
+
+		if (debounce < 0 || timeout < 0) {
+			env.err.println("ERROR: The debounce time and the timeout cannot be negative.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		ADRProperties properties = new ADRProperties(env);
+		try {
+			properties.load();
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot load properties file. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path rootPath;
+		try {
+			rootPath = ADR.getRootPath(env);
+		} catch (ADRException e) {
+			env.err.println("FATAL: Cannot determine project root directory. Exception message ->" + e.getMessage() );
+			return ADR.ERRORGENERAL;
+		}
+
+		Path docsPath = rootPath.resolve(properties.getProperty("docPath"));
+		Path adrPath = rootPath.resolve(ADR.ADR_DIR_NAME);
+		ADRFilter filter = ADRFilter.filter(properties.getExtensions());
+
+		try (ADRWatcher watcher = new ADRWatcher(adrPath, docsPath, filter).debounce(debounce)) {
+			if (html) watcher.site(rootPath.resolve(output));
+			if (tocFile != null) watcher.toc(new TableOfContents(docsPath, filter), env.dir.resolve(tocFile));
+			print(env, watcher.update());
+
+			env.out.println("Watching " + docsPath + " ...");
+			env.out.flush();
+			while (true) {
+				ADRWatcher.Batch batch = watcher.poll((timeout > 0) ? timeout : Long.MAX_VALUE, (timeout > 0) ? TimeUnit.SECONDS : TimeUnit.MILLISECONDS);
+				if (batch == null) break;  // Timed out
+				if (batch.changed.isEmpty() && !batch.overflow) continue;
+
+				for (String error : batch.errors) {
+					env.err.println("ERROR: Cannot index the ADR " + error);
+				}
+				print(env, batch.written);
+				env.out.println((batch.overflow ? "Reconciled all ADRs" : "Updated " + batch.changed.size() + " ADR file(s)")
+						+ String.format(" in %.1f ms", batch.nanos / 1e6));
+				env.out.flush();
+			}
+		} catch (ADRException | IOException e) {
+			env.err.println("FATAL: Cannot watch the ADRs. Exception message ->" + e.getMessage());
+			return ADR.ERRORGENERAL;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return 0;
+	}
+
+	private static void print(Environment env, Iterable<Path> paths) {
+		for (Path path : paths) {
+			env.out.println(path.toString());
+		}
+	}
+}
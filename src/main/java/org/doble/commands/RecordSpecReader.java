@@ -0,0 +1,308 @@
+package org.doble.commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the specifications of ADRs to be created from a stream. Two formats are supported:
+ *
+ * CSV, with a header line naming the columns, e.g.
+ * <code>
+ *     title,status,date,links,supersedes
+ *     Use PostgreSQL,Accepted,2019-10-01,"4:Amends;5:Extends",3
+ * </code>
+ *
+ * JSON lines, one object per line, e.g.
+ * <code>
+ *     {"title": "Use PostgreSQL", "status": "Accepted", "date": "2019-10-01", "links": ["4:Amends"], "supersedes": [3]}
+ * </code>
+ *
+ * Only the title is required. Dates have the form yyyy-MM-dd. In CSV, multiple links or
+ * superseded ADRs are separated with ';'.
+ */
+class RecordSpecReader {
+
+	enum Format {csv, json}
+
+	/** The specification of a single ADR */
+	static class RecordSpec {
+		final int lineNumber;
+		String title;
+		String status;
+		Date date;
+		List<String> links = new ArrayList<String>();
+		List<Integer> supersedes = new ArrayList<Integer>();
+
+		RecordSpec(int lineNumber) {
+			this.lineNumber = lineNumber;
+		}
+	}
+
+	/** Raised if the input cannot be parsed. The message contains the line number. */
+	static class SpecException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		SpecException(int lineNumber, String msg) {
+			super("line " + lineNumber + ": " + msg);
+		}
+	}
+
+	private final BufferedReader reader;
+	private Format format;
+	private int lineNumber = 0;
+	private List<String> columns;
+
+	/**
+	 * @param reader The input
+	 * @param format The format of the input or null if it is to be determined from the first line
+	 */
+	RecordSpecReader(BufferedReader reader, Format format) {
+		this.reader = reader;
+		this.format = format;
+	}
+
+	/**
+	 * Reads all the specifications from the input.
+	 */
+	List<RecordSpec> readAll() throws IOException, SpecException {
+		List<RecordSpec> specs = new ArrayList<RecordSpec>();
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()) continue;
+
+			if (format == null) {
+				format = line.trim().startsWith("{") ? Format.json : Format.csv;
+			}
+
+			if (format == Format.json) {
+				specs.add(toSpec(new JsonObjectParser(line, lineNumber).parse()));
+			} else if (columns == null) {
+				columns = new ArrayList<String>();
+				for (String column : splitCSV(line)) {
+					columns.add(column.trim().toLowerCase());
+				}
+				if (!columns.contains("title")) {
+					throw new SpecException(lineNumber, "the CSV header does not contain a title column");
+				}
+			} else {
+				List<String> values = splitCSV(line);
+				Map<String, Object> fields = new LinkedHashMap<String, Object>();
+				for (int i = 0; i < columns.size() && i < values.size(); i++) {
+					String value = values.get(i).trim();
+					if (!value.isEmpty()) fields.put(columns.get(i), value);
+				}
+				specs.add(toSpec(fields));
+			}
+		}
+
+		return specs;
+	}
+
+	private RecordSpec toSpec(Map<String, Object> fields) throws SpecException {
+		RecordSpec spec = new RecordSpec(lineNumber);
+
+		Object title = fields.get("title");
+		if (title == null || title.toString().trim().isEmpty()) {
+			throw new SpecException(lineNumber, "no title specified");
+		}
+		spec.title = title.toString().trim();
+
+		Object status = fields.get("status");
+		if (status != null) spec.status = status.toString().trim();
+
+		Object date = fields.get("date");
+		if (date != null) {
+			try {
+				SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+				dateFormat.setLenient(false);
+				spec.date = dateFormat.parse(date.toString().trim());
+			} catch (ParseException e) {
+				throw new SpecException(lineNumber, "the date '" + date + "' does not have the form yyyy-MM-dd");
+			}
+		}
+
+		for (String link : toList(fields.get("links"))) {
+			spec.links.add(link);
+		}
+
+		for (String supersedes : toList(fields.get("supersedes"))) {
+			try {
+				spec.supersedes.add(Integer.valueOf(supersedes));
+			} catch (NumberFormatException e) {
+				throw new SpecException(lineNumber, "'" + supersedes + "' is not the id of an ADR");
+			}
+		}
+
+		return spec;
+	}
+
+	/** Converts a field that is either a list or a ';' separated string into a list of strings */
+	private static List<String> toList(Object value) {
+		List<String> list = new ArrayList<String>();
+		if (value instanceof List) {
+			for (Object element : (List<?>) value) {
+				list.add(element.toString().trim());
+			}
+		} else if (value != null) {
+			for (String element : value.toString().split(";")) {
+				if (!element.trim().isEmpty()) list.add(element.trim());
+			}
+		}
+		return list;
+	}
+
+	/** Splits a CSV line. Fields may be quoted with '"', with "" standing for a quote in a quoted field. */
+	private List<String> splitCSV(String line) throws SpecException {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) throw new SpecException(lineNumber, "unterminated quote");
+		fields.add(field.toString());
+
+		return fields;
+	}
+
+	/**
+	 * Parser for a single, flat JSON object. Values can be strings, numbers, booleans, null or
+	 * arrays of these.
+	 */
+	private static class JsonObjectParser {
+		private final String text;
+		private final int lineNumber;
+		private int pos = 0;
+
+		JsonObjectParser(String text, int lineNumber) {
+			this.text = text;
+			this.lineNumber = lineNumber;
+		}
+
+		Map<String, Object> parse() throws SpecException {
+			Map<String, Object> object = new LinkedHashMap<String, Object>();
+			expect('{');
+			if (peek() == '}') {
+				pos++;
+			} else {
+				do {
+					String key = parseString();
+					expect(':');
+					object.put(key.toLowerCase(), parseValue());
+				} while (accept(','));
+				expect('}');
+			}
+			if (peek() != 0) throw error("unexpected characters after the object");
+			return object;
+		}
+
+		private Object parseValue() throws SpecException {
+			char c = peek();
+			if (c == '"') {
+				return parseString();
+			} else if (c == '[') {
+				pos++;
+				List<Object> list = new ArrayList<Object>();
+				if (peek() == ']') {
+					pos++;
+					return list;
+				}
+				do {
+					list.add(parseValue());
+				} while (accept(','));
+				expect(']');
+				return list;
+			} else {
+				int start = pos;
+				while (pos < text.length() && ",]} \t".indexOf(text.charAt(pos)) < 0) pos++;
+				String literal = text.substring(start, pos);
+				if (literal.isEmpty()) throw error("value expected");
+				if (literal.equals("null")) return null;
+				if (literal.equals("true") || literal.equals("false")) return literal;
+				if (!literal.matches("-?[0-9]+(\\.[0-9]+)?([eE][-+]?[0-9]+)?")) throw error("invalid value '" + literal + "'");
+				return literal;
+			}
+		}
+
+		private String parseString() throws SpecException {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (pos < text.length()) {
+				char c = text.charAt(pos++);
+				if (c == '"') return sb.toString();
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (pos >= text.length()) break;
+				char escaped = text.charAt(pos++);
+				switch (escaped) {
+				case 'n': sb.append('\n'); break;
+				case 't': sb.append('\t'); break;
+				case 'r': sb.append('\r'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					if (pos + 4 > text.length()) throw error("invalid unicode escape");
+					try {
+						sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("invalid unicode escape");
+					}
+					pos += 4;
+					break;
+				default: sb.append(escaped);
+				}
+			}
+			throw error("unterminated string");
+		}
+
+		private char peek() {
+			while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+			return pos < text.length() ? text.charAt(pos) : 0;
+		}
+
+		private boolean accept(char c) {
+			if (peek() == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) throws SpecException {
+			if (!accept(c)) throw error("'" + c + "' expected");
+		}
+
+		private SpecException error(String msg) {
+			return new SpecException(lineNumber, msg + " at column " + (pos + 1));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ADRFilterTest {
+	private FileSystem fileSystem;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private Path path(String fileName) {
+		return fileSystem.getPath("/project/doc/adr", fileName);
+	}
+
+	@Test
+	public void testDefaultFilter() {
+		ADRFilter filter = ADRFilter.filter();
+
+		assertTrue(filter.test(path("0001-record-architecture-decisions.md")));
+		assertTrue(filter.test(path("12345-a-lot-of-decisions.md")));
+		assertTrue(filter.test(path("0001.md")));
+
+		assertFalse(filter.test(path("README.md")));
+		assertFalse(filter.test(path("001-too-short.md")));
+		assertFalse(filter.test(path("0001-other-extension.txt")));
+		assertFalse(filter.test(path("0001-no-extension")));
+		assertFalse(filter.test(path("0001")));
+	}
+
+	@Test
+	public void testIdFilter() {
+		ADRFilter filter = ADRFilter.filter(12);
+
+		assertTrue(filter.test(path("0012-twelve.md")));
+		assertTrue(filter.test(path("0012.md")));
+
+		assertFalse(filter.test(path("0001-one.md")));
+		assertFalse(filter.test(path("0120-hundred-and-twenty.md")));
+		assertFalse(filter.test(path("00123-hundred-and-twenty-three.md")));
+		assertFalse(filter.test(path("0012-twelve.txt")));
+
+		assertTrue(ADRFilter.filter(12345).test(path("12345-large.md")));
+		assertFalse(ADRFilter.filter(1234).test(path("12345-large.md")));
+	}
+
+	@Test
+	public void testStringIdFilter() {
+		ADRFilter filter = ADRFilter.filter("001");
+
+		assertTrue(filter.test(path("0012-twelve.md")));
+		assertTrue(filter.test(path("0010-ten.md")));
+		assertFalse(filter.test(path("0020-twenty.md")));
+	}
+
+	@Test
+	public void testExtensions() {
+		ADRFilter filter = ADRFilter.filter(Arrays.asList("md", ".txt", " adoc "));
+
+		assertEquals(Arrays.asList("md", "txt", "adoc"), filter.getExtensions().stream().collect(Collectors.toList()));
+		assertTrue(filter.test(path("0001-markdown.md")));
+		assertTrue(filter.test(path("0002-text.txt")));
+		assertTrue(filter.test(path("0003-asciidoc.adoc")));
+		assertFalse(filter.test(path("0004-html.html")));
+
+		ADRFilter idFilter = filter.withId(2);
+		assertTrue(idFilter.test(path("0002-text.txt")));
+		assertFalse(idFilter.test(path("0001-markdown.md")));
+
+		assertEquals(ADRFilter.filter(Arrays.asList("md", "txt", "adoc")), filter);
+	}
+
+	@Test
+	public void testConfiguredExtensionsAreIndexed() throws Exception {
+		Environment env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir("/project")
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+		Files.createDirectories(fileSystem.getPath("/project"));
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		Path docsPath = fileSystem.getPath("/project/doc/adr");
+		Files.write(docsPath.resolve("0002-a-text-decision.txt"), Arrays.asList("# 2. A text decision", "", "## Status", "", "Accepted"));
+
+		Path propertiesPath = fileSystem.getPath("/project/.adr/adr.properties");
+		List<String> properties = Files.readAllLines(propertiesPath);
+		assertFalse(listedFiles(env).contains("0002-a-text-decision.txt"));
+
+		properties.add("extensions=md,txt");
+		Files.write(propertiesPath, properties);
+		assertTrue(listedFiles(env).contains("0002-a-text-decision.txt"));
+	}
+
+	private List<String> listedFiles(Environment env) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Environment listEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(out))
+				.err(System.err)
+				.in(System.in)
+				.userDir(env.dir)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+		assertEquals(0, ADR.run(TestUtilities.argify("list"), listEnv));
+		return Arrays.asList(out.toString().split("\\R"));
+	}
+}
@@ -0,0 +1,370 @@
+package org.doble.adr;
+
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ADRIndexTest {
+	final static private String rootPathName = "/project/adr";
+	final static private String docsPathName = "/project/adr/doc/adr";
+
+	private FileSystem fileSystem;
+	private Environment env;
+	private Path adrPath;
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectories(fileSystem.getPath(rootPathName));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		adrPath = fileSystem.getPath(rootPathName, ".adr");
+		docsPath = fileSystem.getPath(docsPathName);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	@Test
+	public void testIndexIsWrittenByNew() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new An indexed decision"), env));
+
+		assertTrue(Files.exists(adrPath.resolve(ADRIndex.INDEX_FILE_NAME)));
+		try (Stream<Path> files = Files.list(adrPath)) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().endsWith(".tmp")));  // The temporary files are removed
+		}
+
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(2, index.highestId());
+		assertEquals("0002-an-indexed-decision.md", index.getFileName(2));
+		assertEquals("An indexed decision", index.get(2).get().title);
+		assertEquals("Proposed", index.get(2).get().status);
+		assertEquals("Accepted", index.get(1).get().status);
+	}
+
+	@Test
+	public void testGeneratedFilesAreIgnored() throws Exception {
+		Path ignorePath = adrPath.resolve(LocalFiles.GITIGNORE_FILE_NAME);
+		List<String> ignored = Files.readAllLines(ignorePath);  // Written by init
+		assertTrue(ignored.contains("/" + ADRIndex.INDEX_FILE_NAME));
+		assertTrue(ignored.contains("/" + SearchIndex.INDEX_FILE_NAME));
+		assertTrue(ignored.contains("/" + IdAllocator.COUNTER_FILE_NAME));
+		assertTrue(ignored.contains("/" + IdAllocator.LOCK_FILE_NAME));
+
+		// Written again for directories initialised by earlier versions
+		Files.delete(ignorePath);
+		assertEquals(0, ADR.run(TestUtilities.argify("new An indexed decision"), env));
+		assertEquals(ignored, Files.readAllLines(ignorePath));
+
+		// But not changed once it exists
+		Files.write(ignorePath, "index.bin\n".getBytes());
+		assertEquals(0, ADR.run(TestUtilities.argify("new Another indexed decision"), env));
+		assertEquals("index.bin\n", new String(Files.readAllBytes(ignorePath)));
+	}
+
+	@Test
+	public void testIndexPicksUpExternalChanges() throws Exception {
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		index.save();
+		assertEquals(1, index.highestId());
+
+		// Add and remove ADRs without using the tool
+		Files.write(docsPath.resolve("0007-added-by-hand.md"),
+				"# 7. Added by hand\n\nDate: today\n\n## Status\n\nAccepted\n\n## Context\n".getBytes());
+		Files.write(docsPath.resolve("README.md"), "Not an ADR".getBytes());
+		Files.delete(docsPath.resolve("0001-record-architecture-decisions.md"));
+
+		index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(7, index.highestId());
+		assertFalse(index.exists(1));
+		assertEquals("Added by hand", index.get(7).get().title);
+		assertEquals("0007-added-by-hand.md",
+				index.entries().stream().map(e -> e.fileName).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void testEditInPlaceIsNoticed() throws Exception {
+		Path adr = docsPath.resolve("0001-record-architecture-decisions.md");
+		FileTime directoryModified = FileTime.fromMillis(1000000000000L);
+		Files.setLastModifiedTime(adr, directoryModified);
+		Files.setLastModifiedTime(docsPath, directoryModified);
+		ADRIndex.open(adrPath, docsPath).save();
+		ADRIndex.clearCache();
+
+		// Edited in an editor: the directory is not modified
+		String content = new String(Files.readAllBytes(adr));
+		Files.write(adr, content.replace("Accepted", "Deprecated").getBytes());
+		Files.setLastModifiedTime(adr, FileTime.fromMillis(1000000060000L));
+		Files.setLastModifiedTime(docsPath, directoryModified);
+
+		assertEquals("Deprecated", ADRIndex.open(adrPath, docsPath).get(1).get().status);
+
+		// Also by an index held in memory
+		Files.write(adr, content.getBytes());
+		Files.setLastModifiedTime(adr, FileTime.fromMillis(1000000120000L));
+		Files.setLastModifiedTime(docsPath, directoryModified);
+
+		assertEquals("Accepted", ADRIndex.open(adrPath, docsPath).get(1).get().status);
+	}
+
+	@Test
+	public void testCorruptIndexIsRebuilt() throws Exception {
+		Files.write(adrPath.resolve(ADRIndex.INDEX_FILE_NAME), "garbage\n\t\t\n".getBytes());
+
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(1, index.highestId());
+		assertEquals("Record architecture decisions", index.get(1).get().title);
+	}
+
+	@Test
+	public void testDamagedSlotIsRebuilt() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Second decision"), env));
+		FileTime modified = FileTime.fromMillis(1000000000000L);  // Not too recent, so the index is not rebuilt when opened
+		try (Stream<Path> adrs = Files.list(docsPath)) {
+			for (Path adr : adrs.collect(Collectors.toList())) Files.setLastModifiedTime(adr, modified);
+		}
+		Files.setLastModifiedTime(docsPath, modified);
+		ADRIndex.clearCache();
+		ADRIndex.open(adrPath, docsPath).save();
+		ADRIndex.clearCache();
+		Path indexPath = adrPath.resolve(ADRIndex.INDEX_FILE_NAME);
+		byte[] content = Files.readAllBytes(indexPath);
+		// The reference to the file name of the second slot points outside the file
+		ByteBuffer.wrap(content).putInt(IndexFile.HEADER_SIZE + IndexFile.SLOT_SIZE + 4, Integer.MAX_VALUE);
+		Files.write(indexPath, content);
+
+		// Only the header is checked when the index is opened, the slot when it is read
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(2, index.highestId());
+		assertEquals("Record architecture decisions", index.get(1).get().title);
+		assertEquals("0002-second-decision.md", index.getFileName(2));
+		assertEquals("Second decision", index.get(2).get().title);
+
+		index.save();
+		ADRIndex.clearCache();
+		assertEquals("Second decision", ADRIndex.open(adrPath, docsPath).get(2).get().title);
+	}
+
+	@Test
+	public void testPagesOfEntries() throws Exception {
+		for (String title : new String[] {"Second", "Third", "Fourth", "Fifth"}) {
+			assertEquals(0, ADR.run(TestUtilities.argify("new " + title), env));
+		}
+		FileTime modified = FileTime.fromMillis(1000000000000L);  // Not too recent, so the index is read from its file
+		try (Stream<Path> adrs = Files.list(docsPath)) {
+			for (Path adr : adrs.collect(Collectors.toList())) Files.setLastModifiedTime(adr, modified);
+		}
+		Files.setLastModifiedTime(docsPath, modified);
+		ADRIndex.clearCache();
+		ADRIndex.open(adrPath, docsPath).save();
+		ADRIndex.clearCache();
+
+		// The changes since the index file was read are merged with its entries
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		Files.delete(docsPath.resolve("0003-third.md"));
+		index.remove("0003-third.md");
+		Path sixth = docsPath.resolve("0006-sixth.md");
+		Files.write(sixth, "# 6. Sixth\n\n## Status\n\nAccepted\n".getBytes());
+		index.put(sixth);
+		Path fourth = docsPath.resolve("0004-fourth.md");
+		Files.write(fourth, "# 4. Fourth, revised\n\n## Status\n\nAccepted\n".getBytes());
+		index.put(fourth);
+
+		assertEquals("1,2,4,5,6", ids(index.entries(0, -1, false)));
+		assertEquals("6,5,4,2,1", ids(index.entries(0, -1, true)));
+		assertEquals("4,5", ids(index.entries(2, 2, false)));
+		assertEquals("2,1", ids(index.entries(3, 5, true)));
+		assertEquals("", ids(index.entries(5, -1, false)));
+		assertEquals("", ids(index.entries(0, 0, false)));
+		assertEquals("Fourth, revised", index.entries(2, 1, false).get(0).title);
+
+		// The same once all the entries have been decoded
+		assertEquals(5, index.entries().size());
+		assertEquals("4,5", ids(index.entries(2, 2, false)));
+		assertEquals("6,5,4,2,1", ids(index.entries(0, -1, true)));
+	}
+
+	private static String ids(List<ADRIndex.Entry> entries) {
+		return entries.stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(","));
+	}
+
+	@Test
+	public void testSparseIds() throws Exception {
+		Files.write(docsPath.resolve("0500-far-away.md"), "# 500. Far away\n\n## Status\n\nAccepted\n".getBytes());
+		Files.write(docsPath.resolve("100000-very-far-away.md"), "# 100000. Very far away\n\n## Status\n\nProposed\n".getBytes());
+		ADRIndex.open(adrPath, docsPath).save();
+		ADRIndex.clearCache();
+
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(100000, index.highestId());
+		assertTrue(index.exists(500));
+		assertFalse(index.exists(2));
+		assertFalse(index.exists(-1));
+		assertEquals("0500-far-away.md", index.getFileName(500));
+		assertEquals("Proposed", index.get(100000).get().status);
+		assertEquals("", index.getFileName(499));
+		assertEquals("1,500,100000", index.entries().stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void testChangesOverStoredIndex() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Second decision"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Third decision"), env));
+		ADRIndex.clearCache();
+
+		// The highest ADR is removed and another is changed, without saving the index
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		Files.delete(docsPath.resolve("0003-third-decision.md"));
+		assertEquals("Third decision", index.remove("0003-third-decision.md").get().title);
+		Files.write(docsPath.resolve("0002-second-decision.md"), "# 2. Changed decision\n\n## Status\n\nAccepted\n".getBytes());
+		index.put(docsPath.resolve("0002-second-decision.md"));
+
+		assertEquals(2, index.highestId());
+		assertFalse(index.exists(3));
+		assertEquals("Changed decision", index.get(2).get().title);
+		assertEquals("1,2", index.entries().stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void testTruncatedIndexIsRebuilt() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Second decision"), env));
+		Path indexPath = adrPath.resolve(ADRIndex.INDEX_FILE_NAME);
+		byte[] content = Files.readAllBytes(indexPath);
+		Files.write(indexPath, Arrays.copyOf(content, content.length - 8));
+		ADRIndex.clearCache();
+
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(2, index.highestId());
+		assertEquals("Second decision", index.get(2).get().title);
+	}
+
+	@Test
+	public void testGitBlobHash() throws Exception {
+		// As printed by git hash-object
+		assertEquals("ce013625030ba8dba906f756967f9e9ca394464a", ADRIndex.hash("hello\n".getBytes()));
+		assertEquals("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", ADRIndex.hash(new byte[0]));
+
+		Path first = docsPath.resolve("0001-record-architecture-decisions.md");
+		ADRIndex.open(adrPath, docsPath).save();
+		ADRIndex.clearCache();
+		assertEquals(ADRIndex.hash(Files.readAllBytes(first)), ADRIndex.open(adrPath, docsPath).get(1).get().hash);
+	}
+
+	@Test
+	public void testReferencedBy() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 2 -l 1:Follows Use PostgreSQL"), env));
+		ADRIndex.clearCache();
+
+		ADRIndex index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(Arrays.asList(3), index.referencedBy(1));
+		assertEquals(Arrays.asList(3), index.referencedBy(2));
+		assertEquals(Arrays.asList(), index.referencedBy(3));
+
+		// ADR 2 now links to ADR 1 as well
+		Files.write(docsPath.resolve("0002-use-mysql.md"),
+				"# 2. Use MySQL\n\n## Status\n\nSuperseded\n\n* Amends [ADR 1](0001-record-architecture-decisions.md)\n".getBytes());
+		index.put(docsPath.resolve("0002-use-mysql.md"));
+		assertEquals(Arrays.asList(2, 3), index.referencedBy(1));
+		index.save();
+		ADRIndex.clearCache();
+
+		index = ADRIndex.open(adrPath, docsPath);
+		assertEquals(Arrays.asList(2, 3), index.referencedBy(1));
+		Files.delete(docsPath.resolve("0003-use-postgresql.md"));
+		index.remove("0003-use-postgresql.md");
+		assertEquals(Arrays.asList(2), index.referencedBy(1));
+		assertEquals(Arrays.asList(), index.referencedBy(2));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -l 2:Extends Use connection pools"), env));
+		ADRIndex.clearCache();
+
+		Path mysql = docsPath.resolve("0002-use-mysql.md");
+		Path pools = docsPath.resolve("0003-use-connection-pools.md");
+		Path redis = docsPath.resolve("0004-use-redis.md");
+		Files.write(redis, "# 4. Use Redis\n\n## Status\n\nProposed\n".getBytes());
+		Files.write(pools, (new String(Files.readAllBytes(pools)) + "\nMore text.\n").getBytes());
+		Files.delete(mysql);
+		Files.write(docsPath.resolve("README.md"), "Not an ADR".getBytes());
+
+		ADRIndex index = ADRIndex.openStored(adrPath, docsPath, ADRFilter.filter());
+		assertFalse(index.exists(4));  // The directory is not checked
+		ADRIndex.Update update = index.update(Arrays.asList(redis, pools, mysql,
+				docsPath.resolve("0001-record-architecture-decisions.md"),
+				docsPath.resolve("README.md"), fileSystem.getPath("/project/src/Main.java")));
+
+		assertEquals("4,3", update.updated.stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(",")));
+		assertEquals("Use MySQL", update.removed.get(0).title);
+		assertEquals(1, update.unchanged.size());
+		assertEquals(2, update.ignored.size());
+
+		assertEquals("1,3,4", index.entries().stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(",")));
+		assertEquals(ADRIndex.hash(Files.readAllBytes(pools)), index.get(3).get().hash);
+		assertEquals(Arrays.asList(3), index.referencedBy(2));
+
+		// The whole directory is still checked the next time the index is opened
+		index.save();
+		ADRIndex.clearCache();
+		Files.write(docsPath.resolve("0005-not-listed.md"), "# 5. Not listed\n\n## Status\n\nProposed\n".getBytes());
+		index = ADRIndex.open(adrPath, docsPath);
+		assertEquals("1,3,4,5", index.entries().stream().map(e -> Integer.toString(e.id)).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void testMappedIndexFile() throws Exception {
+		// The index file is only memory mapped on the default file system
+		Path tempPath = Files.createTempDirectory("adr-index-test");
+		try {
+			Path tempAdrPath = Files.createDirectory(tempPath.resolve(".adr"));
+			Path tempDocsPath = Files.createDirectory(tempPath.resolve("doc"));
+			Files.write(tempDocsPath.resolve("0001-use-mysql.md"), "# 1. Use MySQL\n\n## Status\n\nAccepted\n".getBytes());
+			ADRIndex.open(tempAdrPath, tempDocsPath).save();
+			ADRIndex.clearCache();
+
+			ADRIndex index = ADRIndex.open(tempAdrPath, tempDocsPath);
+			assertEquals(1, index.highestId());
+			assertEquals("0001-use-mysql.md", index.getFileName(1));
+			assertEquals("Use MySQL", index.get(1).get().title);
+		} finally {
+			ADRIndex.clearCache();
+			try (Stream<Path> paths = Files.walk(tempPath)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.doble.adr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ADRServerTest {
+	private Path tempDir;
+	private Path serverFile;
+	private Thread serverThread;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("adr-server");
+		serverFile = tempDir.resolve("server.properties");
+		Files.createDirectories(tempDir.resolve("project"));
+
+		ADRServer server = new ADRServer(new PrintStream(new ByteArrayOutputStream()), serverFile);
+		serverThread = new Thread(() -> {
+			try {
+				server.serve(0);
+			} catch (ADRException e) {
+				e.printStackTrace();
+			}
+		});
+		serverThread.start();
+
+		// Wait for the server to start
+		for (int i = 0; i < 100 && !Files.exists(serverFile); i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(50);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		new ADRClient(serverFile).stop();
+		serverThread.join(5000);
+
+		try (Stream<Path> paths = Files.walk(tempDir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testCommandsAreForwarded() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		ADRClient client = new ADRClient(serverFile, new PrintStream(out), new PrintStream(err));
+		String workingDirectory = tempDir.resolve("project").toString();
+
+		Optional<Integer> exitCode = client.run(new String[] {"init"}, workingDirectory, "dummyEditor");
+		assertEquals(Optional.of(0), exitCode);
+		assertTrue(Files.exists(tempDir.resolve("project/doc/adr/0001-record-architecture-decisions.md")));
+
+		out.reset();
+		exitCode = client.run(new String[] {"list"}, workingDirectory, "dummyEditor");
+		assertEquals(Optional.of(0), exitCode);
+		assertTrue(new String(out.toByteArray()).contains("0001-record-architecture-decisions.md"));
+
+		exitCode = client.run(new String[] {"server"}, workingDirectory, null);
+		assertEquals(Optional.of(ADR.ERRORGENERAL), exitCode);
+		assertTrue(new String(err.toByteArray()).contains("ERROR"));
+	}
+
+	@Test
+	public void testStandardInputIsForwarded() throws Exception {
+		String workingDirectory = tempDir.resolve("project").toString();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		ADRClient client = new ADRClient(serverFile, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+		assertEquals(Optional.of(0), client.run(new String[] {"init"}, workingDirectory, "dummyEditor"));
+
+		String csv = "title,status\nUse a relational database,Accepted\nUse PostgreSQL,Proposed\n";
+		client = new ADRClient(serverFile, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+				               new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+
+		assertEquals(Optional.of(0), client.run(new String[] {"import"}, workingDirectory, "dummyEditor"), new String(err.toByteArray()));
+		assertTrue(Files.exists(tempDir.resolve("project/doc/adr/0002-use-a-relational-database.md")));
+		assertTrue(Files.exists(tempDir.resolve("project/doc/adr/0003-use-postgresql.md")));
+	}
+
+	@Test
+	public void testIdleClientDoesNotBlockOthers() throws Exception {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(serverFile)) {
+			properties.load(reader);
+		}
+		try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(properties.getProperty("port")))) {
+			// Connected, but nothing is sent
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ADRClient client = new ADRClient(serverFile, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+
+			long start = System.currentTimeMillis();
+			assertEquals(Optional.of(0), client.run(new String[] {"version"}, tempDir.toString(), null));
+			assertTrue(System.currentTimeMillis() - start < ADRServer.REQUEST_TIMEOUT);
+		}
+	}
+
+	@Test
+	public void testServerFileIsPrivate() throws Exception {
+		if (!Files.getFileStore(serverFile).supportsFileAttributeView("posix")) return;
+
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(serverFile)));
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		assertTrue(new ADRClient(serverFile).stop());
+		serverThread.join(5000);
+
+		assertFalse(serverThread.isAlive());
+		assertFalse(Files.exists(serverFile));
+		assertEquals(Optional.empty(), new ADRClient(serverFile).run(new String[] {"list"}, tempDir.toString(), null));
+	}
+}
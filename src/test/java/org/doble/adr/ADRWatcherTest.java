@@ -0,0 +1,184 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.jimfs.WatchServiceConfiguration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ADRWatcherTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path adrPath;
+	private Path docsPath;
+	private Path sitePath;
+	private Path tocPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		// Poll for changes often, so that the tests do not wait long
+		fileSystem = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+				.setWatchServiceConfiguration(WatchServiceConfiguration.polling(10, TimeUnit.MILLISECONDS))
+				.build());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+
+		adrPath = fileSystem.getPath(rootPathName, ADR.ADR_DIR_NAME);
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+		sitePath = fileSystem.getPath(rootPathName, "site");
+		tocPath = docsPath.resolve("README.md");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private ADRWatcher watcher() throws ADRException {
+		ADRFilter filter = ADRFilter.filter();
+		return new ADRWatcher(adrPath, docsPath, filter)
+				.debounce(20)
+				.site(sitePath)
+				.toc(new TableOfContents(docsPath, filter), tocPath);
+	}
+
+	/**
+	 * Polls until all the expected files have been seen as changed
+	 */
+	private Set<String> waitFor(ADRWatcher watcher, String... fileNames) throws Exception {
+		Set<String> changed = new TreeSet<String>();
+		while (!changed.containsAll(Arrays.asList(fileNames))) {
+			ADRWatcher.Batch batch = watcher.poll(5, TimeUnit.SECONDS);
+			assertNotNull(batch, "Changes not seen: " + Arrays.toString(fileNames));
+			changed.addAll(batch.changed);
+		}
+		return changed;
+	}
+
+	private void write(String fileName, String content) throws Exception {
+		Files.write(docsPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String read(Path path) throws Exception {
+		return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testChangesAreApplied() throws Exception {
+		try (ADRWatcher watcher = watcher()) {
+			watcher.update();
+			assertTrue(Files.exists(sitePath.resolve("0002-use-mysql.html")));
+			assertTrue(read(tocPath).contains("[2. Use MySQL](0002-use-mysql.md)"));
+
+			// A new ADR, an ADR edited in place and a file that is not an ADR
+			write("0003-use-kafka.md", "# 3. Use Kafka\n\nDate: 1 Jan 2020\n\n## Status\n\nAccepted\n\n## Context\n\nStreaming.\n");
+			write("0002-use-mysql.md", "# 2. Use MariaDB\n\nDate: 1 Jan 2020\n\n## Status\n\nAccepted\n\n## Context\n\nA fork.\n");
+			write("notes.txt", "Not an ADR\n");
+			Set<String> changed = waitFor(watcher, "0002-use-mysql.md", "0003-use-kafka.md");
+			assertFalse(changed.contains("notes.txt"));
+
+			ADRIndex index = ADRIndex.open(adrPath, docsPath);
+			assertEquals("Use Kafka", index.get(3).get().title);
+			assertEquals("Use MariaDB", index.get(2).get().title);
+			assertEquals(3, SearchIndex.open(adrPath, index).search("kafka").get(0).id);
+			assertEquals(2, SearchIndex.open(adrPath, index).search("fork").get(0).id);
+			assertTrue(read(sitePath.resolve("0003-use-kafka.html")).contains("Streaming."));
+			assertTrue(read(tocPath).contains("[2. Use MariaDB](0002-use-mysql.md)"));
+			assertTrue(read(tocPath).contains("[3. Use Kafka](0003-use-kafka.md)"));
+
+			// A removed ADR
+			Files.delete(docsPath.resolve("0003-use-kafka.md"));
+			waitFor(watcher, "0003-use-kafka.md");
+
+			index = ADRIndex.open(adrPath, docsPath);
+			assertFalse(index.exists(3));
+			assertTrue(SearchIndex.open(adrPath, index).search("kafka").isEmpty());
+			assertFalse(Files.exists(sitePath.resolve("0003-use-kafka.html")));
+			assertFalse(read(tocPath).contains("Kafka"));
+		}
+	}
+
+	@Test
+	public void testTableOfContentsOnlyWrittenIfChanged() throws Exception {
+		try (ADRWatcher watcher = watcher()) {
+			watcher.update();
+
+			// Only the context has changed
+			write("0002-use-mysql.md", read(docsPath.resolve("0002-use-mysql.md")) + "\nMore context.\n");
+			ADRWatcher.Batch batch = watcher.apply(Collections.singleton("0002-use-mysql.md"), false);
+			assertFalse(batch.written.contains(tocPath));
+			assertTrue(batch.written.contains(sitePath.resolve("0002-use-mysql.html")));
+		}
+	}
+
+	@Test
+	public void testOverflowReconcilesAll() throws Exception {
+		try (ADRWatcher watcher = watcher()) {
+			write("0003-use-kafka.md", "# 3. Use Kafka\n\n## Status\n\nAccepted\n");
+			write("0002-use-mysql.md", "# 2. Use MariaDB\n\n## Status\n\nAccepted\n");
+
+			ADRWatcher.Batch batch = watcher.apply(Collections.<String>emptySet(), true);
+			assertTrue(batch.overflow);
+
+			ADRIndex index = ADRIndex.open(adrPath, docsPath);
+			assertEquals("Use Kafka", index.get(3).get().title);
+			assertEquals("Use MariaDB", index.get(2).get().title);
+			assertTrue(read(tocPath).contains("[3. Use Kafka](0003-use-kafka.md)"));
+		}
+	}
+
+	@Test
+	public void testCommand() throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("watch -html -toc doc/adr/README.md -timeout 1"), localEnv));
+		String output = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(output.contains("Watching " + docsPath));
+		assertTrue(Files.exists(sitePath.resolve("index.html")));
+		assertTrue(Files.exists(tocPath));
+
+		assertEquals(2, ADR.run(TestUtilities.argify("watch -debounce -1"), localEnv).intValue());
+	}
+}
@@ -0,0 +1,169 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandExportTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path docsPath;
+	private Path sitePath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 2 -l 1:Follows Use PostgreSQL"), env));
+
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+		sitePath = fileSystem.getPath(rootPathName, "site");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String export(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	private String page(String fileName) throws Exception {
+		return new String(Files.readAllBytes(sitePath.resolve(fileName)), StandardCharsets.UTF_8);
+	}
+
+	private void replace(String fileName, String target, String replacement) throws Exception {
+		Path path = docsPath.resolve(fileName);
+		String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		assertTrue(content.contains(target));
+		Files.write(path, content.replace(target, replacement).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testExport() throws Exception {
+		assertEquals(sitePath.resolve("0001-record-architecture-decisions.html") + "\n"
+				   + sitePath.resolve("0002-use-mysql.html") + "\n"
+				   + sitePath.resolve("0003-use-postgresql.html") + "\n"
+				   + sitePath.resolve("style.css") + "\n"
+				   + sitePath.resolve("index.html") + "\n",
+				   export("export -html", 0));
+
+		String page = page("0003-use-postgresql.html");
+		assertTrue(page.contains("<title>3. Use PostgreSQL</title>"));
+		assertTrue(page.contains("<h1>3. Use PostgreSQL</h1>"));
+		assertTrue(page.contains("<li>Supersedes <a href=\"0002-use-mysql.html\">ADR 2</a></li>"));
+		assertTrue(page.contains("<tr><th>Supersedes</th><td><a href=\"0002-use-mysql.html\">2. Use MySQL</a> (Superseded)</td></tr>"));
+		assertTrue(page.contains("<tr><th>Follows</th><td><a href=\"0001-record-architecture-decisions.html\">1. Record architecture decisions</a> (Accepted)</td></tr>"));
+
+		page = page("0001-record-architecture-decisions.html");
+		assertTrue(page.contains("<tr><th>Referenced by</th><td><a href=\"0003-use-postgresql.html\">3. Use PostgreSQL</a> (Proposed)</td></tr>"));
+
+		String index = page("index.html");
+		assertTrue(index.contains("<tr><td>2</td><td><a href=\"0002-use-mysql.html\">Use MySQL</a></td><td>Superseded</td>"));
+		assertTrue(index.contains("<a href=\"0003-use-postgresql.html\">3. Use PostgreSQL</a></td></tr>"));
+	}
+
+	@Test
+	public void testNothingChanged() throws Exception {
+		export("export -html", 0);
+		assertEquals("", export("export -html", 0));
+
+		// Changing the modification time but not the content
+		Path path = docsPath.resolve("0002-use-mysql.md");
+		Files.write(path, Files.readAllBytes(path));
+		assertEquals("", export("export -html", 0));
+
+		// Pages deleted from the site are written again
+		Files.delete(sitePath.resolve("0001-record-architecture-decisions.html"));
+		assertEquals(sitePath.resolve("0001-record-architecture-decisions.html") + "\n", export("export -html", 0));
+	}
+
+	@Test
+	public void testContentChanged() throws Exception {
+		export("export -html", 0);
+
+		replace("0002-use-mysql.md", "## Context", "## Context\n\nMySQL is **fast**.");
+		assertEquals(sitePath.resolve("0002-use-mysql.html") + "\n", export("export -html", 0));
+		assertTrue(page("0002-use-mysql.html").contains("<p>MySQL is <strong>fast</strong>.</p>"));
+	}
+
+	@Test
+	public void testTitleChanged() throws Exception {
+		export("export -html", 0);
+
+		// The pages of the ADRs related to the ADR and the index show its title
+		replace("0001-record-architecture-decisions.md", "# 1. Record architecture decisions", "# 1. Record decisions");
+		assertEquals(sitePath.resolve("0001-record-architecture-decisions.html") + "\n"
+				   + sitePath.resolve("0003-use-postgresql.html") + "\n"
+				   + sitePath.resolve("index.html") + "\n",
+				   export("export -html", 0));
+		assertTrue(page("0003-use-postgresql.html").contains(">1. Record decisions</a>"));
+	}
+
+	@Test
+	public void testRemovedADR() throws Exception {
+		export("export -html", 0);
+
+		Files.delete(docsPath.resolve("0001-record-architecture-decisions.md"));
+		assertEquals(sitePath.resolve("0003-use-postgresql.html") + "\n"
+				   + sitePath.resolve("index.html") + "\n",
+				   export("export -html", 0));
+		assertFalse(Files.exists(sitePath.resolve("0001-record-architecture-decisions.html")));
+	}
+
+	@Test
+	public void testOptions() throws Exception {
+		assertEquals("", export("export", CommandLine.ExitCode.USAGE));
+		assertEquals("", export("export -html -threads 0", CommandLine.ExitCode.USAGE));
+
+		export("export -html -o public -threads 2", 0);
+		assertTrue(Files.exists(fileSystem.getPath(rootPathName, "public/index.html")));
+
+		// All the pages are written with -force
+		assertEquals(5, export("export -html -o public -force", 0).split("\n").length);
+	}
+}
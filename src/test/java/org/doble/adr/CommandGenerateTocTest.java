@@ -0,0 +1,117 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CommandGenerateTocTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 2 Use PostgreSQL"), env));
+
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String generate(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(new PrintStream(new ByteArrayOutputStream()))
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testToc() throws Exception {
+		// An ADR with an id of more than four digits and a file that is not an ADR
+		Files.write(docsPath.resolve("10000-use-rust.md"), "# 10000. Use Rust\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(docsPath.resolve("README.md"), "Not an ADR\n".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals("# Architecture Decision Records\n\n"
+				   + "* [1. Record architecture decisions](0001-record-architecture-decisions.md)\n"
+				   + "* [2. Use MySQL](0002-use-mysql.md)\n"
+				   + "* [3. Use PostgreSQL](0003-use-postgresql.md)\n"
+				   + "* [10000. Use Rust](10000-use-rust.md)\n",
+				   generate("generate toc", 0));
+	}
+
+	@Test
+	public void testOptions() throws Exception {
+		Files.write(fileSystem.getPath(rootPathName, "intro.md"), "Our decisions.\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(fileSystem.getPath(rootPathName, "outro.md"), "The end.\n".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals("# Architecture Decision Records\n\n"
+				   + "Our decisions.\n\n"
+				   + "* [1. Record architecture decisions](doc/adr/0001-record-architecture-decisions.md) (Accepted)\n"
+				   + "* [2. Use MySQL](doc/adr/0002-use-mysql.md) (Superseded)\n"
+				   + "* [3. Use PostgreSQL](doc/adr/0003-use-postgresql.md) (Proposed)\n"
+				   + "\nThe end.\n",
+				   generate("generate toc -i intro.md -outro outro.md -p doc/adr/ -status", 0));
+	}
+
+	@Test
+	public void testOutputFile() throws Exception {
+		assertEquals("", generate("generate toc -output doc/adr/README.md", 0));
+
+		String toc = new String(Files.readAllBytes(docsPath.resolve("README.md")), StandardCharsets.UTF_8);
+		assertEquals("# Architecture Decision Records\n\n"
+				   + "* [1. Record architecture decisions](0001-record-architecture-decisions.md)\n"
+				   + "* [2. Use MySQL](0002-use-mysql.md)\n"
+				   + "* [3. Use PostgreSQL](0003-use-postgresql.md)\n",
+				   toc);
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		assertEquals("", generate("generate", CommandLine.ExitCode.USAGE));
+		generate("generate toc -i missing.md", ADR.ERRORGENERAL);
+		generate("generate toc -output missing/README.md", ADR.ERRORGENERAL);
+	}
+}
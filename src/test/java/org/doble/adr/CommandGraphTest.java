@@ -0,0 +1,112 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import picocli.CommandLine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandGraphTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		String[] testData = {
+				"new Use MySQL",
+				"new -s 2 Use PostgreSQL",
+				"new -l 3:Amends Use connection pools"
+		};
+		for (String data : testData) {
+			assertEquals(0, ADR.run(TestUtilities.argify(data), env));
+		}
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String graph(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(new PrintStream(baos))
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	@Test
+	public void testDOT() throws Exception {
+		String dot = graph("graph", 0);
+
+		assertTrue(dot.startsWith("digraph adr {"));
+		assertTrue(dot.contains("adr2 [label=\"2. Use MySQL\\nSuperseded\"];"));
+		assertTrue(dot.contains("adr3 -> adr2 [label=\"Supersedes\", style=dashed];"));
+		assertTrue(dot.contains("adr4 -> adr3 [label=\"Amends\"];"));
+	}
+
+	@Test
+	public void testJSON() throws Exception {
+		String json = graph("graph -format json", 0);
+
+		assertTrue(json.contains("{\"id\": 3, \"title\": \"Use PostgreSQL\", \"status\": \"Proposed\", \"file\": \"0003-use-postgresql.md\"}"));
+		assertTrue(json.contains("{\"from\": 3, \"to\": 2, \"type\": \"supersedes\"}"));
+		assertTrue(json.contains("{\"from\": 4, \"to\": 3, \"type\": \"link\", \"comment\": \"Amends\"}"));
+		assertTrue(json.contains("\"dangling\": [],"));
+		assertTrue(json.contains("\"cycles\": []"));
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		assertEquals("0003-use-postgresql.md\n", graph("graph -effective 2", 0));
+		assertEquals("0003-use-postgresql.md\n0004-use-connection-pools.md\n", graph("graph -impact 2", 0));
+		graph("graph -impact 42", CommandLine.ExitCode.USAGE);
+	}
+
+	@Test
+	public void testCheck() throws Exception {
+		assertEquals("", graph("graph -check", 0));
+
+		// Make ADR 4 link to an ADR that does not exist
+		Path adr = fileSystem.getPath(rootPathName, "doc/adr", "0005-dangling.md");
+		Files.write(adr, "# 5. Dangling\n\n## Status\n\nAccepted\n\n* Amends [ADR 9](0009-missing.md)\n".getBytes());
+
+		String report = graph("graph -check", ADR.ERRORGENERAL);
+		assertTrue(report.contains("ERROR: ADR 5 references ADR 9 (Amends), but this ADR does not exist."));
+	}
+}
@@ -0,0 +1,118 @@
+package org.doble.adr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import picocli.CommandLine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandImportTest {
+	final static private String rootPathName = "/project/adr";
+	final static private String docsPath = "/doc/adr";
+
+	private FileSystem fileSystem;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectories(fileSystem.getPath(rootPathName));
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), environment("", System.out)));
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private Environment environment(String input, PrintStream out) {
+		return new Environment.Builder(fileSystem)
+				.out(out)
+				.err(System.err)
+				.in(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)))
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+	}
+
+	@Test
+	public void testImportCSV() throws Exception {
+		String csv = "title,status,date,links,supersedes\n"
+				+ "Use a relational database,Accepted,2019-10-01,,\n"
+				+ "\"Use PostgreSQL, not MySQL\",,2019-10-02,\"2:Refines\",\n"
+				+ "Use MariaDB,,,\"3:Replaces;1:Follows\",\"2;3\"\n";
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		int exitCode = ADR.run(TestUtilities.argify("import"), environment(csv, new PrintStream(baos)));
+		assertEquals(0, exitCode);
+
+		Path adr2 = fileSystem.getPath(rootPathName, docsPath, "0002-use-a-relational-database.md");
+		Path adr3 = fileSystem.getPath(rootPathName, docsPath, "0003-use-postgresql,-not-mysql.md");
+		Path adr4 = fileSystem.getPath(rootPathName, docsPath, "0004-use-mariadb.md");
+
+		// ADRs 2 and 3 have been superseded by ADR 4
+		assertEquals("Superseded", RecordLoader.load(adr2).getStatus());
+		assertTrue(TestUtilities.contains("* Superseded by [ADR 4](0004-use-mariadb.md)", adr2));
+		assertTrue(TestUtilities.contains("Refines [ADR 2](0002-use-a-relational-database.md)", adr3));
+		assertEquals("Superseded", RecordLoader.load(adr3).getStatus());
+		assertTrue(TestUtilities.contains("Proposed", adr4));
+		assertTrue(TestUtilities.contains("Replaces [ADR 3](0003-use-postgresql,-not-mysql.md)", adr4));
+		assertTrue(TestUtilities.contains("Follows [ADR 1](0001-record-architecture-decisions.md)", adr4));
+		assertTrue(TestUtilities.contains("Supersedes [ADR 2](0002-use-a-relational-database.md)", adr4));
+
+		String output = new String(baos.toByteArray());
+		assertTrue(output.contains(adr2.toString()));
+		assertTrue(output.contains(adr4.toString()));
+	}
+
+	@Test
+	public void testImportJsonLinesFromFile() throws Exception {
+		String json = "{\"title\": \"Use JMS\", \"status\": \"Accepted\", \"date\": \"2019-10-01\"}\n"
+				+ "\n"
+				+ "{\"title\": \"Use \\\"ActiveMQ\\\"\", \"links\": [\"2:Implements\"], \"supersedes\": [1]}\n";
+		Files.write(fileSystem.getPath(rootPathName, "specs.jsonl"), json.getBytes(StandardCharsets.UTF_8));
+
+		int exitCode = ADR.run(TestUtilities.argify("batch specs.jsonl"), environment("", System.out));
+		assertEquals(0, exitCode);
+
+		Path adr3 = fileSystem.getPath(rootPathName, docsPath, "0003-use-\"activemq\".md");
+		assertTrue(Files.exists(fileSystem.getPath(rootPathName, docsPath, "0002-use-jms.md")));
+		assertTrue(TestUtilities.contains("# 3. Use \"ActiveMQ\"", adr3));
+		assertTrue(TestUtilities.contains("Implements [ADR 2](0002-use-jms.md)", adr3));
+		assertTrue(TestUtilities.contains("Supersedes [ADR 1](0001-record-architecture-decisions.md)", adr3));
+	}
+
+	@Test
+	public void testInvalidSpecificationCreatesNothing() throws Exception {
+		String csv = "title,links\n"
+				+ "A valid decision,\n"
+				+ "An invalid link,42:Links to nowhere\n";
+
+		int exitCode = ADR.run(TestUtilities.argify("import -f csv"), environment(csv, System.out));
+		assertEquals(CommandLine.ExitCode.USAGE, exitCode);
+		assertFalse(Files.exists(fileSystem.getPath(rootPathName, docsPath, "0002-a-valid-decision.md")));
+
+		exitCode = ADR.run(TestUtilities.argify("import"), environment("{\"title\": \"Broken\",", System.out));
+		assertEquals(CommandLine.ExitCode.USAGE, exitCode);
+
+		exitCode = ADR.run(TestUtilities.argify("import"), environment("status\nAccepted\n", System.out));
+		assertEquals(CommandLine.ExitCode.USAGE, exitCode);
+	}
+}
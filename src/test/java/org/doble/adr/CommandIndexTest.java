@@ -0,0 +1,92 @@
+package org.doble.adr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CommandIndexTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path adrPath;
+
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use Kafka"), env));
+
+		adrPath = fileSystem.getPath(rootPathName, ".adr");
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String index(String args, String input) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(new ByteArrayInputStream(input.getBytes()))
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	@Test
+	public void testChangedFiles() throws Exception {
+		Files.write(docsPath.resolve("0003-use-pulsar.md"), "# 3. Use Pulsar\n\n## Status\n\nProposed\n".getBytes());
+		Files.delete(docsPath.resolve("0002-use-kafka.md"));
+
+		assertEquals("Updated 1 ADR(s), removed 1, 1 unchanged.\n",
+				index("index doc/adr/0001-record-architecture-decisions.md -", "doc/adr/0002-use-kafka.md\ndoc/adr/0003-use-pulsar.md\n"));
+
+		ADRIndex.clearCache();
+		ADRIndex index = ADRIndex.openStored(adrPath, docsPath, ADRFilter.filter());
+		assertEquals("Use Pulsar", index.get(3).get().title);
+		assertFalse(index.exists(2));
+	}
+
+	@Test
+	public void testWholeDirectory() throws Exception {
+		Files.write(docsPath.resolve("0003-use-pulsar.md"), "# 3. Use Pulsar\n\n## Status\n\nProposed\n".getBytes());
+
+		assertEquals("Indexed 3 ADR(s).\n", index("index", ""));
+	}
+}
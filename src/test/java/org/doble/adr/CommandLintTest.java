@@ -0,0 +1,158 @@
+package org.doble.adr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandLintTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 2 -l 1:Follows Use PostgreSQL"), env));
+
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String lint(String args, int expectedExitCode) throws Exception {
+		return lint(args, expectedExitCode, "");
+	}
+
+	private String lint(String args, int expectedExitCode, String input) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(new ByteArrayInputStream(input.getBytes()))
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	private void write(String fileName, String content) throws Exception {
+		Files.write(docsPath.resolve(fileName), content.getBytes());
+	}
+
+	@Test
+	public void testNoProblems() throws Exception {
+		assertEquals("", lint("lint", 0));
+		assertEquals("[]\n", lint("lint -format json", 0));
+	}
+
+	@Test
+	public void testProblems() throws Exception {
+		write("0004-no-status.md", "# 4. No status\n\n## Context\n\nSee [ADR 9](0009-missing.md)\n");
+		write("0005-placeholder.md", "# 5. Placeholder\n\n## Status\n\nAccepted\n\n* Amends [ADR 2]({{{link.file}}})\n");
+		write("0003-duplicate.md", "# 3. Duplicate\n\n## Status\n\nAccepted\n");
+		write("0006-wrong-file.md", "# 6. Wrong file\n\n## Status\n\nAccepted\n\n* Amends [ADR 2](0002-use-mysql-db.md)\n");
+		write("7-no-padding.md", "# 7. No padding\n");
+		write("diagram.png", "not an ADR");
+
+		String report = lint("lint", ADR.ERRORGENERAL);
+		String[] lines = report.split("\n");
+
+		assertEquals(7, lines.length);
+		assertEquals("0003-use-postgresql.md: ERROR: The id 3 is also used by 0003-duplicate.md.", lines[0]);
+		assertEquals("0004-no-status.md: ERROR: The ADR has no status.", lines[1]);
+		assertEquals("0004-no-status.md:5: ERROR: References ADR 9 (See), but this ADR does not exist.", lines[2]);
+		assertEquals("0005-placeholder.md:7: ERROR: The template placeholder {{{link.file}}} has not been filled in.", lines[3]);
+		assertEquals("0005-placeholder.md:7: ERROR: References the file {{{link.file}}}, which does not exist. ADR 2 is 0002-use-mysql.md.", lines[4]);
+		assertEquals("0006-wrong-file.md:7: ERROR: References the file 0002-use-mysql-db.md, which does not exist. ADR 2 is 0002-use-mysql.md.", lines[5]);
+		assertTrue(lines[6].startsWith("7-no-padding.md: WARNING: The file is not recognised as an ADR"));
+
+		String json = lint("lint -format json -threads 2", ADR.ERRORGENERAL);
+		assertTrue(json.contains("{\"file\": \"0004-no-status.md\", \"line\": 0, \"severity\": \"error\", \"message\": \"The ADR has no status.\"}"));
+	}
+
+	@Test
+	public void testBracesAreNotPlaceholders() throws Exception {
+		write("0004-use-mustache.md", "# 4. Use Mustache\n\n## Status\n\nAccepted\n\n## Decision\n\n"
+				+ "Double braces {{ are kept in text.\n\n```\nString s = \"{{id}}\";\nint[][] a = {{1}};\n```\n");
+
+		assertEquals("", lint("lint", 0));
+	}
+
+	@Test
+	public void testWarningsOnlyFailWhenStrict() throws Exception {
+		write("README.md", "# Decisions\n");
+
+		assertTrue(lint("lint", 0).startsWith("README.md: WARNING:"));
+		lint("lint -strict", ADR.ERRORGENERAL);
+	}
+
+	@Test
+	public void testManyADRsInParallel() throws Exception {
+		for (int id = 4; id < 500; id++) {
+			write(String.format("%04d", id) + "-decision.md", "# " + id + ". Decision\n\n## Status\n\nAccepted\n\n"
+					+ "* Amends [ADR " + (id - 1) + "](" + String.format("%04d", id - 1) + "-decision.md)\n");
+		}
+
+		List<ADRLinter.Diagnostic> diagnostics = new ADRLinter(docsPath, ADRFilter.filter(), 4).lint();
+
+		// Only ADR 4 references a file that does not exist (ADR 3 is 0003-use-postgresql.md)
+		assertEquals(1, diagnostics.size());
+		assertEquals("0004-decision.md", diagnostics.get(0).fileName);
+	}
+
+	@Test
+	public void testChanged() throws Exception {
+		// Not listed as changed, so not checked
+		write("0004-not-listed.md", "No title\n");
+
+		write("0005-use-redis.md", "# 5. Use Redis\n\nDate: {{date}}\n\n## Status\n\nProposed\n\n* Follows [ADR 9](0009-missing.md)\n");
+		Files.delete(docsPath.resolve("0001-record-architecture-decisions.md"));
+
+		String output = lint("lint -changed -", 1, "doc/adr/0005-use-redis.md\n"
+				                                 + "doc/adr/0001-record-architecture-decisions.md\n"
+				                                 + "src/Main.java\n");
+		// The new ADR and the ADR referencing the deleted ADR are checked, the other files are not
+		assertEquals("0003-use-postgresql.md:10: ERROR: References ADR 1 (Follows), but this ADR does not exist.\n"
+				   + "0005-use-redis.md:3: ERROR: The template placeholder {{date}} has not been filled in.\n"
+				   + "0005-use-redis.md:9: ERROR: References ADR 9 (Follows), but this ADR does not exist.\n", output);
+
+		assertEquals("", lint("lint -changed -", 0, "doc/adr/0002-use-mysql.md\n"));
+	}
+}
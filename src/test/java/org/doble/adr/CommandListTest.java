@@ -5,9 +5,13 @@ import java.io.PrintStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.DateFormat;
+import java.util.Date;
 
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
+
+import picocli.CommandLine;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -98,4 +102,91 @@ public class CommandListTest {
 			assertTrue(list.contains(expected));
 		}
 	}
+
+	private String list(String args) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	private void createADRs() throws Exception {
+		String[] testData = {
+				"new Bravo",
+				"new Delta",
+				"new Alpha",
+				"new Charlie"
+		};
+		for (String data : testData) {
+			assertEquals(0, ADR.run(TestUtilities.argify(data), env));
+		}
+	}
+
+	@Test
+	public void testListSortedAndPaginated() throws Exception {
+		createADRs();
+
+		assertEquals(String.join(System.lineSeparator(),
+				"0005-charlie.md",
+				"0004-alpha.md",
+				"0003-delta.md",
+				""), list("list -reverse -limit 3"));
+
+		assertEquals(String.join(System.lineSeparator(),
+				"0003-delta.md",
+				"0004-alpha.md",
+				""), list("list -offset 2 -limit 2"));
+
+		assertEquals(String.join(System.lineSeparator(),
+				"0004-alpha.md",
+				"0002-bravo.md",
+				"0005-charlie.md",
+				""), list("list -sort title -offset 0 -limit 3"));
+
+		assertEquals("", list("list -offset 10"));
+	}
+
+	@Test
+	public void testListTsv() throws Exception {
+		createADRs();
+
+		String[] lines = list("list -format tsv -limit 2").split(System.lineSeparator());
+		assertEquals(3, lines.length);
+		assertEquals("id\ttitle\tstatus\tdate\tfile", lines[0]);
+		assertTrue(lines[1].startsWith("1\tRecord architecture decisions\tAccepted\t"));
+		assertTrue(lines[1].endsWith("\t0001-record-architecture-decisions.md"));
+
+		String[] fields = lines[2].split("\t");
+		assertEquals("2", fields[0]);
+		assertEquals("Bravo", fields[1]);
+		assertEquals("Proposed", fields[2]);
+		assertEquals(DateFormat.getDateInstance().format(new Date()), fields[3]);
+		assertEquals("0002-bravo.md", fields[4]);
+	}
+
+	@Test
+	public void testListJson() throws Exception {
+		createADRs();
+
+		String json = list("list -f json -offset 3 -limit 1");
+		assertTrue(json.startsWith("["));
+		assertTrue(json.trim().endsWith("]"));
+		assertTrue(json.contains("{\"id\": 4, \"title\": \"Alpha\", \"status\": \"Proposed\", \"date\": "));
+		assertTrue(json.contains("\"file\": \"0004-alpha.md\"}"));
+		assertEquals(1, json.split("\"id\"").length - 1);
+
+		assertEquals("[]", list("list -format json -offset 10").trim());
+	}
+
+	@Test
+	public void testNegativeLimit() throws Exception {
+		assertEquals(CommandLine.ExitCode.USAGE, ADR.run(TestUtilities.argify("list -limit -5"), env));
+	}
 }
@@ -70,4 +70,31 @@ public class CommandNewErrorTest {
 		String commandErrorOutput = new String(errorBAOS.toByteArray());
         assertTrue(commandErrorOutput.contains("ERROR"));
 	}
+
+	@Test
+	public void testIdIsKeptIfEditorFails() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		Environment failingEnv = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(errorPrintStream)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new EditorRunner() {
+					@Override
+					public void run(Path path, String editorCommand) throws ADRException {
+						throw new ADRException("The editor cannot be started");
+					}
+				})
+				.build();
+		assertNotEquals(0, ADR.run(TestUtilities.argify("new Use MySQL"), failingEnv));
+		assertTrue(Files.exists(fileSystem.getPath(rootPathName, docsPath, "0002-use-mysql.md")));
+		Path counterPath = fileSystem.getPath(rootPathName, ".adr", IdAllocator.COUNTER_FILE_NAME);
+		assertEquals("3", new String(Files.readAllBytes(counterPath)).trim());
+
+		// The id of the ADR that has been written is not given out again
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use PostgreSQL"), env));
+		assertTrue(Files.exists(fileSystem.getPath(rootPathName, docsPath, "0003-use-postgresql.md")));
+	}
 }
@@ -17,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 //import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -116,4 +117,31 @@ public class CommandNewLinkTest {
 	
 	
 	
+	/**
+	 * Create links with reverse link comments and check if the reverse links are written
+	 * to the ADRs linked to.
+	 */
+	@Test
+	@Order(4)
+	public void testReverseLinks() throws Exception {
+		assertEquals(ADR.run(TestUtilities.argify("new An ADR"), env), 0);
+		assertEquals(ADR.run(TestUtilities.argify("new Yet another adr"), env), 0);
+
+		// ADR 4 amends ADR 2 and links to ADR 3 without a reverse link
+		assertEquals(ADR.run(TestUtilities.argify("new -l \"2:Amends:amended by\" -l 3:Relates Amending ADR"), env), 0);
+
+		Path adr2 = fileSystem.getPath(rootPathName, docsPath, "0002-an-adr.md");
+		Path adr3 = fileSystem.getPath(rootPathName, docsPath, "0003-yet-another-adr.md");
+		Path adr4 = fileSystem.getPath(rootPathName, docsPath, "0004-amending-adr.md");
+
+		assertTrue(TestUtilities.contains("Amends [ADR 2](0002-an-adr.md)", adr4));
+		assertTrue(TestUtilities.contains("* Amended by [ADR 4](0004-amending-adr.md)", adr2));
+		assertFalse(TestUtilities.contains("[ADR 4]", adr3));
+
+		ParsedRecord record = RecordLoader.load(adr2);
+		assertEquals(1, record.getLinks().size());
+		assertEquals("Amended by", record.getLinks().get(0).comment);
+		assertEquals(4, record.getLinks().get(0).id);
+	}
+
 }
@@ -166,19 +166,21 @@ public class CommandNewSupersedesTest {
 		}
 
 		// Check that the superseded ADRs reference the ADR that supersedes them 
-		// REMOVE: With user defined templates cannot reliably insert this message
-		// TODO: Check that this functionality is in help files
-		// TODO: check that this is mentioned in the documentation. 
-//		for (String supersededADRID : supersededIds) {
-//			long count = 0;
-//			String title = adrTitles[(new Integer(supersededADRID)).intValue() - 2];
-//			String supersededADRFileName = TestUtilities.adrFileName(supersededADRID, title);
-//			Path supersededADRFile = fileSystem.getPath("/project/adr/doc/adr/", supersededADRFileName);
-//			String link = "Superseded by the [architecture decision record " + newADRID + "](" + newADRFileName + ")";
-//			count = TestUtilities.findString(link, supersededADRFile);
-//			assertTrue(count == 1, "The superseded ADR does not reference the  (new) ADR [" + supersededADRID + "] that supersedes it in the text.");
-//		}
-		
+		for (String supersededADRID : supersededIds) {
+			long count = 0;
+			String title = adrTitles[(new Integer(supersededADRID)).intValue() - 2];
+			String supersededADRFileName = TestUtilities.adrFileName(supersededADRID, title);
+			Path supersededADRFile = fileSystem.getPath("/project/adr/doc/adr/", supersededADRFileName);
+			String link = "* Superseded by [ADR " + newADRID + "](" + newADRFileName + ")";
+			count = TestUtilities.findString(link, supersededADRFile);
+			assertTrue(count == 1, "The superseded ADR does not reference the  (new) ADR [" + supersededADRID + "] that supersedes it in the text.");
+
+			ParsedRecord supersededRecord = RecordLoader.load(supersededADRFile);
+			assertEquals("Superseded", supersededRecord.getStatus());
+			assertEquals(Arrays.asList(newADRID), supersededRecord.getSupersededBy());
+			assertTrue(supersededRecord.getBody().startsWith("## Context"));
+		}
+
 		return exitCode;
 	}
 }
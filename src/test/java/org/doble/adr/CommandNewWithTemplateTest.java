@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -23,6 +24,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 //import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -196,4 +198,69 @@ public class CommandNewWithTemplateTest {
 	    // Compare
 		assertEquals(expectedContents, actualContents);
 	}
+
+	/**
+	 * Test the custom fields, set in the properties and with -field, and the sections of the bundled engine
+	 * @throws Exception
+	 */
+	@Test
+	public void testCustomFieldsAndSections() throws Exception {
+		String templateContent = "# {{id}}. {{name}}\n" +
+				"{{#deciders}}\n" +
+				"Deciders: {{deciders}}\n" +
+				"{{/deciders}}\n" +
+				"{{^consulted}}\n" +
+				"Nobody consulted\n" +
+				"{{/consulted}}\n" +
+				"Team: {{team}}\n" +
+				"{{#superseded}}\n" +
+				"* Supersedes [ADR {{id}}]({{file}})\n" +
+				"{{/superseded}}\n" +
+				"{{^superseded}}\n" +
+				"Supersedes nothing\n" +
+				"{{/superseded}}";
+
+		TestUtilities.createTemplateFile(env.fileSystem, "/usr/adoble/templates/template.md", templateContent);
+		assertEquals(0, ADR.run(TestUtilities.argify("init -t /usr/adoble/templates/template.md"), env));
+
+		Path propertiesPath = fileSystem.getPath(rootPathName, ".adr", "adr.properties");
+		Files.write(propertiesPath, "field.team=Platform\nfield.deciders=Nobody\n".getBytes(), StandardOpenOption.APPEND);
+
+		assertEquals(0, ADR.run(TestUtilities.argify("new -field deciders=Jane -field id=99 Use MySQL"), env));
+		assertEquals("# 1. Use MySQL\n" +
+				"Deciders: Jane\n" +
+				"Nobody consulted\n" +
+				"Team: Platform\n" +
+				"Supersedes nothing",
+				read(fileSystem.getPath(rootPathName, "doc/adr/0001-use-mysql.md")));
+
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 1 Use PostgreSQL"), env));
+		assertEquals("# 2. Use PostgreSQL\n" +
+				"Deciders: Nobody\n" +
+				"Nobody consulted\n" +
+				"Team: Platform\n" +
+				"* Supersedes [ADR 1](0001-use-mysql.md)",
+				read(fileSystem.getPath(rootPathName, "doc/adr/0002-use-postgresql.md")));
+	}
+
+	/**
+	 * Test that an ADR is not created with a template engine that cannot be found
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnknownTemplateEngine() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		Path propertiesPath = fileSystem.getPath(rootPathName, ".adr", "adr.properties");
+		Files.write(propertiesPath, "templateEngine=unknown\n".getBytes(), StandardOpenOption.APPEND);
+
+		assertEquals(ADR.ERRORGENERAL, ADR.run(TestUtilities.argify("new Use MySQL"), env).intValue());
+		assertFalse(Files.exists(fileSystem.getPath(rootPathName, "doc/adr/0002-use-mysql.md")));
+	}
+
+	private static String read(Path path) throws IOException {
+		try (Stream<String> lines = Files.lines(path)) {
+			return lines.collect(Collectors.joining("\n"));
+		}
+	}
 }
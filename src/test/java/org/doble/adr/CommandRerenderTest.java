@@ -0,0 +1,163 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CommandRerenderTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use Kafka"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 2 -l 1:Follows Use Pulsar"), env));
+
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String rerender(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	private String read(String fileName) throws Exception {
+		return new String(Files.readAllBytes(docsPath.resolve(fileName)));
+	}
+
+	private void useTemplate(String content) throws Exception {
+		Path templatePath = fileSystem.getPath("/templates/template.md");
+		Files.createDirectories(templatePath.getParent());
+		Files.write(templatePath, content.getBytes());
+		Path propertiesPath = fileSystem.getPath(rootPathName, ".adr", "adr.properties");
+		Files.write(propertiesPath, "templateFile=/templates/template.md\nfield.team=Platform\n".getBytes(), StandardOpenOption.APPEND);
+	}
+
+	@Test
+	public void testUnchanged() throws Exception {
+		Path pulsar = docsPath.resolve("0003-use-pulsar.md");
+		FileTime modified = FileTime.fromMillis(1000000);
+		Files.setLastModifiedTime(pulsar, modified);
+
+		// ADR 1 was created with the initial template and ADR 2 was changed when it was superseded
+		assertEquals("0001-record-architecture-decisions.md\n0002-use-kafka.md\nRendered 2 of 3 ADR(s).\n", rerender("rerender", 0));
+		assertEquals(modified, Files.getLastModifiedTime(pulsar));
+
+		Path kafka = docsPath.resolve("0002-use-kafka.md");
+		Files.setLastModifiedTime(kafka, modified);
+		assertEquals("Rendered 0 of 3 ADR(s).\n", rerender("rerender", 0));
+		assertEquals(modified, Files.getLastModifiedTime(kafka));
+	}
+
+	@Test
+	public void testNewTemplate() throws Exception {
+		// The ADR is edited by hand, with a section that is not in the template
+		String kafka = read("0002-use-kafka.md");
+		String date = RecordLoader.load(docsPath.resolve("0002-use-kafka.md")).getDate();
+		String edited = kafka.substring(0, kafka.indexOf("## Context"))
+				+ "## Context\n\nWe need a message broker.\n\n"
+				+ "## Options\n\nKafka, RabbitMQ.\n\n"
+				+ "## Decision\n\nWe will use Kafka.\n\n"
+				+ "## Consequences\n\nWe need to run Kafka.";
+		Files.write(docsPath.resolve("0002-use-kafka.md"), edited.getBytes());
+
+		useTemplate("# {{id}}. {{name}}\n\n"
+				  + "Date: {{date}}\n"
+				  + "Team: {{team}}\n\n"
+				  + "## Status\n\n"
+				  + "{{status}}\n\n"
+				  + "{{#link}}\n* {{comment}} [ADR {{id}}]({{file}})\n{{/link}}\n"
+				  + "{{#superseded}}\n* Supersedes [ADR {{id}}]({{file}})\n{{/superseded}}\n\n"
+				  + "## Context\n\nThe context.\n\n"
+				  + "## Decision\n\nThe decision.\n\n"
+				  + "## Compliance\n\nHow the decision is checked.\n\n"
+				  + "## Consequences\n\nThe consequences.\n");
+
+		assertEquals("0001-record-architecture-decisions.md\n0002-use-kafka.md\n0003-use-pulsar.md\n"
+				   + "Rendered 3 of 3 ADR(s).\n", rerender("rerender", 0));
+
+		assertEquals("# 2. Use Kafka\n\n"
+				   + "Date: " + date + "\n"
+				   + "Team: Platform\n\n"
+				   + "## Status\n\n"
+				   + "Superseded\n\n"
+				   + "* Superseded by [ADR 3](0003-use-pulsar.md)\n\n"
+				   + "## Context\n\nWe need a message broker.\n\n"
+				   + "## Options\n\nKafka, RabbitMQ.\n\n"
+				   + "## Decision\n\nWe will use Kafka.\n\n"
+				   + "## Compliance\n\nHow the decision is checked.\n\n"
+				   + "## Consequences\n\nWe need to run Kafka.", read("0002-use-kafka.md"));
+
+		String pulsar = read("0003-use-pulsar.md");
+		assertEquals("# 3. Use Pulsar\n\n"
+				   + "Date: " + date + "\n"
+				   + "Team: Platform\n\n"
+				   + "## Status\n\n"
+				   + "Proposed\n\n"
+				   + "* Follows [ADR 1](0001-record-architecture-decisions.md)\n"
+				   + "* Supersedes [ADR 2](0002-use-kafka.md)\n\n"
+				   + "## Context\n", pulsar.substring(0, pulsar.indexOf("## Context") + 11));
+
+		// Rendering again changes nothing
+		assertEquals("Rendered 0 of 3 ADR(s).\n", rerender("rerender", 0));
+		assertEquals("Superseded", RecordLoader.load(docsPath.resolve("0002-use-kafka.md")).getStatus());
+	}
+
+	@Test
+	public void testSelectedADRs() throws Exception {
+		useTemplate("# {{id}}. {{name}}\n\nDate: {{date}}\n\n## Status\n\n{{status}}\n\n## Context\n\nThe context.\n");
+		String pulsar = read("0003-use-pulsar.md");
+
+		assertEquals("0002-use-kafka.md\nRendered 1 of 1 ADR(s).\n", rerender("rerender 2", 0));
+		assertEquals(pulsar, read("0003-use-pulsar.md"));
+
+		assertEquals("", rerender("rerender 2 7", 2));
+		assertEquals("", rerender("rerender -threads 0", 2));
+	}
+}
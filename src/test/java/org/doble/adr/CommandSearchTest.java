@@ -0,0 +1,103 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import picocli.CommandLine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandSearchTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		String[] testData = {
+				"new Use JMS for messaging",
+				"new Use PostgreSQL as database",
+				"new -s 3 Use MySQL as database"
+		};
+		for (String data : testData) {
+			assertEquals(0, ADR.run(TestUtilities.argify(data), env));
+		}
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String search(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		// The search index has been written by new
+		assertTrue(Files.exists(fileSystem.getPath(rootPathName, ".adr", SearchIndex.INDEX_FILE_NAME)));
+
+		assertEquals("0002-use-jms-for-messaging.md\n", search("search messaging", 0));
+		assertEquals("0002-use-jms-for-messaging.md\n", search("search messag*", 0));
+		assertEquals("0002-use-jms-for-messaging.md\n", search("search jms messaging", 0));
+		assertEquals("", search("search cassandra", 0));
+
+		// The superseded ADR has been indexed again with its new status
+		assertTrue(search("search superseded", 0).contains("0003-use-postgresql-as-database.md"));
+
+		String databases = search("search database", 0);
+		assertEquals(2, databases.split("\n").length);
+		assertEquals(1, search("search -limit 1 database", 0).split("\n").length);
+	}
+
+	@Test
+	public void testSearchFindsEditedADRs() throws Exception {
+		Path adr = fileSystem.getPath(rootPathName, "doc/adr", "0002-use-jms-for-messaging.md");
+		Files.write(adr, "# 2. Use JMS for messaging\n\n## Status\n\nAccepted\n\nActiveMQ is the broker.\n".getBytes());
+
+		assertEquals("0002-use-jms-for-messaging.md\n", search("search activemq", 0));
+	}
+
+	@Test
+	public void testNegativeLimit() throws Exception {
+		search("search -limit -2 database", CommandLine.ExitCode.USAGE);
+	}
+}
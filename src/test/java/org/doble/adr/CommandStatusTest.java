@@ -0,0 +1,141 @@
+package org.doble.adr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandStatusTest {
+	final static private String rootPathName = "/project/adr";
+
+	private FileSystem fileSystem;
+
+	private Environment env;
+
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectory(fileSystem.getPath("/project"));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use Kafka"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use Kafka Streams"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use MariaDB"), env));
+
+		docsPath = fileSystem.getPath(rootPathName, "doc/adr");
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String status(String args, int expectedExitCode) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Environment localEnv = new Environment.Builder(fileSystem)
+				.out(new PrintStream(baos))
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(expectedExitCode, ADR.run(TestUtilities.argify(args), localEnv));
+		return new String(baos.toByteArray());
+	}
+
+	private String statusOf(String fileName) throws Exception {
+		return RecordLoader.load(docsPath.resolve(fileName)).getStatus();
+	}
+
+	@Test
+	public void testChangeStatus() throws Exception {
+		Path adr = docsPath.resolve("0002-use-kafka.md");
+		String before = new String(Files.readAllBytes(adr));
+
+		String output = status("status accepted 2 3 1", 0);
+
+		assertEquals("0002-use-kafka.md: Proposed -> Accepted\n"
+				   + "0003-use-kafka-streams.md: Proposed -> Accepted\n"
+				   + "0001-record-architecture-decisions.md: Accepted (unchanged)\n", output);
+		assertEquals("Accepted", statusOf("0002-use-kafka.md"));
+		assertEquals("Accepted", statusOf("0003-use-kafka-streams.md"));
+		assertEquals("Proposed", statusOf("0004-use-mariadb.md"));
+
+		// Only the status has been changed
+		assertEquals(before.replace("\nProposed\n", "\nAccepted\n"), new String(Files.readAllBytes(adr)));
+
+		// The indexes have been updated
+		assertEquals("0002-use-kafka.md\n0003-use-kafka-streams.md\n", status("search Accepted Kafka", 0));
+	}
+
+	@Test
+	public void testTransitionNotAllowed() throws Exception {
+		assertEquals("0002-use-kafka.md: Proposed -> Deprecated\n", status("status -force Deprecated 2", 0));
+
+		// Deprecated cannot be changed, but the other ADRs are changed
+		assertEquals("0003-use-kafka-streams.md: Proposed -> Accepted\n", status("status Accepted 2 3", 1));
+		assertEquals("Deprecated", statusOf("0002-use-kafka.md"));
+		assertEquals("Accepted", statusOf("0003-use-kafka-streams.md"));
+
+		assertEquals("0004-use-mariadb.md: Proposed -> Rejected\n", status("status Rejected 4", 0));
+		assertEquals("", status("status Accepted 4", 1));
+		assertEquals("Rejected", statusOf("0004-use-mariadb.md"));
+	}
+
+	@Test
+	public void testConfiguredTransitions() throws Exception {
+		Path propertiesPath = fileSystem.getPath(rootPathName, ".adr", "adr.properties");
+		Files.write(propertiesPath, "transition.Proposed=Approved, Rejected\ntransition.Approved=Retired\n".getBytes(),
+				StandardOpenOption.APPEND);
+
+		assertEquals("", status("status Accepted 2", 1));
+		assertEquals("0002-use-kafka.md: Proposed -> Approved\n", status("status APPROVED 2", 0));
+		assertEquals("0002-use-kafka.md: Approved -> Retired\n", status("status retired 2", 0));
+		assertEquals("Retired", statusOf("0002-use-kafka.md"));
+	}
+
+	@Test
+	public void testQuery() throws Exception {
+		String output = status("status -query kafka Accepted", 0);
+
+		assertEquals(2, output.split("\n").length);
+		assertTrue(output.contains("0002-use-kafka.md: Proposed -> Accepted\n"));
+		assertTrue(output.contains("0003-use-kafka-streams.md: Proposed -> Accepted\n"));
+		assertEquals("Proposed", statusOf("0004-use-mariadb.md"));
+
+		assertEquals("No ADRs found.\n", status("status -query cassandra Accepted", 0));
+	}
+
+	@Test
+	public void testInvalidArguments() throws Exception {
+		assertEquals("", status("status Accepted", 2));
+		assertEquals("", status("status Accepted 2 9", 2));
+		assertEquals("", status("status Accepted 2 -threads 0", 2));
+		assertEquals("Proposed", statusOf("0002-use-kafka.md"));
+	}
+}
@@ -0,0 +1,141 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompiledTemplateTest {
+	private static final String NL = System.lineSeparator();
+
+	private static final String template = "# {{id}}. {{name}}\n" +
+			"\n" +
+			"Date: {{date}}\n" +
+			"\n" +
+			"## Status\n" +
+			"\n" +
+			"{{status}}\n" +
+			"\n" +
+			"* Supersedes [ADR {{{superseded.id}}}]({{{superseded.file}}})\n" +
+			"* {{{link.comment}}} [ADR {{{link.id}}}]({{{link.file}}})\n" +
+			"\n" +
+			"## Context\n";
+
+	private final TemplateEngine engine = new DefaultTemplateEngine();
+
+	private static TemplateContext context(List<Map<String, String>> links, List<Map<String, String>> superseded) {
+		Map<String, String> fields = new HashMap<String, String>();
+		fields.put("id", "12");
+		fields.put("name", "Use $money {{id}}");
+		fields.put("status", "Accepted");
+		fields.put("date", "1 Jan 2020");
+		Map<String, List<Map<String, String>>> lists = new HashMap<String, List<Map<String, String>>>();
+		lists.put(TemplateContext.LINK, links);
+		lists.put(TemplateContext.SUPERSEDED, superseded);
+		return new TemplateContext(fields, lists);
+	}
+
+	private static TemplateContext context() {
+		return context(new ArrayList<Map<String, String>>(), new ArrayList<Map<String, String>>());
+	}
+
+	@Test
+	public void testWithoutLists() throws Exception {
+		TemplateEngine.Template compiled = engine.compile(template);
+
+		String expected = "# 12. Use $money {{id}}" + NL +
+				NL +
+				"Date: 1 Jan 2020" + NL +
+				NL +
+				"## Status" + NL +
+				NL +
+				"Accepted" + NL +
+				NL +
+				NL +
+				"## Context" + NL;
+
+		assertEquals(expected, compiled.render(context()));
+	}
+
+	@Test
+	public void testFragmentsAreRepeated() throws Exception {
+		TemplateEngine.Template compiled = engine.compile(template.replace("\n", "\r\n"));
+		List<Map<String, String>> links = Arrays.asList(
+				TemplateContext.item("4", "0004-four.md", "Amends"),
+				TemplateContext.item("5", "0005-five.md", "Clarifies"));
+		List<Map<String, String>> superseded = Arrays.asList(
+				TemplateContext.item("3", "0003-three.md", null));
+
+		String rendered = compiled.render(context(links, superseded));
+
+		String expectedStatus = "Accepted" + NL +
+				NL +
+				"* Supersedes [ADR 3](0003-three.md)" + NL +
+				"* Amends [ADR 4](0004-four.md)" + NL +
+				"* Clarifies [ADR 5](0005-five.md)" + NL +
+				NL +
+				"## Context" + NL;
+		assertEquals(expectedStatus, rendered.substring(rendered.indexOf("Accepted")));
+	}
+
+	@Test
+	public void testUnknownFieldsAreKept() throws Exception {
+		TemplateEngine.Template compiled = engine.compile("{{unknown}} {{{link}}} {{id}}");
+
+		assertEquals("{{unknown}} {{{link}}} 12" + NL, compiled.render(context()));
+	}
+
+	@Test
+	public void testSections() throws Exception {
+		TemplateEngine.Template compiled = engine.compile("# {{id}}. {{name}}\n" +
+				"{{#link}}\n" +
+				"* {{comment}} [ADR {{id}}]({{link.file}}) from ADR {{superseded.id}}\n" +
+				"{{/link}}\n" +
+				"{{^link}}\n" +
+				"No links\n" +
+				"{{/link}}\n" +
+				"{{#deciders}}Deciders: {{deciders}}{{/deciders}}{{^deciders}}No deciders{{/deciders}}\n" +
+				"{{#status}}\n" +
+				"Status: {{status}}\n" +
+				"{{/status}}");
+
+		Map<String, String> fields = new HashMap<String, String>();
+		fields.put("id", "12");
+		fields.put("name", "Use MySQL");
+		fields.put("status", "Accepted");
+		fields.put("deciders", "Jane");
+		Map<String, List<Map<String, String>>> lists = new HashMap<String, List<Map<String, String>>>();
+		lists.put(TemplateContext.LINK, Arrays.asList(
+				TemplateContext.item("4", "0004-four.md", "Amends"),
+				TemplateContext.item("5", "0005-five.md", "Clarifies")));
+		lists.put(TemplateContext.SUPERSEDED, Arrays.asList(TemplateContext.item("3", "0003-three.md", null)));
+
+		assertEquals("# 12. Use MySQL" + NL +
+				"* Amends [ADR 4](0004-four.md) from ADR {{superseded.id}}" + NL +
+				"* Clarifies [ADR 5](0005-five.md) from ADR {{superseded.id}}" + NL +
+				"Deciders: Jane" + NL +
+				"Status: Accepted" + NL,
+				compiled.render(new TemplateContext(fields, lists)));
+
+		fields.remove("deciders");
+		fields.put("status", "");
+		lists.put(TemplateContext.LINK, new ArrayList<Map<String, String>>());
+
+		assertEquals("# 12. Use MySQL" + NL +
+				"No links" + NL +
+				"No deciders" + NL,
+				compiled.render(new TemplateContext(fields, lists)));
+	}
+
+	@Test
+	public void testUnmatchedSectionTagsAreKept() throws Exception {
+		TemplateEngine.Template compiled = engine.compile("{{/status}} {{#status}}{{id}}");
+
+		assertEquals("{{/status}} {{#status}}12" + NL, compiled.render(context()));
+	}
+}
@@ -0,0 +1,113 @@
+package org.doble.adr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DecisionGraphTest {
+
+	private static ADRIndex.Entry entry(int id, List<Integer> supersedes, ParsedRecord.Link... links) {
+		return new ADRIndex.Entry(id, String.format("%04d", id) + "-adr.md", "ADR " + id, "Accepted", "",
+				                  Arrays.asList(links), supersedes, 0);
+	}
+
+	private static ParsedRecord.Link link(int id, String comment) {
+		return new ParsedRecord.Link(id, comment, "");
+	}
+
+	private static List<Integer> none() {
+		return Collections.emptyList();
+	}
+
+	@Test
+	public void testSupersedesAndLinks() {
+		List<ADRIndex.Entry> entries = new ArrayList<ADRIndex.Entry>();
+		entries.add(entry(1, none()));
+		entries.add(entry(2, none(), link(1, "Amends")));
+		entries.add(entry(3, Arrays.asList(2)));
+		entries.add(entry(4, Arrays.asList(3), link(1, "Clarifies")));
+		entries.add(entry(5, Arrays.asList(2)));
+		entries.add(entry(6, none(), link(4, "Extends"), link(42, "Links to")));
+		DecisionGraph graph = DecisionGraph.build(entries);
+
+		assertArrayEquals(new int[] {2}, graph.supersedes(3));
+		assertArrayEquals(new int[] {3, 5}, graph.supersededBy(2));
+		assertArrayEquals(new int[] {4}, graph.links(6));
+		assertArrayEquals(new String[] {"Extends"}, graph.linkComments(6));
+
+		// The chain 2 -> 3 -> 4 and 2 -> 5
+		assertArrayEquals(new int[] {4, 5}, graph.effective(2));
+		assertArrayEquals(new int[] {4}, graph.effective(3));
+		assertArrayEquals(new int[] {6}, graph.effective(6));
+		assertArrayEquals(new int[0], graph.effective(42));
+
+		// 1 is linked to by 2 and 4, 2 is superseded by 3 and 5, 3 by 4, 4 is linked to by 6
+		assertArrayEquals(new int[] {2, 3, 4, 5, 6}, graph.impact(1));
+		assertArrayEquals(new int[] {6}, graph.impact(4));
+		assertArrayEquals(new int[0], graph.impact(6));
+
+		assertEquals(1, graph.getDanglingReferences().size());
+		assertEquals(6, graph.getDanglingReferences().get(0).fromId);
+		assertEquals(42, graph.getDanglingReferences().get(0).toId);
+		assertEquals("Links to", graph.getDanglingReferences().get(0).comment);
+		assertTrue(graph.supersedeCycles().isEmpty());
+	}
+
+	@Test
+	public void testCycles() {
+		List<ADRIndex.Entry> entries = new ArrayList<ADRIndex.Entry>();
+		entries.add(entry(1, Arrays.asList(3)));
+		entries.add(entry(2, Arrays.asList(1)));
+		entries.add(entry(3, Arrays.asList(2)));
+		entries.add(entry(4, Arrays.asList(3)));
+		entries.add(entry(5, Arrays.asList(5)));
+		entries.add(entry(6, Arrays.asList(4, 99)));
+		DecisionGraph graph = DecisionGraph.build(entries);
+
+		List<int[]> cycles = graph.supersedeCycles();
+		assertEquals(2, cycles.size());
+		assertArrayEquals(new int[] {1, 2, 3}, cycles.get(0));
+		assertArrayEquals(new int[] {5}, cycles.get(1));
+
+		assertArrayEquals(new int[] {6}, graph.effective(1));
+		assertArrayEquals(new int[0], graph.effective(5));   // Only superseded by itself
+		assertEquals(99, graph.getDanglingReferences().get(0).toId);
+		assertEquals("Supersedes", graph.getDanglingReferences().get(0).comment);
+	}
+
+	@Test
+	public void testSparseIds() {
+		List<ADRIndex.Entry> entries = new ArrayList<ADRIndex.Entry>();
+		entries.add(entry(7, none()));
+		entries.add(entry(1000000, Arrays.asList(7)));
+		DecisionGraph graph = DecisionGraph.build(entries);
+
+		assertTrue(graph.contains(1000000));
+		assertFalse(graph.contains(8));
+		assertArrayEquals(new int[] {1000000}, graph.effective(7));
+	}
+
+	@Test
+	public void testLongChain() {
+		// Long enough to overflow the stack if the graph was searched recursively
+		int count = 100000;
+		List<ADRIndex.Entry> entries = new ArrayList<ADRIndex.Entry>(count);
+		entries.add(entry(1, Arrays.asList(count)));
+		for (int id = 2; id <= count; id++) {
+			entries.add(entry(id, Arrays.asList(id - 1)));
+		}
+		DecisionGraph graph = DecisionGraph.build(entries);
+
+		assertEquals(1, graph.supersedeCycles().size());
+		assertEquals(count, graph.supersedeCycles().get(0).length);
+		assertEquals(count, graph.impact(1).length);
+	}
+}
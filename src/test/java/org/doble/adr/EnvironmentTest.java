@@ -1,5 +1,7 @@
 package org.doble.adr;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,6 +13,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EnvironmentTest {
 	private FileSystem fileSystem;
@@ -55,4 +60,62 @@ public class EnvironmentTest {
 		assertEquals(env.editorCommand, editor);
 		assertEquals(env.editorRunner, runner);
 	}
+
+	private Environment environment(Path dir, String rootDir) {
+		return new Environment.Builder(fileSystem)
+				.out(new PrintStream(new ByteArrayOutputStream()))
+				.err(new PrintStream(new ByteArrayOutputStream()))
+				.in(System.in)
+				.userDir(dir)
+				.rootDir(rootDir)
+				.editorCommand(editor)
+				.editorRunner(runner)
+				.build();
+	}
+
+	@Test
+	public void testRootPathFoundOnce() throws Exception {
+		Path subDir = Files.createDirectories(rootPath.resolve("src/main/java"));
+		Environment env = environment(subDir, null);
+
+		// Not found, and not remembered so that a project initialised later is found
+		assertThrows(ADRException.class, () -> ADR.getRootPath(env));
+		Path adrDir = Files.createDirectory(rootPath.resolve(ADR.ADR_DIR_NAME));
+		assertEquals(rootPath, ADR.getRootPath(env));
+
+		// Found once for the environment
+		Files.delete(adrDir);
+		assertEquals(rootPath, ADR.getRootPath(env));
+		assertThrows(ADRException.class, () -> ADR.getRootPath(environment(subDir, null)));
+	}
+
+	@Test
+	public void testRootDir() throws Exception {
+		Path otherRoot = Files.createDirectories(fileSystem.getPath("/other/project"));
+		Files.createDirectory(otherRoot.resolve(ADR.ADR_DIR_NAME));
+		Files.createDirectory(rootPath.resolve(ADR.ADR_DIR_NAME));
+
+		assertEquals(otherRoot, ADR.getRootPath(environment(rootPath, "/other/project")));
+		// Relative to the user directory
+		assertEquals(otherRoot, ADR.getRootPath(environment(fileSystem.getPath("/other"), "project")));
+		// The parent directories are not searched
+		assertThrows(ADRException.class, () -> ADR.getRootPath(environment(rootPath, "/project/adr/doc")));
+		assertThrows(ADRException.class, () -> ADR.getRootPath(environment(rootPath, "/")));
+	}
+
+	@Test
+	public void testCommandsUseRootDir() throws Exception {
+		Path otherRoot = Files.createDirectories(fileSystem.getPath("/other/project"));
+
+		assertEquals(0, (int) ADR.run(new String[] {"init", "decisions"}, environment(rootPath, "/other/project")));
+		assertTrue(Files.exists(otherRoot.resolve(ADR.ADR_DIR_NAME)));
+		assertFalse(Files.exists(rootPath.resolve(ADR.ADR_DIR_NAME)));
+
+		// The properties of the project (docPath) are used from a subdirectory as well
+		Path subDir = Files.createDirectories(otherRoot.resolve("src"));
+		assertEquals(0, (int) ADR.run(new String[] {"new", "Use", "Java"}, environment(subDir, null)));
+		assertTrue(Files.exists(otherRoot.resolve("decisions/0002-use-java.md")));
+		assertEquals(0, (int) ADR.run(new String[] {"new", "Use", "Gradle"}, environment(rootPath, "/other/project")));
+		assertTrue(Files.exists(otherRoot.resolve("decisions/0003-use-gradle.md")));
+	}
 }
@@ -0,0 +1,134 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class IdAllocatorTest {
+	private FileSystem fileSystem;
+	private Path adrPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+		adrPath = fileSystem.getPath("/project/.adr");
+		Files.createDirectories(adrPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private String counter() throws Exception {
+		return new String(Files.readAllBytes(adrPath.resolve(IdAllocator.COUNTER_FILE_NAME)), StandardCharsets.UTF_8).trim();
+	}
+
+	@Test
+	public void testSequential() throws Exception {
+		assertEquals(2, IdAllocator.allocate(adrPath, 2));
+		assertEquals(3, IdAllocator.allocate(adrPath, 2));
+		assertEquals(4, IdAllocator.allocate(adrPath, 3));
+		assertEquals("5", counter());
+	}
+
+	@Test
+	public void testLowest() throws Exception {
+		assertEquals(2, IdAllocator.allocate(adrPath, 2));
+		// An ADR created without the counter, e.g. by hand
+		assertEquals(10, IdAllocator.allocate(adrPath, 10));
+		assertEquals(11, IdAllocator.allocate(adrPath, 1));
+	}
+
+	@Test
+	public void testUnreadableCounter() throws Exception {
+		Files.write(adrPath.resolve(IdAllocator.COUNTER_FILE_NAME), "garbage".getBytes(StandardCharsets.UTF_8));
+		assertEquals(7, IdAllocator.allocate(adrPath, 7));
+		assertEquals("8", counter());
+	}
+
+	@Test
+	public void testBlock() throws Exception {
+		assertEquals(2, IdAllocator.allocate(adrPath, 2, 3));
+		assertEquals(5, IdAllocator.allocate(adrPath, 2));
+	}
+
+	@Test
+	public void testRelease() throws Exception {
+		int first = IdAllocator.allocate(adrPath, 2, 3);
+		IdAllocator.release(adrPath, first, 3);
+		assertEquals(2, IdAllocator.allocate(adrPath, 2));
+
+		// Ids allocated since are not given back
+		int id = IdAllocator.allocate(adrPath, 2);
+		assertEquals(3, id);
+		IdAllocator.allocate(adrPath, 2);
+		IdAllocator.release(adrPath, id, 1);
+		assertEquals(5, IdAllocator.allocate(adrPath, 2));
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final int threads = 4;
+		final int perThread = 25;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<List<Integer>>> futures = new ArrayList<Future<List<Integer>>>();
+		try {
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit((Callable<List<Integer>>) () -> {
+					List<Integer> ids = new ArrayList<Integer>();
+					for (int i = 0; i < perThread; i++) {
+						ids.add(IdAllocator.allocate(adrPath, 1));
+					}
+					return ids;
+				}));
+			}
+
+			List<Integer> all = new ArrayList<Integer>();
+			for (Future<List<Integer>> future : futures) {
+				all.addAll(future.get());
+			}
+			Collections.sort(all);
+
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int id = 1; id <= threads * perThread; id++) expected.add(id);
+			assertEquals(expected, all);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testExistingADRNotOverwritten() throws Exception {
+		Path docsPath = fileSystem.getPath("/project/doc/adr");
+		Files.createDirectories(docsPath);
+		Path existing = Files.write(docsPath.resolve("0002-use-mysql.md"), "Existing".getBytes(StandardCharsets.UTF_8));
+
+		Record record = new Record.Builder(docsPath)
+				.id(2)
+				.name("Use MySQL")
+				.build();
+
+		ADRException e = assertThrows(ADRException.class, record::store);
+		assertEquals("ERROR: The ADR " + existing + " already exists.", e.getMessage());
+		assertEquals("Existing", new String(Files.readAllBytes(existing), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,38 @@
+package org.doble.adr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MarkdownRendererTest {
+	private final MarkdownRenderer renderer = new MarkdownRenderer(target -> target.replace(".md", ".html"));
+
+	@Test
+	public void testBlocks() {
+		assertEquals("<h1>1. Title</h1>\n"
+				   + "<p>Date: 21.07.2017</p>\n"
+				   + "<h2>Status</h2>\n"
+				   + "<p>Accepted\nsince today</p>\n"
+				   + "<ul>\n<li>One</li>\n<li>Two\ncontinued</li>\n</ul>\n"
+				   + "<ol>\n<li>First</li>\n</ol>\n"
+				   + "<blockquote><p>Quoted\ntext</p></blockquote>\n"
+				   + "<pre><code># Not a heading\n&lt;b&gt;\n</code></pre>\n",
+				   renderer.render("# 1. Title\r\n\r\nDate: 21.07.2017\r\n\r\n## Status\r\n\r\nAccepted\r\nsince today\r\n\r\n"
+						         + "* One\n- Two\n  continued\n1. First\n\n> Quoted\n> text\n\n```java\n# Not a heading\n<b>\n```\n"));
+	}
+
+	@Test
+	public void testInline() {
+		assertEquals("<p>Use <code>**adr**</code> for <strong>all</strong> <em>new</em> <em>decisions</em>, see "
+				   + "<a href=\"0002-use-mysql.html\">ADR 2</a> &amp; <a href=\"https://example.com/?a=1&amp;b=&quot;\">the <em>site</em></a>. "
+				   + "snake_case_name 2 * 3 * 4</p>\n",
+				   renderer.render("Use `**adr**` for **all** *new* _decisions_, see [ADR 2](0002-use-mysql.md) & "
+						         + "[the *site*](https://example.com/?a=1&b=\"). snake_case_name 2 * 3 * 4"));
+	}
+
+	@Test
+	public void testEscaped() {
+		assertEquals("<p>&lt;script&gt;alert(&quot;x&quot;)&lt;/script&gt; an `unmatched backtick</p>\n",
+				   renderer.render("<script>alert(\"x\")</script> an `unmatched backtick"));
+	}
+}
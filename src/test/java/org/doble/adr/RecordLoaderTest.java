@@ -0,0 +1,150 @@
+package org.doble.adr;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordLoaderTest {
+	final static private String rootPathName = "/project/adr";
+	final static private String docsPathName = "/project/adr/doc/adr";
+
+	private FileSystem fileSystem;
+	private Environment env;
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectories(fileSystem.getPath(rootPathName));
+
+		env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+		docsPath = fileSystem.getPath(docsPathName);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	@Test
+	public void testDefaultTemplate() throws Exception {
+		assertEquals(0, ADR.run(TestUtilities.argify("new Use a message bus"), env));
+		assertEquals(0, ADR.run(TestUtilities.argify("new -s 1 -l 2:Amends Use JMS"), env));
+
+		ParsedRecord record = RecordLoader.load(docsPath.resolve("0003-use-jms.md"));
+		assertEquals(3, record.getId());
+		assertEquals("Use JMS", record.getTitle());
+		assertEquals("Proposed", record.getStatus());
+		assertTrue(!record.getDate().isEmpty());
+		assertEquals(Arrays.asList(1), record.getSupersedes());
+		assertEquals(1, record.getLinks().size());
+		assertEquals(2, record.getLinks().get(0).id);
+		assertEquals("Amends", record.getLinks().get(0).comment);
+		assertEquals("0002-use-a-message-bus.md", record.getLinks().get(0).fileName);
+		assertTrue(record.getBody().startsWith("## Context"));
+
+		// The index holds the same values
+		ADRIndex.Entry entry = ADRIndex.open(fileSystem.getPath(rootPathName, ".adr"), docsPath).get(3).get();
+		assertEquals(Arrays.asList(1), entry.supersedes);
+		assertEquals("Amends", entry.links.get(0).comment);
+		assertEquals(record.getDate(), entry.date);
+	}
+
+	@Test
+	public void testNygard() throws Exception {
+		Path path = docsPath.resolve("0012-use-postgresql.md");
+		Files.write(path, Arrays.asList(
+				"# 12. Use PostgreSQL",
+				"",
+				"Date: 21.07.2017",
+				"",
+				"## Status",
+				"",
+				"Accepted",
+				"",
+				"Supersedes [ADR 3](0003-use-mysql.md)",
+				"",
+				"Superseded by the [architecture decision record 14](0014-use-sqlite.md)",
+				"",
+				"* Clarified by [ADR 13](0013-use-connection-pools.md)",
+				"",
+				"## Context",
+				"",
+				"We need a database. See [ADR 2](0002-other.md)."));
+
+		ParsedRecord record = RecordLoader.load(path);
+		assertEquals(12, record.getId());
+		assertEquals("Use PostgreSQL", record.getTitle());
+		assertEquals("21.07.2017", record.getDate());
+		assertEquals("Accepted", record.getStatus());
+		assertEquals(Arrays.asList(3), record.getSupersedes());
+		assertEquals(Arrays.asList(14), record.getSupersededBy());
+		assertEquals(1, record.getLinks().size());
+		assertEquals("Clarified by", record.getLinks().get(0).comment);
+		assertEquals(13, record.getLinks().get(0).id);
+		assertTrue(record.getBody().startsWith("## Context"));
+		assertTrue(record.getBody().contains("We need a database."));
+	}
+
+	@Test
+	public void testMADR() throws Exception {
+		Path path = docsPath.resolve("0005-use-markdown.md");
+		Files.write(path, Arrays.asList(
+				"# Use Markdown",
+				"",
+				"* Status: accepted",
+				"Supersedes: [ADR 4](0004-use-asciidoc.md)",
+				"",
+				"* Deciders: everyone",
+				"* Date: 2019-10-02",
+				"",
+				"Technical Story: none",
+				"",
+				"## Context and Problem Statement",
+				"",
+				"Some text"));
+
+		ParsedRecord record = RecordLoader.load(path);
+		assertEquals(5, record.getId());
+		assertEquals("Use Markdown", record.getTitle());
+		assertEquals("accepted", record.getStatus());
+		assertEquals("2019-10-02", record.getDate());
+		assertEquals(Arrays.asList(4), record.getSupersedes());
+		assertTrue(record.getLinks().isEmpty());
+		assertTrue(record.getBody().startsWith("## Context and Problem Statement"));
+	}
+
+	@Test
+	public void testBodyIsNotReadUntilRequested() throws Exception {
+		Path path = docsPath.resolve("0006-lazy.md");
+		Files.write(path, ("# 6. Lazy\r\n\r\nDate: today\r\n\r\n## Status\r\n\r\nAccepted\r\n\r\n## Context\r\n\r\nOld context\r\n").getBytes("UTF-8"));
+
+		ParsedRecord record = RecordLoader.load(path);
+		assertEquals("Accepted", record.getStatus());
+		assertEquals("Lazy", record.getTitle());
+
+		// Change the body after the head has been read
+		Files.write(path, ("# 6. Lazy\r\n\r\nDate: today\r\n\r\n## Status\r\n\r\nAccepted\r\n\r\n## Context\r\n\r\nNew context\r\n").getBytes("UTF-8"));
+		assertEquals("## Context\r\n\r\nNew context\r\n", record.getBody());
+	}
+}
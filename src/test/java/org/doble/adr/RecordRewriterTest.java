@@ -0,0 +1,191 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordRewriterTest {
+	private FileSystem fileSystem;
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix().toBuilder().setAttributeViews("basic", "posix").build());
+		docsPath = fileSystem.getPath("/project/doc/adr");
+		Files.createDirectories(docsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private Path write(String fileName, String content) throws Exception {
+		return Files.write(docsPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String read(Path path) throws Exception {
+		return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+	}
+
+	private long fileCount() throws Exception {
+		try (Stream<Path> files = Files.list(docsPath)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	public void testNygard() throws Exception {
+		Path adr = write("0002-use-mysql.md",
+				"# 2. Use MySQL\r\n\r\nDate: 21.07.2017\r\n\r\n## Status\r\n\r\nAccepted\r\n\r\n"
+			  + "* Amends [ADR 1](0001-record-architecture-decisions.md)\r\n\r\n## Context\r\n\r\nContext\r\n\r\n## Decision\r\n");
+
+		assertTrue(RecordRewriter.markSuperseded(adr, 5, "0005-use-postgresql.md"));
+
+		assertEquals("# 2. Use MySQL\r\n\r\nDate: 21.07.2017\r\n\r\n## Status\r\n\r\nSuperseded\r\n\r\n"
+				   + "* Amends [ADR 1](0001-record-architecture-decisions.md)\r\n"
+				   + "* Superseded by [ADR 5](0005-use-postgresql.md)\r\n\r\n## Context\r\n\r\nContext\r\n\r\n## Decision\r\n",
+				   read(adr));
+		assertEquals(1, fileCount());  // No temporary file is left
+
+		// Superseding again by the same ADR changes nothing
+		assertFalse(RecordRewriter.markSuperseded(adr, 5, "0005-use-postgresql.md"));
+		assertTrue(RecordRewriter.markSuperseded(adr, 6, "0006-use-sqlite.md"));
+		ParsedRecord record = RecordLoader.load(adr);
+		assertEquals("Superseded", record.getStatus());
+		assertEquals(2, record.getSupersededBy().size());
+		assertEquals(1, record.getLinks().size());
+	}
+
+	@Test
+	public void testStatusIsLastSection() throws Exception {
+		Path adr = write("0003-short.md", "# 3. Short\n\n## Status\n\nProposed");
+
+		assertTrue(RecordRewriter.markSuperseded(adr, 4, "0004-longer.md"));
+
+		assertEquals("# 3. Short\n\n## Status\n\nSuperseded\n\n* Superseded by [ADR 4](0004-longer.md)\n", read(adr));
+	}
+
+	@Test
+	public void testReferencesStayOneList() throws Exception {
+		Path adr = write("0006-use-kafka.md",
+				"# 6. Use Kafka\n\n## Status\n\nAccepted\n\n* Supersedes [ADR 2](0002-use-jms.md)\n\n## Context\n");
+		Path last = write("0007-use-avro.md", "# 7. Use Avro\n\n## Status\n\nAccepted\n\n* Amends [ADR 6](0006-use-kafka.md)");
+
+		assertEquals(Arrays.asList(adr, last), new RecordRewriter().addLink(adr, "Amended by", 8, "0008-use-schemas.md")
+				.addLink(last, "Amended by", 8, "0008-use-schemas.md").commit());
+
+		assertEquals("# 6. Use Kafka\n\n## Status\n\nAccepted\n\n* Supersedes [ADR 2](0002-use-jms.md)\n"
+				   + "* Amended by [ADR 8](0008-use-schemas.md)\n\n## Context\n", read(adr));
+		assertEquals("# 7. Use Avro\n\n## Status\n\nAccepted\n\n* Amends [ADR 6](0006-use-kafka.md)\n"
+				   + "* Amended by [ADR 8](0008-use-schemas.md)\n", read(last));
+	}
+
+	@Test
+	public void testMADR() throws Exception {
+		Path adr = write("0004-use-markdown.md",
+				"# Use Markdown\n\n* Status: accepted\n* Date: 2019-10-02\n\n## Context and Problem Statement\n\nText\n");
+
+		assertTrue(RecordRewriter.markSuperseded(adr, 7, "0007-use-asciidoc.md"));
+
+		assertEquals("# Use Markdown\n\n* Status: superseded\n* Superseded by [ADR 7](0007-use-asciidoc.md)\n"
+				   + "* Date: 2019-10-02\n\n## Context and Problem Statement\n\nText\n", read(adr));
+		assertEquals("superseded", RecordLoader.load(adr).getStatus());
+	}
+
+	@Test
+	public void testNoStatus() throws Exception {
+		String content = "# 5. No status\n\n## Context\n\nText\n";
+		Path adr = write("0005-no-status.md", content);
+
+		assertFalse(RecordRewriter.markSuperseded(adr, 8, "0008-other.md"));
+
+		assertEquals(content, read(adr));
+		assertEquals(1, fileCount());
+	}
+
+	@Test
+	public void testReplaceStatus() throws Exception {
+		Path nygard = write("0002-use-mysql.md",
+				"# 2. Use MySQL\r\n\r\n## Status\r\n\r\nProposed\r\n\r\n* Amends [ADR 1](0001-record.md)\r\n\r\n## Context\r\n\r\nText\r\n");
+		Path last = write("0003-short.md", "# 3. Short\n\n## Status\n\nProposed");
+		Path madr = write("0004-use-markdown.md", "# Use Markdown\n\n* Status: proposed\n* Date: 2019-10-02\n\n## Context\n");
+		String noStatus = "# 5. No status\n\n## Status\n\n## Context\n\nText\n";
+		Path empty = write("0005-no-status.md", noStatus);
+
+		assertTrue(RecordRewriter.replaceStatus(nygard, "Accepted"));
+		assertTrue(RecordRewriter.replaceStatus(last, "Accepted"));
+		assertTrue(RecordRewriter.replaceStatus(madr, "Accepted"));
+		assertFalse(RecordRewriter.replaceStatus(empty, "Accepted"));
+
+		assertEquals("# 2. Use MySQL\r\n\r\n## Status\r\n\r\nAccepted\r\n\r\n* Amends [ADR 1](0001-record.md)\r\n\r\n## Context\r\n\r\nText\r\n",
+				read(nygard));
+		assertEquals("# 3. Short\n\n## Status\n\nAccepted", read(last));
+		assertEquals("# Use Markdown\n\n* Status: accepted\n* Date: 2019-10-02\n\n## Context\n", read(madr));
+		assertEquals(noStatus, read(empty));
+		assertEquals(4, fileCount());
+	}
+
+	@Test
+	public void testPermissionsAreKept() throws Exception {
+		Path adr = write("0002-use-mysql.md", "# 2. Use MySQL\n\n## Status\n\nProposed\n\n## Context\n\nText\n");
+		Files.setPosixFilePermissions(adr, PosixFilePermissions.fromString("rw-rw-r--"));
+
+		assertTrue(RecordRewriter.replaceStatus(adr, "Accepted"));
+		assertTrue(RecordRewriter.markSuperseded(adr, 5, "0005-use-postgresql.md"));
+
+		assertEquals("rw-rw-r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(adr)));
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		Path adr2 = write("0002-use-mysql.md", "# 2. Use MySQL\n\n## Status\n\nAccepted\n\n## Context\n\nText\n");
+		Path adr3 = write("0003-use-jms.md", "# 3. Use JMS\n\n## Status\n\nAccepted\n\n## Context\n\nText\n");
+
+		RecordRewriter rewriter = new RecordRewriter();
+		rewriter.addSupersededBy(adr2, 5, "0005-use-postgresql.md");
+		rewriter.addLink(adr2, "Clarified by", 5, "0005-use-postgresql.md");
+		rewriter.addLink(adr3, "Amended by", 5, "0005-use-postgresql.md");
+		List<Path> changed = rewriter.commit();
+
+		assertEquals(Arrays.asList(adr2, adr3), changed);
+		assertEquals("# 2. Use MySQL\n\n## Status\n\nSuperseded\n\n* Superseded by [ADR 5](0005-use-postgresql.md)\n"
+				   + "* Clarified by [ADR 5](0005-use-postgresql.md)\n\n## Context\n\nText\n", read(adr2));
+		assertEquals("# 3. Use JMS\n\n## Status\n\nAccepted\n\n* Amended by [ADR 5](0005-use-postgresql.md)\n\n"
+				   + "## Context\n\nText\n", read(adr3));
+		assertEquals(2, fileCount());
+
+		// Links already in the ADR are not added again
+		assertTrue(new RecordRewriter().addLink(adr3, "amended by", 5, "0005-use-postgresql.md").commit().isEmpty());
+	}
+
+	@Test
+	public void testBatchFailureChangesNothing() throws Exception {
+		String content = "# 2. Use MySQL\n\n## Status\n\nAccepted\n\n## Context\n\nText\n";
+		Path adr2 = write("0002-use-mysql.md", content);
+
+		RecordRewriter rewriter = new RecordRewriter();
+		rewriter.addLink(adr2, "Amended by", 5, "0005-use-postgresql.md");
+		rewriter.addLink(docsPath.resolve("0003-missing.md"), "Amended by", 5, "0005-use-postgresql.md");
+
+		assertThrows(ADRException.class, rewriter::commit);
+		assertEquals(content, read(adr2));
+		assertEquals(1, fileCount());  // No temporary file or backup is left
+	}
+}
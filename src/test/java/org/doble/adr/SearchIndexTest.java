@@ -0,0 +1,199 @@
+package org.doble.adr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchIndexTest {
+	final static private String rootPathName = "/project/adr";
+	final static private String docsPathName = "/project/adr/doc/adr";
+
+	private FileSystem fileSystem;
+	private Path adrPath;
+	private Path docsPath;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+
+		Files.createDirectories(fileSystem.getPath(rootPathName));
+
+		Environment env = new Environment.Builder(fileSystem)
+				.out(System.out)
+				.err(System.err)
+				.in(System.in)
+				.userDir(rootPathName)
+				.editorCommand("dummyEditor")
+				.editorRunner(new TestEditorRunner())
+				.build();
+
+		assertEquals(0, ADR.run(TestUtilities.argify("init"), env));
+
+		adrPath = fileSystem.getPath(rootPathName, ".adr");
+		docsPath = fileSystem.getPath(docsPathName);
+
+		write("0002-use-jms.md", "# 2. Use JMS\n\n## Status\n\nAccepted\n\n## Context\n\nWe need a message queue for the events.\n");
+		write("0003-use-kafka.md", "# 3. Use Kafka\n\n## Status\n\nProposed\n\n## Context\n\nThe queue of messages grows. "
+				                 + "Kafka is a message broker, a message queue with persistence. Kafka scales.\n");
+		write("0004-use-postgresql.md", "# 4. Use PostgreSQL\n\n## Status\n\nAccepted\n\n## Context\n\nWe need a database with good performance.\n");
+		SearchIndex.clearCache();
+		ADRIndex.clearCache();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	private void write(String fileName, String content) throws Exception {
+		Files.write(docsPath.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private SearchIndex open() throws Exception {
+		return SearchIndex.open(adrPath, ADRIndex.open(adrPath, docsPath));
+	}
+
+	private static List<Integer> ids(List<SearchIndex.Hit> hits) {
+		return hits.stream().map(hit -> hit.id).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testTerms() throws Exception {
+		SearchIndex index = open();
+
+		assertEquals(Arrays.asList(3, 2), ids(index.search("queue")));    // Kafka has the term more often
+		assertEquals(Arrays.asList(3), ids(index.search("KAFKA queue")));  // All the terms have to match
+		assertEquals(Arrays.asList(4), ids(index.search("database")));
+		assertTrue(index.search("cassandra").isEmpty());
+		assertEquals("0004-use-postgresql.md", index.search("database").get(0).fileName);
+	}
+
+	@Test
+	public void testPhrase() throws Exception {
+		SearchIndex index = open();
+
+		assertEquals(Arrays.asList(2, 3), ids(index.search("\"message queue\"")));    // Same score, so ordered by id
+		assertEquals(Arrays.asList(3), ids(index.search("\"queue of messages\"")));
+		assertTrue(index.search("\"queue message\"").isEmpty());
+		assertEquals(Arrays.asList(3), ids(index.search("\"message broker\" kafka")));
+	}
+
+	@Test
+	public void testPrefix() throws Exception {
+		SearchIndex index = open();
+
+		assertEquals(Arrays.asList(3, 2), ids(index.search("messag*")));
+		assertEquals(Arrays.asList(3, 4), ids(index.search("per*")));      // persistence, performance
+		assertEquals(Arrays.asList(4), ids(index.search("postgres*")));
+	}
+
+	@Test
+	public void testIncrementalUpdates() throws Exception {
+		SearchIndex index = open();
+		index.save();
+		assertTrue(Files.exists(adrPath.resolve(SearchIndex.INDEX_FILE_NAME)));
+
+		// A new ADR with a lower id than existing ADRs, a modified ADR and a deleted ADR
+		write("0001-record-architecture-decisions.md", "# 1. Record architecture decisions\n\nWe use a message queue.\n");
+		Path jms = docsPath.resolve("0002-use-jms.md");
+		write("0002-use-jms.md", "# 2. Use JMS\n\n## Status\n\nAccepted\n\n## Context\n\nWe need a broker for the events.\n");
+		Files.setLastModifiedTime(jms, FileTime.fromMillis(Files.getLastModifiedTime(jms).toMillis() + 1000));
+		Files.delete(docsPath.resolve("0004-use-postgresql.md"));
+		Files.setLastModifiedTime(docsPath, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+		SearchIndex.clearCache();
+		index = open();
+		assertEquals(Arrays.asList(1, 3), ids(index.search("\"message queue\"")));
+		assertEquals(Arrays.asList(2), ids(index.search("events")));
+		assertTrue(index.search("database").isEmpty());
+		index.save();
+
+		// Read back from the index file
+		SearchIndex.clearCache();
+		index = open();
+		assertEquals(Arrays.asList(1, 3), ids(index.search("\"message queue\"")));
+		assertEquals(Arrays.asList(2, 3), ids(index.search("broker")));
+	}
+
+	@Test
+	public void testPutAndRemoveWithStoredIndex() throws Exception {
+		open().save();
+		SearchIndex.clearCache();
+
+		// The terms of the ADRs are read from the index file to remove their postings
+		SearchIndex index = open();
+		write("0003-use-kafka.md", "# 3. Use Kafka\n\n## Status\n\nProposed\n\n## Context\n\nKafka is a message broker.\n");
+		index.put(docsPath.resolve("0003-use-kafka.md"));
+		index.remove(4);
+		assertTrue(index.search("scales").isEmpty());
+		assertTrue(index.search("database").isEmpty());
+		assertEquals(Arrays.asList(3), ids(index.search("broker")));
+		assertEquals(Arrays.asList(2), ids(index.search("\"message queue\"")));
+		index.save();
+
+		SearchIndex.clearCache();
+		index = SearchIndex.open(adrPath, ADRIndex.open(adrPath, docsPath));
+		assertTrue(index.search("scales").isEmpty());
+		assertTrue(index.search("persist*").isEmpty());
+		assertEquals(Arrays.asList(3), ids(index.search("broker")));
+		assertEquals(Arrays.asList(2, 3), ids(index.search("messag*")));
+	}
+
+	@Test
+	public void testDamagedPostingsAreRebuilt() throws Exception {
+		open().save();
+		SearchIndex.clearCache();
+		Path indexPath = adrPath.resolve(SearchIndex.INDEX_FILE_NAME);
+		byte[] content = Files.readAllBytes(indexPath);
+		content[content.length - 1] = (byte) 0x80;   // The postings of the last term ("with") do not end
+		Files.write(indexPath, content);
+
+		// Only found to be damaged when the postings are read
+		SearchIndex index = open();
+		assertEquals(Arrays.asList(3), ids(index.search("kafka")));
+		assertEquals(Arrays.asList(3, 4), ids(index.search("with")));
+		index.save();
+
+		SearchIndex.clearCache();
+		assertEquals(Arrays.asList(3, 4), ids(open().search("with")));
+	}
+
+	@Test
+	public void testEditInSameClockTick() throws Exception {
+		Path jms = docsPath.resolve("0002-use-jms.md");
+		FileTime modified = Files.getLastModifiedTime(jms);
+		open().save();
+		ADRIndex.open(adrPath, docsPath).save();
+
+		// The modification time of the ADR and the directory do not change
+		FileTime directoryModified = Files.getLastModifiedTime(docsPath);
+		write("0002-use-jms.md", "# 2. Use JMS\n\n## Status\n\nAccepted\n\n## Context\n\nWe need a broker for the events.\n");
+		Files.setLastModifiedTime(jms, modified);
+		Files.setLastModifiedTime(docsPath, directoryModified);
+
+		SearchIndex.clearCache();
+		ADRIndex.clearCache();
+		assertEquals(Arrays.asList(2), ids(open().search("broker events")));
+	}
+
+	@Test
+	public void testParseQuery() {
+		assertEquals(Arrays.asList(Arrays.asList("use"), Arrays.asList("message", "queue"), Arrays.asList("perf*")),
+				     SearchIndex.parseQuery("Use \"Message Queue\" perf*"));
+		assertEquals(Arrays.asList(Arrays.asList("event", "driven")), SearchIndex.parseQuery("event-driven"));
+	}
+}
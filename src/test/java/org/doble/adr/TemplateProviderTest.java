@@ -0,0 +1,85 @@
+package org.doble.adr;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateProviderTest {
+	private FileSystem fileSystem;
+	private TemplateProvider templateProvider;
+	private TemplateEngine engine;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+		templateProvider = new TemplateProvider(fileSystem, ADRProperties.defaultTemplateName);
+		engine = TemplateProvider.getEngine(DefaultTemplateEngine.NAME);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		fileSystem.close();
+	}
+
+	@Test
+	public void testUnchangedTemplateIsCompiledOnce() throws Exception {
+		TestUtilities.createTemplateFile(fileSystem, "/templates/template.md", "# {{id}}. {{name}}");
+		Optional<String> templateName = Optional.of("/templates/template.md");
+
+		TemplateEngine.Template first = templateProvider.getTemplate(templateName, engine);
+		TemplateEngine.Template second = new TemplateProvider(fileSystem, ADRProperties.defaultTemplateName)
+				.getTemplate(templateName, engine);
+
+		assertSame(first, second);
+		assertSame(templateProvider.getTemplate(Optional.empty(), engine),
+				templateProvider.getTemplate(Optional.empty(), engine));
+	}
+
+	@Test
+	public void testChangedTemplateIsCompiledAgain() throws Exception {
+		TestUtilities.createTemplateFile(fileSystem, "/templates/template.md", "# {{id}}. {{name}}");
+		Optional<String> templateName = Optional.of("/templates/template.md");
+		Path templatePath = fileSystem.getPath("/templates/template.md");
+
+		TemplateEngine.Template first = templateProvider.getTemplate(templateName, engine);
+
+		Files.write(templatePath, "# {{name}}".getBytes());
+		Files.setLastModifiedTime(templatePath, FileTime.fromMillis(1000));
+
+		assertNotSame(first, templateProvider.getTemplate(templateName, engine));
+	}
+
+	@Test
+	public void testCacheIsBounded() throws Exception {
+		TestUtilities.createTemplateFile(fileSystem, "/templates/template0.md", "# {{id}}");
+		TemplateEngine.Template first = templateProvider.getTemplate(Optional.of("/templates/template0.md"), engine);
+
+		for (int i = 1; i <= TemplateProvider.MAX_CACHED_TEMPLATES; i++) {
+			TestUtilities.createTemplateFile(fileSystem, "/templates/template" + i + ".md", "# {{id}}");
+			templateProvider.getTemplate(Optional.of("/templates/template" + i + ".md"), engine);
+		}
+
+		// The least recently used template has been evicted
+		assertNotSame(first, templateProvider.getTemplate(Optional.of("/templates/template0.md"), engine));
+	}
+
+	@Test
+	public void testEngines() throws Exception {
+		assertTrue(TemplateProvider.getEngine(null) instanceof DefaultTemplateEngine);
+		assertSame(TemplateProvider.getEngine(null), TemplateProvider.getEngine(DefaultTemplateEngine.NAME));
+		assertThrows(ADRException.class, () -> TemplateProvider.getEngine("unknown"));
+	}
+}